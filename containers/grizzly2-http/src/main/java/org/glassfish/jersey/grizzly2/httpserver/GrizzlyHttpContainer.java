@@ -47,7 +47,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,30 +63,42 @@ import javax.inject.Provider;
 import org.glassfish.jersey.internal.inject.AbstractBinder;
 import org.glassfish.jersey.internal.inject.ReferencingFactory;
 import org.glassfish.jersey.internal.util.ExtendedLogger;
+import org.glassfish.jersey.internal.util.PropertiesHelper;
 import org.glassfish.jersey.internal.util.collection.Ref;
+import org.glassfish.jersey.message.internal.InboundMessageContext;
 import org.glassfish.jersey.process.internal.RequestScoped;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerException;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ContainerResponse;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.internal.ApplicationReloader;
+import org.glassfish.jersey.server.internal.BaseUriCache;
+import org.glassfish.jersey.server.internal.inject.ReferenceSeeder;
 import org.glassfish.jersey.server.internal.ConfigHelper;
 import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
-import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.glassfish.jersey.server.spi.NonBlockingContainerResponseWriter;
 import org.glassfish.jersey.server.spi.RequestScopedInitializer;
 
+import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.api.PerLookup;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.TypeLiteral;
 import org.glassfish.hk2.utilities.Binder;
 
 import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.ReadHandler;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.http.io.NIOInputStream;
 import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
 import org.glassfish.grizzly.utils.Charsets;
 
+import com.google.common.collect.Lists;
+
 /**
  * Grizzly 2 Jersey HTTP Container.
  *
@@ -116,7 +131,8 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
 
     /**
      * An internal binder to enable Grizzly HTTP container specific types injection.
-     * This binder allows to inject underlying Grizzly HTTP request and response instances.
+     * This binder allows to inject underlying Grizzly HTTP request and response instances
+     * as well as the {@link PreloadLinks preload links} of the request.
      */
     private static class GrizzlyBinder extends AbstractBinder {
 
@@ -129,6 +145,31 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
             bindFactory(GrizzlyResponseReferencingFactory.class).to(Response.class).in(PerLookup.class);
             bindFactory(ReferencingFactory.<Response>referenceFactory()).to(new TypeLiteral<Ref<Response>>() {
             }).in(RequestScoped.class);
+
+            bindFactory(PreloadLinksFactory.class).to(PreloadLinks.class).in(RequestScoped.class);
+        }
+    }
+
+    /**
+     * Factory of the {@link PreloadLinks} instances for the current request.
+     */
+    private static class PreloadLinksFactory implements Factory<PreloadLinks> {
+
+        private final Provider<ContainerRequest> request;
+
+        @Inject
+        public PreloadLinksFactory(Provider<ContainerRequest> request) {
+            this.request = request;
+        }
+
+        @Override
+        public PreloadLinks provide() {
+            return new RequestPreloadLinks(request.get());
+        }
+
+        @Override
+        public void dispose(PreloadLinks instance) {
+            // no-op
         }
     }
 
@@ -155,10 +196,11 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
         }
     };
 
-    private final static class ResponseWriter implements ContainerResponseWriter {
+    private final static class ResponseWriter implements NonBlockingContainerResponseWriter {
 
         private final String name;
         private final Response grizzlyResponse;
+        private volatile TimeoutHandler timeoutHandler;
 
         ResponseWriter(final Response response) {
             this.grizzlyResponse = response;
@@ -199,26 +241,49 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
         @Override
         public void suspend(final long timeOut, final TimeUnit timeUnit, final TimeoutHandler timeoutHandler) {
             try {
-                grizzlyResponse.suspend(timeOut, timeUnit, EMPTY_COMPLETION_HANDLER,
-                        new org.glassfish.grizzly.http.server.TimeoutHandler() {
-
-                            @Override
-                            public boolean onTimeout(Response response) {
-                                if (timeoutHandler != null) {
-                                    timeoutHandler.onTimeout(ResponseWriter.this);
-                                }
-
-                                // TODO should we return true ins some cases instead?
-                                // Returning false relies on the fact that the timeoutHandler
-                                // will resume the response.
-                                return false;
-                            }
-                        });
+                this.timeoutHandler = timeoutHandler;
+                if (grizzlyResponse.isSuspended()) {
+                    // already suspended while the request entity was being read
+                    grizzlyResponse.getSuspendContext().setTimeout(timeOut, timeUnit);
+                } else {
+                    suspend(timeOut, timeUnit);
+                }
             } finally {
                 logger.debugLog("{0} - suspend(...) called", name);
             }
         }
 
+        /**
+         * Suspend the Grizzly response until the request entity is read by the non-blocking input
+         * and the request is dispatched to the application.
+         */
+        void suspendForRead() {
+            try {
+                suspend(-1, TimeUnit.MILLISECONDS);
+            } finally {
+                logger.debugLog("{0} - suspendForRead() called", name);
+            }
+        }
+
+        private void suspend(final long timeOut, final TimeUnit timeUnit) {
+            grizzlyResponse.suspend(timeOut, timeUnit, EMPTY_COMPLETION_HANDLER,
+                    new org.glassfish.grizzly.http.server.TimeoutHandler() {
+
+                        @Override
+                        public boolean onTimeout(Response response) {
+                            final TimeoutHandler handler = timeoutHandler;
+                            if (handler != null) {
+                                handler.onTimeout(ResponseWriter.this);
+                            }
+
+                            // TODO should we return true ins some cases instead?
+                            // Returning false relies on the fact that the timeoutHandler
+                            // will resume the response.
+                            return false;
+                        }
+                    });
+        }
+
         @Override
         public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) throws IllegalStateException {
             try {
@@ -236,6 +301,7 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
                 grizzlyResponse.setStatus(context.getStatus());
                 grizzlyResponse.setContentLengthLong(contentLength);
 
+                RequestPreloadLinks.addHeaders(context);
                 for (final Map.Entry<String, List<String>> e : context.getStringHeaders().entrySet()) {
                     for (final String value : e.getValue()) {
                         grizzlyResponse.addHeader(e.getKey(), value);
@@ -247,10 +313,108 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
                 logger.debugLog("{0} - writeResponseStatusAndHeaders() called", name);
             }
         }
+
+        @Override
+        public boolean isWritePossible() {
+            return grizzlyResponse.getNIOOutputStream().canWrite(1);
+        }
+
+        @Override
+        public void notifyWritePossible(final WriteListener listener) {
+            try {
+                grizzlyResponse.getNIOOutputStream().notifyCanWrite(new WriteHandler() {
+
+                    @Override
+                    public void onWritePossible() {
+                        listener.onWritePossible();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        listener.onError(t);
+                    }
+                }, 1);
+            } finally {
+                logger.debugLog("{0} - notifyWritePossible(...) called", name);
+            }
+        }
+    }
+
+    /**
+     * Grizzly read handler dispatching the request to the application once the request entity
+     * is available in the non-blocking input.
+     * <p>
+     * The read notifications may be delivered on a selector thread, so the request is handed
+     * over to the worker thread pool of the transport for the application processing.
+     * </p>
+     */
+    private final class EntityReadHandler implements ReadHandler {
+
+        private final ContainerRequest requestContext;
+        private final ResponseWriter responseWriter;
+        private final ExecutorService workerThreadPool;
+        private final AtomicBoolean dispatched = new AtomicBoolean(false);
+
+        EntityReadHandler(final ContainerRequest requestContext, final ResponseWriter responseWriter,
+                          final ExecutorService workerThreadPool) {
+            this.requestContext = requestContext;
+            this.responseWriter = responseWriter;
+            this.workerThreadPool = workerThreadPool;
+        }
+
+        @Override
+        public void onDataAvailable() {
+            // buffer size reached - the rest of the entity is streamed to the application
+            dispatch();
+        }
+
+        @Override
+        public void onAllDataRead() {
+            dispatch();
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            if (dispatched.compareAndSet(false, true)) {
+                logger.log(Level.FINE, "Reading of the request entity failed.", t);
+                responseWriter.cancel();
+            }
+        }
+
+        private void dispatch() {
+            if (!dispatched.compareAndSet(false, true)) {
+                return;
+            }
+            if (workerThreadPool == null) {
+                // same-thread I/O strategy - requests are always processed by the I/O threads
+                handle(requestContext);
+                return;
+            }
+            try {
+                workerThreadPool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(requestContext);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                logger.log(Level.FINE, "Request processing rejected by the worker thread pool.", ex);
+                responseWriter.cancel();
+            }
+        }
     }
 
     private volatile ApplicationHandler appHandler;
+    private volatile int readBufferSize;
     private final ContainerLifecycleListener containerListener;
+    private final ApplicationReloader<ApplicationHandler> reloader;
+    private final BaseUriCache baseUriCache = new BaseUriCache();
+    private final ReferenceSeeder<Request> requestReferenceSeeder =
+            new ReferenceSeeder<Request>(new TypeLiteral<Ref<Request>>() {
+            }.getType());
+    private final ReferenceSeeder<Response> responseReferenceSeeder =
+            new ReferenceSeeder<Response>(new TypeLiteral<Ref<Response>>() {
+            }.getType());
 
     /**
      * Creates a new Grizzly container.
@@ -260,6 +424,32 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
     GrizzlyHttpContainer(final ApplicationHandler application) {
         this.appHandler = application;
         this.containerListener = ConfigHelper.getContainerLifecycleListener(application);
+        this.readBufferSize = getReadBufferSize(application.getConfiguration());
+        this.reloader = new ApplicationReloader<ApplicationHandler>(application.getConfiguration(),
+                new ApplicationReloader.Target<ApplicationHandler>() {
+
+                    @Override
+                    public ApplicationHandler create(ResourceConfig configuration) {
+                        return new ApplicationHandler(configuration.addBinders(new GrizzlyBinder()));
+                    }
+
+                    @Override
+                    public ApplicationHandler getApplication() {
+                        return appHandler;
+                    }
+
+                    @Override
+                    public ApplicationHandler getApplicationHandler(ApplicationHandler application) {
+                        return application;
+                    }
+
+                    @Override
+                    public void switchTo(ApplicationHandler application) {
+                        appHandler = application;
+                        readBufferSize = getReadBufferSize(application.getConfiguration());
+                        containerListener.onReload(GrizzlyHttpContainer.this);
+                    }
+                });
 
         this.appHandler.registerAdditionalBinders(new HashSet<Binder>() {{
             add(new GrizzlyBinder());
@@ -272,6 +462,28 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
         containerListener.onStartup(this);
     }
 
+    /**
+     * Header source reading the request headers from the Grizzly request on demand.
+     */
+    private static final class GrizzlyHeaderSource implements InboundMessageContext.HeaderSource {
+
+        private final Request request;
+
+        GrizzlyHeaderSource(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public Iterable<String> getHeaderNames() {
+            return request.getHeaderNames();
+        }
+
+        @Override
+        public List<String> getHeaderValues(String name) {
+            return Lists.newArrayList(request.getHeaders(name));
+        }
+    }
+
     @Override
     public void service(final Request request, final Response response) {
         final ResponseWriter responseWriter = new ResponseWriter(response);
@@ -282,26 +494,40 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
                     getRequestUri(baseUri, request), request.getMethod().getMethodString(),
                     getSecurityContext(request), new GrizzlyRequestPropertiesDelegate(request));
             requestContext.setEntityStream(request.getInputStream());
-            for (String headerName : request.getHeaderNames()) {
-                requestContext.headers(headerName, request.getHeaders(headerName));
-            }
+            requestContext.setHeaderSource(new GrizzlyHeaderSource(request));
             requestContext.setWriter(responseWriter);
             requestContext.setRequestScopedInitializer(new RequestScopedInitializer() {
                 @Override
                 public void initialize(ServiceLocator locator) {
-                    locator.<Ref<Request>>getService((new TypeLiteral<Ref<Request>>() {
-                    }).getType()).set(request);
-                    locator.<Ref<Response>>getService((new TypeLiteral<Ref<Response>>() {
-                    }).getType()).set(response);
+                    requestReferenceSeeder.seed(locator, request);
+                    responseReferenceSeeder.seed(locator, response);
                 }
             });
-            appHandler.handle(requestContext);
+            reloader.record(requestContext);
+            if (hasPendingEntity(request)) {
+                // do not block the worker thread while the client is sending the entity
+                responseWriter.suspendForRead();
+                request.getNIOInputStream().notifyAvailable(
+                        new EntityReadHandler(requestContext, responseWriter, getWorkerThreadPool(request)),
+                        readBufferSize);
+            } else {
+                handle(requestContext);
+            }
         } finally {
             // TODO if writer not closed or suspended yet, suspend.
             logger.debugLog("GrizzlyHttpContaner.service(...) finished");
         }
     }
 
+    private void handle(final ContainerRequest requestContext) {
+        final ApplicationReloader.Reference<ApplicationHandler> application = reloader.acquire();
+        try {
+            application.get().handle(requestContext);
+        } finally {
+            application.release();
+        }
+    }
+
     @Override
     public ResourceConfig getConfiguration() {
         return appHandler.getConfiguration();
@@ -314,8 +540,7 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
 
     @Override
     public void reload(ResourceConfig configuration) {
-        appHandler = new ApplicationHandler(configuration.addBinders(new GrizzlyBinder()));
-        containerListener.onReload(this);
+        reloader.reload(configuration);
     }
 
     @Override
@@ -324,6 +549,37 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
         containerListener.onShutdown(this);
     }
 
+    private static int getReadBufferSize(final ResourceConfig configuration) {
+        return PropertiesHelper.getValue(configuration.getProperties(),
+                GrizzlyHttpContainerProperties.NON_BLOCKING_READ_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * Check whether the request entity should be read using the non-blocking input before
+     * dispatching the request, i.e. whether the non-blocking reads are enabled and the request
+     * entity of an acceptable size has not been fully received yet.
+     */
+    private boolean hasPendingEntity(final Request request) {
+        final int bufferSize = readBufferSize;
+        if (bufferSize <= 0) {
+            return false;
+        }
+
+        final long contentLength = request.getContentLengthLong();
+        if (contentLength == 0 || contentLength > bufferSize
+                || (contentLength < 0 && !request.getRequest().isChunked())) {
+            return false;
+        }
+
+        final NIOInputStream input = request.getNIOInputStream();
+        return !input.isFinished();
+    }
+
+    private static ExecutorService getWorkerThreadPool(final Request request) {
+        final FilterChainContext context = request.getContext();
+        return context == null ? null : context.getConnection().getTransport().getWorkerThreadPool();
+    }
+
     private SecurityContext getSecurityContext(final Request request) {
         return new SecurityContext() {
 
@@ -350,9 +606,16 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
     }
 
     private URI getBaseUri(final Request request) {
+        final String key = request.getScheme() + "://" + request.getServerName() + ':' + request.getServerPort()
+                + request.getContextPath();
+        final URI baseUri = baseUriCache.get(key);
+        if (baseUri != null) {
+            return baseUri;
+        }
+
         try {
-            return new URI(request.getScheme(), null, request.getServerName(),
-                    request.getServerPort(), getBasePath(request), null, null);
+            return baseUriCache.put(key, new URI(request.getScheme(), null, request.getServerName(),
+                    request.getServerPort(), getBasePath(request), null, null));
         } catch (final URISyntaxException ex) {
             throw new IllegalArgumentException(ex);
         }
@@ -371,13 +634,27 @@ public final class GrizzlyHttpContainer extends HttpHandler implements Container
     }
 
     private URI getRequestUri(URI baseUri, Request grizzlyRequest) {
-        // TODO: this is terrible, there must be a way to obtain the original request URI!
-        String originalUri = UriBuilder
-                .fromPath(
-                        grizzlyRequest.getRequest().getRequestURIRef().getOriginalRequestURIBC()
-                                .toString(Charsets.DEFAULT_CHARSET)).build().toString();
+        final String originalPath = grizzlyRequest.getRequest().getRequestURIRef().getOriginalRequestURIBC()
+                .toString(Charsets.DEFAULT_CHARSET);
+        final String queryString = grizzlyRequest.getQueryString();
+
+        if (originalPath.startsWith("/")) {
+            // the original request URI is usually a valid absolute path - compose the request URI
+            // directly to parse it just once
+            final StringBuilder requestUri = new StringBuilder(baseUri.getScheme()).append("://")
+                    .append(baseUri.getRawAuthority()).append(originalPath);
+            if (queryString != null) {
+                requestUri.append('?').append(queryString);
+            }
+            try {
+                return new URI(requestUri.toString());
+            } catch (URISyntaxException ex) {
+                // characters that need to be encoded - fall back to the URI builder
+            }
+        }
 
-        String queryString = grizzlyRequest.getQueryString();
+        // TODO: this is terrible, there must be a way to obtain the original request URI!
+        String originalUri = UriBuilder.fromPath(originalPath).build().toString();
         if (queryString != null) {
             originalUri = originalUri + "?" + queryString;
         }
@@ -0,0 +1,78 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.grizzly2.httpserver;
+
+/**
+ * Grizzly 2 HTTP container configuration properties.
+ */
+public final class GrizzlyHttpContainerProperties {
+
+    /**
+     * If set to a positive value, the Grizzly HTTP container reads request entities using
+     * the Grizzly non-blocking input instead of blocking the worker thread until the whole
+     * entity is received.
+     * <p>
+     * The response of a request with an entity that is not fully received yet is suspended
+     * and the request is dispatched to the Jersey application only once the entity has been
+     * read completely, or once the specified number of bytes has been buffered. In the latter
+     * case (as well as for requests with a declared {@code Content-Length} exceeding the value),
+     * the remaining entity data is streamed to the application using the blocking input stream.
+     * The application processing of such requests is always performed by the worker thread pool
+     * of the Grizzly transport, never by a selector thread. This prevents slow clients from occupying worker threads while uploading small and
+     * medium sized entities.
+     * </p>
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer)
+     * and specifies the maximum number of request entity bytes buffered before the request
+     * is dispatched.
+     * </p>
+     * <p>
+     * The default value is {@code 0}, i.e. non-blocking request entity reads are disabled.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String NON_BLOCKING_READ_BUFFER_SIZE = "jersey.config.grizzly2.http.nonBlockingRead.bufferSize";
+
+    private GrizzlyHttpContainerProperties() {
+        // prevents instantiation
+    }
+}
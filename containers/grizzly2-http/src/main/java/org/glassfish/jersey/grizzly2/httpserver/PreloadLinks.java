@@ -0,0 +1,72 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.grizzly2.httpserver;
+
+/**
+ * Preload links of the resources deployed in the Grizzly HTTP container.
+ * <p>
+ * An instance can be injected into a resource to announce related resources the client is going
+ * to need while processing the response:
+ * </p>
+ * <pre>
+ * &#64;GET
+ * &#64;Produces("text/html")
+ * public String getPage(&#64;Context PreloadLinks preloadLinks) {
+ *     preloadLinks.add("/static/style.css");
+ *     return page;
+ * }
+ * </pre>
+ * <p>
+ * The announced resources are added to the response as {@code Link} headers with the {@code preload}
+ * relation, so that the client (or an HTTP/2 capable proxy in front of the server, which may push them)
+ * can fetch them early. The container itself does not push the resources, since the Grizzly version
+ * it is built with does not support HTTP/2.
+ * </p>
+ */
+public interface PreloadLinks {
+
+    /**
+     * Announce a resource related to the current request.
+     *
+     * @param path path of the announced resource. Paths not starting with {@code '/'} are
+     *             relative to the base URI of the application.
+     */
+    public void add(String path);
+}
@@ -0,0 +1,101 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.grizzly2.httpserver;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+
+/**
+ * {@link PreloadLinks} implementation collecting the announced resources in a property of the request.
+ * The {@code Link} headers are added to the container response once it is written.
+ */
+final class RequestPreloadLinks implements PreloadLinks {
+
+    private static final String PROPERTY = RequestPreloadLinks.class.getName();
+
+    private final ContainerRequest request;
+
+    /**
+     * Create new preload links of the given request.
+     *
+     * @param request container request.
+     */
+    RequestPreloadLinks(ContainerRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public void add(String path) {
+        @SuppressWarnings("unchecked")
+        List<String> links = (List<String>) request.getProperty(PROPERTY);
+        if (links == null) {
+            links = new ArrayList<String>();
+            request.setProperty(PROPERTY, links);
+        }
+        links.add("<" + resolve(path) + ">; rel=preload");
+    }
+
+    private String resolve(String path) {
+        if (path.startsWith("/")) {
+            return path;
+        }
+        final URI resolved = request.getBaseUri().resolve(path);
+        return resolved.getRawQuery() == null ? resolved.getRawPath() : resolved.getRawPath() + '?' + resolved.getRawQuery();
+    }
+
+    /**
+     * Add the {@code Link} headers of the resources announced while processing the request to the response.
+     *
+     * @param response container response.
+     */
+    static void addHeaders(ContainerResponse response) {
+        @SuppressWarnings("unchecked")
+        final List<String> links = (List<String>) response.getRequestContext().getProperty(PROPERTY);
+        if (links != null) {
+            for (String link : links) {
+                response.getHeaders().add("Link", link);
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.jdkhttp;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.SocketChannel;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link com.sun.net.httpserver.HttpServer JDK HttpServer} executor providing admission control.
+ * <p>
+ * The executor delegates the exchanges to the underlying executor. If the underlying executor
+ * rejects an exchange (e.g. because the queue of a bounded thread pool is full), the exchange is handed
+ * to a small dedicated pool of rejection threads, and the {@link JdkHttpHandlerContainer container}
+ * answers it with the {@code 503 Service Unavailable} response and a {@code Retry-After} header,
+ * without invoking the application. This way an overloaded server sheds load instead of creating
+ * an unbounded number of threads or dropping connections. Rejected exchanges are never run on the
+ * server dispatcher thread, since closing an exchange may block while the remaining request entity
+ * is read from the client, which would stall the whole server.
+ * </p>
+ * <p>
+ * The number of rejected exchanges waiting for a rejection thread is bounded as well. If the rejection
+ * threads cannot keep up, the connections of further rejected exchanges are closed immediately without
+ * any response. If the connection of an exchange cannot be closed (with a server implementation other
+ * than the one built into the JDK), the exchange is answered with {@code 503} on the server dispatcher
+ * thread as the last resort.
+ * </p>
+ * <p>
+ * Only the {@link JdkHttpHandlerContainer} answers rejected exchanges with {@code 503}. Any other
+ * {@link com.sun.net.httpserver.HttpHandler handler} registered with the same server processes
+ * rejected exchanges as usual, on one of the rejection threads.
+ * </p>
+ * <p>
+ * The executor used by a server created by the {@link JdkHttpServerFactory} can be obtained
+ * via {@link com.sun.net.httpserver.HttpServer#getExecutor()} to read the load metrics.
+ * </p>
+ */
+public final class AdmissionControlExecutor implements Executor {
+
+    private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<Boolean>();
+    /**
+     * Number of threads answering the rejected exchanges.
+     */
+    private static final int REJECTION_THREADS = 2;
+    /**
+     * Default maximum number of rejected exchanges waiting for a rejection thread.
+     */
+    private static final int DEFAULT_REJECTION_QUEUE_SIZE = 64;
+
+    private final Executor delegate;
+    private final ThreadPoolExecutor rejectionExecutor;
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Create new admission control executor backed by a bounded thread pool.
+     *
+     * @param poolSize  maximum number of worker threads.
+     * @param queueSize maximum number of exchanges waiting for a worker thread.
+     */
+    public AdmissionControlExecutor(int poolSize, int queueSize) {
+        this(createThreadPool(poolSize, queueSize));
+    }
+
+    /**
+     * Create new admission control executor delegating to the given executor.
+     *
+     * @param delegate underlying executor running the exchanges.
+     */
+    public AdmissionControlExecutor(Executor delegate) {
+        this(delegate, DEFAULT_REJECTION_QUEUE_SIZE);
+    }
+
+    /**
+     * Create new admission control executor delegating to the given executor.
+     *
+     * @param delegate           underlying executor running the exchanges.
+     * @param rejectionQueueSize maximum number of rejected exchanges waiting to be answered with
+     *                           the {@code 503 Service Unavailable} response.
+     */
+    public AdmissionControlExecutor(Executor delegate, int rejectionQueueSize) {
+        this.delegate = delegate;
+        this.rejectionExecutor = new ThreadPoolExecutor(REJECTION_THREADS, REJECTION_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, rejectionQueueSize)),
+                new ThreadFactoryBuilder().setNameFormat("jersey-jdk-http-rejection-%d").setDaemon(true).build());
+        this.rejectionExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private static ThreadPoolExecutor createThreadPool(int poolSize, int queueSize) {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)),
+                new ThreadFactoryBuilder().setNameFormat("jersey-jdk-http-worker-%d").build());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        try {
+            delegate.execute(command);
+        } catch (RejectedExecutionException ex) {
+            final Runnable rejected = new Runnable() {
+                @Override
+                public void run() {
+                    REJECTED.set(Boolean.TRUE);
+                    try {
+                        command.run();
+                    } finally {
+                        REJECTED.remove();
+                    }
+                }
+            };
+            try {
+                rejectionExecutor.execute(rejected);
+                rejectedCount.incrementAndGet();
+            } catch (RejectedExecutionException full) {
+                if (closeConnection(command)) {
+                    droppedCount.incrementAndGet();
+                    // the exchange fails on the closed channel right away and the server releases the connection
+                    command.run();
+                } else {
+                    rejectedCount.incrementAndGet();
+                    rejected.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the socket channel of the JDK HTTP server exchange task.
+     *
+     * @param command exchange task.
+     * @return {@code true} if the channel has been closed, {@code false} if the task does not expose it.
+     */
+    private static boolean closeConnection(final Runnable command) {
+        final Field field = findChannelField(command.getClass());
+        if (field == null) {
+            return false;
+        }
+        try {
+            final SocketChannel channel = (SocketChannel) field.get(command);
+            if (channel == null) {
+                return false;
+            }
+            channel.close();
+            return true;
+        } catch (IllegalAccessException e) {
+            return false;
+        } catch (IOException e) {
+            // the channel is closed anyway
+            return true;
+        }
+    }
+
+    private static Field findChannelField(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (field.getType() == SocketChannel.class) {
+                    try {
+                        return AccessController.doPrivileged(new PrivilegedAction<Field>() {
+                            @Override
+                            public Field run() {
+                                field.setAccessible(true);
+                                return field;
+                            }
+                        });
+                    } catch (SecurityException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the exchange handled by the current thread has been rejected by the executor
+     * and should be answered with the {@code 503 Service Unavailable} response.
+     *
+     * @return {@code true} if the current exchange has been rejected.
+     */
+    static boolean isRejected() {
+        return REJECTED.get() != null;
+    }
+
+    /**
+     * Get the underlying executor.
+     *
+     * @return underlying executor.
+     */
+    public Executor getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the number of exchanges waiting for a worker thread.
+     *
+     * @return queue depth or {@code -1} if the underlying executor is not a {@link ThreadPoolExecutor}.
+     */
+    public int getQueueDepth() {
+        return delegate instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) delegate).getQueue().size() : -1;
+    }
+
+    /**
+     * Get the approximate number of worker threads actively processing exchanges.
+     *
+     * @return active thread count or {@code -1} if the underlying executor is not a {@link ThreadPoolExecutor}.
+     */
+    public int getActiveThreadCount() {
+        return delegate instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) delegate).getActiveCount() : -1;
+    }
+
+    /**
+     * Get the current number of worker threads.
+     *
+     * @return worker thread count or {@code -1} if the underlying executor is not a {@link ThreadPoolExecutor}.
+     */
+    public int getPoolSize() {
+        return delegate instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) delegate).getPoolSize() : -1;
+    }
+
+    /**
+     * Get the total number of exchanges rejected with the {@code 503 Service Unavailable} response.
+     *
+     * @return rejected exchange count.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Get the total number of rejected exchanges whose connection has been closed without any response
+     * because too many rejected exchanges were already waiting to be answered.
+     *
+     * @return dropped exchange count.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -46,6 +46,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -57,13 +58,17 @@ import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriBuilder;
 
 import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.internal.util.PropertiesHelper;
 import org.glassfish.jersey.jdkhttp.internal.LocalizationMessages;
+import org.glassfish.jersey.message.internal.InboundMessageContext;
 import org.glassfish.jersey.message.internal.HeadersFactory;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerException;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ContainerResponse;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.internal.ApplicationReloader;
+import org.glassfish.jersey.server.internal.BaseUriCache;
 import org.glassfish.jersey.server.internal.ConfigHelper;
 import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
@@ -82,8 +87,10 @@ import com.sun.net.httpserver.HttpsExchange;
  */
 public class JdkHttpHandlerContainer implements HttpHandler, Container {
 
-    transient private ApplicationHandler appHandler;
+    private volatile ApplicationHandler appHandler;
     private final ContainerLifecycleListener containerListener;
+    private final ApplicationReloader<ApplicationHandler> reloader;
+    private final BaseUriCache baseUriCache = new BaseUriCache();
 
     /**
      * Creates a new Container connected to given {@link ApplicationHandler Jersey application}.
@@ -94,10 +101,39 @@ public class JdkHttpHandlerContainer implements HttpHandler, Container {
     JdkHttpHandlerContainer(ApplicationHandler appHandler) {
         this.appHandler = appHandler;
         this.containerListener = ConfigHelper.getContainerLifecycleListener(appHandler);
+        this.reloader = new ApplicationReloader<ApplicationHandler>(appHandler.getConfiguration(),
+                new ApplicationReloader.Target<ApplicationHandler>() {
+
+                    @Override
+                    public ApplicationHandler create(ResourceConfig configuration) {
+                        return new ApplicationHandler(configuration);
+                    }
+
+                    @Override
+                    public ApplicationHandler getApplication() {
+                        return JdkHttpHandlerContainer.this.appHandler;
+                    }
+
+                    @Override
+                    public ApplicationHandler getApplicationHandler(ApplicationHandler application) {
+                        return application;
+                    }
+
+                    @Override
+                    public void switchTo(ApplicationHandler application) {
+                        JdkHttpHandlerContainer.this.appHandler = application;
+                        containerListener.onReload(JdkHttpHandlerContainer.this);
+                    }
+                });
     }
 
     @Override
     public void handle(final HttpExchange exchange) throws IOException {
+        if (AdmissionControlExecutor.isRejected()) {
+            reject(exchange);
+            return;
+        }
+
         /**
          * This is a URI that contains the path, query and fragment components.
          */
@@ -140,18 +176,30 @@ public class JdkHttpHandlerContainer implements HttpHandler, Container {
         try {
             List<String> hostHeader = exchange.getRequestHeaders().get("Host");
             if (hostHeader != null) {
-                StringBuilder sb = new StringBuilder(scheme);
-                sb.append("://").append(hostHeader.get(0)).append(decodedBasePath);
-                baseUri = new URI(sb.toString());
+                // host names are case insensitive, normalize them so that differently cased
+                // Host headers share a single cached base URI
+                final String baseUriString = scheme + "://" + hostHeader.get(0).toLowerCase(Locale.ENGLISH)
+                        + decodedBasePath;
+                baseUri = baseUriCache.get(baseUriString);
+                if (baseUri == null) {
+                    baseUri = baseUriCache.put(baseUriString, new URI(baseUriString));
+                }
             } else {
                 InetSocketAddress addr = exchange.getLocalAddress();
-                baseUri = new URI(scheme, null, addr.getHostName(), addr.getPort(),
-                        decodedBasePath, null, null);
+                // avoid the host name lookup for the cached base URIs
+                final String baseUriKey = scheme + "://" + addr.getAddress().getHostAddress() + ':' + addr.getPort()
+                        + decodedBasePath;
+                baseUri = baseUriCache.get(baseUriKey);
+                if (baseUri == null) {
+                    baseUri = baseUriCache.put(baseUriKey, new URI(scheme, null, addr.getHostName(), addr.getPort(),
+                            decodedBasePath, null, null));
+                }
             }
         } catch (URISyntaxException ex) {
             throw new IllegalArgumentException(ex);
         }
 
+        // resolves the already parsed exchange URI against the cached base URI, no string is re-parsed here
         final URI requestUri = baseUri.resolve(exchangeUri);
 
         final ResponseWriter responseWriter = new ResponseWriter(exchange);
@@ -159,17 +207,61 @@ public class JdkHttpHandlerContainer implements HttpHandler, Container {
                 exchange.getRequestMethod(), getSecurityContext(exchange.getPrincipal(), isSecure),
                 new MapPropertiesDelegate());
         requestContext.setEntityStream(exchange.getRequestBody());
-        requestContext.getHeaders().putAll(exchange.getRequestHeaders());
+        requestContext.setHeaderSource(new ExchangeHeaderSource(exchange.getRequestHeaders()));
         requestContext.setWriter(responseWriter);
+        reloader.record(requestContext);
+        final ApplicationReloader.Reference<ApplicationHandler> application = reloader.acquire();
         try {
-            appHandler.handle(requestContext);
+            application.get().handle(requestContext);
         } finally {
+            application.release();
             // if the response was not committed yet by the JerseyApplication
             // then commit it and log warning
             responseWriter.closeAndLogWarning();
         }
     }
 
+    /**
+     * Answer the exchange rejected by the {@link AdmissionControlExecutor} with the
+     * {@code 503 Service Unavailable} response without invoking the application.
+     *
+     * @param exchange rejected exchange.
+     * @throws IOException in case the response cannot be written.
+     */
+    private void reject(final HttpExchange exchange) throws IOException {
+        final int retryAfter = PropertiesHelper.getValue(appHandler.getConfiguration().getProperties(),
+                JdkHttpServerProperties.RETRY_AFTER, JdkHttpServerProperties.DEFAULT_RETRY_AFTER);
+        try {
+            exchange.getResponseHeaders().set("Retry-After", Integer.toString(retryAfter));
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Header source reading the request headers from the exchange headers on demand.
+     */
+    private static final class ExchangeHeaderSource implements InboundMessageContext.HeaderSource {
+
+        private final Headers headers;
+
+        ExchangeHeaderSource(Headers headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public Iterable<String> getHeaderNames() {
+            return headers.keySet();
+        }
+
+        @Override
+        public List<String> getHeaderValues(String name) {
+            // the exchange headers are looked up case-insensitively
+            return headers.get(name);
+        }
+    }
+
     private SecurityContext getSecurityContext(final Principal principal, final boolean isSecure) {
         return new SecurityContext() {
 
@@ -207,8 +299,7 @@ public class JdkHttpHandlerContainer implements HttpHandler, Container {
 
     @Override
     public void reload(ResourceConfig configuration) {
-        appHandler = new ApplicationHandler(configuration);
-        containerListener.onReload(this);
+        reloader.reload(configuration);
     }
 
     private final static class ResponseWriter implements ContainerResponseWriter {
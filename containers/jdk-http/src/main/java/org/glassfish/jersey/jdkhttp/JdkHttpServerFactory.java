@@ -42,9 +42,11 @@ package org.glassfish.jersey.jdkhttp;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.glassfish.jersey.internal.ProcessingException;
+import org.glassfish.jersey.internal.util.PropertiesHelper;
 import org.glassfish.jersey.jdkhttp.internal.LocalizationMessages;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerFactory;
@@ -76,8 +78,31 @@ public class JdkHttpServerFactory {
      * occurs.
      */
     public static HttpServer createHttpServer(final URI uri, final ResourceConfig configuration) throws ProcessingException {
+        return createHttpServer(uri, configuration, null);
+    }
+
+    /**
+     * Creates and starts the {@link HttpServer JDK HttpServer} with the Jersey
+     * application deployed on the given {@link URI}, processing the requests
+     * using the supplied executor.
+     *
+     * <p>The returned {@link HttpServer JDK HttpServer} is started. The supplied
+     * executor is wrapped in an {@link AdmissionControlExecutor}: requests rejected
+     * by the executor are answered with {@code 503 Service Unavailable}.</p>
+     *
+     * @param uri The {@link URI uri} on which the Jersey application will be deployed.
+     * @param configuration The Jersey server-side application configuration.
+     * @param executor The executor processing the requests. If {@code null}, a bounded
+     *                 thread pool configured by the {@link JdkHttpServerProperties} is used.
+     * @return Newly created {@link HttpServer}.
+     * @throws ProcessingException Thrown when problems during server creation
+     * occurs.
+     */
+    public static HttpServer createHttpServer(final URI uri, final ResourceConfig configuration, final Executor executor)
+            throws ProcessingException {
         final JdkHttpHandlerContainer handler = ContainerFactory.createContainer(JdkHttpHandlerContainer.class, configuration);
-        return createHttpServer(uri, handler, ConfigHelper.getContainerLifecycleListener(new ApplicationHandler(configuration)));
+        return createHttpServer(uri, handler, ConfigHelper.getContainerLifecycleListener(new ApplicationHandler(configuration)),
+                createExecutor(executor, configuration.getProperties()));
     }
 
     /**
@@ -93,10 +118,49 @@ public class JdkHttpServerFactory {
      * occurs.
      */
     public static HttpServer createHttpServer(final URI uri, final ApplicationHandler appHandler) throws ProcessingException {
-        return createHttpServer(uri, new JdkHttpHandlerContainer(appHandler), ConfigHelper.getContainerLifecycleListener(appHandler));
+        return createHttpServer(uri, appHandler, null);
+    }
+
+    /**
+     * Creates and starts the {@link HttpServer JDK HttpServer} with the
+     * Jersey application deployed on the given {@link URI}, processing the
+     * requests using the supplied executor.
+     *
+     * <p>The returned {@link HttpServer JDK HttpServer} is started. The supplied
+     * executor is wrapped in an {@link AdmissionControlExecutor}: requests rejected
+     * by the executor are answered with {@code 503 Service Unavailable}.</p>
+     *
+     * @param uri The {@link URI uri} on which the Jersey application will be deployed.
+     * @param appHandler The Jersey server-side application handler.
+     * @param executor The executor processing the requests. If {@code null}, a bounded
+     *                 thread pool configured by the {@link JdkHttpServerProperties} is used.
+     * @return Newly created {@link HttpServer}.
+     * @throws ProcessingException Thrown when problems during server creation
+     * occurs.
+     */
+    public static HttpServer createHttpServer(final URI uri, final ApplicationHandler appHandler, final Executor executor)
+            throws ProcessingException {
+        return createHttpServer(uri, new JdkHttpHandlerContainer(appHandler), ConfigHelper.getContainerLifecycleListener(appHandler),
+                createExecutor(executor, appHandler.getConfiguration().getProperties()));
+    }
+
+    private static AdmissionControlExecutor createExecutor(final Executor executor, final Map<String, Object> properties) {
+        if (executor instanceof AdmissionControlExecutor) {
+            return (AdmissionControlExecutor) executor;
+        } else if (executor != null) {
+            return new AdmissionControlExecutor(executor);
+        }
+
+        final int poolSize = PropertiesHelper.getValue(properties, JdkHttpServerProperties.WORKER_POOL_SIZE,
+                JdkHttpServerProperties.DEFAULT_WORKER_POOL_SIZE);
+        final int queueSize = PropertiesHelper.getValue(properties, JdkHttpServerProperties.WORKER_QUEUE_SIZE,
+                JdkHttpServerProperties.DEFAULT_WORKER_QUEUE_SIZE);
+        return new AdmissionControlExecutor(poolSize, queueSize);
     }
 
-    private static HttpServer createHttpServer(final URI uri, final JdkHttpHandlerContainer handler, final ContainerLifecycleListener containerListener) throws ProcessingException {
+    private static HttpServer createHttpServer(final URI uri, final JdkHttpHandlerContainer handler,
+                                               final ContainerLifecycleListener containerListener,
+                                               final Executor executor) throws ProcessingException {
 
         if (uri == null) {
             throw new IllegalArgumentException(LocalizationMessages.ERROR_CONTAINER_URI_NULL());
@@ -126,7 +190,7 @@ public class JdkHttpServerFactory {
             throw new ProcessingException(LocalizationMessages.ERROR_CONTAINER_EXCEPTION_IO(), ioe);
         }
 
-        server.setExecutor(Executors.newCachedThreadPool());
+        server.setExecutor(executor);
         server.createContext(path, handler);
         server.start();
 
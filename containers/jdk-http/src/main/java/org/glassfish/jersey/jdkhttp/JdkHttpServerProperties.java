@@ -0,0 +1,118 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.jdkhttp;
+
+/**
+ * JDK HTTP server container configuration properties.
+ * <p>
+ * The properties are read from the {@link org.glassfish.jersey.server.ResourceConfig configuration}
+ * of the deployed application by the {@link JdkHttpServerFactory}.
+ * </p>
+ */
+public final class JdkHttpServerProperties {
+
+    /**
+     * Maximum number of worker threads processing the requests.
+     * <p>
+     * Worker threads are created on demand and terminated once idle for a minute. Used only when
+     * no executor is supplied to the {@link JdkHttpServerFactory}.
+     * </p>
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_WORKER_POOL_SIZE}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String WORKER_POOL_SIZE = "jersey.config.jdkhttp.workers.poolSize";
+
+    /**
+     * Default maximum number of worker threads.
+     */
+    public static final int DEFAULT_WORKER_POOL_SIZE = 200;
+
+    /**
+     * Maximum number of requests waiting for a worker thread. Requests exceeding the limit are
+     * rejected with the {@code 503 Service Unavailable} response. Used only when no executor is
+     * supplied to the {@link JdkHttpServerFactory}.
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_WORKER_QUEUE_SIZE}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String WORKER_QUEUE_SIZE = "jersey.config.jdkhttp.workers.queueSize";
+
+    /**
+     * Default maximum number of requests waiting for a worker thread.
+     */
+    public static final int DEFAULT_WORKER_QUEUE_SIZE = 1024;
+
+    /**
+     * Value (in seconds) of the {@code Retry-After} header sent with the {@code 503 Service Unavailable}
+     * response to the requests rejected because the server is overloaded.
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_RETRY_AFTER}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String RETRY_AFTER = "jersey.config.jdkhttp.retryAfter";
+
+    /**
+     * Default {@code Retry-After} value.
+     */
+    public static final int DEFAULT_RETRY_AFTER = 1;
+
+    private JdkHttpServerProperties() {
+        // prevents instantiation
+    }
+}
@@ -41,6 +41,7 @@ package org.glassfish.jersey.servlet;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -64,9 +65,12 @@ import javax.servlet.http.HttpServletResponse;
 import org.glassfish.jersey.internal.ProcessingException;
 import org.glassfish.jersey.internal.util.ExtendedLogger;
 import org.glassfish.jersey.internal.util.collection.Value;
+import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerException;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.ServerProperties;
+import org.glassfish.jersey.server.internal.ApplicationReloader;
+import org.glassfish.jersey.server.internal.BaseUriCache;
 import org.glassfish.jersey.server.internal.ConfigHelper;
 import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
@@ -125,10 +129,12 @@ public class ServletContainer extends HttpServlet implements Filter, Container {
 
     private static final long serialVersionUID = 3932047066686065219L;
     private transient FilterConfig filterConfig;
-    private transient WebComponent webComponent;
+    private transient volatile WebComponent webComponent;
+    private transient ApplicationReloader<WebComponent> reloader;
     private transient ResourceConfig resourceConfig;
     private transient Pattern staticContentPattern;
     private transient String filterContextPath;
+    private transient BaseUriCache baseUriCache;
     private ContainerLifecycleListener containerListener;
 
     private static final ExtendedLogger logger =
@@ -141,8 +147,36 @@ public class ServletContainer extends HttpServlet implements Filter, Container {
      * @throws javax.servlet.ServletException in case of an initialization failure
      */
     protected void init(WebConfig webConfig) throws ServletException {
+        baseUriCache = new BaseUriCache();
         webComponent = new WebComponent(webConfig, resourceConfig);
         containerListener = ConfigHelper.getContainerLifecycleListener(webComponent.appHandler);
+        reloader = new ApplicationReloader<WebComponent>(webComponent.appHandler.getConfiguration(),
+                new ApplicationReloader.Target<WebComponent>() {
+
+                    @Override
+                    public WebComponent create(ResourceConfig configuration) throws ServletException {
+                        final WebComponent component = new WebComponent(webComponent.webConfig, configuration);
+                        component.reloader = reloader;
+                        return component;
+                    }
+
+                    @Override
+                    public WebComponent getApplication() {
+                        return webComponent;
+                    }
+
+                    @Override
+                    public ApplicationHandler getApplicationHandler(WebComponent application) {
+                        return application.appHandler;
+                    }
+
+                    @Override
+                    public void switchTo(WebComponent application) {
+                        webComponent = application;
+                        containerListener.onReload(ServletContainer.this);
+                    }
+                });
+        webComponent.reloader = reloader;
         containerListener.onStartup(this);
     }
 
@@ -254,19 +288,6 @@ public class ServletContainer extends HttpServlet implements Filter, Container {
             }
         }
 
-        /**
-         * The HttpServletRequest.getRequestURL() contains the complete URI
-         * minus the query and fragment components.
-         */
-        UriBuilder absoluteUriBuilder;
-        try {
-            absoluteUriBuilder = UriBuilder.fromUri(requestURL.toString());
-        } catch (IllegalArgumentException iae) {
-            final Response.Status badRequest = Response.Status.BAD_REQUEST;
-            response.sendError(badRequest.getStatusCode(), badRequest.getReasonPhrase());
-            return;
-        }
-
         /**
          * The HttpServletRequest.getPathInfo() and
          * HttpServletRequest.getServletPath() are in decoded form.
@@ -281,32 +302,56 @@ public class ServletContainer extends HttpServlet implements Filter, Container {
                 ? request.getContextPath() + servletPath + "/"
                 : request.getContextPath() + "/";
 
-        final String encodedBasePath = UriComponent.encode(decodedBasePath,
-                UriComponent.Type.PATH);
+        final String queryParameters = request.getQueryString();
+        final String baseUriKey = request.getScheme() + "://" + request.getServerName() + ':' + request.getServerPort()
+                + decodedBasePath;
 
-        if (!decodedBasePath.equals(encodedBasePath)) {
-            throw new ProcessingException("The servlet context path and/or the "
-                    + "servlet path contain characters that are percent encoded");
+        URI baseUri = baseUriCache.get(baseUriKey);
+        URI requestUri = null;
+        if (baseUri != null) {
+            // the base URI has already been validated - the request URL usually needs no further encoding
+            try {
+                requestUri = new URI(queryParameters == null || queryParameters.isEmpty()
+                        ? requestURL.toString() : requestURL.toString() + '?' + queryParameters);
+            } catch (URISyntaxException ex) {
+                // characters that need to be encoded - fall back to the URI builder
+            }
         }
 
-        final URI baseUri;
-        final URI requestUri;
-        try {
-            baseUri = absoluteUriBuilder.replacePath(encodedBasePath).
-                    build();
+        if (requestUri == null) {
+            /**
+             * The HttpServletRequest.getRequestURL() contains the complete URI
+             * minus the query and fragment components.
+             */
+            UriBuilder absoluteUriBuilder;
+            try {
+                absoluteUriBuilder = UriBuilder.fromUri(requestURL.toString());
+            } catch (IllegalArgumentException iae) {
+                final Response.Status badRequest = Response.Status.BAD_REQUEST;
+                response.sendError(badRequest.getStatusCode(), badRequest.getReasonPhrase());
+                return;
+            }
+
+            final String encodedBasePath = UriComponent.encode(decodedBasePath,
+                    UriComponent.Type.PATH);
 
-            String queryParameters = request.getQueryString();
-            if (queryParameters == null) {
-                queryParameters = "";
+            if (!decodedBasePath.equals(encodedBasePath)) {
+                throw new ProcessingException("The servlet context path and/or the "
+                        + "servlet path contain characters that are percent encoded");
             }
 
-            requestUri = absoluteUriBuilder.replacePath(requestURI).
-                    replaceQuery(queryParameters).
-                    build();
-        } catch (UriBuilderException ex) {
-            final Response.Status badRequest = Response.Status.BAD_REQUEST;
-            response.sendError(badRequest.getStatusCode(), badRequest.getReasonPhrase());
-            return;
+            try {
+                baseUri = baseUriCache.put(baseUriKey, absoluteUriBuilder.replacePath(encodedBasePath).
+                        build());
+
+                requestUri = absoluteUriBuilder.replacePath(requestURI).
+                        replaceQuery(queryParameters == null ? "" : queryParameters).
+                        build();
+            } catch (UriBuilderException ex) {
+                final Response.Status badRequest = Response.Status.BAD_REQUEST;
+                response.sendError(badRequest.getStatusCode(), badRequest.getReasonPhrase());
+                return;
+            }
         }
 
         service(baseUri, requestUri, request, response);
@@ -343,7 +388,12 @@ public class ServletContainer extends HttpServlet implements Filter, Container {
      */
     public Value<Integer> service(URI baseUri, URI requestUri, final HttpServletRequest request,
                                   HttpServletResponse response) throws ServletException, IOException {
-        return webComponent.service(baseUri, requestUri, request, response);
+        final ApplicationReloader.Reference<WebComponent> component = reloader.acquire();
+        try {
+            return component.get().service(baseUri, requestUri, request, response);
+        } finally {
+            component.release();
+        }
     }
 
     // Filter
@@ -539,10 +589,9 @@ public class ServletContainer extends HttpServlet implements Filter, Container {
     @Override
     public void reload(ResourceConfig configuration) {
         try {
-            webComponent = new WebComponent(webComponent.webConfig, configuration);
-            containerListener.onReload(this);
-        } catch (ServletException ex) {
-            logger.log(Level.SEVERE, "Reload failed", ex);
+            reloader.reload(configuration);
+        } catch (ContainerException ex) {
+            logger.log(Level.SEVERE, "Reload failed", ex.getCause() != null ? ex.getCause() : ex);
         }
     }
 }
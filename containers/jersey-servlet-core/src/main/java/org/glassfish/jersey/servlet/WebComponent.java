@@ -43,6 +43,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.security.Principal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -53,6 +54,7 @@ import java.util.logging.Logger;
 
 import javax.ws.rs.core.Form;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.SecurityContext;
 
 import javax.inject.Inject;
@@ -73,12 +75,15 @@ import org.glassfish.jersey.internal.util.ReflectionHelper;
 import org.glassfish.jersey.internal.util.collection.Ref;
 import org.glassfish.jersey.internal.util.collection.Value;
 import org.glassfish.jersey.internal.util.collection.Values;
+import org.glassfish.jersey.message.internal.InboundMessageContext;
 import org.glassfish.jersey.message.internal.MediaTypes;
 import org.glassfish.jersey.process.internal.RequestScoped;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.internal.ApplicationReloader;
 import org.glassfish.jersey.server.internal.inject.HttpContext;
+import org.glassfish.jersey.server.internal.inject.ReferenceSeeder;
 import org.glassfish.jersey.server.spi.ContainerResponseWriter;
 import org.glassfish.jersey.server.spi.ContainerResponseWriter.TimeoutHandler;
 import org.glassfish.jersey.server.spi.RequestScopedInitializer;
@@ -236,6 +241,19 @@ public class WebComponent {
      * Asynchronous context delegate provider.
      */
     private final AsyncContextDelegateProvider asyncExtensionDelegate;
+    /**
+     * Application reloader recording the request shapes, if any.
+     */
+    volatile ApplicationReloader<WebComponent> reloader;
+    /**
+     * Request-scoped servlet request and response reference seeders.
+     */
+    private final ReferenceSeeder<HttpServletRequest> requestReferenceSeeder =
+            new ReferenceSeeder<HttpServletRequest>(new TypeLiteral<Ref<HttpServletRequest>>() {
+            }.getType());
+    private final ReferenceSeeder<HttpServletResponse> responseReferenceSeeder =
+            new ReferenceSeeder<HttpServletResponse>(new TypeLiteral<Ref<HttpServletResponse>>() {
+            }.getType());
 
     /**
      * Create and initialize new web component instance.
@@ -284,7 +302,7 @@ public class WebComponent {
         ContainerRequest requestContext = new ContainerRequest(baseUri, requestUri,
                 servletRequest.getMethod(), getSecurityContext(servletRequest), new ServletPropertiesDelegate(servletRequest));
         requestContext.setEntityStream(servletRequest.getInputStream());
-        addRequestHeaders(servletRequest, requestContext);
+        requestContext.setHeaderSource(new ServletHeaderSource(servletRequest));
 
         // Check if any servlet filters have consumed a request entity
         // of the media type application/x-www-form-urlencoded
@@ -298,14 +316,16 @@ public class WebComponent {
             requestContext.setRequestScopedInitializer(new RequestScopedInitializer() {
                 @Override
                 public void initialize(ServiceLocator locator) {
-                    locator.<Ref<HttpServletRequest>>getService((new TypeLiteral<Ref<HttpServletRequest>>() {
-                    }).getType()).set(servletRequest);
-                    locator.<Ref<HttpServletResponse>>getService((new TypeLiteral<Ref<HttpServletResponse>>() {
-                    }).getType()).set(servletResponse);
+                    requestReferenceSeeder.seed(locator, servletRequest);
+                    responseReferenceSeeder.seed(locator, servletResponse);
                 }
             });
             requestContext.setWriter(responseWriter);
 
+            final ApplicationReloader<WebComponent> applicationReloader = reloader;
+            if (applicationReloader != null) {
+                applicationReloader.record(requestContext);
+            }
             appHandler.handle(requestContext);
 
             return Values.lazy(new Value<Integer>() {
@@ -379,13 +399,55 @@ public class WebComponent {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void addRequestHeaders(HttpServletRequest request, ContainerRequest requestContext) {
-        for (Enumeration<String> names = request.getHeaderNames(); names.hasMoreElements(); ) {
-            String name = names.nextElement();
-            for (Enumeration<String> values = request.getHeaders(name); values.hasMoreElements(); ) {
-                requestContext.header(name, values.nextElement());
+    /**
+     * Header source reading the request headers from the servlet request on demand.
+     */
+    private static final class ServletHeaderSource implements InboundMessageContext.HeaderSource {
+
+        private final HttpServletRequest request;
+
+        ServletHeaderSource(HttpServletRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterable<String> getHeaderNames() {
+            return Collections.list(request.getHeaderNames());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<String> getHeaderValues(String name) {
+            final Enumeration<String> values = request.getHeaders(name);
+            return values == null ? null : Collections.list(values);
+        }
+    }
+
+    /**
+     * Form reading the parameters from the servlet request once they are first accessed.
+     */
+    private static final class ServletForm extends Form {
+
+        private final HttpServletRequest request;
+        private boolean initialized;
+
+        ServletForm(HttpServletRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public synchronized MultivaluedMap<String, String> asMap() {
+            final MultivaluedMap<String, String> map = super.asMap();
+            if (!initialized) {
+                initialized = true;
+                final Enumeration e = request.getParameterNames();
+                while (e.hasMoreElements()) {
+                    final String name = (String) e.nextElement();
+                    map.put(name, Arrays.asList(request.getParameterValues(name)));
+                }
             }
+            return map;
         }
     }
 
@@ -447,16 +509,9 @@ public class WebComponent {
     private void filterFormParameters(HttpServletRequest hsr, ContainerRequest request) throws IOException {
         if (MediaTypes.typeEqual(MediaType.APPLICATION_FORM_URLENCODED_TYPE, request.getMediaType())
                 && !request.hasEntity()) {
-            Form f = new Form();
-            Enumeration e = hsr.getParameterNames();
-            while (e.hasMoreElements()) {
-                String name = (String) e.nextElement();
-                String[] values = hsr.getParameterValues(name);
-                f.asMap().put(name, Arrays.asList(values));
-            }
-
-            if (!f.asMap().isEmpty()) {
-                request.setProperty(HttpContext.FORM_DECODED_PROPERTY, f);
+            if (hsr.getParameterNames().hasMoreElements()) {
+                // the parameters are read from the servlet request only if the form is actually used
+                request.setProperty(HttpContext.FORM_DECODED_PROPERTY, new ServletForm(hsr));
                 if (LOGGER.isLoggable(Level.WARNING)) {
                     LOGGER.log(Level.WARNING, LocalizationMessages.FORM_PARAM_CONSUMED(request.getRequestUri()));
                 }
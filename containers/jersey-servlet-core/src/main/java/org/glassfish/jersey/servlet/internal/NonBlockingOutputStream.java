@@ -0,0 +1,359 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.servlet.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletOutputStream;
+
+import org.glassfish.jersey.server.spi.NonBlockingContainerResponseWriter;
+
+/**
+ * Servlet output stream wrapper utilizing the Servlet 3.1 non-blocking output, if available.
+ * <p>
+ * The wrapper operates in the blocking mode until {@link #enableNonBlocking()} is invoked.
+ * Afterwards, a {@code javax.servlet.WriteListener} is registered with the underlying servlet
+ * output stream and the data written while the servlet output stream is not ready are buffered
+ * and written once the container invokes the write listener. Servlet 3.1 API is accessed using
+ * reflection so that the wrapper can be used in pre-3.1 servlet containers as well (in which case
+ * it always operates in the blocking mode).
+ * </p>
+ * <p>
+ * The buffer is bounded: once it holds more than {@value #HIGH_WATER_MARK} bytes, a write blocks until
+ * the container drains the buffer. Writes issued from within the write listener notification are never
+ * blocked, since the container does not invoke the write listener again until the notification returns.
+ * </p>
+ *
+ * @see NonBlockingContainerResponseWriter
+ */
+final class NonBlockingOutputStream extends OutputStream {
+
+    private static final Logger LOGGER = Logger.getLogger(NonBlockingOutputStream.class.getName());
+
+    private static final Class<?> WRITE_LISTENER_CLASS;
+    private static final Method IS_READY_METHOD;
+    private static final Method SET_WRITE_LISTENER_METHOD;
+    /**
+     * Number of buffered bytes above which a write blocks until the buffer is drained.
+     */
+    static final int HIGH_WATER_MARK = 64 * 1024;
+
+    static {
+        Class<?> writeListenerClass = null;
+        Method isReady = null;
+        Method setWriteListener = null;
+        try {
+            writeListenerClass = Class.forName("javax.servlet.WriteListener", false,
+                    ServletOutputStream.class.getClassLoader());
+            isReady = ServletOutputStream.class.getMethod("isReady");
+            setWriteListener = ServletOutputStream.class.getMethod("setWriteListener", writeListenerClass);
+        } catch (ClassNotFoundException ex) {
+            // pre-3.1 servlet API
+            writeListenerClass = null;
+        } catch (NoSuchMethodException ex) {
+            // pre-3.1 servlet API
+            writeListenerClass = null;
+        }
+        WRITE_LISTENER_CLASS = writeListenerClass;
+        IS_READY_METHOD = isReady;
+        SET_WRITE_LISTENER_METHOD = setWriteListener;
+    }
+
+    /**
+     * Check whether the servlet API available at runtime supports non-blocking output.
+     *
+     * @return {@code true} if the Servlet 3.1 non-blocking output is supported.
+     */
+    static boolean isSupported() {
+        return WRITE_LISTENER_CLASS != null;
+    }
+
+    private final ServletOutputStream out;
+    // data written while the servlet output stream was not ready
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private boolean nonBlocking = false;
+    private boolean flushRequested = false;
+    private boolean closeRequested = false;
+    private NonBlockingContainerResponseWriter.WriteListener listener;
+    private Runnable onDrained;
+    private Throwable error;
+    // thread currently dispatching the write listener notification
+    private Thread dispatcher;
+
+    /**
+     * Create new non-blocking servlet output stream wrapper.
+     *
+     * @param out wrapped servlet output stream.
+     */
+    NonBlockingOutputStream(final ServletOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Switch the underlying servlet output stream into the non-blocking mode. The method
+     * must be invoked only once the request processing has been put into the asynchronous mode.
+     *
+     * @return {@code true} if the stream operates in the non-blocking mode.
+     */
+    synchronized boolean enableNonBlocking() {
+        if (nonBlocking || !isSupported()) {
+            return nonBlocking;
+        }
+
+        final Object writeListener = Proxy.newProxyInstance(WRITE_LISTENER_CLASS.getClassLoader(),
+                new Class<?>[] {WRITE_LISTENER_CLASS}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                final String name = method.getName();
+                if ("onWritePossible".equals(name)) {
+                    onWritePossible();
+                } else if ("onError".equals(name)) {
+                    onError((Throwable) args[0]);
+                } else if ("equals".equals(name)) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(name)) {
+                    return System.identityHashCode(proxy);
+                } else if ("toString".equals(name)) {
+                    return "WriteListener{" + NonBlockingOutputStream.this + "}";
+                }
+                return null;
+            }
+        });
+
+        try {
+            SET_WRITE_LISTENER_METHOD.invoke(out, writeListener);
+            nonBlocking = true;
+        } catch (IllegalAccessException ex) {
+            LOGGER.log(Level.FINE, "Unable to register servlet write listener.", ex);
+        } catch (InvocationTargetException ex) {
+            // e.g. the request is not in the asynchronous mode
+            LOGGER.log(Level.FINE, "Unable to register servlet write listener.", ex.getCause());
+        }
+        return nonBlocking;
+    }
+
+    /**
+     * Check whether data can be written without blocking.
+     *
+     * @return {@code true} if writing is possible without blocking.
+     */
+    synchronized boolean isWritePossible() {
+        return !nonBlocking || (pending.size() == 0 && isReady());
+    }
+
+    /**
+     * Register a listener to be notified once data can be written without blocking.
+     *
+     * @param listener write listener.
+     */
+    void notifyWritePossible(final NonBlockingContainerResponseWriter.WriteListener listener) {
+        synchronized (this) {
+            if (nonBlocking && (pending.size() > 0 || !isReady())) {
+                // the container invokes onWritePossible() once the stream is ready again
+                this.listener = listener;
+                return;
+            }
+        }
+        listener.onWritePossible();
+    }
+
+    /**
+     * Defer the specified completion task until all the buffered data is written.
+     *
+     * @param task completion task.
+     * @return {@code true} if the task has been deferred, {@code false} if there is no pending data
+     *         and the task should be executed immediately.
+     */
+    synchronized boolean deferUntilDrained(final Runnable task) {
+        if (nonBlocking && pending.size() > 0) {
+            onDrained = task;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+        if (nonBlocking && (pending.size() > 0 || !isReady())) {
+            awaitBelowHighWaterMark(len);
+            if (pending.size() == 0 && isReady()) {
+                out.write(b, off, len);
+            } else {
+                pending.write(b, off, len);
+            }
+        } else {
+            out.write(b, off, len);
+        }
+    }
+
+    private void awaitBelowHighWaterMark(final int len) throws IOException {
+        if (dispatcher == Thread.currentThread()) {
+            return;
+        }
+        boolean interrupted = false;
+        try {
+            while (error == null && pending.size() > 0 && pending.size() + len > HIGH_WATER_MARK) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (error != null) {
+            throw new IOException(error);
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (nonBlocking && (pending.size() > 0 || !isReady())) {
+            flushRequested = true;
+        } else {
+            out.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (nonBlocking && pending.size() > 0) {
+            closeRequested = true;
+        } else {
+            out.close();
+        }
+    }
+
+    private void onWritePossible() throws IOException {
+        final NonBlockingContainerResponseWriter.WriteListener toNotify;
+        final Runnable drained;
+        synchronized (this) {
+            if (pending.size() > 0) {
+                // a single write is always allowed once the stream is ready
+                out.write(pending.toByteArray());
+                pending.reset();
+                notifyAll();
+            }
+            if (!isReady()) {
+                // the container invokes onWritePossible() again
+                return;
+            }
+            if (flushRequested) {
+                flushRequested = false;
+                out.flush();
+                if (!isReady()) {
+                    return;
+                }
+            }
+            if (closeRequested) {
+                closeRequested = false;
+                out.close();
+            }
+
+            toNotify = listener;
+            listener = null;
+            drained = onDrained;
+            onDrained = null;
+            dispatcher = Thread.currentThread();
+        }
+
+        try {
+            if (toNotify != null) {
+                toNotify.onWritePossible();
+            }
+            if (drained != null) {
+                drained.run();
+            }
+        } finally {
+            synchronized (this) {
+                dispatcher = null;
+            }
+        }
+    }
+
+    private void onError(final Throwable t) {
+        final NonBlockingContainerResponseWriter.WriteListener toNotify;
+        final Runnable drained;
+        synchronized (this) {
+            pending.reset();
+            error = t;
+            notifyAll();
+            toNotify = listener;
+            listener = null;
+            drained = onDrained;
+            onDrained = null;
+        }
+
+        if (toNotify != null) {
+            toNotify.onError(t);
+        }
+        if (drained != null) {
+            drained.run();
+        }
+    }
+
+    private boolean isReady() {
+        try {
+            return (Boolean) IS_READY_METHOD.invoke(out);
+        } catch (IllegalAccessException ex) {
+            return true;
+        } catch (InvocationTargetException ex) {
+            // e.g. the stream has been closed - let the subsequent write report the problem
+            return true;
+        }
+    }
+}
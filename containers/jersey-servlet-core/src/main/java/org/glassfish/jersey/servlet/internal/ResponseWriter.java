@@ -56,6 +56,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.glassfish.jersey.server.ContainerException;
 import org.glassfish.jersey.server.ContainerResponse;
 import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.glassfish.jersey.server.spi.NonBlockingContainerResponseWriter;
 import org.glassfish.jersey.servlet.spi.AsyncContextDelegate;
 
 import com.google.common.util.concurrent.SettableFuture;
@@ -63,12 +64,14 @@ import com.google.common.util.concurrent.SettableFuture;
 /**
  * An internal implementation of {@link ContainerResponseWriter} for Servlet containers.
  * The writer depends on provided {@link AsyncContextDelegate} to support async functionality.
+ * In Servlet 3.1 containers, writes to suspended responses are performed using the servlet
+ * non-blocking output.
  *
  * @author Paul Sandoz (paul.sandoz at oracle.com)
  * @author Jakub Podlesak (jakub.podlesak at oracle.com)
  * @author Martin Matula (martin.matula at oracle.com)
  */
-public class ResponseWriter implements ContainerResponseWriter {
+public class ResponseWriter implements NonBlockingContainerResponseWriter {
 
     private static final Logger LOGGER = Logger.getLogger(ResponseWriter.class.getName());
 
@@ -76,6 +79,8 @@ public class ResponseWriter implements ContainerResponseWriter {
     private final boolean useSetStatusOn404;
     private final SettableFuture<ContainerResponse> responseContext;
     private final AsyncContextDelegate asyncExt;
+    private volatile NonBlockingOutputStream output;
+    private volatile boolean suspended = false;
 
     /**
      * Creates a new instance to write a single Jersey response.
@@ -94,6 +99,7 @@ public class ResponseWriter implements ContainerResponseWriter {
     @Override
     public void suspend(final long timeOut, final TimeUnit timeUnit, final TimeoutHandler timeoutHandler) throws IllegalStateException {
         asyncExt.suspend(this, timeOut, timeUnit, timeoutHandler);
+        suspended = true;
     }
 
     @Override
@@ -125,6 +131,10 @@ public class ResponseWriter implements ContainerResponseWriter {
             return null;
         } else {
             try {
+                if (NonBlockingOutputStream.isSupported()) {
+                    output = new NonBlockingOutputStream(response.getOutputStream());
+                    return output;
+                }
                 return response.getOutputStream();
             } catch (IOException e) {
                 throw new ContainerException(e);
@@ -152,7 +162,33 @@ public class ResponseWriter implements ContainerResponseWriter {
                 }
             }
         } finally {
-            asyncExt.complete();
+            final NonBlockingOutputStream out = output;
+            final Runnable complete = new Runnable() {
+                @Override
+                public void run() {
+                    asyncExt.complete();
+                }
+            };
+            if (out == null || !out.deferUntilDrained(complete)) {
+                complete.run();
+            }
+        }
+    }
+
+    @Override
+    public boolean isWritePossible() {
+        final NonBlockingOutputStream out = output;
+        // non-blocking output can only be used once the request processing is in the asynchronous mode
+        return out == null || !suspended || !out.enableNonBlocking() || out.isWritePossible();
+    }
+
+    @Override
+    public void notifyWritePossible(final WriteListener listener) {
+        final NonBlockingOutputStream out = output;
+        if (out == null) {
+            listener.onWritePossible();
+        } else {
+            out.notifyWritePossible(listener);
         }
     }
 
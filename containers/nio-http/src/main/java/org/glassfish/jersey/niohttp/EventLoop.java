@@ -0,0 +1,224 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.jersey.niohttp.internal.LocalizationMessages;
+
+/**
+ * Single-threaded selector loop of the {@link NioHttpServer NIO HTTP server}.
+ * <p>
+ * Each event loop owns a set of connections and performs all the selector related
+ * operations (registration, interest changes, reads) on its own thread. Other threads
+ * interact with the loop by {@link #execute(Runnable) submitting tasks}.
+ * </p>
+ */
+final class EventLoop implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(EventLoop.class.getName());
+
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private final NioHttpServer server;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Set<HttpConnection> connections = new HashSet<HttpConnection>();
+    private volatile boolean running = true;
+
+    /**
+     * Create new event loop.
+     *
+     * @param server owning server.
+     * @throws IOException in case the selector cannot be opened.
+     */
+    EventLoop(NioHttpServer server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Execute the task on the event loop thread.
+     *
+     * @param task task to be executed.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Start accepting connections from the server socket channel on this loop.
+     *
+     * @param serverChannel non-blocking server socket channel.
+     */
+    void listen(final ServerSocketChannel serverChannel) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    serverChannel.register(selector, SelectionKey.OP_ACCEPT, serverChannel);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.SEVERE, LocalizationMessages.ERROR_EVENT_LOOP(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Register the accepted connection with this loop.
+     *
+     * @param channel non-blocking connection channel.
+     */
+    void register(final SocketChannel channel) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                final HttpConnection connection = new HttpConnection(server, EventLoop.this, channel);
+                try {
+                    connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                    connections.add(connection);
+                } catch (IOException ex) {
+                    connection.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop the event loop and close all its connections.
+     */
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long lastReap = System.currentTimeMillis();
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT);
+                runTasks();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        process(key);
+                    } catch (CancelledKeyException ex) {
+                        // connection closed concurrently
+                    }
+                }
+
+                final long now = System.currentTimeMillis();
+                if (now - lastReap >= SELECT_TIMEOUT) {
+                    reapIdleConnections(now);
+                    lastReap = now;
+                }
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, LocalizationMessages.ERROR_EVENT_LOOP(), t);
+        } finally {
+            for (HttpConnection connection : connections) {
+                connection.close();
+            }
+            connections.clear();
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, LocalizationMessages.ERROR_CLOSING_CONNECTION(), ex);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.SEVERE, LocalizationMessages.ERROR_EVENT_LOOP(), ex);
+            }
+        }
+    }
+
+    private void process(SelectionKey key) {
+        final Object attachment = key.attachment();
+        if (attachment instanceof ServerSocketChannel) {
+            server.accept((ServerSocketChannel) attachment);
+            return;
+        }
+
+        final HttpConnection connection = (HttpConnection) attachment;
+        if (key.isWritable()) {
+            connection.onWritable();
+        }
+        if (key.isValid() && key.isReadable()) {
+            connection.onReadable();
+        }
+    }
+
+    private void reapIdleConnections(long now) {
+        final Iterator<HttpConnection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            final HttpConnection connection = iterator.next();
+            if (connection.isClosed()) {
+                iterator.remove();
+            } else if (connection.isIdle(now)) {
+                connection.close();
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.jersey.niohttp.internal.LocalizationMessages;
+
+/**
+ * HTTP/1.1 connection of the {@link NioHttpServer NIO HTTP server}.
+ * <p>
+ * Requests are read and parsed on the {@link EventLoop event loop} thread of the connection.
+ * Pipelined requests are queued and dispatched to the worker threads one at a time, so that
+ * the responses are written in the order of the requests. The responses are written directly
+ * to the non-blocking channel by the thread producing the response; if the channel cannot
+ * accept more data, the writing thread waits until the event loop reports the channel
+ * as writable again.
+ * </p>
+ */
+final class HttpConnection {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpConnection.class.getName());
+
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes();
+
+    private final NioHttpServer server;
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final ByteBuffer readBuffer;
+    private final ByteBuffer writeBuffer;
+    private final HttpRequestParser parser;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private SelectionKey key;
+
+    // guarded by this
+    private final Deque<HttpRequest> pending = new ArrayDeque<HttpRequest>();
+    private boolean processing;
+    private boolean readSuspended;
+    private boolean inputShutdown;
+    private boolean continueDeferred;
+
+    // guarded by writeLock
+    private final Object writeLock = new Object();
+    private boolean writable = true;
+    private ByteBuffer continueResponse;
+
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * Create new connection.
+     *
+     * @param server  owning server.
+     * @param loop    event loop of the connection.
+     * @param channel non-blocking connection channel.
+     */
+    HttpConnection(NioHttpServer server, EventLoop loop, SocketChannel channel) {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.readBuffer = ByteBuffer.allocateDirect(server.getBufferSize());
+        this.writeBuffer = ByteBuffer.allocateDirect(server.getBufferSize());
+        this.parser = new HttpRequestParser(server.getMaxEntitySize());
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Get the local address the connection has been accepted on.
+     *
+     * @return local socket address.
+     */
+    InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress) channel.socket().getLocalSocketAddress();
+    }
+
+    NioHttpServer getServer() {
+        return server;
+    }
+
+    /**
+     * Get the direct buffer used to compose the responses. Responses on a connection are written
+     * sequentially, so the buffer is always used by a single response at a time.
+     *
+     * @return connection write buffer.
+     */
+    ByteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    /**
+     * Invoked on the event loop thread when the channel is readable.
+     */
+    void onReadable() {
+        lastActivity = System.currentTimeMillis();
+        try {
+            while (true) {
+                final int read = channel.read(readBuffer);
+                if (read < 0) {
+                    onInputClosed();
+                    return;
+                }
+                if (read == 0) {
+                    break;
+                }
+
+                readBuffer.flip();
+                try {
+                    HttpRequest request;
+                    while ((request = parser.parse(readBuffer)) != null) {
+                        if (!enqueue(request)) {
+                            return;
+                        }
+                    }
+                    if (parser.takeContinueRequest() && !deferContinue()) {
+                        sendContinue();
+                    }
+                } catch (HttpRequestParser.HttpParseException ex) {
+                    enqueue(new HttpRequest(ex.getStatus()));
+                    return;
+                } finally {
+                    readBuffer.compact();
+                }
+
+                synchronized (this) {
+                    if (readSuspended) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            close();
+        }
+    }
+
+    /**
+     * Invoked on the event loop thread when the channel becomes writable again.
+     */
+    void onWritable() {
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        synchronized (writeLock) {
+            writable = true;
+            if (continueResponse != null) {
+                try {
+                    flushContinue();
+                } catch (IOException ex) {
+                    close();
+                }
+            }
+            writeLock.notifyAll();
+        }
+    }
+
+    /**
+     * Queue the parsed request for processing.
+     *
+     * @param request parsed request.
+     * @return {@code false} if no further requests should be read from the connection.
+     */
+    private boolean enqueue(HttpRequest request) {
+        final boolean last = !request.isKeepAlive() || request.getErrorStatus() != 0;
+        synchronized (this) {
+            if (inputShutdown) {
+                return false;
+            }
+            if (last) {
+                // do not read any requests pipelined after the last one
+                shutdownInput();
+            }
+
+            // the entity has been received, the client no longer waits for the interim response
+            continueDeferred = false;
+            if (processing) {
+                pending.add(request);
+                if (pending.size() >= server.getMaxPipelinedRequests()) {
+                    suspendReading();
+                }
+            } else {
+                processing = true;
+                dispatch(request);
+            }
+        }
+        return !last;
+    }
+
+    private void dispatch(final HttpRequest request) {
+        try {
+            server.getWorkers().execute(new Runnable() {
+                @Override
+                public void run() {
+                    server.getContainer().service(HttpConnection.this, request);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // server is shutting down
+            close();
+        }
+    }
+
+    /**
+     * Invoked once the response of the current request has been completely written.
+     *
+     * @param keepAlive {@code false} if the connection must be closed.
+     */
+    void onResponseComplete(boolean keepAlive) {
+        lastActivity = System.currentTimeMillis();
+        if (!keepAlive) {
+            close();
+            return;
+        }
+
+        final boolean sendContinue;
+        synchronized (this) {
+            final HttpRequest next = pending.poll();
+            if (next != null) {
+                dispatch(next);
+                sendContinue = false;
+            } else {
+                processing = false;
+                if (inputShutdown) {
+                    close();
+                    return;
+                }
+                // all the responses preceding the request being received have been written
+                sendContinue = continueDeferred;
+                continueDeferred = false;
+            }
+
+            if (readSuspended && pending.size() < server.getMaxPipelinedRequests()) {
+                readSuspended = false;
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (key.isValid()) {
+                            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                            // process the requests that might have been left in the buffer
+                            onReadable();
+                        }
+                    }
+                });
+            }
+        }
+
+        if (sendContinue) {
+            try {
+                sendContinue();
+            } catch (IOException ex) {
+                close();
+            }
+        }
+    }
+
+    private void onInputClosed() {
+        synchronized (this) {
+            shutdownInput();
+            if (processing) {
+                // finish writing the responses of the received requests
+                return;
+            }
+        }
+        close();
+    }
+
+    // guarded by this, invoked on the event loop thread
+    private void shutdownInput() {
+        inputShutdown = true;
+        if (key.isValid()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    // guarded by this, invoked on the event loop thread
+    private void suspendReading() {
+        readSuspended = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+    }
+
+    /**
+     * Defer the {@code 100 Continue} interim response of the request being received until the
+     * responses of the requests pipelined before it have been written.
+     *
+     * @return {@code true} if the interim response has been deferred, {@code false} if it should be sent now.
+     */
+    private synchronized boolean deferContinue() {
+        if (processing) {
+            continueDeferred = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void sendContinue() throws IOException {
+        synchronized (writeLock) {
+            continueResponse = ByteBuffer.wrap(CONTINUE);
+            flushContinue();
+        }
+    }
+
+    // guarded by writeLock
+    private void flushContinue() throws IOException {
+        // the interim response is written without blocking, also from the event loop thread
+        channel.write(continueResponse);
+        if (continueResponse.hasRemaining()) {
+            // the rest is written once the channel becomes writable or before the final response
+            requestWritable();
+        } else {
+            continueResponse = null;
+        }
+    }
+
+    /**
+     * Write the buffers to the channel, blocking the calling (worker) thread until all the data is written.
+     *
+     * @param buffers buffers to be written.
+     * @throws IOException in case of an I/O error or if the client does not read the data for
+     *                     longer than the idle timeout.
+     */
+    void write(ByteBuffer... buffers) throws IOException {
+        synchronized (writeLock) {
+            while (continueResponse != null || hasRemaining(buffers)) {
+                if (closed.get()) {
+                    throw new IOException(LocalizationMessages.ERROR_WRITING_RESPONSE());
+                }
+                final long written;
+                if (continueResponse != null) {
+                    written = channel.write(continueResponse);
+                    if (!continueResponse.hasRemaining()) {
+                        continueResponse = null;
+                    }
+                } else {
+                    written = channel.write(buffers);
+                }
+                if (written == 0) {
+                    awaitWritable();
+                }
+            }
+        }
+        lastActivity = System.currentTimeMillis();
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // guarded by writeLock
+    private void awaitWritable() throws IOException {
+        writable = false;
+        requestWritable();
+
+        final long timeout = server.getIdleTimeout();
+        final long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (!writable && !closed.get()) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    close();
+                    throw new IOException(LocalizationMessages.ERROR_WRITING_RESPONSE());
+                }
+                writeLock.wait(remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(LocalizationMessages.ERROR_WRITING_RESPONSE(), ex);
+        }
+    }
+
+    private void requestWritable() {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Check whether the connection is idle for longer than the idle timeout.
+     *
+     * @param now current time in milliseconds.
+     * @return {@code true} if the connection should be closed.
+     */
+    synchronized boolean isIdle(long now) {
+        return !processing && now - lastActivity > server.getIdleTimeout();
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Close the connection. The method may be invoked from any thread.
+     */
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, LocalizationMessages.ERROR_CLOSING_CONNECTION(), ex);
+            }
+            synchronized (writeLock) {
+                writeLock.notifyAll();
+            }
+        }
+    }
+}
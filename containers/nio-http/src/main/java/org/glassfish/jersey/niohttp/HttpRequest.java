@@ -0,0 +1,185 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP request received by the {@link NioHttpServer NIO HTTP server}.
+ * <p>
+ * The request entity is always fully received before the request is dispatched
+ * to the application.
+ * </p>
+ */
+final class HttpRequest {
+
+    private static final byte[] NO_ENTITY = new byte[0];
+
+    private final String method;
+    private final String target;
+    private final boolean http11;
+    private final List<String> headers = new ArrayList<String>();
+    private boolean keepAlive;
+    private boolean expectContinue;
+    private byte[] entity = NO_ENTITY;
+    private final int errorStatus;
+
+    /**
+     * Create new request.
+     *
+     * @param method request method.
+     * @param target request target as sent in the request line.
+     * @param http11 {@code true} for {@code HTTP/1.1} requests, {@code false} for {@code HTTP/1.0}.
+     */
+    HttpRequest(String method, String target, boolean http11) {
+        this.method = method;
+        this.target = target;
+        this.http11 = http11;
+        this.keepAlive = http11;
+        this.errorStatus = 0;
+    }
+
+    /**
+     * Create new placeholder for a request that could not be parsed. The error response is
+     * sent once the responses to the preceding pipelined requests have been written.
+     *
+     * @param errorStatus error response status.
+     */
+    HttpRequest(int errorStatus) {
+        this.method = null;
+        this.target = null;
+        this.http11 = true;
+        this.keepAlive = false;
+        this.errorStatus = errorStatus;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getTarget() {
+        return target;
+    }
+
+    boolean isHttp11() {
+        return http11;
+    }
+
+    void addHeader(String name, String value) {
+        headers.add(name);
+        headers.add(value);
+    }
+
+    /**
+     * Append a continuation line to the value of the last header.
+     *
+     * @param value continuation line.
+     * @return {@code false} if there is no header the value could be appended to.
+     */
+    boolean appendToLastHeader(String value) {
+        if (headers.isEmpty()) {
+            return false;
+        }
+        final int last = headers.size() - 1;
+        headers.set(last, headers.get(last) + ' ' + value);
+        return true;
+    }
+
+    int getHeaderCount() {
+        return headers.size() / 2;
+    }
+
+    String getHeaderName(int index) {
+        return headers.get(2 * index);
+    }
+
+    String getHeaderValue(int index) {
+        return headers.get(2 * index + 1);
+    }
+
+    /**
+     * Get the first value of the header.
+     *
+     * @param name case-insensitive header name.
+     * @return header value or {@code null} if the header is not present.
+     */
+    String getHeader(String name) {
+        for (int i = 0; i < headers.size(); i += 2) {
+            if (name.equalsIgnoreCase(headers.get(i))) {
+                return headers.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    boolean isExpectContinue() {
+        return expectContinue;
+    }
+
+    void setExpectContinue(boolean expectContinue) {
+        this.expectContinue = expectContinue;
+    }
+
+    byte[] getEntity() {
+        return entity;
+    }
+
+    void setEntity(byte[] entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * Get the status of the error response to be sent instead of processing the request.
+     *
+     * @return error response status or {@code 0} for valid requests.
+     */
+    int getErrorStatus() {
+        return errorStatus;
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Incremental HTTP/1.x request parser.
+ * <p>
+ * The parser reads the request line and headers directly from the (direct) connection
+ * read buffer using absolute access, without copying the data into intermediate arrays.
+ * A buffer may contain several pipelined requests, or just a fragment of a single request;
+ * the parser keeps its state between the invocations of {@link #parse(java.nio.ByteBuffer)}.
+ * </p>
+ * <p>
+ * Instances are not thread-safe and are confined to the event loop thread of the connection.
+ * </p>
+ */
+final class HttpRequestParser {
+
+    /**
+     * Signals a request that cannot be processed.
+     */
+    static final class HttpParseException extends Exception {
+
+        private static final long serialVersionUID = -2093587392587307412L;
+
+        private final int status;
+
+        HttpParseException(int status) {
+            this.status = status;
+        }
+
+        /**
+         * Get the status of the error response.
+         *
+         * @return error response status.
+         */
+        int getStatus() {
+            return status;
+        }
+    }
+
+    private static final int MAX_CHUNK_LINE_LENGTH = 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private enum State {
+        HEAD, FIXED_ENTITY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS
+    }
+
+    private final int maxEntitySize;
+    private State state = State.HEAD;
+    private int scanned;
+    private char[] chars = new char[256];
+
+    private HttpRequest request;
+    private byte[] entity;
+    private int entityLength;
+    private int declaredLength;
+    private int chunkRemaining;
+    private boolean continueRequested;
+
+    /**
+     * Create new request parser.
+     *
+     * @param maxEntitySize maximum accepted request entity size.
+     */
+    HttpRequestParser(int maxEntitySize) {
+        this.maxEntitySize = maxEntitySize;
+    }
+
+    /**
+     * Parse the next request from the buffer.
+     * <p>
+     * The buffer must be in the read mode; consumed bytes are skipped by advancing the buffer position.
+     * </p>
+     *
+     * @param buffer buffer with the received data.
+     * @return parsed request or {@code null} if the buffer does not contain a complete request yet.
+     * @throws HttpParseException in case the request is malformed or cannot be accepted.
+     */
+    HttpRequest parse(ByteBuffer buffer) throws HttpParseException {
+        while (true) {
+            switch (state) {
+                case HEAD:
+                    if (!parseHead(buffer)) {
+                        return null;
+                    }
+                    break;
+                case FIXED_ENTITY:
+                    final int count = Math.min(declaredLength - entityLength, buffer.remaining());
+                    ensureEntityCapacity(count, declaredLength);
+                    buffer.get(entity, entityLength, count);
+                    entityLength += count;
+                    if (entityLength < declaredLength) {
+                        return null;
+                    }
+                    return complete();
+                case CHUNK_SIZE:
+                    final int lineEnd = findLineEnd(buffer, buffer.position());
+                    if (lineEnd < 0) {
+                        if (buffer.remaining() > MAX_CHUNK_LINE_LENGTH) {
+                            throw new HttpParseException(400);
+                        }
+                        return null;
+                    }
+                    chunkRemaining = parseChunkSize(buffer, buffer.position(), lineEnd);
+                    buffer.position(lineEnd + 1);
+                    if (chunkRemaining == 0) {
+                        state = State.TRAILERS;
+                    } else {
+                        ensureEntityCapacity(chunkRemaining, maxEntitySize);
+                        state = State.CHUNK_DATA;
+                    }
+                    break;
+                case CHUNK_DATA:
+                    final int chunkCount = Math.min(chunkRemaining, buffer.remaining());
+                    buffer.get(entity, entityLength, chunkCount);
+                    entityLength += chunkCount;
+                    chunkRemaining -= chunkCount;
+                    if (chunkRemaining > 0) {
+                        return null;
+                    }
+                    state = State.CHUNK_END;
+                    break;
+                case CHUNK_END:
+                    final int chunkEnd = findLineEnd(buffer, buffer.position());
+                    if (chunkEnd < 0) {
+                        if (buffer.remaining() > 1) {
+                            throw new HttpParseException(400);
+                        }
+                        return null;
+                    }
+                    if (chunkEnd - buffer.position() > 1) {
+                        throw new HttpParseException(400);
+                    }
+                    buffer.position(chunkEnd + 1);
+                    state = State.CHUNK_SIZE;
+                    break;
+                case TRAILERS:
+                    final int trailerEnd = findLineEnd(buffer, buffer.position());
+                    if (trailerEnd < 0) {
+                        if (buffer.remaining() > MAX_CHUNK_LINE_LENGTH) {
+                            throw new HttpParseException(400);
+                        }
+                        return null;
+                    }
+                    final boolean lastLine = trailerEnd - buffer.position() <= 1;
+                    buffer.position(trailerEnd + 1);
+                    if (lastLine) {
+                        return complete();
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Check whether the client is waiting for the {@code 100 Continue} interim response of the
+     * request currently being received. The method returns {@code true} only once per request.
+     *
+     * @return {@code true} if the interim response should be sent now.
+     */
+    boolean takeContinueRequest() {
+        if (continueRequested) {
+            continueRequested = false;
+            return true;
+        }
+        return false;
+    }
+
+    private HttpRequest complete() {
+        final HttpRequest completed = request;
+        completed.setEntity(entity.length == entityLength ? entity : Arrays.copyOf(entity, entityLength));
+
+        request = null;
+        entity = null;
+        entityLength = 0;
+        declaredLength = 0;
+        continueRequested = false;
+        state = State.HEAD;
+        return completed;
+    }
+
+    private boolean parseHead(ByteBuffer buffer) throws HttpParseException {
+        if (scanned == 0) {
+            // ignore empty lines preceding the request line
+            while (buffer.hasRemaining() && isLineBreak(buffer.get(buffer.position()))) {
+                buffer.position(buffer.position() + 1);
+            }
+        }
+
+        final int start = buffer.position();
+        final int limit = buffer.limit();
+        int headEnd = -1;
+        for (int i = start + scanned; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                int previous = i - 1;
+                if (previous > start && buffer.get(previous) == '\r') {
+                    previous--;
+                }
+                if (previous > start && buffer.get(previous) == '\n') {
+                    headEnd = i + 1;
+                    break;
+                }
+            }
+        }
+
+        if (headEnd < 0) {
+            if (limit - start >= buffer.capacity()) {
+                throw new HttpParseException(431);
+            }
+            // the end of the head may straddle the received data
+            scanned = Math.max(0, limit - start - 3);
+            return false;
+        }
+        scanned = 0;
+
+        int lineEnd = findLineEnd(buffer, start);
+        request = parseRequestLine(buffer, start, trimLineBreak(buffer, start, lineEnd));
+        int lineStart = lineEnd + 1;
+        while (lineStart < headEnd) {
+            lineEnd = findLineEnd(buffer, lineStart);
+            final int end = trimLineBreak(buffer, lineStart, lineEnd);
+            if (end > lineStart) {
+                parseHeader(buffer, lineStart, end);
+            }
+            lineStart = lineEnd + 1;
+        }
+        buffer.position(headEnd);
+
+        initEntity();
+        return true;
+    }
+
+    private HttpRequest parseRequestLine(ByteBuffer buffer, int start, int end) throws HttpParseException {
+        final int methodEnd = indexOf(buffer, start, end, ' ');
+        final int targetEnd = methodEnd < 0 ? -1 : indexOf(buffer, methodEnd + 1, end, ' ');
+        if (methodEnd <= start || targetEnd <= methodEnd + 1) {
+            throw new HttpParseException(400);
+        }
+
+        final String version = string(buffer, targetEnd + 1, end);
+        final boolean http11;
+        if ("HTTP/1.1".equals(version)) {
+            http11 = true;
+        } else if ("HTTP/1.0".equals(version)) {
+            http11 = false;
+        } else if (version.startsWith("HTTP/")) {
+            throw new HttpParseException(505);
+        } else {
+            throw new HttpParseException(400);
+        }
+
+        return new HttpRequest(string(buffer, start, methodEnd), string(buffer, methodEnd + 1, targetEnd), http11);
+    }
+
+    private void parseHeader(ByteBuffer buffer, int start, int end) throws HttpParseException {
+        final byte first = buffer.get(start);
+        if (first == ' ' || first == '\t') {
+            // obsolete line folding
+            if (!request.appendToLastHeader(string(buffer, skipWhitespace(buffer, start, end), trimWhitespace(buffer,
+                    start, end)))) {
+                throw new HttpParseException(400);
+            }
+            return;
+        }
+
+        final int colon = indexOf(buffer, start, end, ':');
+        if (colon <= start) {
+            throw new HttpParseException(400);
+        }
+        final int valueStart = skipWhitespace(buffer, colon + 1, end);
+        request.addHeader(string(buffer, start, colon), string(buffer, valueStart, trimWhitespace(buffer, valueStart, end)));
+    }
+
+    private void initEntity() throws HttpParseException {
+        final String connection = request.getHeader("Connection");
+        if (connection != null) {
+            if (containsToken(connection, "close")) {
+                request.setKeepAlive(false);
+            } else if (containsToken(connection, "keep-alive")) {
+                request.setKeepAlive(true);
+            }
+        }
+
+        final String transferEncoding = request.getHeader("Transfer-Encoding");
+        final String contentLength = request.getHeader("Content-Length");
+        final boolean entityExpected;
+        if (transferEncoding != null && !"identity".equalsIgnoreCase(transferEncoding.trim())) {
+            if (!transferEncoding.trim().toLowerCase().endsWith("chunked")) {
+                throw new HttpParseException(501);
+            }
+            entity = EMPTY;
+            state = State.CHUNK_SIZE;
+            entityExpected = true;
+        } else if (contentLength != null) {
+            final long length;
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException ex) {
+                throw new HttpParseException(400);
+            }
+            if (length < 0) {
+                throw new HttpParseException(400);
+            } else if (length > maxEntitySize) {
+                throw new HttpParseException(413);
+            }
+            // the entity buffer grows as the data arrives, the declared length is not trusted upfront
+            entity = EMPTY;
+            declaredLength = (int) length;
+            state = State.FIXED_ENTITY;
+            entityExpected = length > 0;
+        } else {
+            entity = EMPTY;
+            state = State.FIXED_ENTITY;
+            entityExpected = false;
+        }
+
+        final String expect = request.getHeader("Expect");
+        if (expect != null && request.isHttp11() && "100-continue".equalsIgnoreCase(expect.trim())) {
+            request.setExpectContinue(true);
+            continueRequested = entityExpected;
+        }
+    }
+
+    private int parseChunkSize(ByteBuffer buffer, int start, int end) throws HttpParseException {
+        long size = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = Character.digit((char) buffer.get(i), 16);
+            if (digit < 0) {
+                break;
+            }
+            size = size * 16 + digit;
+            if (size > maxEntitySize) {
+                throw new HttpParseException(413);
+            }
+            digits++;
+        }
+        if (digits == 0) {
+            throw new HttpParseException(400);
+        }
+        return (int) size;
+    }
+
+    /**
+     * Make room for the next bytes of the entity, growing the entity buffer geometrically.
+     *
+     * @param count    number of bytes to be appended to the entity.
+     * @param capacity maximum capacity the entity buffer may need to grow to.
+     */
+    private void ensureEntityCapacity(int count, int capacity) throws HttpParseException {
+        final long required = (long) entityLength + count;
+        if (required > maxEntitySize) {
+            throw new HttpParseException(413);
+        }
+        if (required > entity.length) {
+            entity = Arrays.copyOf(entity, (int) Math.min(capacity, Math.max(required, 2L * entity.length)));
+        }
+    }
+
+    private static boolean containsToken(String value, String token) {
+        for (String element : value.split(",")) {
+            if (token.equalsIgnoreCase(element.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\r' || b == '\n';
+    }
+
+    private static int findLineEnd(ByteBuffer buffer, int from) {
+        return indexOf(buffer, from, buffer.limit(), '\n');
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int trimLineBreak(ByteBuffer buffer, int start, int lineEnd) {
+        return (lineEnd > start && buffer.get(lineEnd - 1) == '\r') ? lineEnd - 1 : lineEnd;
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        while (i < end && (buffer.get(i) == ' ' || buffer.get(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimWhitespace(ByteBuffer buffer, int start, int end) {
+        int i = end;
+        while (i > start && (buffer.get(i - 1) == ' ' || buffer.get(i - 1) == '\t')) {
+            i--;
+        }
+        return i;
+    }
+
+    private String string(ByteBuffer buffer, int start, int end) {
+        final int length = end - start;
+        if (length > chars.length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer.get(start + i) & 0xFF);
+        }
+        return new String(chars, 0, length);
+    }
+}
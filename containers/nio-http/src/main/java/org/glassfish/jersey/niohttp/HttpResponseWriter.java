@@ -0,0 +1,485 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.niohttp.internal.LocalizationMessages;
+import org.glassfish.jersey.server.ContainerException;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+
+/**
+ * Response writer of the {@link NioHttpContainer NIO HTTP container}.
+ * <p>
+ * The status line, headers and entity are encoded directly into the direct write buffer of the
+ * connection, which is handed over to the socket channel once full. Entity data written in blocks
+ * larger than the buffer are passed to the channel without copying, using gathering writes.
+ * Entities of unknown length are sent using the chunked transfer coding.
+ * </p>
+ */
+final class HttpResponseWriter implements ContainerResponseWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpResponseWriter.class.getName());
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    private final HttpConnection connection;
+    private final HttpRequest request;
+    private final Object stateLock = new Object();
+
+    // guarded by stateLock
+    private boolean committed;
+    private boolean suspended;
+    private TimeoutHandler timeoutHandler;
+    private ScheduledFuture<?> timeoutTask;
+
+    private volatile EntityOutputStream entityStream;
+
+    /**
+     * Create new response writer.
+     *
+     * @param connection connection the response should be written to.
+     * @param request    request the response is written for.
+     */
+    HttpResponseWriter(HttpConnection connection, HttpRequest request) {
+        this.connection = connection;
+        this.request = request;
+    }
+
+    @Override
+    public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse responseContext)
+            throws ContainerException {
+        final int status = responseContext.getStatus();
+        final boolean noEntity = "HEAD".equals(request.getMethod()) || status == 204 || status == 304
+                || (status >= 100 && status < 200);
+
+        if (contentLength < 0) {
+            final String declaredLength = responseContext.getHeaderString("Content-Length");
+            if (declaredLength != null) {
+                try {
+                    contentLength = Long.parseLong(declaredLength.trim());
+                } catch (NumberFormatException ex) {
+                    contentLength = -1;
+                }
+            }
+        }
+
+        final boolean chunked = contentLength < 0 && !noEntity && request.isHttp11();
+        final boolean keepAlive = request.isKeepAlive() && (contentLength >= 0 || chunked || noEntity)
+                && connection.getServer().isRunning();
+
+        final ByteBuffer buffer = connection.getWriteBuffer();
+        buffer.clear();
+        try {
+            put(buffer, "HTTP/1.1 ");
+            put(buffer, Integer.toString(status));
+            buffer.put((byte) ' ');
+            final Response.StatusType statusInfo = responseContext.getStatusInfo();
+            put(buffer, statusInfo != null && statusInfo.getReasonPhrase() != null ? statusInfo.getReasonPhrase() : "");
+            buffer.put(CRLF);
+
+            for (Map.Entry<String, List<String>> header : responseContext.getStringHeaders().entrySet()) {
+                final String name = header.getKey();
+                if ("Content-Length".equalsIgnoreCase(name) || "Transfer-Encoding".equalsIgnoreCase(name)
+                        || "Connection".equalsIgnoreCase(name)) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    putHeader(buffer, name, value);
+                }
+            }
+
+            if (contentLength >= 0 && (status != 204 && status != 304 && status >= 200)) {
+                putHeader(buffer, "Content-Length", Long.toString(contentLength));
+            } else if (chunked) {
+                putHeader(buffer, "Transfer-Encoding", "chunked");
+            }
+            if (!keepAlive) {
+                putHeader(buffer, "Connection", "close");
+            } else if (!request.isHttp11()) {
+                putHeader(buffer, "Connection", "keep-alive");
+            }
+            buffer.put(CRLF);
+        } catch (BufferOverflowException ex) {
+            throw new ContainerException(LocalizationMessages.ERROR_WRITING_RESPONSE(), ex);
+        }
+
+        final EntityOutputStream stream = new EntityOutputStream(buffer, buffer.position(), chunked, noEntity,
+                noEntity ? 0 : contentLength, keepAlive);
+        entityStream = stream;
+        return stream;
+    }
+
+    private static void putHeader(ByteBuffer buffer, String name, String value) {
+        put(buffer, name);
+        buffer.put((byte) ':').put((byte) ' ');
+        put(buffer, value);
+        buffer.put(CRLF);
+    }
+
+    private static void put(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            buffer.put(c < 256 ? (byte) c : (byte) '?');
+        }
+    }
+
+    @Override
+    public void suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) throws IllegalStateException {
+        synchronized (stateLock) {
+            if (suspended) {
+                // already suspended (e.g. chunked response of an asynchronous request) - update the timeout
+                cancelTimeout();
+            }
+            suspended = true;
+            if (timeoutHandler != null) {
+                this.timeoutHandler = timeoutHandler;
+            }
+            scheduleTimeout(timeOut, timeUnit);
+        }
+    }
+
+    @Override
+    public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) throws IllegalStateException {
+        synchronized (stateLock) {
+            if (!suspended) {
+                throw new IllegalStateException();
+            }
+            cancelTimeout();
+            scheduleTimeout(timeOut, timeUnit);
+        }
+    }
+
+    // guarded by stateLock
+    private void cancelTimeout() {
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+            timeoutTask = null;
+        }
+    }
+
+    // guarded by stateLock
+    private void scheduleTimeout(long timeOut, TimeUnit timeUnit) {
+        if (timeOut <= 0 || committed) {
+            return;
+        }
+        timeoutTask = connection.getServer().getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                final TimeoutHandler handler;
+                synchronized (stateLock) {
+                    if (committed) {
+                        return;
+                    }
+                    handler = timeoutHandler;
+                    timeoutTask = null;
+                }
+                if (handler != null) {
+                    try {
+                        handler.onTimeout(HttpResponseWriter.this);
+                    } catch (RuntimeException ex) {
+                        LOGGER.log(Level.SEVERE, LocalizationMessages.ERROR_REQUEST_PROCESSING(), ex);
+                        abort();
+                        return;
+                    }
+                }
+
+                synchronized (stateLock) {
+                    if (committed || timeoutTask != null) {
+                        // response finished or the suspend timeout has been extended by the handler
+                        return;
+                    }
+                }
+                // finish the timeout response written by the handler
+                if (entityStream != null) {
+                    commit();
+                } else {
+                    writeErrorResponse(503);
+                }
+            }
+        }, timeOut, timeUnit);
+    }
+
+    @Override
+    public void cancel() {
+        if (markCommitted()) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void commit() {
+        if (!markCommitted()) {
+            return;
+        }
+
+        final EntityOutputStream stream = entityStream;
+        if (stream == null) {
+            // the application committed the response without writing the status
+            sendErrorResponse(500);
+            return;
+        }
+
+        boolean keepAlive = false;
+        try {
+            stream.close();
+            keepAlive = stream.isKeepAlive();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE(), ex);
+        } finally {
+            connection.onResponseComplete(keepAlive);
+        }
+    }
+
+    private boolean markCommitted() {
+        synchronized (stateLock) {
+            if (committed) {
+                return false;
+            }
+            committed = true;
+            cancelTimeout();
+            return true;
+        }
+    }
+
+    /**
+     * Invoked once the application returned the control to the container. Commits the response
+     * unless it has already been committed or the response is suspended.
+     */
+    void afterHandle() {
+        synchronized (stateLock) {
+            if (committed || suspended) {
+                return;
+            }
+        }
+        LOGGER.log(Level.WARNING, LocalizationMessages.ERROR_RESPONSEWRITER_RESPONSE_UNCOMMITED());
+        commit();
+    }
+
+    /**
+     * Abort the response after a failure of the request processing. Sends the {@code 500} response
+     * if possible, otherwise closes the connection.
+     */
+    void abort() {
+        if (entityStream == null) {
+            writeErrorResponse(500);
+        } else {
+            cancel();
+        }
+    }
+
+    /**
+     * Write a response with no entity and close the connection, unless the response has already
+     * been committed.
+     *
+     * @param status response status.
+     */
+    void writeErrorResponse(int status) {
+        if (markCommitted()) {
+            sendErrorResponse(status);
+        }
+    }
+
+    private void sendErrorResponse(int status) {
+        try {
+            final ByteBuffer buffer = connection.getWriteBuffer();
+            buffer.clear();
+            put(buffer, "HTTP/1.1 ");
+            put(buffer, Integer.toString(status));
+            buffer.put((byte) ' ');
+            final Response.Status statusInfo = Response.Status.fromStatusCode(status);
+            put(buffer, statusInfo != null ? statusInfo.getReasonPhrase() : "");
+            buffer.put(CRLF);
+            putHeader(buffer, "Content-Length", "0");
+            putHeader(buffer, "Connection", "close");
+            buffer.put(CRLF);
+            buffer.flip();
+            connection.write(buffer);
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE(), ex);
+        } finally {
+            connection.onResponseComplete(false);
+        }
+    }
+
+    /**
+     * Entity output stream writing into the connection write buffer.
+     */
+    private final class EntityOutputStream extends OutputStream {
+
+        private final ByteBuffer buffer;
+        private final boolean chunked;
+        private final boolean discard;
+        private final long contentLength;
+        private boolean keepAlive;
+        private int dataStart;
+        private long written;
+        private boolean closed;
+
+        private EntityOutputStream(ByteBuffer buffer, int headLength, boolean chunked, boolean discard,
+                                   long contentLength, boolean keepAlive) {
+            this.buffer = buffer;
+            this.dataStart = headLength;
+            this.chunked = chunked;
+            this.discard = discard;
+            this.contentLength = contentLength;
+            this.keepAlive = keepAlive;
+        }
+
+        boolean isKeepAlive() {
+            return keepAlive;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkClosed();
+            if (discard) {
+                return;
+            }
+            if (!buffer.hasRemaining()) {
+                flushBuffer(null);
+            }
+            buffer.put((byte) b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            checkClosed();
+            if (discard || length == 0) {
+                return;
+            }
+            written += length;
+            if (length <= buffer.remaining()) {
+                buffer.put(bytes, offset, length);
+            } else if (length < buffer.capacity()) {
+                flushBuffer(null);
+                buffer.put(bytes, offset, length);
+            } else {
+                // large block - pass it to the channel together with the buffered data without copying
+                flushBuffer(ByteBuffer.wrap(bytes, offset, length));
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            checkClosed();
+            flushBuffer(null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (!chunked) {
+                flushBuffer(null);
+                if (contentLength >= 0 && written != contentLength) {
+                    // the client cannot tell where the response ends
+                    keepAlive = false;
+                }
+                return;
+            }
+
+            if (buffer.position() > dataStart) {
+                flushBuffer(null);
+            }
+            buffer.flip();
+            connection.write(buffer, ByteBuffer.wrap(LAST_CHUNK));
+            buffer.clear();
+        }
+
+        private void flushBuffer(ByteBuffer block) throws IOException {
+            buffer.flip();
+            if (!chunked) {
+                if (block == null) {
+                    connection.write(buffer);
+                } else {
+                    connection.write(buffer, block);
+                }
+            } else {
+                final ByteBuffer head = buffer.duplicate();
+                head.limit(dataStart);
+                final ByteBuffer data = buffer.duplicate();
+                data.position(dataStart);
+                final int size = data.remaining() + (block == null ? 0 : block.remaining());
+                if (size == 0) {
+                    connection.write(head);
+                } else if (block == null) {
+                    connection.write(head, chunkSize(size), data, ByteBuffer.wrap(CRLF));
+                } else {
+                    connection.write(head, chunkSize(size), data, block, ByteBuffer.wrap(CRLF));
+                }
+            }
+            buffer.clear();
+            dataStart = 0;
+        }
+
+        private ByteBuffer chunkSize(int size) {
+            final String hex = Integer.toHexString(size);
+            final ByteBuffer chunkSize = ByteBuffer.allocate(hex.length() + 2);
+            put(chunkSize, hex);
+            chunkSize.put(CRLF);
+            chunkSize.flip();
+            return chunkSize;
+        }
+
+        private void checkClosed() throws IOException {
+            if (closed) {
+                throw new IOException(LocalizationMessages.ERROR_WRITING_RESPONSE());
+            }
+        }
+    }
+}
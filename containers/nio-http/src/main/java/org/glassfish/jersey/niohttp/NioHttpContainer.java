@@ -0,0 +1,273 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.Principal;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriBuilder;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.niohttp.internal.LocalizationMessages;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.internal.ApplicationReloader;
+import org.glassfish.jersey.server.internal.BaseUriCache;
+import org.glassfish.jersey.server.internal.ConfigHelper;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+
+/**
+ * Container adapter between the {@link NioHttpServer NIO HTTP server} and {@link ApplicationHandler Jersey application}.
+ */
+public final class NioHttpContainer implements Container {
+
+    private static final Logger LOGGER = Logger.getLogger(NioHttpContainer.class.getName());
+
+    private static final SecurityContext SECURITY_CONTEXT = new SecurityContext() {
+
+        @Override
+        public boolean isUserInRole(String role) {
+            return false;
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+
+        @Override
+        public Principal getUserPrincipal() {
+            return null;
+        }
+
+        @Override
+        public String getAuthenticationScheme() {
+            return null;
+        }
+    };
+
+    private volatile ApplicationHandler appHandler;
+    private final ContainerLifecycleListener containerListener;
+    private final ApplicationReloader<ApplicationHandler> reloader;
+    private final BaseUriCache baseUriCache = new BaseUriCache();
+
+    /**
+     * Creates a new Container connected to given {@link ApplicationHandler Jersey application}.
+     *
+     * @param appHandler Jersey application handler for which the container should be
+     *                   initialized.
+     */
+    NioHttpContainer(ApplicationHandler appHandler) {
+        this.appHandler = appHandler;
+        this.containerListener = ConfigHelper.getContainerLifecycleListener(appHandler);
+        this.reloader = new ApplicationReloader<ApplicationHandler>(appHandler.getConfiguration(),
+                new ApplicationReloader.Target<ApplicationHandler>() {
+
+                    @Override
+                    public ApplicationHandler create(ResourceConfig configuration) {
+                        return new ApplicationHandler(configuration);
+                    }
+
+                    @Override
+                    public ApplicationHandler getApplication() {
+                        return NioHttpContainer.this.appHandler;
+                    }
+
+                    @Override
+                    public ApplicationHandler getApplicationHandler(ApplicationHandler application) {
+                        return application;
+                    }
+
+                    @Override
+                    public void switchTo(ApplicationHandler application) {
+                        NioHttpContainer.this.appHandler = application;
+                        containerListener.onReload(NioHttpContainer.this);
+                    }
+                });
+    }
+
+    /**
+     * Process the request received on the connection. Invoked on a worker thread.
+     *
+     * @param connection connection the request has been received on.
+     * @param request    received request.
+     */
+    void service(HttpConnection connection, HttpRequest request) {
+        final HttpResponseWriter responseWriter = new HttpResponseWriter(connection, request);
+        if (request.getErrorStatus() != 0) {
+            responseWriter.writeErrorResponse(request.getErrorStatus());
+            return;
+        }
+
+        final URI baseUri = getBaseUri(connection, request);
+        URI requestUri = getRequestUri(baseUri, request.getTarget());
+        if (requestUri == null) {
+            responseWriter.writeErrorResponse(400);
+            return;
+        }
+
+        final String basePath = baseUri.getRawPath();
+        final String path = requestUri.getRawPath();
+        if (path == null || !path.startsWith(basePath)) {
+            if (path != null && path.length() == basePath.length() - 1 && basePath.startsWith(path)) {
+                // request path equal to the base path without the trailing '/'
+                requestUri = UriBuilder.fromUri(requestUri).path("/").build();
+            } else {
+                responseWriter.writeErrorResponse(404);
+                return;
+            }
+        }
+
+        try {
+            final ContainerRequest requestContext = new ContainerRequest(baseUri, requestUri, request.getMethod(),
+                    SECURITY_CONTEXT, new MapPropertiesDelegate());
+            requestContext.setEntityStream(new ByteArrayInputStream(request.getEntity()));
+            final MultivaluedMap<String, String> headers = requestContext.getHeaders();
+            for (int i = 0; i < request.getHeaderCount(); i++) {
+                headers.add(request.getHeaderName(i), request.getHeaderValue(i));
+            }
+            requestContext.setWriter(responseWriter);
+            reloader.record(requestContext);
+
+            final ApplicationReloader.Reference<ApplicationHandler> application = reloader.acquire();
+            try {
+                application.get().handle(requestContext);
+            } finally {
+                application.release();
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.SEVERE, LocalizationMessages.ERROR_REQUEST_PROCESSING(), ex);
+            responseWriter.abort();
+            return;
+        }
+        responseWriter.afterHandle();
+    }
+
+    private URI getBaseUri(HttpConnection connection, HttpRequest request) {
+        final String basePath = connection.getServer().getBasePath();
+        final String host = request.getHeader("Host");
+        try {
+            if (host != null) {
+                final String baseUriString = "http://" + host + basePath;
+                final URI baseUri = baseUriCache.get(baseUriString);
+                return baseUri != null ? baseUri : baseUriCache.put(baseUriString, new URI(baseUriString));
+            }
+        } catch (URISyntaxException ex) {
+            // invalid Host header - use the local address
+        }
+
+        final InetSocketAddress address = connection.getLocalAddress();
+        final String baseUriKey = "http://" + address.getAddress().getHostAddress() + ':' + address.getPort() + basePath;
+        final URI baseUri = baseUriCache.get(baseUriKey);
+        if (baseUri != null) {
+            return baseUri;
+        }
+        try {
+            return baseUriCache.put(baseUriKey, new URI("http", null, address.getHostName(), address.getPort(),
+                    basePath, null, null));
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private static URI getRequestUri(URI baseUri, String target) {
+        final boolean absolute = !target.startsWith("/");
+        if (absolute && !target.regionMatches(true, 0, "http://", 0, 7)) {
+            return null;
+        }
+
+        try {
+            return new URI(absolute ? target : baseUri.getScheme() + "://" + baseUri.getRawAuthority() + target);
+        } catch (URISyntaxException ex) {
+            // characters that need to be encoded - fall back to the URI builder
+        }
+
+        if (absolute) {
+            return null;
+        }
+        final int query = target.indexOf('?');
+        try {
+            return UriBuilder.fromUri(baseUri)
+                    .replacePath(query < 0 ? target : target.substring(0, query))
+                    .replaceQuery(query < 0 ? null : target.substring(query + 1))
+                    .build();
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public ResourceConfig getConfiguration() {
+        return appHandler.getConfiguration();
+    }
+
+    @Override
+    public void reload() {
+        reload(getConfiguration());
+    }
+
+    @Override
+    public void reload(ResourceConfig configuration) {
+        reloader.reload(configuration);
+    }
+
+    /**
+     * Notify the container lifecycle listeners the container has been started.
+     */
+    void onStartup() {
+        containerListener.onStartup(this);
+    }
+
+    /**
+     * Notify the container lifecycle listeners the container has been shut down.
+     */
+    void onShutdown() {
+        containerListener.onShutdown(this);
+    }
+}
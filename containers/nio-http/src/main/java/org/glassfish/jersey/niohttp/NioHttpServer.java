@@ -0,0 +1,284 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.jersey.internal.util.PropertiesHelper;
+import org.glassfish.jersey.niohttp.internal.LocalizationMessages;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Minimal embedded HTTP/1.1 server based on non-blocking I/O, serving a single
+ * {@link NioHttpContainer Jersey container}.
+ * <p>
+ * The server accepts connections and reads requests on a configurable number of
+ * event loop threads. Complete requests are processed by a fixed pool of worker threads.
+ * Persistent connections and request pipelining are supported. The server is configured
+ * using the {@link NioHttpServerProperties properties} of the deployed application.
+ * </p>
+ * <p>
+ * Use {@link NioHttpServerFactory} to create and start the server.
+ * </p>
+ */
+public final class NioHttpServer {
+
+    private static final Logger LOGGER = Logger.getLogger(NioHttpServer.class.getName());
+
+    private final URI uri;
+    private final String basePath;
+    private final NioHttpContainer container;
+
+    private final int eventLoopCount;
+    private final int workerCount;
+    private final int bufferSize;
+    private final int maxEntitySize;
+    private final int maxPipelinedRequests;
+    private final int idleTimeout;
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private Thread[] loopThreads;
+    private ExecutorService workers;
+    private ScheduledExecutorService scheduler;
+    private int nextLoop;
+    private volatile boolean running;
+
+    /**
+     * Create new server.
+     *
+     * @param uri       URI the application is deployed at.
+     * @param container Jersey container.
+     */
+    NioHttpServer(URI uri, NioHttpContainer container) {
+        this.uri = uri;
+        this.container = container;
+
+        final String path = uri.getPath();
+        this.basePath = path.endsWith("/") ? path : path + "/";
+
+        final Map<String, Object> properties = container.getConfiguration().getProperties();
+        this.eventLoopCount = Math.max(1, PropertiesHelper.getValue(properties, NioHttpServerProperties.EVENT_LOOP_COUNT,
+                Runtime.getRuntime().availableProcessors()));
+        this.workerCount = Math.max(1, PropertiesHelper.getValue(properties, NioHttpServerProperties.WORKER_COUNT,
+                NioHttpServerProperties.DEFAULT_WORKER_COUNT));
+        this.bufferSize = Math.max(1024, PropertiesHelper.getValue(properties, NioHttpServerProperties.BUFFER_SIZE,
+                NioHttpServerProperties.DEFAULT_BUFFER_SIZE));
+        this.maxEntitySize = Math.max(0, PropertiesHelper.getValue(properties, NioHttpServerProperties.MAX_ENTITY_SIZE,
+                NioHttpServerProperties.DEFAULT_MAX_ENTITY_SIZE));
+        this.maxPipelinedRequests = Math.max(1, PropertiesHelper.getValue(properties,
+                NioHttpServerProperties.MAX_PIPELINED_REQUESTS, NioHttpServerProperties.DEFAULT_MAX_PIPELINED_REQUESTS));
+        this.idleTimeout = Math.max(1, PropertiesHelper.getValue(properties, NioHttpServerProperties.IDLE_TIMEOUT,
+                NioHttpServerProperties.DEFAULT_IDLE_TIMEOUT));
+    }
+
+    /**
+     * Start the server.
+     *
+     * @throws IOException in case the server socket cannot be bound.
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+
+        final int port = (uri.getPort() == -1) ? 80 : uri.getPort();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+
+            loops = new EventLoop[eventLoopCount];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop(this);
+            }
+        } catch (IOException ex) {
+            serverChannel.close();
+            throw ex;
+        }
+
+        workers = Executors.newFixedThreadPool(workerCount,
+                new ThreadFactoryBuilder().setNameFormat("jersey-nio-http-worker-%d").build());
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("jersey-nio-http-timer-%d").setDaemon(true).build());
+
+        running = true;
+        loopThreads = new Thread[loops.length];
+        for (int i = 0; i < loops.length; i++) {
+            loopThreads[i] = new Thread(loops[i], "jersey-nio-http-loop-" + i);
+            loopThreads[i].start();
+        }
+        loops[0].listen(serverChannel);
+
+        container.onStartup();
+    }
+
+    /**
+     * Stop the server. Closes all the connections and waits for the worker threads to finish
+     * processing the requests.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        try {
+            serverChannel.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, LocalizationMessages.ERROR_CLOSING_CONNECTION(), ex);
+        }
+        for (EventLoop loop : loops) {
+            loop.stop();
+        }
+
+        workers.shutdown();
+        scheduler.shutdownNow();
+        try {
+            for (Thread loopThread : loopThreads) {
+                loopThread.join(idleTimeout);
+            }
+            workers.awaitTermination(idleTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        container.onShutdown();
+    }
+
+    /**
+     * Check whether the server is running.
+     *
+     * @return {@code true} if the server has been started and not stopped yet.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get the port the server is listening on.
+     *
+     * @return local port of the server socket or {@code -1} if the server is not running.
+     */
+    public int getPort() {
+        final ServerSocketChannel channel = serverChannel;
+        return running ? channel.socket().getLocalPort() : -1;
+    }
+
+    /**
+     * Get the URI the application is deployed at.
+     *
+     * @return application URI.
+     */
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * Get the Jersey container served by the server.
+     *
+     * @return Jersey container.
+     */
+    public NioHttpContainer getContainer() {
+        return container;
+    }
+
+    /**
+     * Accept pending connections. Invoked on the event loop thread listening on the server channel.
+     *
+     * @param channel server channel.
+     */
+    void accept(ServerSocketChannel channel) {
+        try {
+            SocketChannel socketChannel;
+            while ((socketChannel = channel.accept()) != null) {
+                socketChannel.configureBlocking(false);
+                socketChannel.socket().setTcpNoDelay(true);
+                loops[nextLoop].register(socketChannel);
+                nextLoop = (nextLoop + 1) % loops.length;
+            }
+        } catch (IOException ex) {
+            if (running) {
+                LOGGER.log(Level.WARNING, LocalizationMessages.ERROR_EVENT_LOOP(), ex);
+            }
+        }
+    }
+
+    String getBasePath() {
+        return basePath;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    int getMaxEntitySize() {
+        return maxEntitySize;
+    }
+
+    int getMaxPipelinedRequests() {
+        return maxPipelinedRequests;
+    }
+
+    int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    ExecutorService getWorkers() {
+        return workers;
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+}
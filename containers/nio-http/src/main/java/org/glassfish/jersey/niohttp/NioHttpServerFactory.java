@@ -0,0 +1,126 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.glassfish.jersey.internal.ProcessingException;
+import org.glassfish.jersey.niohttp.internal.LocalizationMessages;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+
+/**
+ * Factory for creating {@link NioHttpServer NIO HTTP server} instances adapted to
+ * the {@link ApplicationHandler}.
+ */
+public final class NioHttpServerFactory {
+
+    /**
+     * Creates and starts the {@link NioHttpServer NIO HTTP server} with the Jersey
+     * application deployed on the given {@link URI}.
+     *
+     * <p>The returned {@link NioHttpServer NIO HTTP server} is started.</p>
+     *
+     * @param uri The {@link URI uri} on which the Jersey application will be deployed.
+     * @param configuration The Jersey server-side application configuration.
+     * @return Newly created {@link NioHttpServer}.
+     * @throws ProcessingException Thrown when problems during server creation
+     * occurs.
+     */
+    public static NioHttpServer createHttpServer(final URI uri, final ResourceConfig configuration)
+            throws ProcessingException {
+        return createHttpServer(uri, ContainerFactory.createContainer(NioHttpContainer.class, configuration));
+    }
+
+    /**
+     * Creates and starts the {@link NioHttpServer NIO HTTP server} with the
+     * Jersey application deployed on the given {@link URI}.
+     *
+     * <p>The returned {@link NioHttpServer NIO HTTP server} is started.</p>
+     *
+     * @param uri The {@link URI uri} on which the Jersey application will be deployed.
+     * @param appHandler The Jersey server-side application handler.
+     * @return Newly created {@link NioHttpServer}.
+     * @throws ProcessingException Thrown when problems during server creation
+     * occurs.
+     */
+    public static NioHttpServer createHttpServer(final URI uri, final ApplicationHandler appHandler)
+            throws ProcessingException {
+        return createHttpServer(uri, new NioHttpContainer(appHandler));
+    }
+
+    private static NioHttpServer createHttpServer(final URI uri, final NioHttpContainer container)
+            throws ProcessingException {
+
+        if (uri == null) {
+            throw new IllegalArgumentException(LocalizationMessages.ERROR_CONTAINER_URI_NULL());
+        }
+
+        final String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme)) {
+            throw new IllegalArgumentException(LocalizationMessages.ERROR_CONTAINER_URI_SCHEME_UNKNOWN(uri));
+        }
+
+        final String path = uri.getPath();
+        if (path == null) {
+            throw new IllegalArgumentException(LocalizationMessages.ERROR_CONTAINER_URI_PATH_NULL(uri));
+        } else if (path.length() == 0) {
+            throw new IllegalArgumentException(LocalizationMessages.ERROR_CONTAINER_URI_PATH_EMPTY(uri));
+        } else if (path.charAt(0) != '/') {
+            throw new IllegalArgumentException(LocalizationMessages.ERROR_CONTAINER_URI_PATH_START(uri));
+        }
+
+        final NioHttpServer server = new NioHttpServer(uri, container);
+        try {
+            server.start();
+        } catch (IOException ioe) {
+            throw new ProcessingException(LocalizationMessages.ERROR_CONTAINER_EXCEPTION_IO(), ioe);
+        }
+        return server;
+    }
+
+    /**
+     * Prevents instantiation.
+     */
+    private NioHttpServerFactory() {
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+/**
+ * NIO HTTP server configuration properties.
+ * <p>
+ * The properties are read from the {@link org.glassfish.jersey.server.ResourceConfig configuration}
+ * of the deployed application when the {@link NioHttpServer server} is created.
+ * </p>
+ */
+public final class NioHttpServerProperties {
+
+    /**
+     * Number of event loop threads accepting connections and reading requests.
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is the number of available processors.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String EVENT_LOOP_COUNT = "jersey.config.niohttp.eventLoops";
+
+    /**
+     * Number of worker threads processing the requests in the Jersey application.
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_WORKER_COUNT}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String WORKER_COUNT = "jersey.config.niohttp.workers";
+
+    /**
+     * Default number of worker threads.
+     */
+    public static final int DEFAULT_WORKER_COUNT = 16;
+
+    /**
+     * Size (in bytes) of the per-connection direct buffers used to read requests and write responses.
+     * <p>
+     * The request line and headers of a single request must fit into the buffer, otherwise the request
+     * is rejected with the {@code 431 Request Header Fields Too Large} response.
+     * </p>
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_BUFFER_SIZE}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String BUFFER_SIZE = "jersey.config.niohttp.bufferSize";
+
+    /**
+     * Default connection buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Maximum size (in bytes) of a request entity. Requests with larger entities are rejected with
+     * the {@code 413 Request Entity Too Large} response.
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_MAX_ENTITY_SIZE}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String MAX_ENTITY_SIZE = "jersey.config.niohttp.maxEntitySize";
+
+    /**
+     * Default maximum request entity size.
+     */
+    public static final int DEFAULT_MAX_ENTITY_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Maximum number of pipelined requests read ahead on a single connection. Once reached, the
+     * server stops reading from the connection until the responses to the queued requests are written.
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_MAX_PIPELINED_REQUESTS}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String MAX_PIPELINED_REQUESTS = "jersey.config.niohttp.maxPipelinedRequests";
+
+    /**
+     * Default maximum number of pipelined requests per connection.
+     */
+    public static final int DEFAULT_MAX_PIPELINED_REQUESTS = 16;
+
+    /**
+     * Time (in milliseconds) after which an idle persistent connection is closed. The value is also used
+     * as the timeout for writing the response to a client that does not read.
+     * <p>
+     * The type of this property must be an integer (or a String representing an integer).
+     * </p>
+     * <p>
+     * The default value is {@value #DEFAULT_IDLE_TIMEOUT} milliseconds.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String IDLE_TIMEOUT = "jersey.config.niohttp.idleTimeout";
+
+    /**
+     * Default idle connection timeout.
+     */
+    public static final int DEFAULT_IDLE_TIMEOUT = 30000;
+
+    private NioHttpServerProperties() {
+        // prevents instantiation
+    }
+}
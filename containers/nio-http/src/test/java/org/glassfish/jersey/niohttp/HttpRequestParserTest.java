@@ -0,0 +1,207 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.niohttp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link HttpRequestParser} unit tests.
+ */
+public class HttpRequestParserTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final HttpRequestParser parser = new HttpRequestParser(1024);
+    private final ByteBuffer buffer = ByteBuffer.allocate(128);
+
+    /**
+     * Append the data to the read buffer the way the connection does and parse all the complete requests.
+     * Like a channel read, only the data that fits into the buffer is appended.
+     */
+    private List<HttpRequest> receive(String data) throws HttpRequestParser.HttpParseException {
+        final byte[] bytes = data.getBytes(ASCII);
+        buffer.put(bytes, 0, Math.min(bytes.length, buffer.remaining()));
+        buffer.flip();
+        final List<HttpRequest> requests = new ArrayList<HttpRequest>();
+        try {
+            HttpRequest request;
+            while ((request = parser.parse(buffer)) != null) {
+                requests.add(request);
+            }
+        } finally {
+            buffer.compact();
+        }
+        return requests;
+    }
+
+    private static String entity(HttpRequest request) {
+        return new String(request.getEntity(), ASCII);
+    }
+
+    @Test
+    public void testSplitHead() throws Exception {
+        assertTrue(receive("GET /split HT").isEmpty());
+        assertTrue(receive("TP/1.1\r\nHost: local").isEmpty());
+        assertTrue(receive("host\r\n\r").isEmpty());
+        final List<HttpRequest> requests = receive("\n");
+
+        assertEquals(1, requests.size());
+        final HttpRequest request = requests.get(0);
+        assertEquals("GET", request.getMethod());
+        assertEquals("/split", request.getTarget());
+        assertTrue(request.isHttp11());
+        assertEquals("localhost", request.getHeader("Host"));
+        assertEquals(0, request.getEntity().length);
+    }
+
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        final List<HttpRequest> requests = receive("GET /a HTTP/1.1\r\n\r\n"
+                + "POST /b HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello"
+                + "GET /c HTTP/1.0\r\n\r\n");
+
+        assertEquals(3, requests.size());
+        assertEquals("/a", requests.get(0).getTarget());
+        assertEquals("/b", requests.get(1).getTarget());
+        assertEquals("hello", entity(requests.get(1)));
+        assertEquals("/c", requests.get(2).getTarget());
+        assertFalse(requests.get(2).isHttp11());
+        assertFalse(buffer.position() > 0);
+    }
+
+    @Test
+    public void testPipelinedRequestSplitAcrossReads() throws Exception {
+        List<HttpRequest> requests = receive("GET /a HTTP/1.1\r\n\r\nPOST /b HTTP/1.1\r\nContent-Le");
+        assertEquals(1, requests.size());
+        assertEquals("/a", requests.get(0).getTarget());
+
+        assertTrue(receive("ngth: 6\r\n\r\nfoo").isEmpty());
+        requests = receive("bar");
+        assertEquals(1, requests.size());
+        assertEquals("/b", requests.get(0).getTarget());
+        assertEquals("foobar", entity(requests.get(0)));
+    }
+
+    @Test
+    public void testFixedEntityGrowsAsDataArrives() throws Exception {
+        assertTrue(receive("PUT /fixed HTTP/1.1\r\nContent-Length: 1000\r\n\r\n").isEmpty());
+
+        final StringBuilder expected = new StringBuilder();
+        List<HttpRequest> requests = null;
+        for (int i = 0; i < 10; i++) {
+            final String part = String.format("%0100d", i);
+            expected.append(part);
+            requests = receive(part);
+            assertEquals(i == 9 ? 1 : 0, requests.size());
+        }
+        assertEquals(expected.toString(), entity(requests.get(0)));
+        assertEquals(1000, requests.get(0).getEntity().length);
+    }
+
+    @Test
+    public void testChunkedEntity() throws Exception {
+        assertTrue(receive("POST /chunked HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhel").isEmpty());
+        assertTrue(receive("lo\r\n6;ext=1\r\n wor").isEmpty());
+        assertTrue(receive("ld\r\n0\r\nTrailer: value\r\n").isEmpty());
+        final List<HttpRequest> requests = receive("\r\nGET /next HTTP/1.1\r\n\r\n");
+
+        assertEquals(2, requests.size());
+        assertEquals("hello world", entity(requests.get(0)));
+        assertEquals("/next", requests.get(1).getTarget());
+    }
+
+    @Test
+    public void testOversizedHead() throws Exception {
+        receive("GET /oversized HTTP/1.1\r\n");
+        try {
+            for (int i = 0; i < 10; i++) {
+                receive("X-Header-" + i + ": value\r\n");
+            }
+            fail("Head larger than the read buffer accepted.");
+        } catch (HttpRequestParser.HttpParseException ex) {
+            assertEquals(431, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void testEntityTooLarge() throws Exception {
+        try {
+            receive("POST /large HTTP/1.1\r\nContent-Length: 1025\r\n\r\n");
+            fail("Entity larger than the maximum entity size accepted.");
+        } catch (HttpRequestParser.HttpParseException ex) {
+            assertEquals(413, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void testChunkedEntityTooLarge() throws Exception {
+        receive("POST /large HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n");
+        try {
+            for (int i = 0; i < 20; i++) {
+                receive("40\r\n" + String.format("%064d", i) + "\r\n");
+            }
+            fail("Entity larger than the maximum entity size accepted.");
+        } catch (HttpRequestParser.HttpParseException ex) {
+            assertEquals(413, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void testContinueRequestedOnce() throws Exception {
+        assertTrue(receive("PUT /continue HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 3\r\n\r\n").isEmpty());
+        assertTrue(parser.takeContinueRequest());
+        assertFalse(parser.takeContinueRequest());
+
+        final List<HttpRequest> requests = receive("abc");
+        assertEquals(1, requests.size());
+        assertTrue(requests.get(0).isExpectContinue());
+        assertEquals("abc", entity(requests.get(0)));
+    }
+}
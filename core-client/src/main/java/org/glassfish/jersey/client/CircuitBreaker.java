@@ -0,0 +1,220 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host client circuit breaker.
+ * <p>
+ * The circuit of a host (identified by the request URI scheme and authority) opens after the
+ * configured number of consecutive failures, i.e. I/O errors or {@code 5xx} responses. While the
+ * circuit is open, requests to the host fail immediately with a {@link javax.ws.rs.client.ClientException}
+ * without reaching the connector. Once the open time elapses, a single trial request is let through;
+ * the circuit closes if the trial succeeds and opens again if it fails. Should the outcome of the trial
+ * not be reported within another open time period, the next request is let through as a new trial.
+ * </p>
+ * <p>
+ * The circuit breaker is enabled by setting the {@link ClientProperties#CIRCUIT_BREAKER} property.
+ * A circuit breaker instance is thread-safe and keeps the state of all circuits, so it should be shared
+ * by all clients that talk to the same hosts.
+ * </p>
+ */
+public final class CircuitBreaker {
+
+    private static enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Circuit state of a single host.
+     */
+    private final class Circuit {
+
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private long trialStartedAt;
+
+        synchronized boolean allow(long now) {
+            switch (state) {
+                case OPEN:
+                    if (now - openedAt < openTime) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    trialStartedAt = now;
+                    return true;
+                case HALF_OPEN:
+                    if (now - trialStartedAt < openTime) {
+                        // trial request in progress
+                        return false;
+                    }
+                    // the outcome of the trial has been lost, e.g. the trial has been cancelled
+                    trialStartedAt = now;
+                    return true;
+                default:
+                    return true;
+            }
+        }
+
+        synchronized void success() {
+            state = State.CLOSED;
+            failures = 0;
+        }
+
+        synchronized void failure(long now) {
+            if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    opened.incrementAndGet();
+                }
+                state = State.OPEN;
+                openedAt = now;
+                failures = 0;
+            }
+        }
+
+        synchronized boolean isOpen() {
+            return state != State.CLOSED;
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openTime;
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    private final AtomicLong opened = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    /**
+     * Create new circuit breaker.
+     *
+     * @param failureThreshold number of consecutive failures that opens the circuit.
+     * @param openTime         time the circuit stays open before a trial request is let through.
+     * @param unit             open time unit.
+     */
+    public CircuitBreaker(int failureThreshold, long openTime, TimeUnit unit) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be positive.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openTime = unit.toNanos(openTime);
+    }
+
+    /**
+     * Get the number of hosts with a circuit that is currently not closed.
+     *
+     * @return number of open circuits.
+     */
+    public int getOpenCircuits() {
+        int count = 0;
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.isOpen()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check if the circuit of the host of the given URI is currently not closed.
+     *
+     * @param uri request URI.
+     * @return {@code true} if the circuit is open.
+     */
+    public boolean isOpen(URI uri) {
+        final Circuit circuit = circuits.get(host(uri));
+        return circuit != null && circuit.isOpen();
+    }
+
+    /**
+     * Get the number of times a circuit has been opened.
+     *
+     * @return number of circuit openings.
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    /**
+     * Get the number of requests rejected because of an open circuit.
+     *
+     * @return number of rejected requests.
+     */
+    public long getRejectedRequests() {
+        return rejected.get();
+    }
+
+    boolean allow(String host) {
+        if (circuit(host).allow(System.nanoTime())) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    void onSuccess(String host) {
+        circuit(host).success();
+    }
+
+    void onFailure(String host) {
+        circuit(host).failure(System.nanoTime());
+    }
+
+    static String host(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    private Circuit circuit(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit();
+            final Circuit existing = circuits.putIfAbsent(host, circuit);
+            if (existing != null) {
+                circuit = existing;
+            }
+        }
+        return circuit;
+    }
+}
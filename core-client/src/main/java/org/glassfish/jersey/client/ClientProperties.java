@@ -175,6 +175,42 @@ public final class ClientProperties {
     public static final String USE_ENCODING =
             "jersey.config.client.useEncoding";
 
+    /**
+     * Retry policy applied to the client requests.
+     *
+     * <p>The value MUST be an instance of {@link RetryPolicy}.</p>
+     * <p>The property may be set on the {@link ClientConfig client configuration} as well as on
+     * the configuration of an individual {@link WebTarget web target}.</p>
+     * <p>A default value is not set, i.e. each request is sent only once.</p>
+     * <p>The name of the configuration property is <code>{@value}</code>.</p>
+     */
+    public static final String RETRY_POLICY =
+            "jersey.config.client.retryPolicy";
+
+    /**
+     * Hedging policy applied to the client requests.
+     *
+     * <p>The value MUST be an instance of {@link HedgingPolicy}.</p>
+     * <p>The property may be set on the {@link ClientConfig client configuration} as well as on
+     * the configuration of an individual {@link WebTarget web target}.</p>
+     * <p>A default value is not set, i.e. requests are not hedged.</p>
+     * <p>The name of the configuration property is <code>{@value}</code>.</p>
+     */
+    public static final String HEDGING_POLICY =
+            "jersey.config.client.hedgingPolicy";
+
+    /**
+     * Per-host circuit breaker applied to the client requests.
+     *
+     * <p>The value MUST be an instance of {@link CircuitBreaker}.</p>
+     * <p>The property may be set on the {@link ClientConfig client configuration} as well as on
+     * the configuration of an individual {@link WebTarget web target}.</p>
+     * <p>A default value is not set.</p>
+     * <p>The name of the configuration property is <code>{@value}</code>.</p>
+     */
+    public static final String CIRCUIT_BREAKER =
+            "jersey.config.client.circuitBreaker";
+
     private ClientProperties() {
         // prevents instantiation
     }
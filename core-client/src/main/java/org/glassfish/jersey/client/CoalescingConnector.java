@@ -0,0 +1,400 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.HeadersFactory;
+import org.glassfish.jersey.message.internal.ReaderWriter;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Client transport connector decorator that coalesces identical concurrent requests
+ * into a single invocation of the decorated connector ("single-flight").
+ * <p>
+ * Only safe requests ({@code GET}, {@code HEAD} and {@code OPTIONS}) without an entity
+ * are coalesced. Whenever such a request is sent while another request with the same
+ * {@link #defaultKeyFunction() coalescing key} is still in flight, the new request does
+ * not reach the decorated connector. Instead it waits for the in-flight request to complete
+ * and receives its own copy of the buffered response (status, headers and entity data).
+ * Both synchronous and asynchronous invocations take part in the coalescing. All other
+ * requests are passed directly to the decorated connector.
+ * </p>
+ * <p>
+ * The connector is enabled by decorating the transport connector in the client configuration:
+ * <pre>
+ * ClientConfig config = new ClientConfig().connector(new CoalescingConnector(new HttpUrlConnector()));
+ * </pre>
+ * </p>
+ * <p>
+ * Note that coalesced responses are fully buffered in memory, so the connector should not be used
+ * for requests that are expected to return large or streamed response entities.
+ * </p>
+ */
+public class CoalescingConnector implements Connector {
+
+    private static final Function<ClientRequest, Object> DEFAULT_KEY_FUNCTION = keyFunction(
+            HttpHeaders.ACCEPT,
+            HttpHeaders.ACCEPT_CHARSET,
+            HttpHeaders.ACCEPT_ENCODING,
+            HttpHeaders.ACCEPT_LANGUAGE,
+            HttpHeaders.AUTHORIZATION,
+            HttpHeaders.COOKIE);
+
+    private final Connector connector;
+    private final Function<ClientRequest, ?> keyFunction;
+    private final ConcurrentMap<Object, SettableFuture<BufferedResponse>> inFlight =
+            new ConcurrentHashMap<Object, SettableFuture<BufferedResponse>>();
+
+    private final AtomicLong connectorRequests = new AtomicLong(0);
+    private final AtomicLong coalescedRequests = new AtomicLong(0);
+
+    /**
+     * Create new coalescing connector decorator that uses the {@link #defaultKeyFunction()
+     * default coalescing key function}.
+     *
+     * @param connector decorated client transport connector.
+     */
+    public CoalescingConnector(final Connector connector) {
+        this(connector, DEFAULT_KEY_FUNCTION);
+    }
+
+    /**
+     * Create new coalescing connector decorator.
+     *
+     * @param connector   decorated client transport connector.
+     * @param keyFunction function computing the coalescing key of a request. Requests with
+     *                    {@link Object#equals(Object) equal} keys are considered identical.
+     *                    A {@code null} key excludes the request from coalescing.
+     */
+    public CoalescingConnector(final Connector connector, final Function<ClientRequest, ?> keyFunction) {
+        if (connector == null) {
+            throw new NullPointerException("Decorated connector must not be 'null'.");
+        }
+        if (keyFunction == null) {
+            throw new NullPointerException("Coalescing key function must not be 'null'.");
+        }
+        this.connector = connector;
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Get the default coalescing key function.
+     * <p>
+     * The default key consists of the request method, request URI and the values of the
+     * {@code Accept}, {@code Accept-Charset}, {@code Accept-Encoding}, {@code Accept-Language},
+     * {@code Authorization} and {@code Cookie} request headers.
+     * </p>
+     *
+     * @return default coalescing key function.
+     */
+    public static Function<ClientRequest, Object> defaultKeyFunction() {
+        return DEFAULT_KEY_FUNCTION;
+    }
+
+    /**
+     * Create a coalescing key function that computes the key from the request method, request URI
+     * and values of the given request headers.
+     *
+     * @param varyHeaders names of the request headers that may influence the response representation.
+     * @return new coalescing key function.
+     */
+    public static Function<ClientRequest, Object> keyFunction(final String... varyHeaders) {
+        final String[] headers = varyHeaders.clone();
+        return new Function<ClientRequest, Object>() {
+
+            @Override
+            public Object apply(final ClientRequest request) {
+                final Object[] key = new Object[headers.length + 2];
+                key[0] = request.getMethod();
+                key[1] = request.getUri();
+                for (int i = 0; i < headers.length; i++) {
+                    key[i + 2] = request.getHeaderString(headers[i]);
+                }
+                return Arrays.asList(key);
+            }
+        };
+    }
+
+    /**
+     * Get the number of requests actually sent using the decorated connector.
+     *
+     * @return number of requests passed to the decorated connector.
+     */
+    public long getConnectorRequestCount() {
+        return connectorRequests.get();
+    }
+
+    /**
+     * Get the number of requests that have been served with a response of another identical
+     * in-flight request instead of being sent using the decorated connector.
+     *
+     * @return number of coalesced requests.
+     */
+    public long getCoalescedRequestCount() {
+        return coalescedRequests.get();
+    }
+
+    /**
+     * Get the number of distinct coalesced requests that are currently in flight.
+     *
+     * @return number of distinct in-flight coalesced requests.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public ClientResponse apply(final ClientRequest request) throws ClientException {
+        final Object key = coalescingKey(request);
+        if (key == null) {
+            connectorRequests.incrementAndGet();
+            return connector.apply(request);
+        }
+
+        final SettableFuture<BufferedResponse> call = SettableFuture.create();
+        final SettableFuture<BufferedResponse> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalescedRequests.incrementAndGet();
+            return await(existing).toResponse(request);
+        }
+
+        connectorRequests.incrementAndGet();
+        final BufferedResponse buffered;
+        try {
+            buffered = BufferedResponse.of(connector.apply(request));
+        } catch (RuntimeException ex) {
+            inFlight.remove(key, call);
+            call.setException(ex);
+            throw ex;
+        } catch (Error error) {
+            inFlight.remove(key, call);
+            call.setException(error);
+            throw error;
+        }
+        inFlight.remove(key, call);
+        call.set(buffered);
+
+        return buffered.toResponse(request);
+    }
+
+    @Override
+    public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+        final Object key = coalescingKey(request);
+        if (key == null) {
+            connectorRequests.incrementAndGet();
+            return connector.apply(request, callback);
+        }
+
+        final SettableFuture<BufferedResponse> call = SettableFuture.create();
+        final SettableFuture<BufferedResponse> existing = inFlight.putIfAbsent(key, call);
+        // each caller gets its own future, so that cancelling it does not affect the other coalesced callers
+        final SettableFuture<ClientResponse> result = SettableFuture.create();
+        if (existing != null) {
+            coalescedRequests.incrementAndGet();
+            Futures.addCallback(existing, new FutureCallback<BufferedResponse>() {
+
+                @Override
+                public void onSuccess(final BufferedResponse buffered) {
+                    complete(result, buffered.toResponse(request), callback);
+                }
+
+                @Override
+                public void onFailure(final Throwable failure) {
+                    fail(result, failure, callback);
+                }
+            });
+            return result;
+        }
+
+        connectorRequests.incrementAndGet();
+        try {
+            connector.apply(request, new AsyncConnectorCallback() {
+
+                @Override
+                public void response(final ClientResponse response) {
+                    final BufferedResponse buffered;
+                    try {
+                        buffered = BufferedResponse.of(response);
+                    } catch (Throwable t) {
+                        failure(t);
+                        return;
+                    }
+                    inFlight.remove(key, call);
+                    call.set(buffered);
+                    complete(result, buffered.toResponse(request), callback);
+                }
+
+                @Override
+                public void failure(final Throwable failure) {
+                    inFlight.remove(key, call);
+                    call.setException(failure);
+                    fail(result, failure, callback);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(key, call);
+            call.setException(ex);
+            throw ex;
+        }
+        return result;
+    }
+
+    private static void complete(final SettableFuture<ClientResponse> result, final ClientResponse response,
+                                 final AsyncConnectorCallback callback) {
+        if (result.set(response)) {
+            callback.response(response);
+        }
+    }
+
+    private static void fail(final SettableFuture<ClientResponse> result, final Throwable failure,
+                             final AsyncConnectorCallback callback) {
+        if (result.setException(failure)) {
+            callback.failure(failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        connector.close();
+    }
+
+    private Object coalescingKey(final ClientRequest request) {
+        final String method = request.getMethod();
+        if (request.hasEntity()
+                || !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method))) {
+            return null;
+        }
+        return keyFunction.apply(request);
+    }
+
+    private static BufferedResponse await(final Future<BufferedResponse> call) throws ClientException {
+        try {
+            return call.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof ClientException) {
+                throw (ClientException) cause;
+            }
+            throw new ClientException(cause);
+        }
+    }
+
+    /**
+     * Immutable, fully buffered snapshot of a response shared among the coalesced requests.
+     */
+    private static class BufferedResponse {
+
+        private final Response.StatusType status;
+        private final MultivaluedMap<String, String> headers;
+        private final byte[] entity;
+
+        private BufferedResponse(final Response.StatusType status,
+                                 final MultivaluedMap<String, String> headers,
+                                 final byte[] entity) {
+            this.status = status;
+            this.headers = headers;
+            this.entity = entity;
+        }
+
+        static BufferedResponse of(final ClientResponse response) throws ClientException {
+            final MultivaluedMap<String, String> headers = HeadersFactory.createInbound();
+            copyHeaders(response.getHeaders(), headers);
+
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final InputStream entityStream = response.getEntityStream();
+            if (entityStream != null) {
+                try {
+                    try {
+                        ReaderWriter.writeTo(entityStream, baos);
+                    } finally {
+                        entityStream.close();
+                    }
+                } catch (IOException ex) {
+                    throw new ClientException(ex);
+                }
+            }
+
+            return new BufferedResponse(response.getStatusInfo(), headers, baos.toByteArray());
+        }
+
+        /**
+         * Copy the headers including the value lists, so that no value list is shared between responses.
+         */
+        private static void copyHeaders(final MultivaluedMap<String, String> from, final MultivaluedMap<String, String> to) {
+            for (Map.Entry<String, List<String>> header : from.entrySet()) {
+                to.put(header.getKey(), new ArrayList<String>(header.getValue()));
+            }
+        }
+
+        ClientResponse toResponse(final ClientRequest request) {
+            final ClientResponse response = new ClientResponse(status, request);
+            copyHeaders(headers, response.getHeaders());
+            response.setEntityStream(new ByteArrayInputStream(entity));
+            return response;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client request hedging policy.
+ * <p>
+ * When a request using a safe method ({@code GET}, {@code HEAD} or {@code OPTIONS}) without an entity
+ * has not completed within the hedging delay, a second, identical request is sent and the response
+ * that arrives first is used; the other one is discarded. The hedging delay is either fixed, or tracks
+ * a latency percentile (typically p95) of the recent requests sent under this policy, so that only
+ * the slowest requests are hedged.
+ * </p>
+ * <p>
+ * The policy is enabled by setting the {@link ClientProperties#HEDGING_POLICY} property. A policy
+ * instance is thread-safe and may be shared by many clients; it also keeps the latency samples
+ * and the hedging statistics.
+ * </p>
+ */
+public final class HedgingPolicy {
+
+    private static final int SAMPLES = 1024;
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final double percentile;
+    private final long minDelay;
+
+    // latency samples, guarded by this
+    private final long[] samples = new long[SAMPLES];
+    private int sampleCount;
+    private int sampleIndex;
+    private volatile long delay;
+
+    private final AtomicLong hedges = new AtomicLong(0);
+    private final AtomicLong hedgeWins = new AtomicLong(0);
+
+    /**
+     * Create new hedging policy with a delay derived from the recent request latencies.
+     *
+     * @param percentile latency percentile used as the hedging delay, in the {@code (0, 100)} range.
+     * @param minDelay   minimal hedging delay. Also used until enough latency samples are collected.
+     * @param unit       minimal delay time unit.
+     */
+    public HedgingPolicy(double percentile, long minDelay, TimeUnit unit) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Percentile must be in the (0, 100) range.");
+        }
+        this.percentile = percentile;
+        this.minDelay = unit.toNanos(minDelay);
+        this.delay = this.minDelay;
+    }
+
+    /**
+     * Create new hedging policy with a fixed delay.
+     *
+     * @param delay hedging delay.
+     * @param unit  delay time unit.
+     * @return new hedging policy.
+     */
+    public static HedgingPolicy fixed(long delay, TimeUnit unit) {
+        return new HedgingPolicy(unit.toNanos(delay));
+    }
+
+    private HedgingPolicy(long fixedDelay) {
+        this.percentile = 0;
+        this.minDelay = fixedDelay;
+        this.delay = fixedDelay;
+    }
+
+    /**
+     * Get the current hedging delay.
+     *
+     * @param unit time unit of the returned value.
+     * @return current hedging delay.
+     */
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of hedged requests sent under this policy.
+     *
+     * @return number of hedged requests.
+     */
+    public long getHedgedRequests() {
+        return hedges.get();
+    }
+
+    /**
+     * Get the number of hedged requests that completed before the original request.
+     *
+     * @return number of hedged requests that won.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    long delay() {
+        return delay;
+    }
+
+    void onHedge() {
+        hedges.incrementAndGet();
+    }
+
+    void onHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * Record a latency sample of a completed request.
+     *
+     * @param latency request latency in nanoseconds.
+     */
+    void record(long latency) {
+        if (percentile == 0) {
+            return;
+        }
+        long[] snapshot = null;
+        int count = 0;
+        synchronized (this) {
+            samples[sampleIndex] = latency;
+            sampleIndex = (sampleIndex + 1) % SAMPLES;
+            if (sampleCount < SAMPLES) {
+                sampleCount++;
+            }
+            if (sampleIndex % RECOMPUTE_INTERVAL == 0) {
+                count = sampleCount;
+                snapshot = Arrays.copyOf(samples, count);
+            }
+        }
+        if (snapshot != null) {
+            Arrays.sort(snapshot);
+            final int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            delay = Math.max(minDelay, snapshot[Math.max(0, index)]);
+        }
+    }
+}
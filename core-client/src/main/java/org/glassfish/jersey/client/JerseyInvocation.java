@@ -84,7 +84,20 @@ public class JerseyInvocation implements javax.ws.rs.client.Invocation {
     private final ClientRequest requestContext;
 
     private JerseyInvocation(Builder builder) {
-        this.requestContext = new ClientRequest(builder.requestContext);
+        this(new ClientRequest(builder.requestContext));
+    }
+
+    /**
+     * Create new invocation of the supplied request context.
+     * <p>
+     * The request context is not copied, i.e. the new invocation takes over
+     * the ownership of the supplied request context instance.
+     * </p>
+     *
+     * @param requestContext request context to be invoked.
+     */
+    JerseyInvocation(ClientRequest requestContext) {
+        this.requestContext = requestContext;
     }
 
     /**
@@ -159,6 +172,26 @@ public class JerseyInvocation implements javax.ws.rs.client.Invocation {
             return new JerseyInvocation(this);
         }
 
+        /**
+         * Prepare a reusable invocation template of the request built so far.
+         * <p>
+         * The returned {@link PreparedInvocation prepared invocation} captures the
+         * current state of the builder (request URI, headers, configuration and the
+         * request method) and may be executed repeatedly and concurrently, binding
+         * only the per-call request entity. Request filters and interceptors still run
+         * on each execution, the selected message body writers and readers are cached.
+         * Subsequent changes made to this builder do not affect the prepared invocation.
+         * </p>
+         *
+         * @param method request method.
+         * @return prepared invocation template.
+         */
+        public PreparedInvocation prepare(String method) {
+            final ClientRequest template = new ClientRequest(requestContext);
+            template.setMethod(method);
+            return new PreparedInvocation(template);
+        }
+
         @Override
         public javax.ws.rs.client.AsyncInvoker async() {
             return new AsyncInvoker(this);
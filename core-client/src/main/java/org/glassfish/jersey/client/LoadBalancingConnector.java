@@ -0,0 +1,664 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Client transport connector decorator that distributes requests sent to a logical service URI
+ * among a pool of service node base URIs.
+ * <p>
+ * Requests with a URI that starts with the configured {@link Builder#serviceUri(java.net.URI) service URI}
+ * are re-targeted to one of the configured {@link Builder#node(java.net.URI) nodes} by replacing the
+ * service URI prefix with the base URI of the selected node. Requests to any other URI are passed to
+ * the decorated connector unchanged. The node is selected using one of the supported load
+ * balancing {@link Strategy strategies}.
+ * </p>
+ * <p>
+ * Nodes that fail repeatedly, either with an I/O error or a {@code 5xx} response, are passively
+ * ejected from the pool for a configurable period of time. Idempotent requests without an entity
+ * that fail on one node are retried on another node, up to the configured maximum number of attempts.
+ * Only successful responses are sampled into the {@link Strategy#LATENCY_EWMA latency moving average};
+ * a failure doubles the latency penalty of the node instead, so that quickly failing nodes do not
+ * appear to be the fastest ones. The penalty is bounded, halves with each successful response
+ * and is cleared when the node is ejected.
+ * </p>
+ * <p>
+ * Example:
+ * <pre>
+ * LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+ *         .serviceUri(URI.create("http://users/"))
+ *         .node(URI.create("http://10.0.0.1:8080/api/"))
+ *         .node(URI.create("http://10.0.0.2:8080/api/"))
+ *         .strategy(LoadBalancingConnector.Strategy.LEAST_OUTSTANDING_REQUESTS)
+ *         .build();
+ * Client client = ClientFactory.newClient(new ClientConfig().connector(connector));
+ * User user = client.target("http://users/").path("42").request().get(User.class);
+ * </pre>
+ * </p>
+ */
+public class LoadBalancingConnector implements Connector {
+
+    /**
+     * Node selection strategy.
+     */
+    public static enum Strategy {
+        /**
+         * Select nodes in a circular order.
+         */
+        ROUND_ROBIN,
+        /**
+         * Select the node with the lowest number of outstanding requests.
+         */
+        LEAST_OUTSTANDING_REQUESTS,
+        /**
+         * Select the node with the lowest exponentially weighted moving average of the response
+         * latency, weighted by the number of outstanding requests.
+         */
+        LATENCY_EWMA
+    }
+
+    /**
+     * Load balancing connector builder.
+     */
+    public static final class Builder {
+
+        private final Connector connector;
+        private final List<URI> nodes = new ArrayList<URI>();
+        private String serviceUri;
+        private Strategy strategy = Strategy.ROUND_ROBIN;
+        private int maxAttempts = 2;
+        private int ejectionThreshold = 5;
+        private long ejectionTime = TimeUnit.SECONDS.toNanos(30);
+        private double ewmaWeight = 0.2;
+
+        private Builder(Connector connector) {
+            if (connector == null) {
+                throw new NullPointerException("Decorated connector must not be 'null'.");
+            }
+            this.connector = connector;
+        }
+
+        /**
+         * Set the logical service URI. Only requests with a URI that starts with the service URI
+         * are load balanced.
+         *
+         * @param serviceUri logical service URI.
+         * @return updated builder.
+         */
+        public Builder serviceUri(URI serviceUri) {
+            this.serviceUri = serviceUri.toString();
+            return this;
+        }
+
+        /**
+         * Add a service node.
+         *
+         * @param baseUri base URI of the service node that replaces the service URI prefix
+         *                in the load balanced requests.
+         * @return updated builder.
+         */
+        public Builder node(URI baseUri) {
+            this.nodes.add(baseUri);
+            return this;
+        }
+
+        /**
+         * Set the node selection strategy. Defaults to {@link Strategy#ROUND_ROBIN}.
+         *
+         * @param strategy node selection strategy.
+         * @return updated builder.
+         */
+        public Builder strategy(Strategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of attempts (including the first one) made for an idempotent
+         * request without an entity. Each attempt is made on a different node if possible.
+         * Defaults to {@code 2}.
+         *
+         * @param maxAttempts maximum number of attempts, must be positive.
+         * @return updated builder.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Maximum number of attempts must be positive.");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Set the outlier ejection policy. A node is ejected from the pool after the given number
+         * of consecutive failures and returns to the pool after the ejection time elapses.
+         * Defaults to 5 consecutive failures and 30 seconds.
+         *
+         * @param consecutiveFailures number of consecutive failures that causes the node ejection.
+         * @param ejectionTime        node ejection time.
+         * @param unit                ejection time unit.
+         * @return updated builder.
+         */
+        public Builder ejection(int consecutiveFailures, long ejectionTime, TimeUnit unit) {
+            if (consecutiveFailures < 1) {
+                throw new IllegalArgumentException("Number of consecutive failures must be positive.");
+            }
+            this.ejectionThreshold = consecutiveFailures;
+            this.ejectionTime = unit.toNanos(ejectionTime);
+            return this;
+        }
+
+        /**
+         * Set the weight of the most recent latency sample in the {@link Strategy#LATENCY_EWMA latency
+         * moving average}. Defaults to {@code 0.2}.
+         *
+         * @param weight sample weight in the {@code (0, 1]} range.
+         * @return updated builder.
+         */
+        public Builder ewmaWeight(double weight) {
+            if (weight <= 0 || weight > 1) {
+                throw new IllegalArgumentException("EWMA sample weight must be in the (0, 1] range.");
+            }
+            this.ewmaWeight = weight;
+            return this;
+        }
+
+        /**
+         * Build the load balancing connector.
+         *
+         * @return new load balancing connector.
+         */
+        public LoadBalancingConnector build() {
+            if (serviceUri == null) {
+                throw new IllegalStateException("Service URI must be set.");
+            }
+            if (nodes.isEmpty()) {
+                throw new IllegalStateException("At least one service node must be set.");
+            }
+            return new LoadBalancingConnector(this);
+        }
+    }
+
+    /**
+     * Service node statistics.
+     */
+    public static final class Node {
+
+        private final String baseUri;
+        private final AtomicInteger outstanding = new AtomicInteger(0);
+        private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+        private volatile long ejectedUntil;
+        private volatile boolean ejected;
+        // latency moving average in nanoseconds, guarded by this
+        private double latency;
+        // failure penalty factor applied to the latency moving average, guarded by this
+        private double penalty = 1;
+
+        private Node(URI baseUri) {
+            this.baseUri = baseUri.toString();
+        }
+
+        /**
+         * Get the base URI of the node.
+         *
+         * @return node base URI.
+         */
+        public URI getUri() {
+            return URI.create(baseUri);
+        }
+
+        /**
+         * Get the number of requests currently being processed by the node.
+         *
+         * @return number of outstanding requests.
+         */
+        public int getOutstandingRequests() {
+            return outstanding.get();
+        }
+
+        /**
+         * Get the exponentially weighted moving average of the node response latency,
+         * multiplied by the current failure penalty of the node.
+         *
+         * @param unit time unit of the returned value.
+         * @return penalized moving average of the response latency.
+         */
+        public synchronized double getLatency(TimeUnit unit) {
+            return latency * penalty / unit.toNanos(1);
+        }
+
+        /**
+         * Check if the node is currently ejected from the pool.
+         *
+         * @return {@code true} if the node is ejected, {@code false} otherwise.
+         */
+        public boolean isEjected() {
+            return isEjected(System.nanoTime());
+        }
+
+        private boolean isEjected(long now) {
+            return ejected && now - ejectedUntil < 0;
+        }
+
+        private synchronized void updateLatency(long sample, double weight) {
+            latency = latency == 0 ? sample : latency + weight * (sample - latency);
+            penalty = Math.max(1, penalty / FAILURE_PENALTY);
+        }
+
+        private synchronized void penalizeLatency(long sample) {
+            if (latency == 0) {
+                latency = sample;
+            }
+            penalty = Math.min(MAX_FAILURE_PENALTY, penalty * FAILURE_PENALTY);
+        }
+
+        private synchronized void resetPenalty() {
+            penalty = 1;
+        }
+
+        private synchronized double load() {
+            return latency * penalty * (outstanding.get() + 1);
+        }
+    }
+
+    /**
+     * Factor by which the latency penalty of a node grows on each failed request and shrinks
+     * on each successful one.
+     */
+    private static final double FAILURE_PENALTY = 2;
+    /**
+     * Upper bound of the latency penalty of a node.
+     */
+    private static final double MAX_FAILURE_PENALTY = 32;
+
+    private final Connector connector;
+    private final String serviceUri;
+    private final List<Node> nodes;
+    private final Strategy strategy;
+    private final int maxAttempts;
+    private final int ejectionThreshold;
+    private final long ejectionTime;
+    private final double ewmaWeight;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    private LoadBalancingConnector(Builder builder) {
+        this.connector = builder.connector;
+        this.serviceUri = builder.serviceUri;
+        final List<Node> nodeList = new ArrayList<Node>(builder.nodes.size());
+        for (URI node : builder.nodes) {
+            nodeList.add(new Node(node));
+        }
+        this.nodes = Collections.unmodifiableList(nodeList);
+        this.strategy = builder.strategy;
+        this.maxAttempts = builder.maxAttempts;
+        this.ejectionThreshold = builder.ejectionThreshold;
+        this.ejectionTime = builder.ejectionTime;
+        this.ewmaWeight = builder.ewmaWeight;
+    }
+
+    /**
+     * Create new load balancing connector builder.
+     *
+     * @param connector decorated client transport connector.
+     * @return new load balancing connector builder.
+     */
+    public static Builder builder(Connector connector) {
+        return new Builder(connector);
+    }
+
+    /**
+     * Get the statistics of the service nodes.
+     *
+     * @return service nodes.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public ClientResponse apply(final ClientRequest request) throws ClientException {
+        final String uri = request.getUri().toString();
+        if (!isServiceUri(uri)) {
+            return connector.apply(request);
+        }
+
+        final String path = uri.substring(serviceUri.length());
+        final int attempts = isRetryable(request) ? maxAttempts : 1;
+        final List<Node> tried = new ArrayList<Node>(attempts);
+        for (int attempt = 1; ; attempt++) {
+            final Node node = select(tried);
+            tried.add(node);
+            request.setUri(URI.create(node.baseUri + path));
+
+            final long start = begin(node);
+            final ClientResponse response;
+            try {
+                response = connector.apply(request);
+            } catch (ClientException ex) {
+                end(node, start, false);
+                if (attempt < attempts && isNodeFailure(ex)) {
+                    continue;
+                }
+                throw ex;
+            } catch (RuntimeException ex) {
+                end(node, start, false);
+                throw ex;
+            }
+
+            final boolean failed = isNodeFailure(response);
+            end(node, start, !failed);
+            if (failed && attempt < attempts) {
+                response.close();
+                continue;
+            }
+            return response;
+        }
+    }
+
+    @Override
+    public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+        final String uri = request.getUri().toString();
+        if (!isServiceUri(uri)) {
+            return connector.apply(request, callback);
+        }
+
+        final String path = uri.substring(serviceUri.length());
+        final int attempts = isRetryable(request) ? maxAttempts : 1;
+        return new AsyncAttempt(request, path, attempts, callback).start();
+    }
+
+    /**
+     * Single asynchronous load balanced request processing state.
+     * <p>
+     * The future returned to the caller completes with the final outcome of the request, regardless
+     * of the number of attempts made; cancelling it cancels the attempt currently in progress and
+     * prevents any further retries.
+     * </p>
+     */
+    private class AsyncAttempt implements AsyncConnectorCallback {
+
+        private final ClientRequest request;
+        private final String path;
+        private final int attempts;
+        private final AsyncConnectorCallback callback;
+        private final List<Node> tried;
+        private final SettableFuture<ClientResponse> result = SettableFuture.create();
+
+        private volatile Node node;
+        private volatile long start;
+        // future of the attempt in progress, guarded by this
+        private Future<?> current;
+        private int attempt;
+
+        private AsyncAttempt(ClientRequest request, String path, int attempts, AsyncConnectorCallback callback) {
+            this.request = request;
+            this.path = path;
+            this.attempts = attempts;
+            this.callback = callback;
+            this.tried = new ArrayList<Node>(attempts);
+        }
+
+        private Future<?> start() {
+            result.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (result.isCancelled()) {
+                        cancelCurrent();
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            submit();
+            return result;
+        }
+
+        private void submit() {
+            final int thisAttempt;
+            synchronized (this) {
+                thisAttempt = ++attempt;
+            }
+            node = select(tried);
+            tried.add(node);
+            request.setUri(URI.create(node.baseUri + path));
+
+            start = begin(node);
+            final Future<?> future;
+            try {
+                future = connector.apply(request, this);
+            } catch (RuntimeException ex) {
+                end(node, start, false);
+                throw ex;
+            }
+            synchronized (this) {
+                // the attempt may have completed and been retried synchronously already
+                if (thisAttempt == attempt) {
+                    current = future;
+                }
+            }
+            if (result.isCancelled()) {
+                cancelCurrent();
+            }
+        }
+
+        private void cancelCurrent() {
+            final Future<?> future;
+            synchronized (this) {
+                future = current;
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public void response(ClientResponse response) {
+            final boolean failed = isNodeFailure(response);
+            end(node, start, !failed);
+            if (failed && tried.size() < attempts && !result.isDone()) {
+                response.close();
+                retry();
+            } else if (result.set(response)) {
+                callback.response(response);
+            } else {
+                response.close();
+            }
+        }
+
+        @Override
+        public void failure(Throwable failure) {
+            end(node, start, false);
+            if (tried.size() < attempts && isNodeFailure(failure) && !result.isDone()) {
+                retry();
+            } else {
+                fail(failure);
+            }
+        }
+
+        private void retry() {
+            try {
+                submit();
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private void fail(Throwable failure) {
+            if (result.setException(failure)) {
+                callback.failure(failure);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        connector.close();
+    }
+
+    private static boolean isRetryable(ClientRequest request) {
+        if (request.hasEntity()) {
+            return false;
+        }
+        final String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)
+                || "PUT".equals(method) || "DELETE".equals(method) || "TRACE".equals(method);
+    }
+
+    private static boolean isNodeFailure(ClientResponse response) {
+        return response.getStatusInfo().getFamily() == Response.Status.Family.SERVER_ERROR;
+    }
+
+    private static boolean isNodeFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the URI starts with the service URI followed by a path, query or the end of the URI,
+     * so that e.g. {@code http://users2/} does not match the {@code http://users} service URI.
+     */
+    private boolean isServiceUri(String uri) {
+        if (!uri.startsWith(serviceUri)) {
+            return false;
+        }
+        if (uri.length() == serviceUri.length() || serviceUri.endsWith("/")) {
+            return true;
+        }
+        final char next = uri.charAt(serviceUri.length());
+        return next == '/' || next == '?';
+    }
+
+    private long begin(Node node) {
+        node.outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    private void end(Node node, long start, boolean success) {
+        final long now = System.nanoTime();
+        node.outstanding.decrementAndGet();
+        if (success) {
+            node.updateLatency(now - start, ewmaWeight);
+            node.consecutiveFailures.set(0);
+            node.ejected = false;
+        } else {
+            node.penalizeLatency(now - start);
+            if (node.consecutiveFailures.incrementAndGet() >= ejectionThreshold) {
+                node.consecutiveFailures.set(0);
+                node.ejectedUntil = now + ejectionTime;
+                node.ejected = true;
+                // the ejection takes over, the node competes with the others normally once it returns
+                node.resetPenalty();
+            }
+        }
+    }
+
+    /**
+     * Select the next node to be used for a request.
+     * <p>
+     * Nodes that have not been tried yet by the request and that are not ejected are preferred.
+     * In case no such node is available, the ejection is ignored and if all nodes have been tried
+     * already, any node may be selected.
+     * </p>
+     *
+     * @param tried nodes already tried by the request.
+     * @return selected node.
+     */
+    private Node select(List<Node> tried) {
+        final long now = System.nanoTime();
+        Node selected = select(tried, now, true);
+        if (selected == null) {
+            selected = select(tried, now, false);
+        }
+        if (selected == null) {
+            selected = select(Collections.<Node>emptyList(), now, false);
+        }
+        return selected;
+    }
+
+    private Node select(List<Node> excluded, long now, boolean skipEjected) {
+        final int size = nodes.size();
+        final int offset = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+
+        Node selected = null;
+        double selectedLoad = 0;
+        for (int i = 0; i < size; i++) {
+            final Node node = nodes.get((offset + i) % size);
+            if (excluded.contains(node) || (skipEjected && node.isEjected(now))) {
+                continue;
+            }
+
+            final double load;
+            switch (strategy) {
+                case LEAST_OUTSTANDING_REQUESTS:
+                    load = node.outstanding.get();
+                    break;
+                case LATENCY_EWMA:
+                    load = node.load();
+                    break;
+                default:
+                    return node;
+            }
+            if (selected == null || load < selectedLoad) {
+                selected = node;
+                selectedLoad = load;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.internal.util.ReflectionHelper;
+import org.glassfish.jersey.message.MessageBodyWorkers;
+
+/**
+ * Reusable, thread-safe client request invocation template.
+ * <p>
+ * A prepared invocation captures the request URI, method, headers and configuration
+ * of a {@link JerseyInvocation.Builder request builder} once, so that repeated executions
+ * of the same request do not need to re-create and re-populate the builder. Executing a prepared
+ * invocation only binds the per-call request entity (if any) to a private copy of the captured
+ * request. Additionally, the default {@code Content-Type} chosen for request entities that do not
+ * declare a media type is resolved only once per Java entity type and entity annotations and then
+ * reused for all subsequent executions, and the message body writers and readers selected for
+ * the request and response entities are cached per Java type, annotations and media type.
+ * </p>
+ * <p>
+ * Nothing else is cached by a prepared invocation. The request and response filter chains are
+ * assembled once per client runtime and shared by all invocations; the filters and interceptors
+ * themselves still run on every execution. Since interceptors are free to change the entity type
+ * or media type of each request and response, the writer and reader cache is consulted with
+ * the values seen by the end of the interceptor chain.
+ * </p>
+ * <p>
+ * Instances are created using {@link JerseyInvocation.Builder#prepare(String)}:
+ * <pre>
+ * PreparedInvocation getUser = client.target("http://example.com/users/1")
+ *         .request("application/json").prepare("GET");
+ * ...
+ * User user = getUser.invoke(User.class);
+ * </pre>
+ * </p>
+ */
+public final class PreparedInvocation {
+
+    private final ClientRequest template;
+    private final ConcurrentMap<List<Object>, MediaType> defaultMediaTypes =
+            new ConcurrentHashMap<List<Object>, MediaType>();
+    // created on first execution, once the client runtime is available
+    private volatile PreparedMessageBodyWorkers workers;
+
+    /**
+     * Create new prepared invocation.
+     *
+     * @param template request template. The template must not be modified once
+     *                 the prepared invocation is created.
+     */
+    PreparedInvocation(ClientRequest template) {
+        this.template = template;
+    }
+
+    /**
+     * Get the request method of the prepared invocation.
+     *
+     * @return request method.
+     */
+    public String getMethod() {
+        return template.getMethod();
+    }
+
+    /**
+     * Get the request URI of the prepared invocation.
+     *
+     * @return request URI.
+     */
+    public URI getUri() {
+        return template.getUri();
+    }
+
+    /**
+     * Get the configuration of the prepared invocation.
+     *
+     * @return prepared invocation configuration.
+     */
+    public ClientConfig configuration() {
+        return template.getConfiguration();
+    }
+
+    /**
+     * Synchronously execute the prepared invocation without a request entity.
+     *
+     * @return response object as a result of the request invocation.
+     * @throws ClientException in case the invocation processing has failed.
+     * @see JerseyInvocation#invoke()
+     */
+    public Response invoke() throws ClientException {
+        return bind(null, false).invoke();
+    }
+
+    /**
+     * Synchronously execute the prepared invocation without a request entity.
+     *
+     * @param <T>          response entity type.
+     * @param responseType Java type the response entity will be converted to.
+     * @return response entity of the specified type.
+     * @throws ClientException          in case the invocation processing has failed.
+     * @throws WebApplicationException in case the response status code of the response
+     *                                  returned by the server is not successful.
+     * @see JerseyInvocation#invoke(Class)
+     */
+    public <T> T invoke(Class<T> responseType) throws ClientException, WebApplicationException {
+        return bind(null, false).invoke(responseType);
+    }
+
+    /**
+     * Synchronously execute the prepared invocation without a request entity.
+     *
+     * @param <T>          generic response entity type.
+     * @param responseType generic type the response entity will be converted to.
+     * @return response entity of the specified type.
+     * @throws ClientException          in case the invocation processing has failed.
+     * @throws WebApplicationException in case the response status code of the response
+     *                                  returned by the server is not successful.
+     * @see JerseyInvocation#invoke(GenericType)
+     */
+    public <T> T invoke(GenericType<T> responseType) throws ClientException, WebApplicationException {
+        return bind(null, false).invoke(responseType);
+    }
+
+    /**
+     * Synchronously execute the prepared invocation with the supplied request entity.
+     *
+     * @param entity request entity.
+     * @return response object as a result of the request invocation.
+     * @throws ClientException in case the invocation processing has failed.
+     */
+    public Response invoke(Entity<?> entity) throws ClientException {
+        return bind(entity, false).invoke();
+    }
+
+    /**
+     * Synchronously execute the prepared invocation with the supplied request entity.
+     *
+     * @param <T>          response entity type.
+     * @param entity       request entity.
+     * @param responseType Java type the response entity will be converted to.
+     * @return response entity of the specified type.
+     * @throws ClientException          in case the invocation processing has failed.
+     * @throws WebApplicationException in case the response status code of the response
+     *                                  returned by the server is not successful.
+     */
+    public <T> T invoke(Entity<?> entity, Class<T> responseType) throws ClientException, WebApplicationException {
+        return bind(entity, false).invoke(responseType);
+    }
+
+    /**
+     * Synchronously execute the prepared invocation with the supplied request entity.
+     *
+     * @param <T>          generic response entity type.
+     * @param entity       request entity.
+     * @param responseType generic type the response entity will be converted to.
+     * @return response entity of the specified type.
+     * @throws ClientException          in case the invocation processing has failed.
+     * @throws WebApplicationException in case the response status code of the response
+     *                                  returned by the server is not successful.
+     */
+    public <T> T invoke(Entity<?> entity, GenericType<T> responseType) throws ClientException, WebApplicationException {
+        return bind(entity, false).invoke(responseType);
+    }
+
+    /**
+     * Asynchronously execute the prepared invocation without a request entity.
+     *
+     * @return future response object as a result of the request invocation.
+     * @see JerseyInvocation#submit()
+     */
+    public Future<Response> submit() {
+        return bind(null, true).submit();
+    }
+
+    /**
+     * Asynchronously execute the prepared invocation without a request entity.
+     *
+     * @param <T>          response entity type.
+     * @param responseType Java type the response entity will be converted to.
+     * @return future response entity of the specified type.
+     * @see JerseyInvocation#submit(Class)
+     */
+    public <T> Future<T> submit(Class<T> responseType) {
+        return bind(null, true).submit(responseType);
+    }
+
+    /**
+     * Asynchronously execute the prepared invocation with the supplied request entity.
+     *
+     * @param entity request entity.
+     * @return future response object as a result of the request invocation.
+     */
+    public Future<Response> submit(Entity<?> entity) {
+        return bind(entity, true).submit();
+    }
+
+    /**
+     * Asynchronously execute the prepared invocation with the supplied request entity.
+     *
+     * @param <T>          response entity type.
+     * @param entity       request entity.
+     * @param responseType Java type the response entity will be converted to.
+     * @return future response entity of the specified type.
+     */
+    public <T> Future<T> submit(Entity<?> entity, Class<T> responseType) {
+        return bind(entity, true).submit(responseType);
+    }
+
+    /**
+     * Bind the per-call values to a private copy of the request template.
+     *
+     * @param entity       request entity, may be {@code null}.
+     * @param asynchronous {@code true} if the request is going to be executed asynchronously.
+     * @return invocation of the bound request.
+     */
+    private JerseyInvocation bind(Entity<?> entity, boolean asynchronous) {
+        final ClientRequest request = new ClientRequest(template);
+        request.setAsynchronous(asynchronous);
+        request.setWorkers(getWorkers());
+        if (entity != null) {
+            request.variant(entity.getVariant());
+            request.setEntity(entity.getEntity(), entity.getAnnotations());
+            if (request.getMediaType() == null && request.hasEntity()) {
+                request.setMediaType(getDefaultMediaType(request));
+            }
+        }
+        return new JerseyInvocation(request);
+    }
+
+    private MessageBodyWorkers getWorkers() {
+        PreparedMessageBodyWorkers result = workers;
+        if (result == null) {
+            synchronized (this) {
+                result = workers;
+                if (result == null) {
+                    result = new PreparedMessageBodyWorkers(template.getConfiguration().getRuntime().getWorkers());
+                    workers = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private MediaType getDefaultMediaType(ClientRequest request) {
+        final Type entityType = request.getEntityType();
+        final Annotation[] annotations = request.getEntityAnnotations();
+        // annotations may select a different writer and thus a different default media type
+        final List<Object> key = Arrays.<Object>asList(entityType, Arrays.asList(annotations));
+        MediaType mediaType = defaultMediaTypes.get(key);
+        if (mediaType == null) {
+            mediaType = RequestWriter.getDefaultMediaType(
+                    request.getWorkers(),
+                    ReflectionHelper.erasure(entityType),
+                    entityType,
+                    annotations);
+            defaultMediaTypes.putIfAbsent(key, mediaType);
+        }
+        return mediaType;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.WriterInterceptor;
+
+import org.glassfish.jersey.internal.PropertiesDelegate;
+import org.glassfish.jersey.message.MessageBodyWorkers;
+import org.glassfish.jersey.message.internal.ReaderInterceptorExecutor;
+import org.glassfish.jersey.message.internal.WriterInterceptorExecutor;
+
+/**
+ * Message body workers of a {@link PreparedInvocation prepared invocation}.
+ * <p>
+ * The message body writers and readers selected by the decorated workers are remembered per Java
+ * type, generic type, annotations and media type, so that the repeated executions of the same prepared
+ * invocation do not need to search the registered providers again. The interceptor chains still run on
+ * every execution; an interceptor that changes the entity type or media type simply leads to a different
+ * cache entry. The number of cached entries is bounded, so that e.g. response media types with varying
+ * parameters cannot grow the caches indefinitely; lookups that do not fit into the cache are passed
+ * to the decorated workers.
+ * </p>
+ */
+final class PreparedMessageBodyWorkers implements MessageBodyWorkers {
+
+    /**
+     * Maximum number of cached writers and readers (each).
+     */
+    private static final int MAX_CACHE_SIZE = 64;
+
+    private final MessageBodyWorkers workers;
+    private final ConcurrentMap<List<Object>, MessageBodyWriter<?>> writers =
+            new ConcurrentHashMap<List<Object>, MessageBodyWriter<?>>();
+    private final ConcurrentMap<List<Object>, MessageBodyReader<?>> readers =
+            new ConcurrentHashMap<List<Object>, MessageBodyReader<?>>();
+
+    /**
+     * Create new prepared message body workers.
+     *
+     * @param workers decorated message body workers.
+     */
+    PreparedMessageBodyWorkers(MessageBodyWorkers workers) {
+        this.workers = workers;
+    }
+
+    private static List<Object> key(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        final List<Annotation> annotationList = annotations == null
+                ? Collections.<Annotation>emptyList() : Arrays.asList(annotations);
+        return Arrays.<Object>asList(type, genericType, annotationList, mediaType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> MessageBodyWriter<T> getMessageBodyWriter(
+            Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        final List<Object> key = key(type, genericType, annotations, mediaType);
+        MessageBodyWriter<T> writer = (MessageBodyWriter<T>) writers.get(key);
+        if (writer == null) {
+            writer = workers.getMessageBodyWriter(type, genericType, annotations, mediaType);
+            if (writer != null && writers.size() < MAX_CACHE_SIZE) {
+                writers.putIfAbsent(key, writer);
+            }
+        }
+        return writer;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> MessageBodyReader<T> getMessageBodyReader(
+            Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        final List<Object> key = key(type, genericType, annotations, mediaType);
+        MessageBodyReader<T> reader = (MessageBodyReader<T>) readers.get(key);
+        if (reader == null) {
+            reader = workers.getMessageBodyReader(type, genericType, annotations, mediaType);
+            if (reader != null && readers.size() < MAX_CACHE_SIZE) {
+                readers.putIfAbsent(key, reader);
+            }
+        }
+        return reader;
+    }
+
+    @Override
+    public <T> Object readFrom(Class<T> rawType, Type type, Annotation[] annotations, MediaType mediaType,
+                               MultivaluedMap<String, String> httpHeaders, PropertiesDelegate propertiesDelegate,
+                               InputStream entityStream, boolean intercept) throws WebApplicationException, IOException {
+        // the terminal interceptor looks the reader up using these workers
+        final ReaderInterceptorExecutor executor = new ReaderInterceptorExecutor(rawType, type, annotations, mediaType,
+                httpHeaders, propertiesDelegate, entityStream, this, intercept);
+        return executor.proceed();
+    }
+
+    @Override
+    public <T> OutputStream writeTo(Object entity, Class<T> rawType, Type type, Annotation[] annotations,
+                                    MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                                    PropertiesDelegate propertiesDelegate, OutputStream entityStream,
+                                    MessageBodySizeCallback sizeCallback, boolean intercept)
+            throws IOException, WebApplicationException {
+        return writeTo(entity, rawType, type, annotations, mediaType, httpHeaders, propertiesDelegate, entityStream,
+                sizeCallback, intercept, true);
+    }
+
+    @Override
+    public <T> OutputStream writeTo(Object entity, Class<T> rawType, Type type, Annotation[] annotations,
+                                    MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                                    PropertiesDelegate propertiesDelegate, OutputStream entityStream,
+                                    MessageBodySizeCallback sizeCallback, boolean intercept, boolean writeEntity)
+            throws IOException, WebApplicationException {
+        // the terminal interceptor looks the writer up using these workers
+        final WriterInterceptorExecutor executor = new WriterInterceptorExecutor(entity, rawType, type, annotations,
+                mediaType, httpHeaders, propertiesDelegate, entityStream, this, sizeCallback, intercept, writeEntity);
+        executor.proceed();
+        return executor.getOutputStream();
+    }
+
+    @Override
+    public Map<MediaType, List<MessageBodyReader>> getReaders(MediaType mediaType) {
+        return workers.getReaders(mediaType);
+    }
+
+    @Override
+    public Map<MediaType, List<MessageBodyWriter>> getWriters(MediaType mediaType) {
+        return workers.getWriters(mediaType);
+    }
+
+    @Override
+    public String readersToString(Map<MediaType, List<MessageBodyReader>> readers) {
+        return workers.readersToString(readers);
+    }
+
+    @Override
+    public String writersToString(Map<MediaType, List<MessageBodyWriter>> writers) {
+        return workers.writersToString(writers);
+    }
+
+    @Override
+    public <T> List<MediaType> getMessageBodyReaderMediaTypes(Class<T> type, Type genericType, Annotation[] annotations) {
+        return workers.getMessageBodyReaderMediaTypes(type, genericType, annotations);
+    }
+
+    @Override
+    public <T> List<MediaType> getMessageBodyWriterMediaTypes(Class<T> type, Type genericType, Annotation[] annotations) {
+        return workers.getMessageBodyWriterMediaTypes(type, genericType, annotations);
+    }
+
+    @Override
+    public <T> MediaType getMessageBodyWriterMediaType(Class<T> type, Type genericType, Annotation[] annotations,
+                                                      List<MediaType> acceptableMediaTypes) {
+        return workers.getMessageBodyWriterMediaType(type, genericType, annotations, acceptableMediaTypes);
+    }
+
+    @Override
+    public List<ReaderInterceptor> getReaderInterceptors() {
+        return workers.getReaderInterceptors();
+    }
+
+    @Override
+    public List<WriterInterceptor> getWriterInterceptors() {
+        return workers.getWriterInterceptors();
+    }
+}
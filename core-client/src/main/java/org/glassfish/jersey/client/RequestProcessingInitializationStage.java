@@ -77,7 +77,10 @@ public class RequestProcessingInitializationStage implements Function<ClientRequ
     @Override
     public ClientRequest apply(ClientRequest requestContext) {
         requestRefProvider.get().set(requestContext);
-        requestContext.setWorkers(workersProvider.get());
+        if (requestContext.getWorkers() == null) {
+            // workers set in advance (by a prepared invocation) are retained
+            requestContext.setWorkers(workersProvider.get());
+        }
 
         return requestContext;
     }
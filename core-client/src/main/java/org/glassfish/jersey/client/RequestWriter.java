@@ -49,12 +49,12 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ws.rs.client.ClientException;
-import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 
+import org.glassfish.jersey.internal.util.ReflectionHelper;
 import org.glassfish.jersey.message.MessageBodyWorkers;
 import org.glassfish.jersey.message.MessageBodyWorkers.MessageBodySizeCallback;
 import org.glassfish.jersey.message.internal.OutboundMessageContext;
@@ -180,11 +180,11 @@ public class RequestWriter {
         public void writeRequestEntity(OutputStream out) throws IOException {
             // TODO interceptors?
             try {
-                final GenericType<?> entityType = new GenericType(requestContext.getEntityType());
+                final Type entityType = requestContext.getEntityType();
                 writer.writeTo(
                         requestContext.getEntity(),
-                        entityType.getRawType(),
-                        entityType.getType(),
+                        ReflectionHelper.erasure(entityType),
+                        entityType,
                         requestContext.getEntityAnnotations(),
                         requestContext.getMediaType(),
                         requestContext.getHeaders(),
@@ -263,15 +263,28 @@ public class RequestWriter {
     private void ensureMediaType(final ClientRequest requestContext) {
         if (requestContext.getMediaType() == null) {
             // Content-Type is not present choose a default type
-            final GenericType<?> entityType = new GenericType(requestContext.getEntityType());
-            final List<MediaType> mediaTypes = requestContext.getWorkers().getMessageBodyWriterMediaTypes(
-                    entityType.getRawType(), entityType.getType(), requestContext.getEntityAnnotations());
-
-            requestContext.setMediaType(getMediaType(mediaTypes));
+            final Type entityType = requestContext.getEntityType();
+            requestContext.setMediaType(getDefaultMediaType(requestContext.getWorkers(),
+                    ReflectionHelper.erasure(entityType), entityType, requestContext.getEntityAnnotations()));
         }
     }
 
-    private MediaType getMediaType(List<MediaType> mediaTypes) {
+    /**
+     * Get the default media type used for writing an entity of the given type in case
+     * no {@code Content-Type} has been set on the request.
+     *
+     * @param workers     message body workers.
+     * @param rawType     raw Java entity type.
+     * @param type        generic Java entity type.
+     * @param annotations entity annotations.
+     * @return default entity media type.
+     */
+    static MediaType getDefaultMediaType(
+            MessageBodyWorkers workers, Class<?> rawType, Type type, Annotation[] annotations) {
+        return getMediaType(workers.getMessageBodyWriterMediaTypes(rawType, type, annotations));
+    }
+
+    private static MediaType getMediaType(List<MediaType> mediaTypes) {
         if (mediaTypes.isEmpty()) {
             return MediaType.APPLICATION_OCTET_STREAM_TYPE;
         } else {
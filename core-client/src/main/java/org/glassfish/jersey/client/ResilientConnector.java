@@ -0,0 +1,521 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.internal.LocalizationMessages;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Connector decorator applying the {@link RetryPolicy retry}, {@link HedgingPolicy hedging}
+ * and {@link CircuitBreaker circuit breaker} policies configured for a request.
+ * <p>
+ * The policies are looked up in the request configuration properties, so that they may be set on
+ * the client configuration as well as on an individual web target. The client runtime uses the
+ * decorator only if its configuration contains any of the policy properties (see
+ * {@link #isEnabled(java.util.Map)}); requests without any policy configured are passed to the
+ * decorated connector directly.
+ * </p>
+ * <p>
+ * A request with policies is processed asynchronously and no thread ever blocks waiting for another
+ * attempt: the first attempt is sent by the calling thread, while the hedging delays and retry
+ * backoff periods are timed by a dedicated scheduler thread, which then hands the hedged attempts
+ * and retries over to the requesting executor. A synchronous request only blocks its caller until
+ * the final outcome is known.
+ * </p>
+ *
+ * @see ClientProperties#RETRY_POLICY
+ * @see ClientProperties#HEDGING_POLICY
+ * @see ClientProperties#CIRCUIT_BREAKER
+ */
+class ResilientConnector implements Connector {
+
+    private final Connector connector;
+    private final ClientAsyncExecutorsFactory executorsFactory;
+    // lazily created timer of the hedging delays and retry backoff periods, guarded by this
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Create new resilient connector decorator.
+     *
+     * @param connector        decorated connector.
+     * @param executorsFactory executors used to run the hedged attempts and retries.
+     */
+    ResilientConnector(Connector connector, ClientAsyncExecutorsFactory executorsFactory) {
+        this.connector = connector;
+        this.executorsFactory = executorsFactory;
+    }
+
+    /**
+     * Check if any retry, hedging or circuit breaker policy is configured in the given client
+     * configuration properties.
+     *
+     * @param properties client configuration properties.
+     * @return {@code true} if the client connector needs to be decorated with the resilient connector,
+     *         {@code false} otherwise.
+     */
+    static boolean isEnabled(Map<String, Object> properties) {
+        return properties.get(ClientProperties.RETRY_POLICY) != null
+                || properties.get(ClientProperties.HEDGING_POLICY) != null
+                || properties.get(ClientProperties.CIRCUIT_BREAKER) != null;
+    }
+
+    /**
+     * Policies configured for a single request.
+     */
+    private static final class Policies {
+
+        private final RetryPolicy retry;
+        private final HedgingPolicy hedging;
+        private final CircuitBreaker circuitBreaker;
+
+        private Policies(RetryPolicy retry, HedgingPolicy hedging, CircuitBreaker circuitBreaker) {
+            this.retry = retry;
+            this.hedging = hedging;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        static Policies of(ClientRequest request) {
+            final ClientConfig config = request.getConfiguration();
+            final Object retry = config.getProperty(ClientProperties.RETRY_POLICY);
+            final Object hedging = config.getProperty(ClientProperties.HEDGING_POLICY);
+            final Object circuitBreaker = config.getProperty(ClientProperties.CIRCUIT_BREAKER);
+            if (retry == null && hedging == null && circuitBreaker == null) {
+                return null;
+            }
+
+            final String method = request.getMethod();
+            final boolean readOnly = "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+            final boolean safe = readOnly && !request.hasEntity();
+            final boolean idempotent = readOnly
+                    || "PUT".equals(method) || "DELETE".equals(method) || "TRACE".equals(method);
+            final Object entity = request.getEntity();
+            final boolean replayable = !(entity instanceof InputStream || entity instanceof Reader);
+
+            return new Policies(
+                    retry instanceof RetryPolicy && idempotent && replayable ? (RetryPolicy) retry : null,
+                    hedging instanceof HedgingPolicy && safe ? (HedgingPolicy) hedging : null,
+                    circuitBreaker instanceof CircuitBreaker ? (CircuitBreaker) circuitBreaker : null);
+        }
+    }
+
+    @Override
+    public ClientResponse apply(ClientRequest request) throws ClientException {
+        final Policies policies = Policies.of(request);
+        if (policies == null) {
+            return connector.apply(request);
+        }
+
+        // with hedging, the caller must not be tied up by the first attempt so that a hedged attempt may win
+        final Call call = new Call(request, policies, null);
+        call.start(policies.hedging == null);
+        try {
+            return call.result.get();
+        } catch (InterruptedException ex) {
+            call.result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ClientException(ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof ClientException) {
+                throw (ClientException) cause;
+            }
+            throw new ClientException(cause);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In case any policy is configured for the request, the returned future completes once the final
+     * outcome of the request is known; cancelling it cancels all the attempts in progress and prevents
+     * any further hedged attempts and retries.
+     * </p>
+     */
+    @Override
+    public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+        final Policies policies = Policies.of(request);
+        if (policies == null) {
+            return connector.apply(request, callback);
+        }
+
+        final Call call = new Call(request, policies, callback);
+        call.start(true);
+        return call.result;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        }
+        connector.close();
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                    new ThreadFactoryBuilder().setNameFormat("jersey-client-resilience-scheduler-%d")
+                            .setDaemon(true).build());
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+
+    /**
+     * Processing state of a single request, including all its retries and hedged attempts.
+     */
+    private final class Call {
+
+        private final ClientRequest request;
+        private final RetryPolicy retry;
+        private final HedgingPolicy hedging;
+        private final CircuitBreaker circuitBreaker;
+        private final AsyncConnectorCallback callback;
+        private final ExecutorService executor;
+        private final int maxAttempts;
+        private final SettableFuture<ClientResponse> result = SettableFuture.create();
+        // futures of the scheduled tasks and attempts in progress, guarded by this
+        private final List<Future<?>> pending = new LinkedList<Future<?>>();
+        // sent requests not reported to the circuit breaker yet, guarded by this
+        private final List<BreakerReport> unreported = new LinkedList<BreakerReport>();
+
+        private Call(ClientRequest request, Policies policies, AsyncConnectorCallback callback) {
+            this.request = request;
+            this.retry = policies.retry;
+            this.hedging = policies.hedging;
+            this.circuitBreaker = policies.circuitBreaker;
+            this.callback = callback;
+            this.executor = executorsFactory.getRequestingExecutor(request);
+            this.maxAttempts = retry == null ? 1 : retry.getMaxAttempts();
+        }
+
+        /**
+         * Start processing the request.
+         *
+         * @param inline if {@code true}, the first attempt is sent by the calling thread, otherwise
+         *               it is submitted to the requesting executor.
+         */
+        void start(boolean inline) {
+            result.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (result.isCancelled()) {
+                        cancelPending();
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+
+            if (inline) {
+                attempt(1, request);
+            } else {
+                track(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        attempt(1, request);
+                    }
+                }));
+            }
+        }
+
+        private void attempt(final int attempt, final ClientRequest attemptRequest) {
+            if (result.isDone()) {
+                return;
+            }
+            if (retry != null) {
+                retry.onAttempt(attempt);
+            }
+
+            final Attempt current = new Attempt(attempt);
+            if (hedging != null) {
+                schedule(hedging.delay(), new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!current.done.get() && !result.isDone()) {
+                            hedging.onHedge();
+                            send(current, new ClientRequest(attemptRequest), true);
+                        }
+                    }
+                });
+            }
+            send(current, attemptRequest, false);
+        }
+
+        private void send(final Attempt attempt, final ClientRequest attemptRequest, final boolean hedge) {
+            attempt.launched.incrementAndGet();
+
+            final BreakerReport report;
+            if (circuitBreaker != null) {
+                final String host = CircuitBreaker.host(attemptRequest.getUri());
+                if (!circuitBreaker.allow(host)) {
+                    attempt.failure(new ClientException(LocalizationMessages.CIRCUIT_BREAKER_OPEN(host)));
+                    return;
+                }
+                report = new BreakerReport(host);
+            } else {
+                report = null;
+            }
+
+            final long start = System.nanoTime();
+            try {
+                track(connector.apply(attemptRequest, new AsyncConnectorCallback() {
+                    @Override
+                    public void response(ClientResponse response) {
+                        if (report != null) {
+                            report.report(response.getStatusInfo().getFamily() != Response.Status.Family.SERVER_ERROR);
+                        }
+                        if (hedging != null) {
+                            // sample every completed attempt, not only the winning ones
+                            hedging.record(System.nanoTime() - start);
+                        }
+                        attempt.response(response, hedge);
+                    }
+
+                    @Override
+                    public void failure(Throwable failure) {
+                        if (report != null) {
+                            report.report(false);
+                        }
+                        attempt.failure(failure);
+                    }
+                }));
+            } catch (Throwable t) {
+                if (report != null) {
+                    report.report(false);
+                }
+                attempt.failure(t);
+            }
+        }
+
+        /**
+         * Outcome of a request sent to the host, reported to the circuit breaker exactly once.
+         * A request cancelled before its outcome is known is reported as a failure, so that
+         * a cancelled trial request does not leave the circuit half-open.
+         */
+        private final class BreakerReport {
+
+            private final String host;
+            private final AtomicBoolean reported = new AtomicBoolean(false);
+
+            private BreakerReport(String host) {
+                this.host = host;
+                synchronized (Call.this) {
+                    unreported.add(this);
+                }
+            }
+
+            void report(boolean success) {
+                if (!reported.compareAndSet(false, true)) {
+                    return;
+                }
+                synchronized (Call.this) {
+                    unreported.remove(this);
+                }
+                if (success) {
+                    circuitBreaker.onSuccess(host);
+                } else {
+                    circuitBreaker.onFailure(host);
+                }
+            }
+        }
+
+        /**
+         * Original and hedged request sent as a single attempt; the first response wins.
+         */
+        private final class Attempt {
+
+            private final int number;
+            private final AtomicInteger launched = new AtomicInteger(0);
+            private final AtomicInteger failed = new AtomicInteger(0);
+            private final AtomicBoolean done = new AtomicBoolean(false);
+
+            private Attempt(int number) {
+                this.number = number;
+            }
+
+            void response(ClientResponse response, boolean hedge) {
+                if (!done.compareAndSet(false, true)) {
+                    // the other request of the attempt won
+                    response.close();
+                    return;
+                }
+                if (hedge) {
+                    hedging.onHedgeWin();
+                }
+
+                if (number < maxAttempts && retry.isRetryable(response.getStatus()) && !result.isDone()) {
+                    response.close();
+                    retryAfter(number);
+                } else {
+                    complete(response);
+                }
+            }
+
+            void failure(Throwable failure) {
+                if (failed.incrementAndGet() < launched.get() || !done.compareAndSet(false, true)) {
+                    return;
+                }
+
+                if (number < maxAttempts && isIoFailure(failure) && !result.isDone()) {
+                    retryAfter(number);
+                } else {
+                    fail(failure);
+                }
+            }
+        }
+
+        private void retryAfter(final int attempt) {
+            // the connector may have consumed the request entity stream, so retry with a fresh copy
+            final ClientRequest retryRequest = new ClientRequest(request);
+            schedule(retry.backoff(attempt), new Runnable() {
+                @Override
+                public void run() {
+                    attempt(attempt + 1, retryRequest);
+                }
+            });
+        }
+
+        /**
+         * Run the task in the requesting executor once the delay elapses.
+         */
+        private void schedule(final long delay, final Runnable task) {
+            try {
+                if (delay <= 0) {
+                    track(executor.submit(task));
+                } else {
+                    track(scheduler().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                track(executor.submit(task));
+                            } catch (Throwable t) {
+                                fail(t);
+                            }
+                        }
+                    }, delay, TimeUnit.NANOSECONDS));
+                }
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private void track(Future<?> future) {
+            synchronized (this) {
+                pending.add(future);
+                // drop the futures that are not needed for cancellation anymore
+                while (!pending.isEmpty() && pending.get(0).isDone()) {
+                    pending.remove(0);
+                }
+            }
+            if (result.isCancelled()) {
+                cancelPending();
+            }
+        }
+
+        private void cancelPending() {
+            final Future<?>[] futures;
+            synchronized (this) {
+                futures = pending.toArray(new Future<?>[pending.size()]);
+                pending.clear();
+            }
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+
+            final BreakerReport[] reports;
+            synchronized (this) {
+                reports = unreported.toArray(new BreakerReport[unreported.size()]);
+            }
+            for (BreakerReport report : reports) {
+                report.report(false);
+            }
+        }
+
+        private void complete(ClientResponse response) {
+            if (result.set(response)) {
+                if (callback != null) {
+                    callback.response(response);
+                }
+            } else {
+                response.close();
+            }
+        }
+
+        private void fail(Throwable failure) {
+            if (result.setException(failure) && callback != null) {
+                callback.failure(failure);
+            }
+        }
+    }
+
+    private static boolean isIoFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client request retry policy.
+ * <p>
+ * Requests using an idempotent method ({@code GET}, {@code HEAD}, {@code OPTIONS}, {@code PUT},
+ * {@code DELETE} and {@code TRACE}) are retried when the connector fails with an I/O error or when
+ * the response status is one of the retryable status codes ({@code 502}, {@code 503} and {@code 504}
+ * by default). Requests with a streamed entity ({@link java.io.InputStream} or {@link java.io.Reader})
+ * are never retried. The delay before each retry grows exponentially from the initial back-off up to
+ * the maximum back-off and is randomized ("full jitter") to avoid synchronized retry storms.
+ * </p>
+ * <p>
+ * The policy is enabled by setting the {@link ClientProperties#RETRY_POLICY} property. A policy
+ * instance is thread-safe and may be shared by many clients; it also keeps the retry statistics.
+ * </p>
+ */
+public final class RetryPolicy {
+
+    private static final int[] DEFAULT_RETRYABLE_STATUSES = {502, 503, 504};
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final int[] retryableStatuses;
+    private final Random random = new Random();
+
+    private final AtomicLong attempts = new AtomicLong(0);
+    private final AtomicLong retries = new AtomicLong(0);
+
+    /**
+     * Create new retry policy that retries on I/O errors and {@code 502}, {@code 503} and {@code 504}
+     * responses.
+     *
+     * @param maxAttempts    maximum number of attempts, including the first one.
+     * @param initialBackoff back-off before the first retry.
+     * @param maxBackoff     maximum back-off.
+     * @param unit           back-off time unit.
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, TimeUnit unit) {
+        this(maxAttempts, initialBackoff, maxBackoff, unit, DEFAULT_RETRYABLE_STATUSES);
+    }
+
+    /**
+     * Create new retry policy.
+     *
+     * @param maxAttempts       maximum number of attempts, including the first one.
+     * @param initialBackoff    back-off before the first retry.
+     * @param maxBackoff        maximum back-off.
+     * @param unit              back-off time unit.
+     * @param retryableStatuses response status codes that cause the request to be retried.
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, TimeUnit unit, int... retryableStatuses) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Maximum number of attempts must be positive.");
+        }
+        if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid back-off range.");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = unit.toNanos(initialBackoff);
+        this.maxBackoff = unit.toNanos(maxBackoff);
+        this.retryableStatuses = retryableStatuses.clone();
+        Arrays.sort(this.retryableStatuses);
+    }
+
+    /**
+     * Get the maximum number of attempts, including the first one.
+     *
+     * @return maximum number of attempts.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Get the total number of attempts made under this policy.
+     *
+     * @return total number of attempts.
+     */
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * Get the number of attempts made under this policy that were retries of a failed attempt.
+     *
+     * @return number of retries.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Check if the response status is retryable.
+     *
+     * @param status response status code.
+     * @return {@code true} if the status is retryable.
+     */
+    boolean isRetryable(int status) {
+        return Arrays.binarySearch(retryableStatuses, status) >= 0;
+    }
+
+    /**
+     * Get the randomized back-off before the given retry.
+     *
+     * @param retry retry number, starting at {@code 1}.
+     * @return back-off in nanoseconds.
+     */
+    long backoff(int retry) {
+        final long ceiling = initialBackoff << Math.min(retry - 1, 30);
+        final long bound = ceiling < 0 || ceiling > maxBackoff ? maxBackoff : ceiling;
+        if (bound <= 0) {
+            return 0;
+        }
+        final double jitter;
+        synchronized (random) {
+            jitter = random.nextDouble();
+        }
+        return (long) (bound * jitter);
+    }
+
+    void onAttempt(int attempt) {
+        attempts.incrementAndGet();
+        if (attempt > 1) {
+            retries.incrementAndGet();
+        }
+    }
+}
@@ -44,9 +44,11 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import javax.ws.rs.client.ClientException;
+import javax.ws.rs.client.Configuration;
 
 import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
 import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.MessageBodyWorkers;
 import org.glassfish.jersey.process.internal.ChainableStage;
 import org.glassfish.jersey.process.internal.RequestScope;
 import org.glassfish.jersey.process.internal.Stage;
@@ -67,6 +69,7 @@ class Runtime {
 
     private final RequestScope requestScope;
     private final ClientAsyncExecutorsFactory asyncExecutorsFactory;
+    private final MessageBodyWorkers workers;
 
     /**
      * Create new client request processing runtime.
@@ -88,10 +91,13 @@ class Runtime {
         this.responseProcessingRoot = responseFilteringStage != null ?
                 responseFilteringStage : Stages.<ClientResponse>identity();
 
-        this.connector = connector;
-
         this.requestScope = locator.getService(RequestScope.class);
         this.asyncExecutorsFactory = new ClientAsyncExecutorsFactory(locator);
+
+        final Configuration configuration = locator.getService(Configuration.class);
+        this.connector = ResilientConnector.isEnabled(configuration.getProperties()) ?
+                new ResilientConnector(connector, asyncExecutorsFactory) : connector;
+        this.workers = locator.getService(MessageBodyWorkers.class);
     }
 
     /**
@@ -204,6 +210,15 @@ class Runtime {
         return requestScope;
     }
 
+    /**
+     * Get the message body workers configured for the runtime.
+     *
+     * @return message body workers.
+     */
+    MessageBodyWorkers getWorkers() {
+        return workers;
+    }
+
     public void close() {
         connector.close();
     }
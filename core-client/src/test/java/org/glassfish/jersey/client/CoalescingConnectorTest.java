@@ -0,0 +1,318 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.client.ClientFactory;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.message.internal.Statuses;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link CoalescingConnector} unit tests.
+ */
+public class CoalescingConnectorTest {
+
+    /**
+     * Test connector that blocks all requests until released and counts the received requests.
+     */
+    private static class BlockingConnector implements Connector {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger requests = new AtomicInteger(0);
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            final int count = requests.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ClientException(e);
+            }
+            final ClientResponse response = new ClientResponse(Statuses.from(200), request);
+            response.header("X-Count", count);
+            response.setEntityStream(new ByteArrayInputStream(("response" + count).getBytes()));
+            return response;
+        }
+
+        @Override
+        public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+            return MoreExecutors.sameThreadExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    callback.response(apply(request));
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            // do nothing
+        }
+    }
+
+    private static void waitForCoalesced(CoalescingConnector connector, int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (connector.getCoalescedRequestCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testConcurrentSyncGetsAreCoalesced() throws Exception {
+        final BlockingConnector blocking = new BlockingConnector();
+        final CoalescingConnector connector = new CoalescingConnector(blocking);
+        final Client client = ClientFactory.newClient(new ClientConfig().connector(connector));
+
+        final int callers = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            final List<Future<Response>> results = new ArrayList<Future<Response>>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(new Callable<Response>() {
+                    @Override
+                    public Response call() throws Exception {
+                        return client.target("http://localhost/hot").request("text/plain").get();
+                    }
+                }));
+            }
+
+            waitForCoalesced(connector, callers - 1);
+            blocking.release.countDown();
+
+            for (Future<Response> result : results) {
+                final Response response = result.get(10, TimeUnit.SECONDS);
+                assertEquals(200, response.getStatus());
+                assertEquals("1", response.getHeaderString("X-Count"));
+                assertEquals("response1", response.readEntity(String.class));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, blocking.requests.get());
+        assertEquals(1, connector.getConnectorRequestCount());
+        assertEquals(callers - 1, connector.getCoalescedRequestCount());
+        assertEquals(0, connector.getInFlightCount());
+    }
+
+    @Test
+    public void testConcurrentAsyncGetsAreCoalesced() throws Exception {
+        final BlockingConnector blocking = new BlockingConnector();
+        final CoalescingConnector connector = new CoalescingConnector(blocking);
+        final Client client = ClientFactory.newClient(new ClientConfig().connector(connector));
+
+        final int callers = 4;
+        final List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < callers; i++) {
+            results.add(client.target("http://localhost/hot").request().async().get(String.class));
+        }
+
+        waitForCoalesced(connector, callers - 1);
+        blocking.release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("response1", result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, blocking.requests.get());
+        assertEquals(callers - 1, connector.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void testDifferentKeysAreNotCoalesced() throws Exception {
+        final BlockingConnector blocking = new BlockingConnector();
+        blocking.release.countDown();
+        final CoalescingConnector connector = new CoalescingConnector(blocking);
+        final Client client = ClientFactory.newClient(new ClientConfig().connector(connector));
+
+        assertEquals("response1", client.target("http://localhost/a").request().get(String.class));
+        assertEquals("response2", client.target("http://localhost/a").request().get(String.class));
+        assertEquals("response3", client.target("http://localhost/b").request().get(String.class));
+        assertEquals("response4",
+                client.target("http://localhost/a").request().post(Entity.text("data"), String.class));
+
+        assertEquals(4, connector.getConnectorRequestCount());
+        assertEquals(0, connector.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void testCustomKeyFunction() throws Exception {
+        final BlockingConnector blocking = new BlockingConnector();
+        final CoalescingConnector connector =
+                new CoalescingConnector(blocking, CoalescingConnector.keyFunction("X-Tenant"));
+        final Client client = ClientFactory.newClient(new ClientConfig().connector(connector));
+
+        final Future<String> first = client.target("http://localhost/a").request()
+                .header("X-Tenant", "one").async().get(String.class);
+        final Future<String> second = client.target("http://localhost/a").request()
+                .header("X-Tenant", "two").async().get(String.class);
+        final Future<String> third = client.target("http://localhost/a").request()
+                .header("X-Tenant", "one").async().get(String.class);
+
+        waitForCoalesced(connector, 1);
+        blocking.release.countDown();
+
+        assertTrue(first.get(10, TimeUnit.SECONDS).equals(third.get(10, TimeUnit.SECONDS)));
+        assertTrue(!first.get().equals(second.get(10, TimeUnit.SECONDS)));
+        assertEquals(2, connector.getConnectorRequestCount());
+        assertEquals(1, connector.getCoalescedRequestCount());
+    }
+
+    private static ClientRequest request(String uri) {
+        final ClientConfig config = ((JerseyClient) ClientFactory.newClient()).configuration();
+        final ClientRequest request = new ClientRequest(URI.create(uri), config, new MapPropertiesDelegate());
+        request.setMethod("GET");
+        return request;
+    }
+
+    private static class RecordingCallback implements AsyncConnectorCallback {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile ClientResponse response;
+        private volatile Throwable failure;
+
+        @Override
+        public void response(ClientResponse response) {
+            this.response = response;
+            done.countDown();
+        }
+
+        @Override
+        public void failure(Throwable failure) {
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void testCoalescedResponsesDoNotShareHeaderLists() throws Exception {
+        final BlockingConnector blocking = new BlockingConnector();
+        final CoalescingConnector connector = new CoalescingConnector(blocking);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<ClientResponse>> results = new ArrayList<Future<ClientResponse>>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(new Callable<ClientResponse>() {
+                    @Override
+                    public ClientResponse call() throws Exception {
+                        return connector.apply(request("http://localhost/hot"));
+                    }
+                }));
+            }
+            waitForCoalesced(connector, 1);
+            blocking.release.countDown();
+
+            final ClientResponse first = results.get(0).get(10, TimeUnit.SECONDS);
+            final ClientResponse second = results.get(1).get(10, TimeUnit.SECONDS);
+            first.getHeaders().get("X-Count").add("modified");
+            first.getHeaders().add("X-Other", "value");
+
+            assertEquals(1, second.getHeaders().get("X-Count").size());
+            assertNull(second.getHeaderString("X-Other"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelDoesNotAffectOtherCoalescedCallers() throws Exception {
+        final BlockingConnector blocking = new BlockingConnector();
+        final CoalescingConnector connector = new CoalescingConnector(blocking);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final RecordingCallback firstCallback = new RecordingCallback();
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    connector.apply(request("http://localhost/hot"), firstCallback);
+                }
+            });
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (connector.getInFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            final RecordingCallback secondCallback = new RecordingCallback();
+            final Future<?> second = connector.apply(request("http://localhost/hot"), secondCallback);
+            final RecordingCallback thirdCallback = new RecordingCallback();
+            final Future<?> third = connector.apply(request("http://localhost/hot"), thirdCallback);
+            assertEquals(2, connector.getCoalescedRequestCount());
+
+            assertTrue(second.cancel(true));
+            blocking.release.countDown();
+
+            assertTrue(firstCallback.done.await(10, TimeUnit.SECONDS));
+            assertTrue(thirdCallback.done.await(10, TimeUnit.SECONDS));
+            assertEquals(200, firstCallback.response.getStatus());
+            assertEquals(200, thirdCallback.response.getStatus());
+            assertNull(thirdCallback.failure);
+            assertTrue(third.isDone() && !third.isCancelled());
+            assertEquals(1, secondCallback.done.getCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
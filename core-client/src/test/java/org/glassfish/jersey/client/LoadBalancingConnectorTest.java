@@ -0,0 +1,411 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientFactory;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.message.internal.Statuses;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * {@link LoadBalancingConnector} tests running against several local HTTP servers.
+ */
+public class LoadBalancingConnectorTest {
+
+    private static final URI SERVICE = URI.create("http://service/");
+
+    private final List<HttpServer> servers = new ArrayList<HttpServer>();
+
+    private URI startServer(final String name, final int status) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final byte[] body = (name + " " + exchange.getRequestURI().getPath()).getBytes();
+                exchange.sendResponseHeaders(status, body.length);
+                final OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        servers.add(server);
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/" + name + "/");
+    }
+
+    private URI deadNode() throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        final int port = server.getAddress().getPort();
+        server.stop(0);
+        return URI.create("http://localhost:" + port + "/dead/");
+    }
+
+    @After
+    public void tearDown() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+    }
+
+    private static Client client(LoadBalancingConnector connector) {
+        return ClientFactory.newClient(new ClientConfig().connector(connector));
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(startServer("a", 200))
+                .node(startServer("b", 200))
+                .node(startServer("c", 200))
+                .build();
+        final Client client = client(connector);
+
+        final Map<String, Integer> hits = new HashMap<String, Integer>();
+        for (int i = 0; i < 30; i++) {
+            final String response = client.target(SERVICE).path("item").request().get(String.class);
+            final String node = response.substring(0, 1);
+            assertEquals(node + " /" + node + "/item", response);
+            hits.put(node, hits.containsKey(node) ? hits.get(node) + 1 : 1);
+        }
+        assertEquals(3, hits.size());
+        for (int count : hits.values()) {
+            assertEquals(10, count);
+        }
+    }
+
+    @Test
+    public void testFailoverAndEjection() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(deadNode())
+                .node(startServer("error", 503))
+                .node(startServer("ok", 200))
+                .strategy(LoadBalancingConnector.Strategy.LEAST_OUTSTANDING_REQUESTS)
+                .maxAttempts(3)
+                .ejection(2, 1, TimeUnit.MINUTES)
+                .build();
+        final Client client = client(connector);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("ok /ok/item", client.target(SERVICE).path("item").request().get(String.class));
+        }
+
+        final List<LoadBalancingConnector.Node> nodes = connector.getNodes();
+        assertTrue(nodes.get(0).isEjected());
+        assertTrue(nodes.get(1).isEjected());
+        assertFalse(nodes.get(2).isEjected());
+        assertEquals(0, nodes.get(2).getOutstandingRequests());
+    }
+
+    @Test
+    public void testAsyncFailover() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(startServer("error", 500))
+                .node(startServer("ok", 200))
+                .build();
+        final Client client = client(connector);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("ok /ok/item",
+                    client.target(SERVICE).path("item").request().async().get(String.class).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testNonIdempotentRequestIsNotRetried() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(startServer("error", 500))
+                .node(startServer("ok", 200))
+                .build();
+        final Client client = client(connector);
+
+        int errors = 0;
+        for (int i = 0; i < 4; i++) {
+            final Response response = client.target(SERVICE).path("item").request().post(Entity.text("data"));
+            if (response.getStatus() == 500) {
+                errors++;
+            }
+            response.close();
+        }
+        assertEquals(2, errors);
+    }
+
+    @Test
+    public void testLatencyEwma() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(startServer("a", 200))
+                .node(startServer("b", 200))
+                .strategy(LoadBalancingConnector.Strategy.LATENCY_EWMA)
+                .build();
+        final Client client = client(connector);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, client.target(SERVICE).request().get().getStatus());
+        }
+        for (LoadBalancingConnector.Node node : connector.getNodes()) {
+            assertTrue(node.getLatency(TimeUnit.NANOSECONDS) > 0);
+        }
+    }
+
+    @Test
+    public void testOtherUrisAreNotBalanced() throws Exception {
+        final URI direct = startServer("direct", 200);
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(startServer("a", 200))
+                .build();
+
+        assertEquals("direct /direct/", client(connector).target(direct).request().get(String.class));
+    }
+
+    @Test
+    public void testFailuresPenalizeLatency() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(deadNode())
+                .node(startServer("ok", 200))
+                .strategy(LoadBalancingConnector.Strategy.LATENCY_EWMA)
+                .ejection(1000, 1, TimeUnit.MINUTES)
+                .build();
+        final Client client = client(connector);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("ok /ok/item", client.target(SERVICE).path("item").request().get(String.class));
+        }
+
+        final List<LoadBalancingConnector.Node> nodes = connector.getNodes();
+        assertFalse(nodes.get(0).isEjected());
+        assertTrue(nodes.get(0).getLatency(TimeUnit.NANOSECONDS) > nodes.get(1).getLatency(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testFailurePenaltyIsBounded() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(startServer("error", 503))
+                .maxAttempts(1)
+                .ejection(1000, 1, TimeUnit.MINUTES)
+                .build();
+        final Client client = client(connector);
+        final LoadBalancingConnector.Node node = connector.getNodes().get(0);
+
+        assertEquals(503, client.target(SERVICE).request().get().getStatus());
+        final double initial = node.getLatency(TimeUnit.NANOSECONDS);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(503, client.target(SERVICE).request().get().getStatus());
+        }
+        final double bounded = node.getLatency(TimeUnit.NANOSECONDS);
+        assertTrue(bounded > initial);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(503, client.target(SERVICE).request().get().getStatus());
+        }
+        assertEquals(bounded, node.getLatency(TimeUnit.NANOSECONDS), 0);
+    }
+
+    @Test
+    public void testEjectionClearsFailurePenalty() throws Exception {
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(SERVICE)
+                .node(startServer("error", 503))
+                .maxAttempts(1)
+                .ejection(3, 1, TimeUnit.MINUTES)
+                .build();
+        final Client client = client(connector);
+        final LoadBalancingConnector.Node node = connector.getNodes().get(0);
+
+        assertEquals(503, client.target(SERVICE).request().get().getStatus());
+        assertEquals(503, client.target(SERVICE).request().get().getStatus());
+        final double penalized = node.getLatency(TimeUnit.NANOSECONDS);
+        assertFalse(node.isEjected());
+
+        assertEquals(503, client.target(SERVICE).request().get().getStatus());
+        assertTrue(node.isEjected());
+        assertEquals(penalized / 4, node.getLatency(TimeUnit.NANOSECONDS), 0);
+    }
+
+    @Test
+    public void testServiceUriMatchesOnBoundary() throws Exception {
+        final URI direct = startServer("direct", 200);
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(new HttpUrlConnector())
+                .serviceUri(direct.resolve("/dir"))
+                .node(startServer("a", 200))
+                .build();
+        final Client client = client(connector);
+
+        assertEquals("direct /directory", client.target(direct.resolve("/directory")).request().get(String.class));
+        assertEquals("a /a/", client.target(direct.resolve("/dir?q=1")).request().get(String.class));
+        assertEquals("a /a/", client.target(direct.resolve("/dir")).request().get(String.class));
+    }
+
+    /**
+     * Test connector failing the first asynchronous attempt with an I/O error and leaving
+     * the subsequent attempts pending.
+     */
+    private static class FailFirstConnector implements Connector {
+
+        private final List<SettableFuture<ClientResponse>> attempts = new ArrayList<SettableFuture<ClientResponse>>();
+        private final List<AsyncConnectorCallback> callbacks = new ArrayList<AsyncConnectorCallback>();
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            final SettableFuture<ClientResponse> attempt = SettableFuture.create();
+            attempts.add(attempt);
+            callbacks.add(callback);
+            if (attempts.size() == 1) {
+                final ClientException failure = new ClientException(new IOException("connection refused"));
+                attempt.setException(failure);
+                callback.failure(failure);
+            }
+            return attempt;
+        }
+
+        @Override
+        public void close() {
+            // do nothing
+        }
+    }
+
+    /**
+     * Asynchronous connector callback recording the delivered response.
+     */
+    private static class RecordingCallback implements AsyncConnectorCallback {
+
+        private volatile ClientResponse response;
+        private volatile Throwable failure;
+
+        @Override
+        public void response(ClientResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void failure(Throwable failure) {
+            this.failure = failure;
+        }
+    }
+
+    private static ClientRequest request(URI uri) {
+        final ClientRequest request = new ClientRequest(uri,
+                ((JerseyClient) ClientFactory.newClient()).configuration(), new MapPropertiesDelegate());
+        request.setMethod("GET");
+        return request;
+    }
+
+    @Test
+    public void testAsyncRetryCompletesReturnedFuture() throws Exception {
+        final FailFirstConnector transport = new FailFirstConnector();
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(transport)
+                .serviceUri(SERVICE)
+                .node(URI.create("http://a/"))
+                .node(URI.create("http://b/"))
+                .build();
+        final RecordingCallback callback = new RecordingCallback();
+
+        final ClientRequest request = request(SERVICE.resolve("item"));
+        final Future<?> future = connector.apply(request, callback);
+        assertEquals(2, transport.attempts.size());
+        assertFalse(future.isDone());
+
+        final ClientResponse response = new ClientResponse(Statuses.from(200), request);
+        transport.callbacks.get(1).response(response);
+        assertSame(response, future.get(10, TimeUnit.SECONDS));
+        assertSame(response, callback.response);
+        assertNull(callback.failure);
+    }
+
+    @Test
+    public void testCancelStopsAsyncRetry() throws Exception {
+        final FailFirstConnector transport = new FailFirstConnector();
+        final LoadBalancingConnector connector = LoadBalancingConnector.builder(transport)
+                .serviceUri(SERVICE)
+                .node(URI.create("http://a/"))
+                .node(URI.create("http://b/"))
+                .build();
+        final RecordingCallback callback = new RecordingCallback();
+
+        final Future<?> future = connector.apply(request(SERVICE.resolve("item")), callback);
+        assertEquals(2, transport.attempts.size());
+
+        assertTrue(future.cancel(true));
+        assertTrue(transport.attempts.get(1).isCancelled());
+        assertNull(callback.response);
+        assertNull(callback.failure);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.client.ClientFactory;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.Statuses;
+
+/**
+ * {@link PreparedInvocation} client-side overhead benchmark.
+ * <p>
+ * Run the {@link #main(String[])} method to compare the client CPU time per call of plain
+ * {@code target.request().post(...)} invocations with executions of a prepared invocation. Both variants
+ * write the request entity and read the response entity using an in-memory connector, so that only the client
+ * request processing is measured. The benchmark is not executed as a part of the test suite.
+ * </p>
+ */
+public class PreparedInvocationBenchmark {
+
+    private static final int CALLS = 200000;
+    private static final int ITERATIONS = 5;
+
+    /**
+     * In-memory connector echoing the request entity written by the message body workers of the request.
+     */
+    private static class EchoConnector implements Connector {
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            final ByteArrayOutputStream entity = new ByteArrayOutputStream();
+            try {
+                request.getWorkers().writeTo(request.getEntity(), request.getEntity().getClass(),
+                        request.getEntityType(), request.getEntityAnnotations(), request.getMediaType(),
+                        request.getHeaders(), request.getPropertiesDelegate(), entity, null, true);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            final ClientResponse response = new ClientResponse(Statuses.from(200), request);
+            response.header(HttpHeaders.CONTENT_TYPE, request.getMediaType());
+            response.setEntityStream(new ByteArrayInputStream(entity.toByteArray()));
+            return response;
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            // do nothing
+        }
+    }
+
+    public static void main(String[] args) {
+        final JerseyClient client = (JerseyClient) ClientFactory.newClient(
+                new ClientConfig().connector(new EchoConnector()));
+        final WebTarget target = client.target("http://localhost/users/42");
+        final PreparedInvocation prepared = client.target("http://localhost/users/42").request("text/plain")
+                .prepare("POST");
+        final Entity<String> entity = Entity.text("{\"id\":42,\"name\":\"John\"}");
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = cpuTime();
+            for (int c = 0; c < CALLS; c++) {
+                target.request("text/plain").post(entity, String.class);
+            }
+            report(i, "Plain invocation", start);
+
+            start = cpuTime();
+            for (int c = 0; c < CALLS; c++) {
+                prepared.invoke(entity, String.class);
+            }
+            report(i, "Prepared invocation", start);
+        }
+        client.close();
+    }
+
+    private static long cpuTime() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static void report(final int iteration, final String what, final long start) {
+        final long elapsed = cpuTime() - start;
+        System.out.printf("Iteration %d: %s %d calls in %.1f ms CPU, %.2f us CPU/call%n", iteration, what, CALLS,
+                elapsed / 1000000.0, elapsed / 1000.0 / CALLS);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Type;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.ClientFactory;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.Statuses;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PreparedInvocation} unit tests.
+ */
+public class PreparedInvocationTest {
+
+    /**
+     * Test connector echoing the request method, URI, content type, custom header and entity.
+     */
+    private static class EchoConnector implements Connector {
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            final ClientResponse response = new ClientResponse(Statuses.from(200), request);
+            final String echo = request.getMethod() + " " + request.getUri()
+                    + " " + request.getMediaType()
+                    + " " + request.getHeaderString("X-Test")
+                    + " " + request.getEntity();
+            response.setEntityStream(new ByteArrayInputStream(echo.getBytes()));
+            return response;
+        }
+
+        @Override
+        public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+            return MoreExecutors.sameThreadExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    callback.response(apply(request));
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            // do nothing
+        }
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public static @interface Marked {
+    }
+
+    public static class Payload {
+
+        @Override
+        public String toString() {
+            return "payload";
+        }
+    }
+
+    /**
+     * Test writer able to write {@link Payload} only if the entity is annotated with {@link Marked}.
+     */
+    @Produces("application/x-marked")
+    public static class MarkedPayloadWriter implements MessageBodyWriter<Payload> {
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            if (type != Payload.class) {
+                return false;
+            }
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof Marked) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long getSize(Payload payload, Class<?> type, Type genericType, Annotation[] annotations,
+                            MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(Payload payload, Class<?> type, Type genericType, Annotation[] annotations,
+                            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) {
+            // not used by the echo connector
+        }
+    }
+
+    @Marked
+    private static class MarkedHolder {
+    }
+
+    /**
+     * Test connector writing the request entity using the message body workers of the request
+     * and echoing the written bytes.
+     */
+    private static class WritingConnector extends EchoConnector {
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            final ByteArrayOutputStream entity = new ByteArrayOutputStream();
+            try {
+                request.getWorkers().writeTo(request.getEntity(), request.getEntity().getClass(),
+                        request.getEntityType(), request.getEntityAnnotations(), request.getMediaType(),
+                        request.getHeaders(), request.getPropertiesDelegate(), entity, null, true);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            final ClientResponse response = new ClientResponse(Statuses.from(200), request);
+            response.header(HttpHeaders.CONTENT_TYPE, request.getMediaType());
+            response.setEntityStream(new ByteArrayInputStream(entity.toByteArray()));
+            return response;
+        }
+    }
+
+    public static class Counted {
+    }
+
+    /**
+     * Test provider counting how many times it has been considered for writing or reading {@link Counted}.
+     */
+    @Produces("application/x-counted")
+    public static class CountingProvider implements MessageBodyWriter<Counted>, MessageBodyReader<Counted> {
+
+        static final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            lookups.incrementAndGet();
+            return type == Counted.class;
+        }
+
+        @Override
+        public long getSize(Counted counted, Class<?> type, Type genericType, Annotation[] annotations,
+                            MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(Counted counted, Class<?> type, Type genericType, Annotation[] annotations,
+                            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                            OutputStream entityStream) throws IOException {
+            entityStream.write("counted".getBytes());
+        }
+
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            lookups.incrementAndGet();
+            return type == Counted.class;
+        }
+
+        @Override
+        public Counted readFrom(Class<Counted> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                                MultivaluedMap<String, String> httpHeaders, InputStream entityStream) {
+            return new Counted();
+        }
+    }
+
+    private JerseyClient client;
+
+    @Before
+    public void setUp() {
+        client = (JerseyClient) ClientFactory.newClient(
+                new ClientConfig().connector(new EchoConnector()).register(MarkedPayloadWriter.class));
+    }
+
+    @Test
+    public void testRepeatedInvocation() throws Exception {
+        final PreparedInvocation get = client.target("http://localhost/test").request()
+                .header("X-Test", "a").prepare("GET");
+
+        assertEquals("GET", get.getMethod());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("GET http://localhost/test null a null", get.invoke(String.class));
+        }
+        final Response response = get.invoke();
+        assertEquals(200, response.getStatus());
+        assertEquals("GET http://localhost/test null a null", response.readEntity(String.class));
+        assertEquals("GET http://localhost/test null a null", get.submit(String.class).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBindEntity() throws Exception {
+        final PreparedInvocation post = client.target("http://localhost/test").request().prepare("POST");
+
+        assertEquals("POST http://localhost/test text/plain null first",
+                post.invoke(Entity.text("first"), String.class));
+        assertEquals("POST http://localhost/test application/xml null second",
+                post.invoke(Entity.xml("second"), String.class));
+        assertEquals("POST http://localhost/test text/plain null third",
+                post.invoke(Entity.entity("third", new Variant(null, (String) null, "identity")), String.class));
+        assertEquals("POST http://localhost/test text/plain null fourth",
+                post.submit(Entity.entity("fourth", new Variant(null, (String) null, "identity")), String.class).get(10, TimeUnit.SECONDS));
+        assertEquals("POST http://localhost/test null null null", post.invoke(String.class));
+    }
+
+    @Test
+    public void testBuilderChangesDoNotAffectPreparedInvocation() {
+        final JerseyInvocation.Builder builder = client.target("http://localhost/test").request();
+        builder.header("X-Test", "a");
+        final PreparedInvocation get = builder.prepare("GET");
+        builder.header("X-Test", "b");
+        final PreparedInvocation delete = builder.prepare("DELETE");
+
+        assertEquals("GET http://localhost/test null a null", get.invoke(String.class));
+        assertTrue(delete.invoke(String.class).startsWith("DELETE http://localhost/test null a,b"));
+    }
+
+    @Test
+    public void testDefaultMediaTypeDependsOnAnnotations() {
+        final PreparedInvocation post = client.target("http://localhost/test").request().prepare("POST");
+        final Variant variant = new Variant(null, (String) null, "identity");
+        final Annotation[] marked = MarkedHolder.class.getAnnotations();
+
+        assertEquals("POST http://localhost/test application/octet-stream null payload",
+                post.invoke(Entity.entity(new Payload(), variant), String.class));
+        assertEquals("POST http://localhost/test application/x-marked null payload",
+                post.invoke(Entity.entity(new Payload(), variant, marked), String.class));
+        assertEquals("POST http://localhost/test application/octet-stream null payload",
+                post.invoke(Entity.entity(new Payload(), variant), String.class));
+    }
+
+    @Test
+    public void testWriterAndReaderLookupsAreCached() {
+        final JerseyClient client = (JerseyClient) ClientFactory.newClient(
+                new ClientConfig().connector(new WritingConnector()).register(CountingProvider.class));
+        final PreparedInvocation post = client.target("http://localhost/test").request().prepare("POST");
+        final Entity<Counted> entity = Entity.entity(new Counted(), "application/x-counted");
+
+        assertEquals("counted", post.invoke(entity, String.class));
+        assertTrue(post.invoke(entity, Counted.class) != null);
+        final int lookups = CountingProvider.lookups.get();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("counted", post.invoke(entity, String.class));
+            assertTrue(post.invoke(entity, Counted.class) != null);
+        }
+        assertEquals(lookups, CountingProvider.lookups.get());
+
+        // plain invocations look the providers up every time
+        client.target("http://localhost/test").request().post(entity, Counted.class);
+        assertTrue(CountingProvider.lookups.get() > lookups);
+    }
+}
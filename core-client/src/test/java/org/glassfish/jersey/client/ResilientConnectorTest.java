@@ -0,0 +1,370 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.client.ClientFactory;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.Statuses;
+import org.glassfish.jersey.spi.RequestExecutorsProvider;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ResilientConnector} unit tests.
+ */
+public class ResilientConnectorTest {
+
+    /**
+     * Test connector that fails the first {@code failures} requests and counts the received requests.
+     */
+    private static class FailingConnector implements Connector {
+
+        private final AtomicInteger requests = new AtomicInteger(0);
+        private final int failures;
+        private final int failureStatus;
+        private final long firstRequestDelay;
+        private final boolean delayOddRequests;
+
+        FailingConnector(int failures, int failureStatus, long firstRequestDelay) {
+            this(failures, failureStatus, firstRequestDelay, false);
+        }
+
+        FailingConnector(int failures, int failureStatus, long firstRequestDelay, boolean delayOddRequests) {
+            this.failures = failures;
+            this.failureStatus = failureStatus;
+            this.firstRequestDelay = firstRequestDelay;
+            this.delayOddRequests = delayOddRequests;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            final int count = requests.incrementAndGet();
+            if ((count == 1 || (delayOddRequests && count % 2 == 1)) && firstRequestDelay > 0) {
+                try {
+                    Thread.sleep(firstRequestDelay);
+                } catch (InterruptedException e) {
+                    throw new ClientException(e);
+                }
+            }
+            if (count <= failures) {
+                if (failureStatus == 0) {
+                    throw new ClientException(new IOException("Connection refused"));
+                }
+                return new ClientResponse(Statuses.from(failureStatus), request);
+            }
+            final ClientResponse response = new ClientResponse(Statuses.from(200), request);
+            response.header("X-Count", count);
+            return response;
+        }
+
+        @Override
+        public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+            return MoreExecutors.sameThreadExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.response(apply(request));
+                    } catch (Throwable t) {
+                        callback.failure(t);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            // do nothing
+        }
+    }
+
+    private static Client client(Connector connector) {
+        return ClientFactory.newClient(new ClientConfig().connector(connector));
+    }
+
+    @Test
+    public void testNoPoliciesPassThrough() {
+        final FailingConnector connector = new FailingConnector(1, 503, 0);
+        final Response response = client(connector).target("http://localhost/test").request().get();
+
+        assertEquals(503, response.getStatus());
+        assertEquals(1, connector.requests.get());
+    }
+
+    @Test
+    public void testRetryOnServerError() {
+        final FailingConnector connector = new FailingConnector(2, 503, 0);
+        final RetryPolicy retry = new RetryPolicy(3, 1, 5, TimeUnit.MILLISECONDS);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.RETRY_POLICY, retry);
+
+        final Response response = target.request().get();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("3", response.getHeaderString("X-Count"));
+        assertEquals(3, retry.getAttempts());
+        assertEquals(2, retry.getRetries());
+    }
+
+    @Test
+    public void testRetryOnIoFailureAsync() throws Exception {
+        final FailingConnector connector = new FailingConnector(1, 0, 0);
+        final RetryPolicy retry = new RetryPolicy(2, 1, 5, TimeUnit.MILLISECONDS);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.RETRY_POLICY, retry);
+
+        final Response response = target.request().async().get().get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(2, connector.requests.get());
+    }
+
+    @Test
+    public void testRetryGivesUpAfterMaxAttempts() {
+        final FailingConnector connector = new FailingConnector(5, 503, 0);
+        final RetryPolicy retry = new RetryPolicy(3, 1, 5, TimeUnit.MILLISECONDS);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.RETRY_POLICY, retry);
+
+        final Response response = target.request().get();
+
+        assertEquals(503, response.getStatus());
+        assertEquals(3, connector.requests.get());
+    }
+
+    @Test
+    public void testNonIdempotentRequestNotRetried() {
+        final FailingConnector connector = new FailingConnector(1, 503, 0);
+        final RetryPolicy retry = new RetryPolicy(3, 1, 5, TimeUnit.MILLISECONDS);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.RETRY_POLICY, retry);
+
+        final Response response = target.request().post(Entity.text("data"));
+
+        assertEquals(503, response.getStatus());
+        assertEquals(1, connector.requests.get());
+    }
+
+    @Test
+    public void testCircuitBreakerOpens() {
+        final FailingConnector connector = new FailingConnector(10, 500, 0);
+        final CircuitBreaker breaker = new CircuitBreaker(2, 1, TimeUnit.MINUTES);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.CIRCUIT_BREAKER, breaker);
+
+        assertEquals(500, target.request().get().getStatus());
+        assertFalse(breaker.isOpen(target.getUri()));
+        assertEquals(500, target.request().get().getStatus());
+        assertTrue(breaker.isOpen(target.getUri()));
+
+        try {
+            target.request().get();
+            fail("Request should have been rejected by the open circuit breaker.");
+        } catch (ClientException expected) {
+            // ok
+        }
+        assertEquals(2, connector.requests.get());
+        assertEquals(1, breaker.getRejectedRequests());
+        assertEquals(1, breaker.getOpenCircuits());
+    }
+
+    @Test
+    public void testStuckTrialReplacedAfterOpenTime() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(1, 50, TimeUnit.MILLISECONDS);
+
+        breaker.onFailure("http://localhost");
+        assertFalse(breaker.allow("http://localhost"));
+        Thread.sleep(100);
+        // trial request, its outcome is never reported
+        assertTrue(breaker.allow("http://localhost"));
+        assertFalse(breaker.allow("http://localhost"));
+        Thread.sleep(100);
+        assertTrue(breaker.allow("http://localhost"));
+
+        breaker.onSuccess("http://localhost");
+        assertFalse(breaker.isOpen(URI.create("http://localhost/test")));
+    }
+
+    @Test
+    public void testCancelledTrialReopensCircuit() throws Exception {
+        final AtomicInteger requests = new AtomicInteger(0);
+        final Connector connector = new Connector() {
+            @Override
+            public ClientResponse apply(ClientRequest request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+                if (requests.incrementAndGet() == 1) {
+                    callback.response(new ClientResponse(Statuses.from(500), request));
+                }
+                // subsequent requests never complete
+                return SettableFuture.create();
+            }
+
+            @Override
+            public void close() {
+                // do nothing
+            }
+        };
+        final CircuitBreaker breaker = new CircuitBreaker(1, 50, TimeUnit.MILLISECONDS);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.CIRCUIT_BREAKER, breaker);
+
+        assertEquals(500, target.request().get().getStatus());
+        assertEquals(1, breaker.getOpenedCount());
+
+        Thread.sleep(100);
+        // the trial request is cancelled once the waiting caller is interrupted
+        final Thread caller = Thread.currentThread();
+        final Thread interrupter = new Thread() {
+            @Override
+            public void run() {
+                while (requests.get() < 2) {
+                    Thread.yield();
+                }
+                caller.interrupt();
+            }
+        };
+        interrupter.start();
+        try {
+            target.request().get();
+            fail("Trial request should have been cancelled.");
+        } catch (ClientException expected) {
+            // ok
+        } finally {
+            interrupter.join();
+            Thread.interrupted();
+        }
+
+        // the cancelled trial is reported as a failure and opens the circuit again
+        assertEquals(2, breaker.getOpenedCount());
+        assertTrue(breaker.isOpen(target.getUri()));
+    }
+
+    @Test
+    public void testHedgedRequestWins() {
+        final FailingConnector connector = new FailingConnector(0, 0, 2000);
+        final HedgingPolicy hedging = HedgingPolicy.fixed(50, TimeUnit.MILLISECONDS);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.HEDGING_POLICY, hedging);
+
+        final long start = System.currentTimeMillis();
+        final Response response = target.request().get();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("2", response.getHeaderString("X-Count"));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(1, hedging.getHedgedRequests());
+        assertEquals(1, hedging.getHedgeWins());
+    }
+
+    @Test
+    public void testAsyncHedgingDoesNotBlockRequestingExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final FailingConnector connector = new FailingConnector(0, 0, 500);
+            final HedgingPolicy hedging = HedgingPolicy.fixed(50, TimeUnit.MILLISECONDS);
+            final Client client = ClientFactory.newClient(new ClientConfig().connector(connector)
+                    .register(new RequestExecutorsProvider() {
+                        @Override
+                        public ExecutorService getRequestingExecutor() {
+                            return executor;
+                        }
+                    }));
+            final WebTarget target = client.target("http://localhost/test");
+            target.configuration().setProperty(ClientProperties.HEDGING_POLICY, hedging);
+
+            // the only requesting thread sends the original request; the hedged request is queued
+            // behind it and dropped once the original completes
+            final Response response = target.request().async().get().get(10, TimeUnit.SECONDS);
+
+            assertEquals(200, response.getStatus());
+            assertEquals("1", response.getHeaderString("X-Count"));
+            assertEquals(1, connector.requests.get());
+            assertEquals(0, hedging.getHedgedRequests());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHedgingDelaySamplesLosingAttempts() throws Exception {
+        // every original request is slow and loses to its hedged copy
+        final FailingConnector connector = new FailingConnector(0, 0, 200, true);
+        final HedgingPolicy hedging = new HedgingPolicy(90, 10, TimeUnit.MILLISECONDS);
+        final WebTarget target = client(connector).target("http://localhost/test");
+        target.configuration().setProperty(ClientProperties.HEDGING_POLICY, hedging);
+
+        for (int i = 0; i < 32; i++) {
+            assertEquals(200, target.request().get().getStatus());
+        }
+        assertEquals(32, hedging.getHedgeWins());
+
+        // the latencies of the slow originals are recorded once they complete
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (hedging.getDelay(TimeUnit.MILLISECONDS) < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(hedging.getDelay(TimeUnit.MILLISECONDS) >= 100);
+    }
+}
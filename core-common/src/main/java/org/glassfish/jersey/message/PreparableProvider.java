@@ -0,0 +1,72 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.message;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * A {@link javax.ws.rs.ext.MessageBodyReader} or {@link javax.ws.rs.ext.MessageBodyWriter} that is able to
+ * prepare itself for an entity type ahead of the first message, e.g. by building the (un)marshalling
+ * metadata it would otherwise create lazily while processing the first request.
+ * <p>
+ * The server runtime invokes the method for the entity types of all resource methods at application start-up
+ * when the {@code jersey.config.server.provider.eagerInitialization} property is enabled.
+ * </p>
+ */
+public interface PreparableProvider {
+
+    /**
+     * Prepare the provider for reading or writing entities of the given type.
+     * <p>
+     * The method is invoked only with parameters for which the provider has been selected by the
+     * {@link MessageBodyWorkers}. Implementations should not throw exceptions if the preparation fails;
+     * the entity type is then prepared lazily as usual.
+     * </p>
+     *
+     * @param type        raw entity type.
+     * @param genericType generic entity type.
+     * @param annotations annotations of the resource method or entity parameter.
+     * @param mediaType   media type of the entity.
+     */
+    public void prepare(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType);
+}
@@ -99,7 +99,7 @@ public class InboundMessageContext {
     };
     private static final Annotation[] EMPTY_ANNOTATIONS = new Annotation[0];
 
-    private final MultivaluedMap<String, String> headers;
+    private MultivaluedMap<String, String> headers;
     private final ContentStream contentStream;
     private MessageBodyWorkers workers;
 
@@ -247,8 +247,51 @@ public class InboundMessageContext {
         this.contentStream = new ContentStream(EMPTY);
     }
 
+    /**
+     * Container provided source of the inbound message headers.
+     * <p>
+     * Containers that keep the request headers in their own data structures can
+     * {@link InboundMessageContext#setHeaderSource(HeaderSource) set} a header source instead of
+     * copying all the headers into the message context. The headers are then read from the source
+     * only once they are actually needed.
+     * </p>
+     */
+    public static interface HeaderSource {
+
+        /**
+         * Get the names of all the headers available in the source.
+         *
+         * @return header names.
+         */
+        public Iterable<String> getHeaderNames();
+
+        /**
+         * Get the values of a header. The header name must be matched case-insensitively.
+         *
+         * @param name header name.
+         * @return header values or {@code null} (or an empty list) if the header is not present.
+         */
+        public List<String> getHeaderValues(String name);
+    }
+
     // Message headers
 
+    /**
+     * Use the container provided header source as the message headers.
+     * <p>
+     * Any headers previously added to the context are discarded. The headers are read from
+     * the source lazily; the source is copied into the context only once the headers are
+     * modified or iterated.
+     * </p>
+     *
+     * @param source container provided header source.
+     * @return updated context.
+     */
+    public InboundMessageContext setHeaderSource(HeaderSource source) {
+        this.headers = new LazyInboundHeaders(source);
+        return this;
+    }
+
     /**
      * Add a new header value.
      *
@@ -0,0 +1,224 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.message.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.glassfish.jersey.internal.util.KeyComparatorHashMap;
+import org.glassfish.jersey.internal.util.StringIgnoreCaseKeyComparator;
+
+/**
+ * Inbound message headers view reading the headers from a container provided
+ * {@link InboundMessageContext.HeaderSource header source} on demand.
+ * <p>
+ * Header values looked up by name are read from the source and cached; the lists returned
+ * from these lookups are read-only. Any other operation (iteration, size queries or mutation)
+ * copies all the headers from the source into a regular mutable inbound headers map, which
+ * is then used for all the subsequent operations.
+ * </p>
+ *
+ * @see InboundMessageContext#setHeaderSource(InboundMessageContext.HeaderSource)
+ */
+final class LazyInboundHeaders implements MultivaluedMap<String, String> {
+
+    private final InboundMessageContext.HeaderSource source;
+    private Map<String, List<String>> cache;
+    private MultivaluedMap<String, String> headers;
+
+    /**
+     * Create new lazy inbound headers view.
+     *
+     * @param source container provided header source.
+     */
+    LazyInboundHeaders(InboundMessageContext.HeaderSource source) {
+        this.source = source;
+    }
+
+    private MultivaluedMap<String, String> materialize() {
+        if (headers == null) {
+            final MultivaluedMap<String, String> map = HeadersFactory.createInbound();
+            for (String name : source.getHeaderNames()) {
+                final List<String> values = source.getHeaderValues(name);
+                if (values != null && !values.isEmpty()) {
+                    map.addAll(name, values);
+                }
+            }
+            headers = map;
+            cache = null;
+        }
+        return headers;
+    }
+
+    @Override
+    public List<String> get(Object key) {
+        if (headers != null) {
+            return headers.get(key);
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        if (cache == null) {
+            cache = new KeyComparatorHashMap<String, List<String>>(StringIgnoreCaseKeyComparator.SINGLETON);
+        } else if (cache.containsKey(key)) {
+            return cache.get(key);
+        }
+
+        List<String> values = source.getHeaderValues((String) key);
+        values = (values == null || values.isEmpty()) ? null : Collections.unmodifiableList(values);
+        cache.put((String) key, values);
+        return values;
+    }
+
+    @Override
+    public String getFirst(String key) {
+        if (headers != null) {
+            return headers.getFirst(key);
+        }
+        final List<String> values = get(key);
+        return (values == null) ? null : values.get(0);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public void putSingle(String key, String value) {
+        materialize().putSingle(key, value);
+    }
+
+    @Override
+    public void add(String key, String value) {
+        materialize().add(key, value);
+    }
+
+    @Override
+    public void addAll(String key, String... newValues) {
+        materialize().addAll(key, newValues);
+    }
+
+    @Override
+    public void addAll(String key, List<String> valueList) {
+        materialize().addAll(key, valueList);
+    }
+
+    @Override
+    public void addFirst(String key, String value) {
+        materialize().addFirst(key, value);
+    }
+
+    @Override
+    public boolean equalsIgnoreValueOrder(MultivaluedMap<String, String> otherMap) {
+        return materialize().equalsIgnoreValueOrder(otherMap);
+    }
+
+    @Override
+    public int size() {
+        return materialize().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return materialize().isEmpty();
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return materialize().containsValue(value);
+    }
+
+    @Override
+    public List<String> put(String key, List<String> value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public List<String> remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends List<String>> m) {
+        materialize().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return materialize().keySet();
+    }
+
+    @Override
+    public Collection<List<String>> values() {
+        return materialize().values();
+    }
+
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        return materialize().entrySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || materialize().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return materialize().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return materialize().toString();
+    }
+}
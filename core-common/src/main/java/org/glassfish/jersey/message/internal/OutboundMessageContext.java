@@ -134,7 +134,10 @@ public class OutboundMessageContext {
      */
     public OutboundMessageContext(OutboundMessageContext original) {
         this.headers = HeadersFactory.createOutbound();
-        this.headers.putAll(original.headers);
+        // copy the header value lists so that the copy can be modified independently of the original
+        for (Map.Entry<String, List<Object>> header : original.headers.entrySet()) {
+            this.headers.put(header.getKey(), new ArrayList<Object>(header.getValue()));
+        }
         this.rootStream = new CommittingOutputStream();
         this.entityStream = rootStream;
 
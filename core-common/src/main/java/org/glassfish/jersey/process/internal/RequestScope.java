@@ -218,6 +218,29 @@ public class RequestScope implements Context<RequestScoped> {
         return current().getReference();
     }
 
+    /**
+     * Seed the currently running request scope instance with a value for the given descriptor.
+     * <p>
+     * This is a fast path for code that knows the per-request value of a request-scoped service
+     * up front (e.g. container specific request and response references). The seeded value is
+     * stored directly in the scope instance and is returned for any subsequent lookup of the
+     * descriptor, without the need to resolve the service via the service locator first.
+     * </p>
+     * <p>
+     * The descriptor should be resolved once and reused for all the requests.
+     * </p>
+     *
+     * @param <T>        seeded value type.
+     * @param descriptor active descriptor of the request-scoped service.
+     * @param value      request-scoped service instance.
+     * @throws IllegalStateException in case there is no active request scope associated with the
+     *                               current thread or in case a value has already been stored
+     *                               for the descriptor in the current scope instance.
+     */
+    public <T> void seed(ActiveDescriptor<T> descriptor, T value) throws IllegalStateException {
+        current().put(descriptor, value);
+    }
+
     private Instance current() {
         Instance scopeInstance = currentScopeInstance.get();
         checkState(scopeInstance != null, "Not inside a request scope.");
@@ -43,8 +43,11 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
@@ -52,6 +55,8 @@ import javax.ws.rs.core.Link;
 import javax.ws.rs.ext.RuntimeDelegate;
 
 import org.glassfish.jersey.internal.TestRuntimeDelegate;
+import org.glassfish.jersey.internal.util.KeyComparatorHashMap;
+import org.glassfish.jersey.internal.util.StringIgnoreCaseKeyComparator;
 
 import org.junit.Test;
 import static org.junit.Assert.assertFalse;
@@ -194,4 +199,64 @@ public class InboundMessageContextTest {
         assertTrue(r.getLink("self").equals(link1));
         assertTrue(r.getLink("update").equals(link2) || r.getLink("update").equals(link3));
     }
+
+    private static class TestHeaderSource implements InboundMessageContext.HeaderSource {
+
+        private final Map<String, List<String>> headers =
+                new KeyComparatorHashMap<String, List<String>>(StringIgnoreCaseKeyComparator.SINGLETON);
+        private int namesRead;
+        private int valuesRead;
+
+        TestHeaderSource(String name, String... values) {
+            headers.put(name, Arrays.asList(values));
+        }
+
+        @Override
+        public Iterable<String> getHeaderNames() {
+            namesRead++;
+            return headers.keySet();
+        }
+
+        @Override
+        public List<String> getHeaderValues(String name) {
+            valuesRead++;
+            return headers.get(name);
+        }
+    }
+
+    @Test
+    public void testHeaderSourceLookup() {
+        final TestHeaderSource source = new TestHeaderSource(HttpHeaders.ACCEPT, "application/xml", "text/plain");
+        InboundMessageContext r = new InboundMessageContext();
+        r.header("FOO", "bar");
+        r.setHeaderSource(source);
+
+        assertEquals("application/xml,text/plain", r.getHeaderString("accept"));
+        assertEquals("application/xml", r.getHeaders().getFirst(HttpHeaders.ACCEPT));
+        assertTrue(r.getHeaders().containsKey("ACCEPT"));
+        assertNull(r.getHeaderString("FOO"));
+        assertNull(r.getHeaders().getFirst("FOO"));
+
+        // values are cached, names never read
+        assertEquals(2, source.valuesRead);
+        assertEquals(0, source.namesRead);
+    }
+
+    @Test
+    public void testHeaderSourceMaterializedOnMutation() {
+        final TestHeaderSource source = new TestHeaderSource(HttpHeaders.ACCEPT, "application/xml");
+        InboundMessageContext r = new InboundMessageContext();
+        r.setHeaderSource(source);
+
+        r.header("FOO", "bar");
+        assertEquals(1, source.namesRead);
+        assertEquals(2, r.getHeaders().size());
+        assertEquals("bar", r.getHeaderString("foo"));
+
+        r.getHeaders().add(HttpHeaders.ACCEPT, "text/plain");
+        assertEquals("application/xml,text/plain", r.getHeaderString(HttpHeaders.ACCEPT));
+        // source is not modified
+        assertEquals(1, source.headers.get(HttpHeaders.ACCEPT).size());
+        assertEquals(1, source.namesRead);
+    }
 }
@@ -182,6 +182,29 @@ public class RequestScopeTest {
         assertNull(instance.get(inhab));
     }
 
+    @Test
+    public void testSeedCurrentInstance() throws Exception {
+        final RequestScope requestScope = new RequestScope();
+        final TestProvider inhab = new TestProvider("a");
+        Instance instance = requestScope.runInScope(new Callable<Instance>() {
+
+            @Override
+            public Instance call() throws Exception {
+                requestScope.seed(inhab, "1");
+                try {
+                    requestScope.seed(inhab, "2");
+                    fail("Seeding the same descriptor twice should fail.");
+                } catch (IllegalStateException expected) {
+                    // expected
+                }
+                return requestScope.suspendCurrent();
+            }
+        });
+        assertEquals("1", instance.get(inhab));
+        instance.release();
+        assertNull(instance.get(inhab));
+    }
+
     /**
      * Test request scope inhabitant.
      *
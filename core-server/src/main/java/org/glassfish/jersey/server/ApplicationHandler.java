@@ -42,6 +42,8 @@ package org.glassfish.jersey.server;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -50,9 +52,12 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -85,8 +90,10 @@ import org.glassfish.jersey.internal.inject.AbstractBinder;
 import org.glassfish.jersey.internal.inject.Injections;
 import org.glassfish.jersey.internal.inject.ProviderBinder;
 import org.glassfish.jersey.internal.inject.Providers;
+import org.glassfish.jersey.internal.util.PropertiesHelper;
 import org.glassfish.jersey.internal.util.ReflectionHelper;
 import org.glassfish.jersey.message.MessageBodyWorkers;
+import org.glassfish.jersey.message.PreparableProvider;
 import org.glassfish.jersey.message.internal.HeaderValueException;
 import org.glassfish.jersey.message.internal.OutboundMessageContext;
 import org.glassfish.jersey.model.ContractProvider;
@@ -103,8 +110,11 @@ import org.glassfish.jersey.server.internal.routing.Router;
 import org.glassfish.jersey.server.internal.routing.RoutingStage;
 import org.glassfish.jersey.server.internal.routing.RuntimeModelBuilder;
 import org.glassfish.jersey.server.model.BasicValidator;
+import org.glassfish.jersey.server.model.Invocable;
 import org.glassfish.jersey.server.model.ModelValidationException;
+import org.glassfish.jersey.server.model.Parameter;
 import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
 import org.glassfish.jersey.server.model.ResourceModelIssue;
 import org.glassfish.jersey.server.model.ResourceModelValidator;
 import org.glassfish.jersey.server.spi.ComponentProvider;
@@ -209,6 +219,10 @@ public final class ApplicationHandler {
      */
     private RequestInvoker<ContainerRequest, ContainerResponse> invoker;
     private final ResourceConfig configuration;
+    /**
+     * Number of container requests being currently processed.
+     */
+    private final AtomicInteger activeRequests = new AtomicInteger(0);
 
     /**
      * Create a new Jersey application handler using a default configuration.
@@ -418,6 +432,65 @@ public final class ApplicationHandler {
 
         // inject self
         locator.inject(this);
+
+        if (configuration.isProperty(ServerProperties.PROVIDER_EAGER_INITIALIZATION)) {
+            prepareEntityProviders(resourceBag.models, locator.<MessageBodyWorkers>getService(MessageBodyWorkers.class));
+        }
+    }
+
+    /**
+     * Prepare the {@link PreparableProvider preparable} entity providers selected for the entity parameters and
+     * return types of all resource methods.
+     *
+     * @param resources resource models.
+     * @param workers   message body workers.
+     */
+    private static void prepareEntityProviders(final List<Resource> resources, final MessageBodyWorkers workers) {
+        for (Resource resource : resources) {
+            final List<ResourceMethod> methods = new ArrayList<ResourceMethod>(resource.getResourceMethods());
+            methods.addAll(resource.getSubResourceMethods());
+
+            for (ResourceMethod method : methods) {
+                final Invocable invocable = method.getInvocable();
+
+                for (Parameter parameter : invocable.getParameters()) {
+                    if (parameter.getSource() == Parameter.Source.ENTITY) {
+                        for (MediaType mediaType : mediaTypes(method.getConsumedTypes())) {
+                            prepare(workers.getMessageBodyReader(parameter.getRawType(), parameter.getType(),
+                                    parameter.getAnnotations(), mediaType),
+                                    parameter.getRawType(), parameter.getType(), parameter.getAnnotations(), mediaType);
+                        }
+                    }
+                }
+
+                final Class<?> responseType = invocable.getRawResponseType();
+                if (responseType != void.class && responseType != Void.class && responseType != Object.class
+                        && !Response.class.isAssignableFrom(responseType)) {
+                    final Method handlingMethod = invocable.getHandlingMethod();
+                    final Annotation[] annotations = handlingMethod.getDeclaredAnnotations();
+                    for (MediaType mediaType : mediaTypes(method.getProducedTypes())) {
+                        prepare(workers.getMessageBodyWriter(responseType, invocable.getResponseType(), annotations, mediaType),
+                                responseType, invocable.getResponseType(), annotations, mediaType);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<MediaType> mediaTypes(final List<MediaType> declared) {
+        return declared.isEmpty() ? Collections.singletonList(MediaType.WILDCARD_TYPE) : declared;
+    }
+
+    private static void prepare(final Object provider, final Class<?> type, final Type genericType,
+                                final Annotation[] annotations, final MediaType mediaType) {
+        if (provider instanceof PreparableProvider) {
+            try {
+                ((PreparableProvider) provider).prepare(type, genericType, annotations, mediaType);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, LocalizationMessages.PROVIDER_PREPARATION_FAILED(
+                        provider.getClass().getName(), genericType, mediaType), ex);
+            }
+        }
     }
 
     /**
@@ -672,10 +745,14 @@ public final class ApplicationHandler {
                 return responseContext;
             }
 
+            private Throwable failure;
+
             @Override
             protected ContainerResponse handleFailure(Throwable exception) {
-                return responseContext = ApplicationHandler.this.writeResponse(requestContext,
-                        ApplicationHandler.handleFailure(exception, requestContext, responseContext, locator));
+                final ContainerResponse response =
+                        ApplicationHandler.handleFailure(exception, requestContext, responseContext, locator);
+                failure = serverFailure(exception, response);
+                return responseContext = ApplicationHandler.this.writeResponse(requestContext, response);
             }
 
             @Override
@@ -686,7 +763,11 @@ public final class ApplicationHandler {
 
             @Override
             protected void release() {
-                releaseRequestProcessing(responseContext);
+                try {
+                    releaseRequestProcessing(responseContext);
+                } finally {
+                    requestContext.notifyCompletion(failure);
+                }
             }
         };
 
@@ -728,9 +809,22 @@ public final class ApplicationHandler {
      */
     public void handle(final ContainerRequest requestContext) {
         checkContainerRequestContext(requestContext);
+        activeRequests.incrementAndGet();
 
         final ContainerResponseWriterCallback callback = new ContainerResponseWriterCallback(requestContext) {
+            private final AtomicBoolean finished = new AtomicBoolean(false);
             private ContainerResponse responseContext;
+            private Throwable failure;
+
+            /**
+             * Stop counting the request as active. The request is finished either by the timeout
+             * response or by the release of the request processing, whichever comes first.
+             */
+            private void finish() {
+                if (finished.compareAndSet(false, true)) {
+                    activeRequests.decrementAndGet();
+                }
+            }
 
             @Override
             protected void writeResponse(ContainerResponse response) {
@@ -739,19 +833,31 @@ public final class ApplicationHandler {
 
             @Override
             protected void writeResponse(Throwable exception) {
-                responseContext = ApplicationHandler.this.writeResponse(
-                        requestContext, ApplicationHandler.handleFailure(exception, requestContext, responseContext, locator));
+                final ContainerResponse response =
+                        ApplicationHandler.handleFailure(exception, requestContext, responseContext, locator);
+                failure = serverFailure(exception, response);
+                responseContext = ApplicationHandler.this.writeResponse(requestContext, response);
             }
 
             @Override
             protected void writeTimeoutResponse(ProcessingContext context) {
-                responseContext = ApplicationHandler.this.writeResponse(
-                        requestContext, ApplicationHandler.prepareTimeoutResponse(context, requestContext));
+                try {
+                    responseContext = ApplicationHandler.this.writeResponse(
+                            requestContext, ApplicationHandler.prepareTimeoutResponse(context, requestContext));
+                } finally {
+                    finish();
+                    requestContext.notifyCompletion(null);
+                }
             }
 
             @Override
             protected void release() {
-                releaseRequestProcessing(responseContext);
+                try {
+                    releaseRequestProcessing(responseContext);
+                } finally {
+                    finish();
+                    requestContext.notifyCompletion(failure);
+                }
             }
         };
 
@@ -789,6 +895,20 @@ public final class ApplicationHandler {
         return new ContainerResponse(requestContext, response);
     }
 
+    /**
+     * Get the failure the request processing {@link ContainerRequest#registerCompletionCallback(javax.ws.rs.container.CompletionCallback)
+     * completion callbacks} are notified about. Exceptions mapped to a response that is not a server error
+     * (e.g. {@code 404 Not Found} or a {@link WebApplicationException} with a client error status) are part
+     * of the regular request processing and are not reported as failures.
+     *
+     * @param exception request processing exception.
+     * @param response  response the exception has been mapped to.
+     * @return the exception if it resulted in a server error response, {@code null} otherwise.
+     */
+    private static Throwable serverFailure(Throwable exception, ContainerResponse response) {
+        return response.getStatus() >= 500 ? exception : null;
+    }
+
     private static ContainerResponse handleFailure(Throwable failure, ContainerRequest requestContext,
                                                    ContainerResponse containerResponse, ServiceLocator locator) {
         if (failure instanceof MappableException) {
@@ -924,7 +1044,12 @@ public final class ApplicationHandler {
 
                 if (responseContext.isChunked()) {
                     try {
-                        ((ChunkedResponse) entity).setContext(requestContext, responseContext);
+                        final Map<String, Object> properties = configuration.getProperties();
+                        ((ChunkedResponse) entity).setContext(requestContext, responseContext,
+                                PropertiesHelper.getValue(properties,
+                                        ServerProperties.CHUNKED_RESPONSE_FLUSH_COALESCING, Boolean.FALSE),
+                                PropertiesHelper.getValue(properties,
+                                        ServerProperties.CHUNKED_RESPONSE_HEARTBEAT_INTERVAL, 0));
                     } catch (IOException ex) {
                         LOGGER.log(Level.SEVERE, LocalizationMessages.ERROR_WRITING_RESPONSE_ENTITY_CHUNK(), ex);
                     }
@@ -954,4 +1079,14 @@ public final class ApplicationHandler {
     public ResourceConfig getConfiguration() {
         return configuration;
     }
+
+    /**
+     * Get the number of requests {@link #handle(ContainerRequest) handled} by this application
+     * handler, whose processing has not finished yet.
+     *
+     * @return number of requests being currently processed.
+     */
+    public int getActiveRequestCount() {
+        return activeRequests.get();
+    }
 }
@@ -40,9 +40,10 @@
 package org.glassfish.jersey.server;
 
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,21 +57,13 @@ import org.glassfish.jersey.server.internal.LocalizationMessages;
  */
 public class Broadcaster<T> implements BroadcasterListener<T> {
 
-    private final ConcurrentSkipListSet<BroadcasterListener<T>> listeners =
-            new ConcurrentSkipListSet<BroadcasterListener<T>> (new Comparator<BroadcasterListener<T>>() {
-                @Override
-                public int compare(final BroadcasterListener<T> listener1, final BroadcasterListener<T> listener2) {
-                    return listener1.hashCode() - listener2.hashCode();
-                }
-            });
+    private final Set<BroadcasterListener<T>> listeners =
+            Collections.newSetFromMap(new ConcurrentHashMap<BroadcasterListener<T>, Boolean>());
 
-    private final ConcurrentSkipListSet<ChunkedResponse<T>> chunkedResponses =
-            new ConcurrentSkipListSet<ChunkedResponse<T>> (new Comparator<ChunkedResponse<T>>() {
-        @Override
-        public int compare(final ChunkedResponse<T> chunkedResponse1, final ChunkedResponse<T> chunkedResponse2) {
-            return chunkedResponse1.hashCode() - chunkedResponse2.hashCode();
-        }
-    });
+    // chunked responses are compared by identity
+    private final Set<ChunkedResponse<T>> chunkedResponses =
+            Collections.newSetFromMap(new ConcurrentHashMap<ChunkedResponse<T>, Boolean>());
+    private final AtomicLong closedCount = new AtomicLong(0);
 
     /**
      * Creates a new instance.
@@ -106,7 +99,13 @@ public class Broadcaster<T> implements BroadcasterListener<T> {
      * the list of registered chunked responses.
      */
     public final boolean add(final ChunkedResponse<T> chunkedResponse) {
-        return chunkedResponses.add(chunkedResponse);
+        chunkedResponse.addBroadcaster(this);
+        final boolean added = chunkedResponses.add(chunkedResponse);
+        if (chunkedResponse.isClosed()) {
+            // closed meanwhile - the response might have notified the broadcaster before being added
+            onChunkedResponseClosed(chunkedResponse);
+        }
+        return added;
     }
 
     /**
@@ -119,9 +118,29 @@ public class Broadcaster<T> implements BroadcasterListener<T> {
      * of registered chunked responses.
      */
     public final boolean remove(final ChunkedResponse<T> chunkedResponse) {
+        chunkedResponse.removeBroadcaster(this);
         return chunkedResponses.remove(chunkedResponse);
     }
 
+    /**
+     * Get the number of registered {@link ChunkedResponse} instances.
+     *
+     * @return number of live chunked responses.
+     */
+    public int getLiveCount() {
+        return chunkedResponses.size();
+    }
+
+    /**
+     * Get the number of {@link ChunkedResponse} instances that have been unregistered from this broadcaster
+     * because they were found closed.
+     *
+     * @return number of closed chunked responses.
+     */
+    public long getClosedCount() {
+        return closedCount.get();
+    }
+
     /**
      * Register {@link BroadcasterListener} for {@link Broadcaster} events listening.
      *
@@ -143,12 +162,24 @@ public class Broadcaster<T> implements BroadcasterListener<T> {
         return listeners.remove(listener);
     }
 
+    /**
+     * Check whether there are any {@link ChunkedResponse} instances registered to this broadcaster.
+     *
+     * @return {@code true} if no chunked response is registered.
+     */
+    boolean isEmpty() {
+        return chunkedResponses.isEmpty();
+    }
+
     /**
      * Broadcast a chunk to all registered {@link ChunkedResponse} instances.
      *
+     * Subclasses overriding this method have to call {@code super.broadcast(chunk)} or
+     * {@link #broadcast(Object, ChunkWriter)} to get the chunk delivered.
+     *
      * @param chunk chunk to be sent.
      */
-    public final void broadcast(final T chunk) {
+    public void broadcast(final T chunk) {
         forEachChunkedResponse(new Task<ChunkedResponse<T>>() {
             @Override
             public void run(final ChunkedResponse<T> cr) throws IOException {
@@ -157,6 +188,40 @@ public class Broadcaster<T> implements BroadcasterListener<T> {
         });
     }
 
+    /**
+     * Broadcast a chunk to all registered {@link ChunkedResponse} instances, writing it to each of them
+     * using the given writer.
+     *
+     * @param chunk  chunk to be sent.
+     * @param writer writer of the chunk to a single chunked response.
+     */
+    protected final void broadcast(final T chunk, final ChunkWriter<T> writer) {
+        forEachChunkedResponse(new Task<ChunkedResponse<T>>() {
+            @Override
+            public void run(final ChunkedResponse<T> cr) throws IOException {
+                writer.write(cr, chunk);
+            }
+        });
+    }
+
+    /**
+     * Writes a broadcast chunk to a single {@link ChunkedResponse}. Allows subclasses to deliver a chunk along
+     * with data specific to the broadcast.
+     *
+     * @param <T> chunk type.
+     */
+    protected static interface ChunkWriter<T> {
+
+        /**
+         * Write the chunk to the chunked response.
+         *
+         * @param chunkedResponse registered chunked response.
+         * @param chunk           chunk being broadcast.
+         * @throws IOException in case the chunk cannot be written.
+         */
+        public void write(ChunkedResponse<T> chunkedResponse, T chunk) throws IOException;
+    }
+
     /**
      * Close all registered {@link ChunkedResponse} instances.
      */
@@ -197,9 +262,21 @@ public class Broadcaster<T> implements BroadcasterListener<T> {
         void run(T parameter) throws IOException;
     }
 
+    /**
+     * Unregister a closed {@link ChunkedResponse} and notify the listeners (at most once per registration).
+     *
+     * @param chunkedResponse closed chunked response.
+     */
+    void onChunkedResponseClosed(final ChunkedResponse<T> chunkedResponse) {
+        if (chunkedResponses.remove(chunkedResponse)) {
+            chunkedResponse.removeBroadcaster(this);
+            closedCount.incrementAndGet();
+            fireOnClose(chunkedResponse);
+        }
+    }
+
     private void forEachChunkedResponse(final Task<ChunkedResponse<T>> t) {
-        for (Iterator<ChunkedResponse<T>> iterator = chunkedResponses.iterator(); iterator.hasNext();) {
-            ChunkedResponse<T> chunkedResponse = iterator.next();
+        for (ChunkedResponse<T> chunkedResponse : chunkedResponses) {
             if (!chunkedResponse.isClosed()) {
                 try {
                     t.run(chunkedResponse);
@@ -208,8 +285,7 @@ public class Broadcaster<T> implements BroadcasterListener<T> {
                 }
             }
             if (chunkedResponse.isClosed()) {
-                iterator.remove();
-                fireOnClose(chunkedResponse);
+                onChunkedResponseClosed(chunkedResponse);
             }
         }
     }
@@ -0,0 +1,250 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Registry of {@link Broadcaster broadcasters} keyed by topic.
+ * <p>
+ * A broadcaster is created for a topic when the first {@link ChunkedResponse} subscribes to the topic and it is
+ * discarded once the topic has no subscribers left - either because they have been
+ * {@link #unsubscribe(String, ChunkedResponse) unsubscribed} or because they have been closed.
+ * Membership is based on the identity of the chunked responses.
+ * </p>
+ * <p>
+ * The chunks are published asynchronously. The topics are sharded across a fixed number of delivery workers,
+ * each topic being always served by the same worker, so that the chunks published to a topic are delivered
+ * in the order they were published and a slow topic does not hold up the publishing thread.
+ * </p>
+ * <p>
+ * The broadcasters are created by {@link #createBroadcaster(String)}, which can be overridden
+ * e.g. to create broadcasters with listeners registered.
+ * </p>
+ *
+ * @param <T> chunk type.
+ */
+public class BroadcasterRegistry<T> {
+
+    /**
+     * Broadcaster of a topic. Once retired (i.e. removed from the registry when found empty), no more
+     * subscriptions are accepted.
+     */
+    private static final class Topic<T> {
+        private final Broadcaster<T> broadcaster;
+        private boolean retired = false;
+
+        Topic(final Broadcaster<T> broadcaster) {
+            this.broadcaster = broadcaster;
+        }
+    }
+
+    private final ConcurrentMap<String, Topic<T>> topics = new ConcurrentHashMap<String, Topic<T>>();
+    private final ExecutorService[] workers;
+
+    /**
+     * Create new registry with the number of delivery workers equal to the number of available processors.
+     */
+    public BroadcasterRegistry() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create new registry.
+     *
+     * @param workers number of delivery workers.
+     */
+    public BroadcasterRegistry(final int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.workers = new ExecutorService[workers];
+        final ThreadFactoryBuilder threadFactory = new ThreadFactoryBuilder().setDaemon(true);
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = Executors.newSingleThreadExecutor(
+                    threadFactory.setNameFormat("jersey-broadcaster-registry-" + i + "-%d").build());
+        }
+    }
+
+    /**
+     * Create a broadcaster for a new topic.
+     *
+     * @param topic topic name.
+     * @return new broadcaster.
+     */
+    protected Broadcaster<T> createBroadcaster(final String topic) {
+        return new Broadcaster<T>();
+    }
+
+    /**
+     * Subscribe a {@link ChunkedResponse} to a topic.
+     *
+     * @param topic topic name.
+     * @param chunkedResponse chunked response to subscribe.
+     * @return {@code true} if subscribed, {@code false} if the chunked response was already subscribed to the topic.
+     */
+    public boolean subscribe(final String topic, final ChunkedResponse<T> chunkedResponse) {
+        while (true) {
+            Topic<T> t = topics.get(topic);
+            if (t == null) {
+                final Topic<T> newTopic = new Topic<T>(createBroadcaster(topic));
+                newTopic.broadcaster.addBroadcasterListener(new BroadcasterListener<T>() {
+                    @Override
+                    public void onException(final ChunkedResponse<T> chunkedResponse, final Exception exception) {
+                    }
+
+                    @Override
+                    public void onClose(final ChunkedResponse<T> chunkedResponse) {
+                        retireIfEmpty(topic, newTopic);
+                    }
+                });
+                t = topics.putIfAbsent(topic, newTopic);
+                if (t == null) {
+                    t = newTopic;
+                }
+            }
+            synchronized (t) {
+                if (!t.retired) {
+                    return t.broadcaster.add(chunkedResponse);
+                }
+            }
+            // the topic has been retired meanwhile - retry with a new one
+        }
+    }
+
+    /**
+     * Unsubscribe a {@link ChunkedResponse} from a topic. The chunked response is not closed.
+     *
+     * @param topic topic name.
+     * @param chunkedResponse chunked response to unsubscribe.
+     * @return {@code true} if unsubscribed, {@code false} if the chunked response was not subscribed to the topic.
+     */
+    public boolean unsubscribe(final String topic, final ChunkedResponse<T> chunkedResponse) {
+        final Topic<T> t = topics.get(topic);
+        if (t == null) {
+            return false;
+        }
+        final boolean removed = t.broadcaster.remove(chunkedResponse);
+        retireIfEmpty(topic, t);
+        return removed;
+    }
+
+    /**
+     * Publish a chunk to all {@link ChunkedResponse chunked responses} subscribed to a topic. The chunk is delivered
+     * asynchronously by the delivery worker serving the topic. Publishing to a topic without subscribers
+     * has no effect.
+     *
+     * @param topic topic name.
+     * @param chunk chunk to be published.
+     */
+    public void publish(final String topic, final T chunk) {
+        final Topic<T> t = topics.get(topic);
+        if (t == null) {
+            return;
+        }
+        workerFor(topic).execute(new Runnable() {
+            @Override
+            public void run() {
+                t.broadcaster.broadcast(chunk);
+                retireIfEmpty(topic, t);
+            }
+        });
+    }
+
+    /**
+     * Close all {@link ChunkedResponse chunked responses} subscribed to a topic and discard the topic.
+     * The chunked responses are closed asynchronously by the delivery worker serving the topic, after
+     * all previously published chunks have been delivered.
+     *
+     * @param topic topic name.
+     */
+    public void close(final String topic) {
+        final Topic<T> t = topics.get(topic);
+        if (t == null) {
+            return;
+        }
+        workerFor(topic).execute(new Runnable() {
+            @Override
+            public void run() {
+                t.broadcaster.closeAll();
+                retireIfEmpty(topic, t);
+            }
+        });
+    }
+
+    /**
+     * Get the number of topics with subscribers.
+     *
+     * @return number of topics.
+     */
+    public int getTopicCount() {
+        return topics.size();
+    }
+
+    /**
+     * Stop the delivery workers. Chunks published before are still delivered.
+     */
+    public void shutdown() {
+        for (final ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    private ExecutorService workerFor(final String topic) {
+        return workers[(topic.hashCode() & Integer.MAX_VALUE) % workers.length];
+    }
+
+    private void retireIfEmpty(final String topic, final Topic<T> t) {
+        if (!t.broadcaster.isEmpty()) {
+            return;
+        }
+        synchronized (t) {
+            if (!t.retired && t.broadcaster.isEmpty()) {
+                t.retired = true;
+                topics.remove(topic, t);
+            }
+        }
+    }
+}
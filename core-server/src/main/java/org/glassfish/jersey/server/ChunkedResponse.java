@@ -40,18 +40,45 @@
 package org.glassfish.jersey.server;
 
 import java.io.Closeable;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.ws.rs.core.GenericType;
 
 import org.glassfish.jersey.server.internal.LocalizationMessages;
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.glassfish.jersey.server.spi.NonBlockingContainerResponseWriter;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Used for sending messages in "typed" chunks. Useful for long running processes,
  * which needs to produce partial responses.
+ * <p>
+ * A connection closed by the client (or by a proxy in between) is only noticed when writing to it fails. To detect
+ * dead connections early, a heartbeat chunk can be {@link #setHeartbeat(long, TimeUnit, Object) configured}, which is
+ * written whenever no other chunk has been written for the heartbeat interval. The heartbeats of all chunked
+ * responses are scheduled by a single shared timer and written by a small shared pool of threads. A heartbeat
+ * is skipped while the previous heartbeat or any other chunk of the same response is still being written.
+ * A chunked response closed due to a failed write is removed
+ * from the {@link Broadcaster broadcasters} it has been registered to right away.
+ * </p>
  *
  * @param <T> chunk type.
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -59,12 +86,48 @@ import org.glassfish.jersey.server.internal.LocalizationMessages;
  */
 // TODO:  something like prequel/sequel - usable for EventChannelWriter and XML related writers
 public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ChunkedResponse.class.getName());
+
+    /**
+     * Heartbeat timer and writers shared by all chunked responses, created on first use.
+     */
+    private static final class Heartbeats {
+        private static final int WRITER_THREADS = 4;
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("jersey-chunked-response-heartbeat-%d").setDaemon(true).build());
+        // the heartbeats are written outside of the timer thread, so that a blocked write does not delay other heartbeats;
+        // the queue holds at most one heartbeat per response, since a response skips heartbeats while one is in flight
+        private static final ExecutorService WRITERS = createWriters();
+
+        private static ExecutorService createWriters() {
+            final ThreadPoolExecutor writers = new ThreadPoolExecutor(WRITER_THREADS, WRITER_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setNameFormat("jersey-chunked-response-heartbeat-writer-%d").setDaemon(true)
+                            .build());
+            writers.allowCoreThreadTimeOut(true);
+            return writers;
+        }
+    }
+
     private final BlockingDeque<T> queue = new LinkedBlockingDeque<T>();
 
     private volatile boolean closed = false;
     private boolean flushing = false;
     private volatile ContainerRequest requestContext;
     private volatile ContainerResponse responseContext;
+    private volatile boolean flushCoalescing = false;
+    // accessed only by the thread currently flushing the queue
+    private FlushGate flushGate;
+
+    private final CopyOnWriteArraySet<Broadcaster<T>> broadcasters = new CopyOnWriteArraySet<Broadcaster<T>>();
+    private final AtomicBoolean closeNotified = new AtomicBoolean(false);
+
+    private volatile long heartbeatInterval = 0;
+    private volatile T heartbeatChunk;
+    private volatile long lastWrite = System.nanoTime();
+    private final AtomicBoolean heartbeatInFlight = new AtomicBoolean(false);
+    // guarded by this
+    private ScheduledFuture<?> heartbeat;
 
     protected ChunkedResponse() {
     }
@@ -92,8 +155,127 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
         if (chunk != null) {
             queue.add(chunk);
         }
+        lastWrite = System.nanoTime();
 
-        flushQueue();
+        try {
+            flushQueue();
+        } finally {
+            if (closed) {
+                notifyClosed();
+            }
+        }
+    }
+
+    /**
+     * Configure the heartbeat of this response. The heartbeat chunk is written whenever no chunk has been written
+     * for the given interval, so that a connection closed by the client is detected even if no regular chunks
+     * are being sent.
+     *
+     * @param interval heartbeat interval; {@code 0} disables the heartbeat.
+     * @param unit time unit of the interval.
+     * @param chunk heartbeat chunk.
+     */
+    public void setHeartbeat(final long interval, final TimeUnit unit, final T chunk) {
+        if (interval < 0 || (interval > 0 && chunk == null)) {
+            throw new IllegalArgumentException();
+        }
+        heartbeatChunk = chunk;
+        heartbeatInterval = unit.toMillis(interval);
+        if (requestContext != null) {
+            scheduleHeartbeat();
+        }
+    }
+
+    /**
+     * Create the heartbeat chunk used when the heartbeat is enabled for all chunked responses
+     * by the {@link ServerProperties#CHUNKED_RESPONSE_HEARTBEAT_INTERVAL} property.
+     *
+     * Can be implemented by subclasses having a natural "no-op" chunk.
+     *
+     * @return heartbeat chunk or {@code null} (default) if no heartbeat should be sent unless
+     *         {@link #setHeartbeat(long, TimeUnit, Object) configured} explicitly.
+     */
+    protected T createHeartbeatChunk() {
+        return null;
+    }
+
+    private synchronized void scheduleHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+        final long interval = heartbeatInterval;
+        if (interval == 0 || closed) {
+            return;
+        }
+
+        heartbeat = Heartbeats.TIMER.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (System.nanoTime() - lastWrite < TimeUnit.MILLISECONDS.toNanos(interval) || isWriting()
+                        || !heartbeatInFlight.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    Heartbeats.WRITERS.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                write(heartbeatChunk);
+                            } catch (IOException e) {
+                                LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE_ENTITY_CHUNK(), e);
+                            } catch (RuntimeException e) {
+                                LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE_ENTITY_CHUNK(), e);
+                            } finally {
+                                heartbeatInFlight.set(false);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    heartbeatInFlight.set(false);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check whether any chunk is queued or being written to the client at the moment. A heartbeat written
+     * meanwhile would only pile up behind the pending chunks.
+     */
+    private synchronized boolean isWriting() {
+        return flushing || !queue.isEmpty();
+    }
+
+    /**
+     * Register a broadcaster to be notified when this response gets closed.
+     */
+    void addBroadcaster(final Broadcaster<T> broadcaster) {
+        broadcasters.add(broadcaster);
+    }
+
+    /**
+     * Unregister a broadcaster.
+     */
+    void removeBroadcaster(final Broadcaster<T> broadcaster) {
+        broadcasters.remove(broadcaster);
+    }
+
+    /**
+     * Stop the heartbeat and notify the broadcasters once this response is closed.
+     */
+    private void notifyClosed() {
+        if (!closeNotified.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+                heartbeat = null;
+            }
+        }
+        for (final Broadcaster<T> broadcaster : broadcasters) {
+            broadcaster.onChunkedResponseClosed(this);
+        }
     }
 
     private void flushQueue() throws IOException {
@@ -104,6 +286,7 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
         Exception ex = null;
         T t;
         boolean shouldClose;
+        boolean awaitWritePossible = false;
 
         synchronized (this) {
             if (flushing) {
@@ -125,7 +308,20 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
         }
 
         try {
+            if (t != null && flushCoalescing) {
+                holdFlushes();
+            }
             while (t != null) {
+                if (!isWritePossible()) {
+                    // the client does not keep up - push out the buffered data and, instead of blocking
+                    // the thread, keep the "flushing" flag set and resume flushing the queue once
+                    // the container is able to accept more data
+                    flushBatch();
+                    queue.addFirst(t);
+                    shouldClose = false;
+                    awaitWritePossible = true;
+                    break;
+                }
                 responseContext.setEntityStream(requestContext.getWorkers().writeTo(
                         t,
                         t.getClass(),
@@ -153,7 +349,7 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
                             // other thread will take care of it -> flush the stream and unset
                             // the flushing flag at the very end (to make sure it is unset only if no
                             // exception is thrown)
-                            responseContext.commitStream();
+                            flushBatch();
                             // if closing, we keep the "flushing" flag set, since no other thread needs to flush
                             // this queue anymore - finally clause will take care of closing the stream
                             flushing = shouldClose;
@@ -168,6 +364,9 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
             // remember the exception (it will get rethrown from finally clause, once it does it's work)
             ex = e;
         } finally {
+            if (flushGate != null) {
+                flushGate.hold = false;
+            }
             if (shouldClose) {
                 try {
                     responseContext.close();
@@ -186,6 +385,80 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
                 }
             }
         }
+
+        if (awaitWritePossible) {
+            ((NonBlockingContainerResponseWriter) requestContext.getResponseWriter()).notifyWritePossible(
+                    new NonBlockingContainerResponseWriter.WriteListener() {
+                        @Override
+                        public void onWritePossible() {
+                            synchronized (ChunkedResponse.this) {
+                                flushing = false;
+                            }
+                            try {
+                                flushQueue();
+                            } catch (IOException e) {
+                                LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE_ENTITY_CHUNK(), e);
+                            } catch (RuntimeException e) {
+                                LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE_ENTITY_CHUNK(), e);
+                            }
+                            if (closed) {
+                                notifyClosed();
+                            }
+                        }
+
+                        @Override
+                        public void onError(final Throwable t) {
+                            // the "flushing" flag stays set - nothing is going to be written anymore
+                            closed = true;
+                            notifyClosed();
+                            queue.clear();
+                            LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE_ENTITY_CHUNK(), t);
+                            try {
+                                responseContext.close();
+                            } catch (RuntimeException e) {
+                                LOGGER.log(Level.FINE, LocalizationMessages.ERROR_WRITING_RESPONSE_ENTITY_CHUNK(), e);
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Make sure the entity stream is guarded by the {@link FlushGate} and hold back the flushes
+     * issued while writing the chunks of the current batch.
+     */
+    private void holdFlushes() {
+        if (flushGate == null) {
+            flushGate = new FlushGate(responseContext.getEntityStream());
+            responseContext.setEntityStream(flushGate);
+        }
+        flushGate.hold = true;
+    }
+
+    /**
+     * Push the chunks written so far to the client. In the flush coalescing mode the entity stream is
+     * flushed here once for the whole batch of chunks.
+     *
+     * @throws IOException when encountered any problem during flushing the entity stream.
+     */
+    private void flushBatch() throws IOException {
+        if (flushGate != null) {
+            flushGate.hold = false;
+            responseContext.getEntityStream().flush();
+        }
+        responseContext.commitStream();
+    }
+
+    /**
+     * Check whether the container is able to accept the next chunk without blocking the writing thread.
+     *
+     * @return {@code true} if the next chunk can be written, {@code false} if the container supports
+     *         non-blocking writes and its output buffer is full.
+     */
+    private boolean isWritePossible() {
+        final ContainerResponseWriter writer = requestContext.getResponseWriter();
+        return !(writer instanceof NonBlockingContainerResponseWriter)
+                || ((NonBlockingContainerResponseWriter) writer).isWritePossible();
     }
 
     /**
@@ -195,7 +468,11 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
     @Override
     public void close() throws IOException {
         closed = true;
-        flushQueue();
+        try {
+            flushQueue();
+        } finally {
+            notifyClosed();
+        }
     }
 
     /**
@@ -218,7 +495,7 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
 
     @Override
     public int hashCode() {
-        return queue.hashCode();
+        return System.identityHashCode(this);
     }
 
     @Override
@@ -231,12 +508,59 @@ public class ChunkedResponse<T> extends GenericType<T> implements Closeable {
      *
      * @param requestContext request context.
      * @param responseContext response context.
+     * @param flushCoalescing if {@code true}, the entity stream is flushed once per batch of queued chunks
+     *                        instead of once per chunk.
+     * @param heartbeatInterval default heartbeat interval in milliseconds, used if the heartbeat has not been
+     *                          configured for this response explicitly; {@code 0} means no default heartbeat.
      * @throws IOException when encountered any problem during serializing or writing a chunk.
+     * @see ServerProperties#CHUNKED_RESPONSE_FLUSH_COALESCING
+     * @see ServerProperties#CHUNKED_RESPONSE_HEARTBEAT_INTERVAL
      */
     void setContext(final ContainerRequest requestContext,
-                    final ContainerResponse responseContext) throws IOException {
+                    final ContainerResponse responseContext,
+                    final boolean flushCoalescing,
+                    final long heartbeatInterval) throws IOException {
+        this.flushCoalescing = flushCoalescing;
+        if (this.heartbeatInterval == 0 && heartbeatInterval > 0) {
+            final T chunk = createHeartbeatChunk();
+            if (chunk != null) {
+                this.heartbeatChunk = chunk;
+                this.heartbeatInterval = heartbeatInterval;
+            }
+        }
         this.requestContext = requestContext;
         this.responseContext = responseContext;
-        flushQueue();
+        try {
+            flushQueue();
+        } finally {
+            if (closed) {
+                notifyClosed();
+            }
+        }
+        scheduleHeartbeat();
+    }
+
+    /**
+     * Entity stream wrapper that ignores flushes while chunks of a batch are being written.
+     */
+    private static final class FlushGate extends FilterOutputStream {
+
+        private volatile boolean hold;
+
+        FlushGate(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!hold) {
+                out.flush();
+            }
+        }
     }
 }
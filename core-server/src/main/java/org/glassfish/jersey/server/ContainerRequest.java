@@ -43,13 +43,16 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import javax.ws.rs.container.CompletionCallback;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.*;
 
@@ -111,7 +114,8 @@ public class ContainerRequest extends InboundMessageContext
     private RequestScopedInitializer requestScopedInitializer;
     // Request-scoped response writer of the invoking container
     private ContainerResponseWriter responseWriter;
-
+    // Lazily created list of the request processing completion callbacks
+    private List<CompletionCallback> completionCallbacks;
 
     /**
      * Create new Jersey container request context.
@@ -183,6 +187,58 @@ public class ContainerRequest extends InboundMessageContext
         this.responseWriter = responseWriter;
     }
 
+    /**
+     * Register a callback to be notified once the processing of the request is finished.
+     * <p>
+     * The processing is finished once the response (or its headers in case of a
+     * {@link ChunkedResponse chunked response}) has been written, the processing has failed,
+     * has been cancelled or has timed out. The callback may be invoked from a different thread
+     * than the one that registered it. Callbacks registered after the processing has finished
+     * are never invoked.
+     * </p>
+     * <p>
+     * The {@link CompletionCallback#onError(Throwable)} method is invoked only if the processing failed
+     * with an exception that resulted in a server error ({@code 5xx}) response. Exceptions mapped to
+     * any other response (e.g. a {@link WebApplicationException} with a client error status or
+     * a {@code 404 Not Found} of an unmatched request) are reported via {@link CompletionCallback#onComplete()}.
+     * </p>
+     *
+     * @param callback request processing completion callback.
+     */
+    public void registerCompletionCallback(CompletionCallback callback) {
+        synchronized (this) {
+            if (completionCallbacks == null) {
+                completionCallbacks = new LinkedList<CompletionCallback>();
+            }
+            completionCallbacks.add(callback);
+        }
+    }
+
+    /**
+     * Notify the registered {@link #registerCompletionCallback(CompletionCallback) completion callbacks}
+     * that the processing of the request has finished. Only the first invocation of the method has an
+     * effect.
+     *
+     * @param failure request processing failure or {@code null} if the processing has finished normally.
+     */
+    void notifyCompletion(Throwable failure) {
+        final List<CompletionCallback> callbacks;
+        synchronized (this) {
+            callbacks = completionCallbacks;
+            completionCallbacks = Collections.emptyList();
+        }
+        if (callbacks == null) {
+            return;
+        }
+        for (CompletionCallback callback : callbacks) {
+            if (failure == null) {
+                callback.onComplete();
+            } else {
+                callback.onError(failure);
+            }
+        }
+    }
+
     /**
      * Read entity from a context entity input stream.
      *
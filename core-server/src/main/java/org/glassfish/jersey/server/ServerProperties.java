@@ -233,6 +233,169 @@ public final class ServerProperties {
      */
     public static final String FEATURE_DISABLE_WADL = "jersey.config.server.wadl.disableWadl";
 
+    /**
+     * If {@code true}, containers reload the application in the background without interrupting
+     * the request processing.
+     * <p>
+     * The new application is created in a background thread, optionally warmed up by replaying the
+     * {@link #RELOAD_WARM_UP_ITERATIONS recorded request shapes} and only then atomically
+     * switched for the new requests. Requests still being processed by the previous application
+     * are drained (up to the {@link #RELOAD_DRAIN_TIMEOUT drain timeout}) before the previous
+     * application is destroyed.
+     * </p>
+     * <p>
+     * The property is read from the configuration of the currently deployed application (request
+     * shape recording) as well as from the configuration of the reloaded application.
+     * </p>
+     * <p>
+     * The default value is {@code false}, i.e. the application is reloaded synchronously.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String RELOAD_IN_BACKGROUND = "jersey.config.server.reload.background";
+
+    /**
+     * Number of times the recorded request shapes are replayed through a reloaded application
+     * before the application starts serving the requests.
+     * <p>
+     * Request shapes (HTTP method, request URI and {@code Accept} header) of {@code GET} and
+     * {@code HEAD} requests are recorded while the previous application is serving requests.
+     * The warm-up requests are real requests processed by the resource methods of the new
+     * application, so the warm-up should only be enabled if the {@code GET} and {@code HEAD}
+     * resource methods of the application are free of side effects. The property is only
+     * applicable if the {@link #RELOAD_IN_BACKGROUND background reload} is enabled.
+     * </p>
+     * <p>
+     * The default value is {@code 0}, i.e. the warm-up is disabled and no request shapes are recorded.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String RELOAD_WARM_UP_ITERATIONS = "jersey.config.server.reload.warmUp.iterations";
+
+    /**
+     * Maximum number of distinct request shapes recorded for the warm-up of a reloaded application.
+     * <p>
+     * The default value is {@code 32}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String RELOAD_WARM_UP_SHAPES = "jersey.config.server.reload.warmUp.shapes";
+
+    /**
+     * Maximum time in milliseconds to wait for the requests being processed by the previous application
+     * to finish once a reloaded application has been switched in.
+     * <p>
+     * The default value is {@code 30000}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String RELOAD_DRAIN_TIMEOUT = "jersey.config.server.reload.drainTimeout";
+
+    /**
+     * Initial limit of the number of requests processed concurrently by the
+     * {@link org.glassfish.jersey.server.filter.ConcurrencyLimitFilter concurrency limit filter}.
+     * <p>
+     * The limit is adapted at runtime between {@code 1} and the {@link #CONCURRENCY_LIMIT_MAX maximum limit}
+     * based on the observed request latencies.
+     * </p>
+     * <p>
+     * The default value is {@code 20}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String CONCURRENCY_LIMIT_INITIAL = "jersey.config.server.concurrencyLimit.initial";
+
+    /**
+     * Maximum limit of the number of requests processed concurrently by the
+     * {@link org.glassfish.jersey.server.filter.ConcurrencyLimitFilter concurrency limit filter}.
+     * <p>
+     * The default value is {@code 1000}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String CONCURRENCY_LIMIT_MAX = "jersey.config.server.concurrencyLimit.max";
+
+    /**
+     * Request processing time in milliseconds above which a request is considered a sign of overload
+     * by the {@link org.glassfish.jersey.server.filter.ConcurrencyLimitFilter concurrency limit filter}
+     * and the concurrency limit is decreased.
+     * <p>
+     * The default value is {@code 1000}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String CONCURRENCY_LIMIT_LATENCY_THRESHOLD = "jersey.config.server.concurrencyLimit.latencyThreshold";
+
+    /**
+     * Fraction of the current concurrency limit above which the requests to the resource methods annotated
+     * with {@link org.glassfish.jersey.server.filter.Sheddable &#64;Sheddable} are rejected by the
+     * {@link org.glassfish.jersey.server.filter.ConcurrencyLimitFilter concurrency limit filter}.
+     * <p>
+     * The default value is {@code 0.5}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String CONCURRENCY_LIMIT_SHEDDABLE_RATIO = "jersey.config.server.concurrencyLimit.sheddableRatio";
+
+    /**
+     * If {@code true}, a {@link org.glassfish.jersey.server.ChunkedResponse chunked response} flushes
+     * the response entity stream once per batch of chunks queued while the previous chunks were being
+     * written, instead of flushing after each chunk. Flushes issued by the chunk message body writers
+     * (e.g. the server-sent event writer) are coalesced into a single flush of the whole batch.
+     * <p>
+     * The default value is {@code false}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String CHUNKED_RESPONSE_FLUSH_COALESCING = "jersey.config.server.chunkedResponse.flushCoalescing";
+
+    /**
+     * Default heartbeat interval in milliseconds of the {@link org.glassfish.jersey.server.ChunkedResponse chunked
+     * responses} providing a heartbeat chunk (e.g. server-sent event channels). The heartbeat chunk is written
+     * whenever no chunk has been written for the interval, so that connections closed by the clients are detected
+     * and the closed responses are removed from the {@link org.glassfish.jersey.server.Broadcaster broadcasters}
+     * early. A value of {@code 0} disables the default heartbeat.
+     * <p>
+     * The default value is {@code 0}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String CHUNKED_RESPONSE_HEARTBEAT_INTERVAL = "jersey.config.server.chunkedResponse.heartbeatInterval";
+
+    /**
+     * If set to {@code true}, the entity providers selected for the entity parameters and return types
+     * of all resource methods are {@link org.glassfish.jersey.message.PreparableProvider prepared} when
+     * the application is initialized, so that expensive (un)marshalling metadata (e.g. JAXB contexts) are
+     * not built while processing the first requests.
+     * <p>
+     * The default value is {@code false}.
+     * </p>
+     * <p>
+     * The name of the configuration property is <code>{@value}</code>.
+     * </p>
+     */
+    public static final String PROVIDER_EAGER_INITIALIZATION = "jersey.config.server.provider.eagerInitialization";
+
     private ServerProperties() {
         // prevents instantiation
     }
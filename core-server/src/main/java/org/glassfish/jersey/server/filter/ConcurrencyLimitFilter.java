@@ -0,0 +1,178 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.filter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.BindingPriority;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.internal.util.PropertiesHelper;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+
+/**
+ * A pre-matching filter limiting the number of requests processed concurrently by the application.
+ * <p>
+ * The filter measures the number of requests in flight and their processing time and adapts
+ * the concurrency limit using an additive-increase/multiplicative-decrease algorithm: the limit grows
+ * while the requests finish within the {@link ServerProperties#CONCURRENCY_LIMIT_LATENCY_THRESHOLD latency
+ * threshold} and shrinks when they get slower or fail with a server error. Requests ending with
+ * a client error response (e.g. {@code 404 Not Found} or {@code 400 Bad Request}) do not count
+ * as failures. Requests exceeding the current limit are rejected with {@code 503 Service Unavailable}
+ * before the request is matched to a resource method or its entity is read.
+ * </p>
+ * <p>
+ * Requests to resource methods annotated with {@link Sheddable &#64;Sheddable} are rejected already
+ * when the number of requests in flight exceeds the {@link ServerProperties#CONCURRENCY_LIMIT_SHEDDABLE_RATIO
+ * configured fraction} of the current limit.
+ * </p>
+ * <p>
+ * The filter behavior can be configured using the {@link ServerProperties#CONCURRENCY_LIMIT_INITIAL},
+ * {@link ServerProperties#CONCURRENCY_LIMIT_MAX}, {@link ServerProperties#CONCURRENCY_LIMIT_LATENCY_THRESHOLD}
+ * and {@link ServerProperties#CONCURRENCY_LIMIT_SHEDDABLE_RATIO} properties.
+ * </p>
+ */
+@PreMatching
+@BindingPriority(BindingPriority.AUTHENTICATION - 500) // must go before any other filter
+public class ConcurrencyLimitFilter implements ContainerRequestFilter {
+
+    private static final String LIMITER_PROPERTY = ConcurrencyLimitFilter.class.getName() + ".limiter";
+    private static final String SHED_PROPERTY = ConcurrencyLimitFilter.class.getName() + ".shed";
+
+    private final ConcurrencyLimiter limiter;
+
+    /**
+     * Registers the concurrency limit filter and the filter handling the {@link Sheddable &#64;Sheddable}
+     * resource methods into the passed {@link ResourceConfig} instance.
+     *
+     * @param rc Resource config.
+     */
+    public static void enableFor(ResourceConfig rc) {
+        rc.addClasses(ConcurrencyLimitFilter.class, SheddableFilter.class);
+    }
+
+    /**
+     * Create a filter that reads the configuration from the provided {@link ResourceConfig} instance.
+     *
+     * This constructor will be called by the Jersey runtime when the filter class is returned from
+     * {@link javax.ws.rs.core.Application#getClasses()}. The {@link ResourceConfig} instance will get
+     * auto-injected.
+     *
+     * @param rc ResourceConfig instance that holds the configuration for the filter.
+     */
+    public ConcurrencyLimitFilter(@Context ResourceConfig rc) {
+        final Map<String, Object> properties = rc.getProperties();
+        this.limiter = new ConcurrencyLimiter(
+                PropertiesHelper.getValue(properties, ServerProperties.CONCURRENCY_LIMIT_INITIAL, 20),
+                PropertiesHelper.getValue(properties, ServerProperties.CONCURRENCY_LIMIT_MAX, 1000),
+                TimeUnit.MILLISECONDS.toNanos(
+                        PropertiesHelper.getValue(properties, ServerProperties.CONCURRENCY_LIMIT_LATENCY_THRESHOLD, 1000)));
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext) throws IOException {
+        if (!limiter.tryAcquire()) {
+            requestContext.abortWith(serviceUnavailable());
+            return;
+        }
+
+        final long start = System.nanoTime();
+        requestContext.setProperty(LIMITER_PROPERTY, limiter);
+        ((ContainerRequest) requestContext).registerCompletionCallback(new CompletionCallback() {
+
+            @Override
+            public void onComplete() {
+                if (requestContext.getProperty(SHED_PROPERTY) != null) {
+                    // shed requests do not say anything about the application latency
+                    limiter.release();
+                } else {
+                    limiter.release(System.nanoTime() - start, false);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                limiter.release(System.nanoTime() - start, true);
+            }
+        });
+    }
+
+    private static Response serviceUnavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+    }
+
+    /**
+     * Name-bound filter rejecting the requests to the {@link Sheddable &#64;Sheddable} resource methods
+     * once the number of requests in flight exceeds the configured fraction of the current concurrency limit.
+     */
+    @Sheddable
+    @BindingPriority(BindingPriority.AUTHENTICATION - 500) // must go before any other filter
+    public static class SheddableFilter implements ContainerRequestFilter {
+
+        private final double ratio;
+
+        /**
+         * Create a filter that reads the configuration from the provided {@link ResourceConfig} instance.
+         *
+         * @param rc ResourceConfig instance that holds the configuration for the filter.
+         */
+        public SheddableFilter(@Context ResourceConfig rc) {
+            this.ratio = PropertiesHelper.getValue(rc.getProperties(), ServerProperties.CONCURRENCY_LIMIT_SHEDDABLE_RATIO, 0.5);
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext) throws IOException {
+            final ConcurrencyLimiter limiter = (ConcurrencyLimiter) requestContext.getProperty(LIMITER_PROPERTY);
+            if (limiter != null && limiter.getInFlight() > limiter.getLimit() * ratio) {
+                requestContext.setProperty(SHED_PROPERTY, Boolean.TRUE);
+                requestContext.abortWith(serviceUnavailable());
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limit based on the additive-increase/multiplicative-decrease (AIMD) algorithm.
+ * <p>
+ * The limit is increased by one whenever a request finishes within the latency threshold while
+ * the utilization of the limit is at least 50%. The limit is decreased by 10% whenever a request
+ * fails with a server error or exceeds the latency threshold.
+ * </p>
+ *
+ * @see ConcurrencyLimitFilter
+ */
+final class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object limitLock = new Object();
+    private volatile double limit;
+
+    /**
+     * Create new concurrency limiter.
+     *
+     * @param initialLimit          initial concurrency limit.
+     * @param maxLimit              maximum concurrency limit.
+     * @param latencyThresholdNanos request processing time in nanoseconds above which the limit is decreased.
+     */
+    ConcurrencyLimiter(int initialLimit, int maxLimit, long latencyThresholdNanos) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(MIN_LIMIT, initialLimit));
+        this.latencyThresholdNanos = latencyThresholdNanos;
+    }
+
+    /**
+     * Try to admit a new request.
+     *
+     * @return {@code true} if the request has been admitted and must be {@link #release(long, boolean) released}
+     *         once processed, {@code false} if the concurrency limit has been reached.
+     */
+    boolean tryAcquire() {
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release an admitted request and adapt the limit.
+     *
+     * @param latencyNanos request processing time in nanoseconds.
+     * @param failed       {@code true} if the request processing has failed with a server error.
+     */
+    void release(long latencyNanos, boolean failed) {
+        final int current = inFlight.getAndDecrement();
+
+        synchronized (limitLock) {
+            if (failed || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            } else if (current * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    /**
+     * Release an admitted request without adapting the limit (e.g. because the request has been
+     * rejected before being processed).
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Get the current concurrency limit.
+     *
+     * @return current concurrency limit.
+     */
+    int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Get the number of admitted requests being processed.
+     *
+     * @return number of requests in flight.
+     */
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
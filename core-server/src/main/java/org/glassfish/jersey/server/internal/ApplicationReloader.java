@@ -0,0 +1,489 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.internal;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.internal.util.PropertiesHelper;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerException;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Container utility reloading the deployed application.
+ * <p>
+ * Unless the {@link ServerProperties#RELOAD_IN_BACKGROUND background reload} is enabled, the new
+ * application is created and switched in synchronously. In the background reload mode, the new
+ * application is created in a background thread, optionally warmed up by replaying the request shapes
+ * recorded by the container while serving the requests of the previous application, and switched in
+ * atomically. Afterwards, the requests still being processed by the previous application are drained
+ * and the previous application is destroyed.
+ * </p>
+ * <p>
+ * Containers must obtain the application for each request using {@link #acquire()} and release it
+ * once the request has been dispatched to the application. The reloader does not destroy the previous
+ * application while any container thread holds it, so that a request is never dispatched to an
+ * application that has already been destroyed.
+ * </p>
+ *
+ * @param <A> container specific application type (e.g. {@link ApplicationHandler} or an object wrapping it).
+ */
+public final class ApplicationReloader<A> {
+
+    private static final Logger LOGGER = Logger.getLogger(ApplicationReloader.class.getName());
+
+    private static final int DEFAULT_WARM_UP_ITERATIONS = 0;
+    private static final int DEFAULT_WARM_UP_SHAPES = 32;
+    private static final long DEFAULT_DRAIN_TIMEOUT = 30000;
+    private static final long WARM_UP_REQUEST_TIMEOUT = 10000;
+
+    /**
+     * Container specific part of the reload.
+     *
+     * @param <A> container specific application type.
+     */
+    public static interface Target<A> {
+
+        /**
+         * Create a new application for the supplied configuration.
+         *
+         * @param configuration application configuration.
+         * @return new application.
+         * @throws Exception in case the application cannot be created.
+         */
+        public A create(ResourceConfig configuration) throws Exception;
+
+        /**
+         * Get the currently deployed application.
+         *
+         * @return currently deployed application.
+         */
+        public A getApplication();
+
+        /**
+         * Get the application handler of the application.
+         *
+         * @param application application.
+         * @return application handler.
+         */
+        public ApplicationHandler getApplicationHandler(A application);
+
+        /**
+         * Route all new requests to the supplied application and notify the container lifecycle listeners.
+         *
+         * @param application new application.
+         */
+        public void switchTo(A application);
+    }
+
+    /**
+     * Reference to the deployed application held by a container while dispatching a request.
+     *
+     * @param <A> container specific application type.
+     */
+    public static final class Reference<A> {
+
+        private final A application;
+        private final ApplicationHandler handler;
+        private final AtomicInteger dispatching = new AtomicInteger(0);
+
+        private Reference(final A application, final ApplicationHandler handler) {
+            this.application = application;
+            this.handler = handler;
+        }
+
+        /**
+         * Get the referenced application.
+         *
+         * @return referenced application.
+         */
+        public A get() {
+            return application;
+        }
+
+        /**
+         * Release the reference once the request has been dispatched to the application.
+         */
+        public void release() {
+            dispatching.decrementAndGet();
+        }
+    }
+
+    /**
+     * Recorded request shape.
+     */
+    private static final class RequestShape {
+
+        private final String method;
+        private final URI relativeUri;
+        private final List<String> accept;
+
+        private RequestShape(String method, URI relativeUri, List<String> accept) {
+            this.method = method;
+            this.relativeUri = relativeUri;
+            this.accept = accept;
+        }
+
+        ContainerRequest toRequest(URI baseUri) {
+            final ContainerRequest request = new ContainerRequest(baseUri, baseUri.resolve(relativeUri), method,
+                    null, new MapPropertiesDelegate());
+            if (accept != null) {
+                request.headers(HttpHeaders.ACCEPT, accept);
+            }
+            return request;
+        }
+    }
+
+    /**
+     * Statistics of a completed reload.
+     */
+    public static final class Statistics {
+
+        private final long reloadTime;
+        private final int warmUpRequests;
+        private final long warmUpTime;
+        private final int drainedRequests;
+        private final long drainTime;
+
+        private Statistics(final long reloadTime, final int warmUpRequests, final long warmUpTime,
+                           final int drainedRequests, final long drainTime) {
+            this.reloadTime = reloadTime;
+            this.warmUpRequests = warmUpRequests;
+            this.warmUpTime = warmUpTime;
+            this.drainedRequests = drainedRequests;
+            this.drainTime = drainTime;
+        }
+
+        /**
+         * Get the time it took to create, warm up and switch in the new application.
+         *
+         * @return reload time in milliseconds.
+         */
+        public long getReloadTime() {
+            return reloadTime;
+        }
+
+        /**
+         * Get the number of requests replayed while warming up the new application.
+         *
+         * @return number of warm-up requests.
+         */
+        public int getWarmUpRequestCount() {
+            return warmUpRequests;
+        }
+
+        /**
+         * Get the time spent warming up the new application.
+         *
+         * @return warm-up time in milliseconds.
+         */
+        public long getWarmUpTime() {
+            return warmUpTime;
+        }
+
+        /**
+         * Get the number of requests that were being dispatched to or processed by the previous
+         * application when the draining started.
+         *
+         * @return number of drained requests.
+         */
+        public int getDrainedRequestCount() {
+            return drainedRequests;
+        }
+
+        /**
+         * Get the time spent draining the previous application.
+         *
+         * @return drain time in milliseconds.
+         */
+        public long getDrainTime() {
+            return drainTime;
+        }
+    }
+
+    private final Target<A> target;
+    private final AtomicInteger reloadCount = new AtomicInteger(0);
+    private volatile Statistics lastReload;
+    private final ConcurrentMap<String, RequestShape> shapes = new ConcurrentHashMap<String, RequestShape>();
+    private volatile URI baseUri;
+    private volatile int maxShapes;
+    private volatile Reference<A> current;
+
+    private ExecutorService executor;
+
+    /**
+     * Create new application reloader.
+     *
+     * @param configuration configuration of the currently deployed application.
+     * @param target        container specific part of the reload. The {@link Target#getApplication()
+     *                      currently deployed application} must already be available.
+     */
+    public ApplicationReloader(final ResourceConfig configuration, final Target<A> target) {
+        this.target = target;
+        this.current = reference(target.getApplication());
+        configure(configuration);
+    }
+
+    private Reference<A> reference(final A application) {
+        return new Reference<A>(application, target.getApplicationHandler(application));
+    }
+
+    /**
+     * Acquire the currently deployed application for dispatching a request. The returned reference
+     * must be {@link Reference#release() released} once the request has been handed over to the
+     * application, i.e. once {@link ApplicationHandler#handle(ContainerRequest)} returns.
+     *
+     * @return reference to the currently deployed application.
+     */
+    public Reference<A> acquire() {
+        while (true) {
+            final Reference<A> reference = current;
+            reference.dispatching.incrementAndGet();
+            if (reference == current) {
+                return reference;
+            }
+            // switched concurrently, the previous application may be already draining
+            reference.dispatching.decrementAndGet();
+        }
+    }
+
+    private void configure(final ResourceConfig configuration) {
+        final boolean recording = isBackgroundReload(configuration)
+                && PropertiesHelper.getValue(configuration.getProperties(), ServerProperties.RELOAD_WARM_UP_ITERATIONS,
+                DEFAULT_WARM_UP_ITERATIONS) > 0;
+        maxShapes = recording ? PropertiesHelper.getValue(configuration.getProperties(),
+                ServerProperties.RELOAD_WARM_UP_SHAPES, DEFAULT_WARM_UP_SHAPES) : 0;
+    }
+
+    private static boolean isBackgroundReload(final ResourceConfig configuration) {
+        return PropertiesHelper.getValue(configuration.getProperties(), ServerProperties.RELOAD_IN_BACKGROUND, Boolean.FALSE);
+    }
+
+    /**
+     * Record the shape of a request to be replayed during the warm-up of a reloaded application.
+     * The method is a no-op unless the background reload with warm-up is enabled, or once enough
+     * request shapes have been recorded.
+     *
+     * @param request container request.
+     */
+    public void record(final ContainerRequest request) {
+        if (shapes.size() >= maxShapes) {
+            return;
+        }
+
+        final String method = request.getMethod();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            return;
+        }
+
+        final URI requestBaseUri = request.getBaseUri();
+        final URI relativeUri = requestBaseUri.relativize(request.getRequestUri());
+        final List<String> accept = request.getRequestHeader(HttpHeaders.ACCEPT);
+        final String key = method + ' ' + relativeUri + ' ' + accept;
+        if (!shapes.containsKey(key)) {
+            baseUri = requestBaseUri;
+            shapes.putIfAbsent(key, new RequestShape(method, relativeUri,
+                    accept == null ? null : new ArrayList<String>(accept)));
+        }
+    }
+
+    /**
+     * Reload the application.
+     *
+     * @param configuration configuration of the new application.
+     * @throws ContainerException in case the reload is synchronous and the new application cannot be created.
+     */
+    public void reload(final ResourceConfig configuration) {
+        if (!isBackgroundReload(configuration)) {
+            final long start = System.nanoTime();
+            final A application;
+            try {
+                application = target.create(configuration);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new ContainerException(ex);
+            }
+            configure(configuration);
+            current = reference(application);
+            target.switchTo(application);
+            // the synchronous reload neither warms up the new application nor drains the previous one
+            completed(System.nanoTime() - start, 0, 0, 0, 0);
+            return;
+        }
+
+        getExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reloadInBackground(configuration);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.SEVERE, LocalizationMessages.RELOAD_FAILED(), t);
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("jersey-application-reloader-%d").setDaemon(true).build());
+        }
+        return executor;
+    }
+
+    private void reloadInBackground(final ResourceConfig configuration) throws Exception {
+        final long start = System.nanoTime();
+        final A application = target.create(configuration);
+
+        final long warmUpStart = System.nanoTime();
+        final int warmUpRequests = warmUp(target.getApplicationHandler(application), PropertiesHelper.getValue(
+                configuration.getProperties(), ServerProperties.RELOAD_WARM_UP_ITERATIONS, DEFAULT_WARM_UP_ITERATIONS));
+        final long warmUpTime = System.nanoTime() - warmUpStart;
+
+        // start recording the request shapes for the next reload from scratch
+        shapes.clear();
+        configure(configuration);
+        final Reference<A> previous = current;
+        current = reference(application);
+        target.switchTo(application);
+        final long reloadTime = System.nanoTime() - start;
+
+        final long drainStart = System.nanoTime();
+        final int drainedRequests = drain(previous, PropertiesHelper.getValue(configuration.getProperties(),
+                ServerProperties.RELOAD_DRAIN_TIMEOUT, DEFAULT_DRAIN_TIMEOUT));
+        final long drainTime = System.nanoTime() - drainStart;
+        ServiceLocatorFactory.getInstance().destroy(previous.handler.getServiceLocator());
+
+        final Statistics statistics = completed(reloadTime, warmUpRequests, warmUpTime, drainedRequests, drainTime);
+        LOGGER.info(LocalizationMessages.RELOAD_COMPLETED(statistics.getReloadTime(), statistics.getWarmUpRequestCount(),
+                statistics.getWarmUpTime(), statistics.getDrainedRequestCount(), statistics.getDrainTime()));
+    }
+
+    private Statistics completed(final long reloadTime, final int warmUpRequests, final long warmUpTime,
+                                 final int drainedRequests, final long drainTime) {
+        final Statistics statistics = new Statistics(TimeUnit.NANOSECONDS.toMillis(reloadTime), warmUpRequests,
+                TimeUnit.NANOSECONDS.toMillis(warmUpTime), drainedRequests, TimeUnit.NANOSECONDS.toMillis(drainTime));
+        lastReload = statistics;
+        reloadCount.incrementAndGet();
+        return statistics;
+    }
+
+    /**
+     * Get the statistics of the last completed reload.
+     *
+     * @return statistics of the last completed reload or {@code null} if no reload has completed yet.
+     */
+    public Statistics getLastReload() {
+        return lastReload;
+    }
+
+    /**
+     * Get the number of completed reloads.
+     *
+     * @return number of completed reloads.
+     */
+    public int getReloadCount() {
+        return reloadCount.get();
+    }
+
+    private int warmUp(final ApplicationHandler handler, final int iterations) {
+        final URI base = baseUri;
+        if (base == null || iterations <= 0) {
+            return 0;
+        }
+
+        int count = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (RequestShape shape : shapes.values()) {
+                try {
+                    handler.apply(shape.toRequest(base)).get(WARM_UP_REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (Exception ex) {
+                    // warm-up is best effort only
+                    LOGGER.log(Level.FINEST, "Warm-up request failed.", ex);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Wait until no container is dispatching a request to the previous application and all the
+     * requests dispatched to it have been processed, or until the timeout expires.
+     *
+     * @return number of requests that were being dispatched or processed when the draining started.
+     */
+    private static int drain(final Reference<?> previous, final long timeout) throws InterruptedException {
+        final ApplicationHandler handler = previous.handler;
+        final int drained = previous.dispatching.get() + handler.getActiveRequestCount();
+        final long deadline = System.currentTimeMillis() + timeout;
+        // requests acquired before the switch are counted as active only once they are dispatched
+        while (previous.dispatching.get() > 0 || handler.getActiveRequestCount() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                LOGGER.warning(LocalizationMessages.RELOAD_DRAIN_TIMEOUT(
+                        previous.dispatching.get() + handler.getActiveRequestCount(), timeout));
+                break;
+            }
+            Thread.sleep(10);
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.internal;
+
+import java.net.URI;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Container utility caching the application base URIs.
+ * <p>
+ * Containers compute the base URI of every request from the request scheme, host and context path,
+ * which are (almost) always the same for all the requests. The cache lets containers skip parsing
+ * of the base URI for repeated combinations of these values, keyed by a container specific string.
+ * The number of cached base URIs is limited, so that requests with arbitrary {@code Host} headers
+ * cannot make the cache grow unbounded. Once the cache is full, the least recently used base URIs
+ * are evicted, so that such requests cannot displace the base URIs that are actually in use for long.
+ * </p>
+ */
+public final class BaseUriCache {
+
+    /**
+     * Default maximum number of cached base URIs.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private final Cache<String, URI> cache;
+
+    /**
+     * Create new base URI cache with the {@link #DEFAULT_MAX_SIZE default maximum size}.
+     */
+    public BaseUriCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create new base URI cache.
+     *
+     * @param maxSize maximum number of cached base URIs.
+     */
+    public BaseUriCache(final int maxSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Get the cached base URI.
+     *
+     * @param key container specific key uniquely determining the base URI.
+     * @return cached base URI or {@code null} if no base URI is cached for the key.
+     */
+    public URI get(final String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Cache the base URI, evicting the least recently used base URI if the cache is full.
+     *
+     * @param key     container specific key uniquely determining the base URI.
+     * @param baseUri base URI.
+     * @return the supplied base URI.
+     */
+    public URI put(final String key, final URI baseUri) {
+        cache.put(key, baseUri);
+        return baseUri;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.internal.inject;
+
+import java.lang.reflect.Type;
+
+import org.glassfish.jersey.internal.util.collection.Ref;
+import org.glassfish.jersey.internal.util.collection.Refs;
+import org.glassfish.jersey.process.internal.RequestScope;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.api.ServiceLocator;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Seeds a request-scoped {@link Ref reference} with a per-request value.
+ * <p>
+ * Containers typically expose their native request and response objects for injection by
+ * binding a request-scoped {@code Ref<T>} and setting the value of the reference from a
+ * {@link org.glassfish.jersey.server.spi.RequestScopedInitializer}. Looking the reference up
+ * by its generic type on each request is expensive compared with the rest of the request
+ * processing. The seeder resolves the reference descriptor only once per service locator
+ * and then stores a new reference with the per-request value directly in the current
+ * {@link RequestScope request scope} instance.
+ * </p>
+ *
+ * @param <T> referenced value type.
+ */
+public final class ReferenceSeeder<T> {
+
+    private final Type referenceType;
+    private volatile Resolved<T> resolved;
+
+    private static final class Resolved<T> {
+
+        private final ServiceLocator locator;
+        private final RequestScope requestScope;
+        private final ActiveDescriptor<Ref<T>> descriptor;
+
+        private Resolved(ServiceLocator locator, RequestScope requestScope, ActiveDescriptor<Ref<T>> descriptor) {
+            this.locator = locator;
+            this.requestScope = requestScope;
+            this.descriptor = descriptor;
+        }
+    }
+
+    /**
+     * Create new reference seeder.
+     *
+     * @param referenceType type of the request-scoped reference, i.e. {@code Ref<T>}.
+     */
+    public ReferenceSeeder(Type referenceType) {
+        this.referenceType = referenceType;
+    }
+
+    /**
+     * Seed the request-scoped reference in the currently active request scope with the value.
+     * <p>
+     * The method must be invoked from within an active request scope, typically from a
+     * {@link org.glassfish.jersey.server.spi.RequestScopedInitializer}.
+     * </p>
+     *
+     * @param locator service locator of the application processing the request.
+     * @param value   per-request value of the reference.
+     */
+    public void seed(ServiceLocator locator, T value) {
+        Resolved<T> current = resolved;
+        if (current == null || current.locator != locator) {
+            // first request or the application has been reloaded
+            current = resolve(locator);
+            resolved = current;
+        }
+        current.requestScope.seed(current.descriptor, Refs.of(value));
+    }
+
+    private Resolved<T> resolve(ServiceLocator locator) {
+        final ServiceHandle<Ref<T>> handle = locator.getServiceHandle(referenceType);
+        checkState(handle != null, "No request-scoped reference of type %s is bound.", referenceType);
+
+        return new Resolved<T>(locator, locator.getService(RequestScope.class), handle.getActiveDescriptor());
+    }
+}
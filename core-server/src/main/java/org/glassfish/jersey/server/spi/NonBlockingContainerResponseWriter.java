@@ -0,0 +1,102 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.spi;
+
+/**
+ * Container response writer able to report whether the response entity output stream
+ * can accept more data without blocking the writing thread.
+ *
+ * Containers supporting non-blocking writes (e.g. Grizzly {@code NIOOutputStream} or
+ * a Servlet 3.1 {@code WriteListener}) implement this extension to let the Jersey runtime
+ * (e.g. {@link org.glassfish.jersey.server.ChunkedResponse}) postpone writing to slow clients
+ * instead of blocking a thread until the client receives the data.
+ * <p>
+ * Writing to the output stream returned from {@link #writeResponseStatusAndHeaders(long,
+ * org.glassfish.jersey.server.ContainerResponse) writeResponseStatusAndHeaders(...)} is always
+ * allowed; the container buffers the data if necessary. Callers are however expected to check
+ * {@link #isWritePossible()} before writing each larger piece of data and, if the method returns
+ * {@code false}, wait for the {@link WriteListener#onWritePossible()} notification.
+ * </p>
+ */
+public interface NonBlockingContainerResponseWriter extends ContainerResponseWriter {
+
+    /**
+     * Listener notified once the response output stream is able to accept more data.
+     */
+    public interface WriteListener {
+
+        /**
+         * Invoked when data can be written to the response output stream without blocking.
+         * The method may be invoked by a container thread and must not block.
+         */
+        public void onWritePossible();
+
+        /**
+         * Invoked when the response can not be written anymore, e.g. because the client
+         * has closed the connection.
+         *
+         * @param t failure cause.
+         */
+        public void onError(Throwable t);
+    }
+
+    /**
+     * Check whether data can be written to the response output stream without blocking.
+     * <p>
+     * The method returns {@code true} if the response status and headers have not been written yet.
+     * </p>
+     *
+     * @return {@code true} if writing is possible without blocking, {@code false} otherwise.
+     */
+    public boolean isWritePossible();
+
+    /**
+     * Register a listener to be notified once data can be written to the response output
+     * stream without blocking.
+     * <p>
+     * The listener is notified exactly once, either by invoking {@link WriteListener#onWritePossible()}
+     * or {@link WriteListener#onError(Throwable)}. The notification may happen synchronously,
+     * from within this method, if writing is already possible.
+     * </p>
+     *
+     * @param listener write listener to be notified.
+     */
+    public void notifyWritePossible(WriteListener listener);
+}
@@ -39,12 +39,27 @@
  */
 package org.glassfish.jersey.server;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
 
+import org.glassfish.jersey.message.PreparableProvider;
 import org.glassfish.jersey.server.model.ModelValidationException;
 
 import org.junit.Test;
@@ -111,6 +126,72 @@ public class ApplicationHandlerTest {
         }
     }
 
+    public static class Bean {
+    }
+
+    @Path("/bean")
+    public static class BeanResource {
+
+        @POST
+        @Consumes("application/bean")
+        @Produces("application/bean")
+        public Bean echo(Bean bean) {
+            return bean;
+        }
+    }
+
+    @Produces("application/bean")
+    @Consumes("application/bean")
+    public static class BeanProvider implements MessageBodyReader<Bean>, MessageBodyWriter<Bean>, PreparableProvider {
+
+        static final List<String> PREPARED = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void prepare(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            PREPARED.add(type.getSimpleName() + " " + mediaType);
+        }
+
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == Bean.class;
+        }
+
+        @Override
+        public Bean readFrom(Class<Bean> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                             MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+            return new Bean();
+        }
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == Bean.class;
+        }
+
+        @Override
+        public long getSize(Bean bean, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(Bean bean, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+            entityStream.write("bean".getBytes());
+        }
+    }
+
+    @Test
+    public void testEagerProviderInitialization() throws Exception {
+        BeanProvider.PREPARED.clear();
+        new ApplicationHandler(new ResourceConfig(BeanResource.class, BeanProvider.class));
+        assertEquals(0, BeanProvider.PREPARED.size());
+
+        new ApplicationHandler(new ResourceConfig(BeanResource.class, BeanProvider.class)
+                .setProperty(ServerProperties.PROVIDER_EAGER_INITIALIZATION, true));
+        assertEquals(2, BeanProvider.PREPARED.size());
+        assertEquals("Bean application/bean", BeanProvider.PREPARED.get(0));
+        assertEquals("Bean application/bean", BeanProvider.PREPARED.get(1));
+    }
+
     @Test
     public void testReturnBadRequestOnIllHeaderValue() throws Exception {
         ApplicationHandler app = createApplication(Resource.class);
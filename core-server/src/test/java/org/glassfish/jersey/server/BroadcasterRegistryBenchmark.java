@@ -0,0 +1,119 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BroadcasterRegistry} stress benchmark.
+ * <p>
+ * Run the {@link #main(String[])} method to measure subscription, publishing and cleanup throughput
+ * with {@value #SUBSCRIPTIONS} subscriptions across {@value #TOPICS} topics. The benchmark is not executed
+ * as a part of the test suite.
+ * </p>
+ */
+public class BroadcasterRegistryBenchmark {
+
+    private static final int SUBSCRIPTIONS = 100000;
+    private static final int TOPICS = 10000;
+    private static final int EVENTS_PER_TOPIC = 20;
+
+    /**
+     * Chunked response counting the delivered chunks instead of writing them.
+     */
+    private static class CountingResponse extends ChunkedResponse<String> {
+        private final CountDownLatch delivered;
+
+        CountingResponse(final CountDownLatch delivered) {
+            super(String.class);
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void write(final String chunk) {
+            delivered.countDown();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final BroadcasterRegistry<String> registry = new BroadcasterRegistry<String>();
+        final CountDownLatch delivered = new CountDownLatch(SUBSCRIPTIONS * EVENTS_PER_TOPIC);
+        final CountingResponse[] responses = new CountingResponse[SUBSCRIPTIONS];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SUBSCRIPTIONS; i++) {
+            responses[i] = new CountingResponse(delivered);
+            registry.subscribe(topic(i), responses[i]);
+        }
+        report("Subscribed", SUBSCRIPTIONS, "subscriptions", start);
+        System.out.printf("Topics: %d%n", registry.getTopicCount());
+
+        start = System.nanoTime();
+        for (int e = 0; e < EVENTS_PER_TOPIC; e++) {
+            for (int t = 0; t < TOPICS; t++) {
+                registry.publish(topic(t), "event");
+            }
+        }
+        if (!delivered.await(5, TimeUnit.MINUTES)) {
+            System.out.printf("Delivery timed out, %d chunks undelivered%n", delivered.getCount());
+        }
+        report("Delivered", SUBSCRIPTIONS * EVENTS_PER_TOPIC, "chunks", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < SUBSCRIPTIONS; i++) {
+            registry.unsubscribe(topic(i), responses[i]);
+        }
+        report("Unsubscribed", SUBSCRIPTIONS, "subscriptions", start);
+        System.out.printf("Topics left: %d%n", registry.getTopicCount());
+
+        registry.shutdown();
+    }
+
+    private static String topic(final int i) {
+        return "topic-" + (i % TOPICS);
+    }
+
+    private static void report(final String what, final int count, final String unit, final long start) {
+        final long elapsed = System.nanoTime() - start;
+        System.out.printf("%s %d %s in %.1f ms, %.0f %s/s%n", what, count, unit, elapsed / 1000000.0,
+                count * 1000000000.0 / elapsed, unit);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * {@link BroadcasterRegistry} and {@link Broadcaster} membership tests.
+ */
+public class BroadcasterRegistryTest {
+
+    /**
+     * Chunked response recording the written chunks; all instances have the same hash code.
+     */
+    private static class RecordingResponse extends ChunkedResponse<String> {
+        private final List<String> chunks = new CopyOnWriteArrayList<String>();
+        private final CountDownLatch latch;
+
+        RecordingResponse(final int expectedChunks) {
+            super(String.class);
+            this.latch = new CountDownLatch(expectedChunks);
+        }
+
+        @Override
+        public void write(final String chunk) throws IOException {
+            chunks.add(chunk);
+            latch.countDown();
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private final BroadcasterRegistry<String> registry = new BroadcasterRegistry<String>(4);
+
+    @After
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    public void testHashCollisionsNotDropped() {
+        final Broadcaster<String> broadcaster = new Broadcaster<String>();
+        final RecordingResponse first = new RecordingResponse(1);
+        final RecordingResponse second = new RecordingResponse(1);
+
+        assertTrue(broadcaster.add(first));
+        assertTrue(broadcaster.add(second));
+        assertFalse(broadcaster.add(first));
+
+        broadcaster.broadcast("a");
+        assertEquals(1, first.chunks.size());
+        assertEquals(1, second.chunks.size());
+    }
+
+    @Test
+    public void testPublishInOrder() throws Exception {
+        final RecordingResponse news1 = new RecordingResponse(100);
+        final RecordingResponse news2 = new RecordingResponse(100);
+        final RecordingResponse sport = new RecordingResponse(1);
+        assertTrue(registry.subscribe("news", news1));
+        assertTrue(registry.subscribe("news", news2));
+        assertFalse(registry.subscribe("news", news2));
+        assertTrue(registry.subscribe("sport", sport));
+        assertEquals(2, registry.getTopicCount());
+
+        for (int i = 0; i < 100; i++) {
+            registry.publish("news", String.valueOf(i));
+        }
+        registry.publish("sport", "goal");
+        registry.publish("weather", "rain");
+
+        news1.await();
+        news2.await();
+        sport.await();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), news1.chunks.get(i));
+            assertEquals(String.valueOf(i), news2.chunks.get(i));
+        }
+        assertEquals("goal", sport.chunks.get(0));
+        assertEquals(1, sport.chunks.size());
+    }
+
+    @Test
+    public void testIdleTopicsDiscarded() throws Exception {
+        final RecordingResponse unsubscribed = new RecordingResponse(0);
+        assertTrue(registry.subscribe("a", unsubscribed));
+        assertTrue(registry.unsubscribe("a", unsubscribed));
+        assertFalse(registry.unsubscribe("a", unsubscribed));
+        assertEquals(0, registry.getTopicCount());
+
+        final ChunkedResponse<String> closed = new ChunkedResponse<String>(String.class);
+        assertTrue(registry.subscribe("b", closed));
+        assertEquals(1, registry.getTopicCount());
+        closed.close();
+        assertEquals(0, registry.getTopicCount());
+
+        final ChunkedResponse<String> closedBeforeSubscription = new ChunkedResponse<String>(String.class);
+        closedBeforeSubscription.close();
+        registry.subscribe("b", closedBeforeSubscription);
+        assertEquals(0, registry.getTopicCount());
+
+        // a discarded topic is created again on subscription
+        final RecordingResponse resubscribed = new RecordingResponse(1);
+        assertTrue(registry.subscribe("b", resubscribed));
+        registry.publish("b", "y");
+        resubscribed.await();
+        assertEquals("y", resubscribed.chunks.get(0));
+    }
+}
@@ -39,14 +39,31 @@
  */
 package org.glassfish.jersey.server;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.security.Principal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.glassfish.jersey.server.spi.NonBlockingContainerResponseWriter;
+
+import com.google.common.util.concurrent.SettableFuture;
 
 import org.junit.Test;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 /**
@@ -87,4 +104,344 @@ public class ChunkedResponseTest {
         ContainerResponse response = applicationHandler.apply(RequestContextBuilder.from("/test", "GET").build()).get();
         assertEquals(200, response.getStatus());
     }
+
+    @Path("/nonblocking")
+    public static class NonBlockingResource {
+        static volatile SettableFuture<ChunkedResponse<String>> response;
+
+        @GET
+        public ChunkedResponse<String> get() {
+            final ChunkedResponse<String> chunkedResponse = new ChunkedResponse<String>(String.class);
+            response.set(chunkedResponse);
+            return chunkedResponse;
+        }
+    }
+
+    @Path("/ticks")
+    public static class TickResource {
+        static volatile SettableFuture<ChunkedResponse<Tick>> response;
+
+        @GET
+        public ChunkedResponse<Tick> get() {
+            final ChunkedResponse<Tick> chunkedResponse = new ChunkedResponse<Tick>(Tick.class);
+            response.set(chunkedResponse);
+            return chunkedResponse;
+        }
+    }
+
+    public static class Tick {
+    }
+
+    /**
+     * Chunk writer flushing the entity stream after each chunk (as e.g. the server-sent event writer does).
+     */
+    public static class FlushingTickWriter implements MessageBodyWriter<Tick> {
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == Tick.class;
+        }
+
+        @Override
+        public long getSize(Tick tick, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(Tick tick, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+            entityStream.write('x');
+            entityStream.flush();
+        }
+    }
+
+    private static class FlushCountingOutputStream extends ByteArrayOutputStream {
+        private volatile int flushes = 0;
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+            super.flush();
+        }
+    }
+
+    /**
+     * Response writer simulating a slow client - writing is not possible until explicitly enabled.
+     */
+    private static class SlowClientResponseWriter implements NonBlockingContainerResponseWriter {
+        private final FlushCountingOutputStream entity = new FlushCountingOutputStream();
+        private final CountDownLatch committed = new CountDownLatch(1);
+        private volatile boolean writePossible = false;
+        private WriteListener listener;
+
+        @Override
+        public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse responseContext) {
+            return entity;
+        }
+
+        @Override
+        public void suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
+        }
+
+        @Override
+        public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void commit() {
+            committed.countDown();
+        }
+
+        @Override
+        public boolean isWritePossible() {
+            return writePossible;
+        }
+
+        @Override
+        public synchronized void notifyWritePossible(WriteListener listener) {
+            this.listener = listener;
+        }
+
+        void enableWrite() {
+            final WriteListener toNotify;
+            synchronized (this) {
+                writePossible = true;
+                toNotify = listener;
+                listener = null;
+            }
+            if (toNotify != null) {
+                toNotify.onWritePossible();
+            }
+        }
+    }
+
+    private static ContainerRequest createRequest(final String path, final ContainerResponseWriter writer) {
+        final ContainerRequest request = RequestContextBuilder.from(path, "GET").build();
+        request.setWriter(writer);
+        request.setSecurityContext(new SecurityContext() {
+            @Override
+            public Principal getUserPrincipal() {
+                return null;
+            }
+
+            @Override
+            public boolean isUserInRole(String role) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return false;
+            }
+
+            @Override
+            public String getAuthenticationScheme() {
+                return null;
+            }
+        });
+        return request;
+    }
+
+    @Test
+    public void testChunksNotWrittenToSlowClient() throws Exception {
+        final ResourceConfig resourceConfig = new ResourceConfig(NonBlockingResource.class, ChunkedResponseWriter.class);
+        final ApplicationHandler applicationHandler = new ApplicationHandler(resourceConfig);
+        NonBlockingResource.response = SettableFuture.create();
+
+        final SlowClientResponseWriter writer = new SlowClientResponseWriter();
+        applicationHandler.handle(createRequest("/nonblocking", writer));
+
+        final ChunkedResponse<String> response = NonBlockingResource.response.get(10, TimeUnit.SECONDS);
+        // none of the calls may block while the client does not read
+        response.write("a");
+        response.write("b");
+        response.close();
+        assertEquals(0, writer.entity.size());
+        assertEquals(1, writer.committed.getCount());
+
+        writer.enableWrite();
+        assertTrue(writer.committed.await(10, TimeUnit.SECONDS));
+        assertEquals("ab", writer.entity.toString());
+    }
+
+    private static int flushesPerBatch(final boolean flushCoalescing) throws Exception {
+        final ResourceConfig resourceConfig = new ResourceConfig(TickResource.class, ChunkedResponseWriter.class,
+                FlushingTickWriter.class);
+        resourceConfig.setProperty(ServerProperties.CHUNKED_RESPONSE_FLUSH_COALESCING, flushCoalescing);
+        final ApplicationHandler applicationHandler = new ApplicationHandler(resourceConfig);
+        TickResource.response = SettableFuture.create();
+
+        final SlowClientResponseWriter writer = new SlowClientResponseWriter();
+        applicationHandler.handle(createRequest("/ticks", writer));
+
+        final ChunkedResponse<Tick> response = TickResource.response.get(10, TimeUnit.SECONDS);
+        response.write(new Tick());
+        response.write(new Tick());
+        response.write(new Tick());
+        response.write(new Tick());
+        final int initialFlushes = writer.entity.flushes;
+        // the queued chunks are written by the thread enabling the write
+        writer.enableWrite();
+        assertEquals("xxxx", writer.entity.toString());
+        final int flushes = writer.entity.flushes - initialFlushes;
+        response.close();
+        return flushes;
+    }
+
+    @Test
+    public void testFlushCoalescing() throws Exception {
+        // each chunk is flushed by the chunk writer
+        assertEquals(4, flushesPerBatch(false));
+        // the whole batch of queued chunks is flushed at once
+        assertEquals(1, flushesPerBatch(true));
+    }
+
+    /**
+     * Response writer whose entity stream starts failing once the client disconnects.
+     */
+    private static class DisconnectingClientResponseWriter implements ContainerResponseWriter {
+        private volatile boolean disconnected = false;
+        private final ByteArrayOutputStream entity = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                if (disconnected) {
+                    throw new IllegalStateException("disconnected");
+                }
+                super.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (disconnected) {
+                    throw new IOException("disconnected");
+                }
+            }
+        };
+
+        @Override
+        public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse responseContext) {
+            return entity;
+        }
+
+        @Override
+        public void suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
+        }
+
+        @Override
+        public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void commit() {
+        }
+    }
+
+    @Test
+    public void testHeartbeatEvictsClosedResponse() throws Exception {
+        final ResourceConfig resourceConfig = new ResourceConfig(NonBlockingResource.class, ChunkedResponseWriter.class);
+        final ApplicationHandler applicationHandler = new ApplicationHandler(resourceConfig);
+        NonBlockingResource.response = SettableFuture.create();
+
+        final DisconnectingClientResponseWriter writer = new DisconnectingClientResponseWriter();
+        applicationHandler.handle(createRequest("/nonblocking", writer));
+
+        final ChunkedResponse<String> response = NonBlockingResource.response.get(10, TimeUnit.SECONDS);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final Broadcaster<String> broadcaster = new Broadcaster<String>() {
+            @Override
+            public void onClose(ChunkedResponse<String> chunkedResponse) {
+                closed.countDown();
+            }
+        };
+        broadcaster.add(response);
+        response.setHeartbeat(20, TimeUnit.MILLISECONDS, ".");
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (writer.entity.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(writer.entity.toString().startsWith(".."));
+        assertEquals(1, broadcaster.getLiveCount());
+
+        // the heartbeat detects the disconnected client without anything being broadcast
+        writer.disconnected = true;
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        assertTrue(response.isClosed());
+        assertEquals(0, broadcaster.getLiveCount());
+        assertEquals(1, broadcaster.getClosedCount());
+    }
+
+    /**
+     * Response writer whose entity stream blocks the writing thread until released.
+     */
+    private static class BlockingClientResponseWriter implements ContainerResponseWriter {
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch committed = new CountDownLatch(1);
+        private final ByteArrayOutputStream entity = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(b, off, len);
+            }
+        };
+
+        @Override
+        public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse responseContext) {
+            return entity;
+        }
+
+        @Override
+        public void suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
+        }
+
+        @Override
+        public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void commit() {
+            committed.countDown();
+        }
+    }
+
+    @Test
+    public void testHeartbeatSkippedWhileWriteInFlight() throws Exception {
+        final ResourceConfig resourceConfig = new ResourceConfig(NonBlockingResource.class, ChunkedResponseWriter.class);
+        final ApplicationHandler applicationHandler = new ApplicationHandler(resourceConfig);
+        NonBlockingResource.response = SettableFuture.create();
+
+        final BlockingClientResponseWriter writer = new BlockingClientResponseWriter();
+        applicationHandler.handle(createRequest("/nonblocking", writer));
+
+        final ChunkedResponse<String> response = NonBlockingResource.response.get(10, TimeUnit.SECONDS);
+        response.setHeartbeat(10, TimeUnit.MILLISECONDS, ".");
+        assertTrue(writer.blocked.await(10, TimeUnit.SECONDS));
+
+        // many heartbeat intervals elapse while the first heartbeat is blocked
+        Thread.sleep(200);
+        response.setHeartbeat(0, TimeUnit.MILLISECONDS, null);
+        writer.release.countDown();
+        response.close();
+
+        assertTrue(writer.committed.await(10, TimeUnit.SECONDS));
+        assertEquals(".", writer.entity.toString());
+    }
 }
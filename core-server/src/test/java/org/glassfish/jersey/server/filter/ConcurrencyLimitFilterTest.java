@@ -0,0 +1,251 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.filter;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.RequestContextBuilder;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ConcurrencyLimitFilter} tests.
+ */
+public class ConcurrencyLimitFilterTest {
+
+    private static CountDownLatch entered;
+    private static CountDownLatch proceed;
+
+    private ExecutorService executor;
+
+    @Path("/")
+    public static class Resource {
+
+        @GET
+        @Path("slow")
+        public String getSlow() throws InterruptedException {
+            entered.countDown();
+            proceed.await(10, TimeUnit.SECONDS);
+            return "slow";
+        }
+
+        @GET
+        @Path("fast")
+        public String getFast() {
+            return "fast";
+        }
+
+        @GET
+        @Path("client-error")
+        public String getClientError() {
+            throw new IllegalArgumentException("client error");
+        }
+
+        @GET
+        @Path("server-error")
+        public String getServerError() {
+            throw new IllegalStateException("server error");
+        }
+
+        @GET
+        @Path("sheddable")
+        @Sheddable
+        public String getSheddable() {
+            return "sheddable";
+        }
+    }
+
+    public static class ClientErrorMapper implements ExceptionMapper<IllegalArgumentException> {
+
+        @Override
+        public Response toResponse(IllegalArgumentException exception) {
+            return Response.status(400).build();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        entered = new CountDownLatch(1);
+        proceed = new CountDownLatch(1);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        proceed.countDown();
+        executor.shutdownNow();
+    }
+
+    private ApplicationHandler createApplication(int initialLimit) {
+        final ResourceConfig rc = new ResourceConfig(Resource.class, ClientErrorMapper.class);
+        rc.setProperty(ServerProperties.CONCURRENCY_LIMIT_INITIAL, initialLimit);
+        ConcurrencyLimitFilter.enableFor(rc);
+        return new ApplicationHandler(rc);
+    }
+
+    private ContainerResponse get(ApplicationHandler handler, String path) throws Exception {
+        return handler.apply(RequestContextBuilder.from(path, "GET").build()).get();
+    }
+
+    private Future<ContainerResponse> getSlow(final ApplicationHandler handler) throws InterruptedException {
+        final Future<ContainerResponse> future = executor.submit(new Callable<ContainerResponse>() {
+            @Override
+            public ContainerResponse call() throws Exception {
+                return get(handler, "/slow");
+            }
+        });
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        return future;
+    }
+
+    @Test
+    public void testRequestsAboveLimitRejected() throws Exception {
+        final ApplicationHandler handler = createApplication(1);
+
+        final Future<ContainerResponse> slow = getSlow(handler);
+        ContainerResponse response = get(handler, "/fast");
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeaderString("Retry-After"));
+
+        proceed.countDown();
+        assertEquals(200, slow.get().getStatus());
+
+        response = get(handler, "/fast");
+        assertEquals(200, response.getStatus());
+        assertEquals("fast", response.getEntity());
+    }
+
+    @Test
+    public void testSheddableRequestsRejectedFirst() throws Exception {
+        final ApplicationHandler handler = createApplication(2);
+
+        assertEquals(200, get(handler, "/sheddable").getStatus());
+
+        final Future<ContainerResponse> slow = getSlow(handler);
+        assertEquals(503, get(handler, "/sheddable").getStatus());
+        assertEquals(200, get(handler, "/fast").getStatus());
+
+        proceed.countDown();
+        assertEquals(200, slow.get().getStatus());
+        assertEquals(200, get(handler, "/sheddable").getStatus());
+    }
+
+    @Test
+    public void testLimitAdapts() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 3, TimeUnit.SECONDS.toNanos(1));
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(0, false);
+        assertEquals(3, limiter.getLimit());
+        limiter.release(0, false);
+        // maximum limit reached
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        assertTrue(limiter.tryAcquire());
+        limiter.release(TimeUnit.SECONDS.toNanos(2), false);
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(0, true);
+        }
+        // minimum limit reached
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testClientErrorsDoNotDecreaseLimit() throws Exception {
+        final ApplicationHandler handler = createApplication(2);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(400, get(handler, "/client-error").getStatus());
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(404, get(handler, "/missing").getStatus());
+        }
+
+        // the limit still admits two concurrent requests
+        final Future<ContainerResponse> slow = getSlow(handler);
+        assertEquals(200, get(handler, "/fast").getStatus());
+
+        proceed.countDown();
+        assertEquals(200, slow.get().getStatus());
+    }
+
+    @Test
+    public void testServerErrorsDecreaseLimit() throws Exception {
+        final ApplicationHandler handler = createApplication(2);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(500, get(handler, "/server-error").getStatus());
+        }
+
+        // the limit has dropped to a single concurrent request
+        final Future<ContainerResponse> slow = getSlow(handler);
+        assertEquals(503, get(handler, "/fast").getStatus());
+
+        proceed.countDown();
+        assertEquals(200, slow.get().getStatus());
+    }
+}
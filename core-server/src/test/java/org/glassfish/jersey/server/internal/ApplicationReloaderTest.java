@@ -0,0 +1,382 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.security.Principal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.SecurityContext;
+
+import deprecated.javax.ws.rs.ExecutionContext;
+import deprecated.javax.ws.rs.Suspend;
+
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.RequestContextBuilder;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+
+import org.glassfish.hk2.api.ServiceLocator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ApplicationReloader} unit tests.
+ */
+public class ApplicationReloaderTest {
+
+    private static final AtomicInteger invocations = new AtomicInteger(0);
+
+    @Path("counter")
+    public static class CounterResource {
+
+        @GET
+        @Produces("text/plain")
+        public String get() {
+            return Integer.toString(invocations.incrementAndGet());
+        }
+    }
+
+    @Path("suspended")
+    public static class SuspendedResource {
+
+        @GET
+        @Suspend(timeOut = 100)
+        public void get(@Context ExecutionContext context) {
+            // never resumed, the request times out
+        }
+    }
+
+    /**
+     * Response writer firing the suspend timeout on demand.
+     */
+    private static class TimingOutResponseWriter implements ContainerResponseWriter {
+
+        private final CountDownLatch suspended = new CountDownLatch(1);
+        private volatile TimeoutHandler timeoutHandler;
+
+        @Override
+        public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse responseContext) {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public void suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
+            if (timeOut > 0) {
+                this.timeoutHandler = timeoutHandler;
+                suspended.countDown();
+            }
+        }
+
+        @Override
+        public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        void timeout() {
+            timeoutHandler.onTimeout(this);
+        }
+    }
+
+    /**
+     * Test reload target switching plain application handlers.
+     */
+    private static class TestTarget implements ApplicationReloader.Target<ApplicationHandler> {
+
+        private final CountDownLatch switched = new CountDownLatch(1);
+        private volatile ApplicationHandler current;
+        private volatile int invocationsBeforeSwitch = -1;
+
+        TestTarget(ApplicationHandler current) {
+            this.current = current;
+        }
+
+        @Override
+        public ApplicationHandler create(ResourceConfig configuration) {
+            return new ApplicationHandler(configuration);
+        }
+
+        @Override
+        public ApplicationHandler getApplication() {
+            return current;
+        }
+
+        @Override
+        public ApplicationHandler getApplicationHandler(ApplicationHandler application) {
+            return application;
+        }
+
+        @Override
+        public void switchTo(ApplicationHandler application) {
+            invocationsBeforeSwitch = invocations.get();
+            current = application;
+            switched.countDown();
+        }
+    }
+
+    private static ResourceConfig backgroundReloadConfig() {
+        return new ResourceConfig(CounterResource.class)
+                .setProperty(ServerProperties.RELOAD_IN_BACKGROUND, true)
+                .setProperty(ServerProperties.RELOAD_WARM_UP_ITERATIONS, 3);
+    }
+
+    @Before
+    public void resetInvocations() {
+        invocations.set(0);
+    }
+
+    @Test
+    public void testSynchronousReload() throws Exception {
+        final ApplicationHandler initial = new ApplicationHandler(new ResourceConfig(CounterResource.class));
+        final TestTarget target = new TestTarget(initial);
+        final ApplicationReloader<ApplicationHandler> reloader =
+                new ApplicationReloader<ApplicationHandler>(initial.getConfiguration(), target);
+
+        reloader.record(RequestContextBuilder.from("http://localhost/", "http://localhost/counter", "GET").build());
+        reloader.reload(new ResourceConfig(CounterResource.class));
+
+        assertEquals(0, target.switched.getCount());
+        assertNotSame(initial, target.current);
+        assertEquals(0, target.invocationsBeforeSwitch);
+
+        final ApplicationReloader.Reference<ApplicationHandler> reference = reloader.acquire();
+        assertSame(target.current, reference.get());
+        reference.release();
+
+        assertEquals(1, reloader.getReloadCount());
+        assertEquals(0, reloader.getLastReload().getWarmUpRequestCount());
+        assertEquals(0, reloader.getLastReload().getDrainedRequestCount());
+    }
+
+    @Test
+    public void testBackgroundReloadWithWarmUp() throws Exception {
+        final ApplicationHandler initial = new ApplicationHandler(backgroundReloadConfig());
+        final TestTarget target = new TestTarget(initial);
+        final ApplicationReloader<ApplicationHandler> reloader =
+                new ApplicationReloader<ApplicationHandler>(initial.getConfiguration(), target);
+
+        // two requests of the same shape and a request that must not be replayed
+        reloader.record(RequestContextBuilder.from("http://localhost/", "http://localhost/counter", "GET")
+                .accept("text/plain").build());
+        reloader.record(RequestContextBuilder.from("http://localhost/", "http://localhost/counter", "GET")
+                .accept("text/plain").build());
+        reloader.record(RequestContextBuilder.from("http://localhost/", "http://localhost/counter", "POST").build());
+
+        reloader.reload(backgroundReloadConfig());
+
+        assertTrue(target.switched.await(10, TimeUnit.SECONDS));
+        assertNotSame(initial, target.current);
+        assertEquals(3, target.invocationsBeforeSwitch);
+
+        assertTrue(awaitDestroyed(initial, 10000));
+        assertTrue(awaitReloads(reloader, 1, 10000));
+        assertEquals(3, reloader.getLastReload().getWarmUpRequestCount());
+        assertEquals(0, reloader.getLastReload().getDrainedRequestCount());
+    }
+
+    @Test
+    public void testReloadAfterSuspendTimeout() throws Exception {
+        final ResourceConfig config = new ResourceConfig(SuspendedResource.class)
+                .setProperty(ServerProperties.RELOAD_IN_BACKGROUND, true);
+        final ApplicationHandler initial = new ApplicationHandler(config);
+        final TestTarget target = new TestTarget(initial);
+        final ApplicationReloader<ApplicationHandler> reloader =
+                new ApplicationReloader<ApplicationHandler>(initial.getConfiguration(), target);
+
+        final TimingOutResponseWriter writer = new TimingOutResponseWriter();
+        final ContainerRequest request =
+                RequestContextBuilder.from("http://localhost/", "http://localhost/suspended", "GET").build();
+        request.setWriter(writer);
+        request.setSecurityContext(new SecurityContext() {
+            @Override
+            public Principal getUserPrincipal() {
+                return null;
+            }
+
+            @Override
+            public boolean isUserInRole(String role) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return false;
+            }
+
+            @Override
+            public String getAuthenticationScheme() {
+                return null;
+            }
+        });
+        initial.handle(request);
+
+        assertTrue(writer.suspended.await(10, TimeUnit.SECONDS));
+        assertEquals(1, initial.getActiveRequestCount());
+        writer.timeout();
+        assertEquals(0, initial.getActiveRequestCount());
+
+        // the timed out request must not hold the previous application until the drain timeout expires
+        reloader.reload(new ResourceConfig(SuspendedResource.class).setProperty(ServerProperties.RELOAD_IN_BACKGROUND, true));
+        assertTrue(target.switched.await(10, TimeUnit.SECONDS));
+        assertTrue(awaitDestroyed(initial, 5000));
+        assertTrue(awaitReloads(reloader, 1, 5000));
+
+        final ApplicationReloader.Statistics statistics = reloader.getLastReload();
+        assertNotNull(statistics);
+        assertEquals(0, statistics.getDrainedRequestCount());
+        assertTrue(statistics.getDrainTime() < 5000);
+    }
+
+    private static boolean awaitReloads(final ApplicationReloader<?> reloader, final int count, final long timeout)
+            throws Exception {
+        final long deadline = System.currentTimeMillis() + timeout;
+        while (reloader.getReloadCount() < count) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Test
+    public void testWarmUpDisabledByDefault() throws Exception {
+        final ResourceConfig config = new ResourceConfig(CounterResource.class)
+                .setProperty(ServerProperties.RELOAD_IN_BACKGROUND, true);
+        final ApplicationHandler initial = new ApplicationHandler(config);
+        final TestTarget target = new TestTarget(initial);
+        final ApplicationReloader<ApplicationHandler> reloader =
+                new ApplicationReloader<ApplicationHandler>(initial.getConfiguration(), target);
+
+        reloader.record(RequestContextBuilder.from("http://localhost/", "http://localhost/counter", "GET").build());
+        reloader.reload(new ResourceConfig(CounterResource.class).setProperty(ServerProperties.RELOAD_IN_BACKGROUND, true));
+
+        assertTrue(target.switched.await(10, TimeUnit.SECONDS));
+        assertEquals(0, target.invocationsBeforeSwitch);
+    }
+
+    @Test
+    public void testAcquiredApplicationIsNotDestroyed() throws Exception {
+        final ApplicationHandler initial = new ApplicationHandler(backgroundReloadConfig());
+        final TestTarget target = new TestTarget(initial);
+        final ApplicationReloader<ApplicationHandler> reloader =
+                new ApplicationReloader<ApplicationHandler>(initial.getConfiguration(), target);
+
+        // a container thread has obtained the application, but has not dispatched the request yet
+        final ApplicationReloader.Reference<ApplicationHandler> reference = reloader.acquire();
+        assertSame(initial, reference.get());
+
+        reloader.reload(backgroundReloadConfig());
+        assertTrue(target.switched.await(10, TimeUnit.SECONDS));
+        final ApplicationReloader.Reference<ApplicationHandler> reloaded = reloader.acquire();
+        assertNotSame(initial, reloaded.get());
+        reloaded.release();
+
+        assertFalse(awaitDestroyed(initial, 300));
+        assertEquals("1", reference.get().apply(
+                RequestContextBuilder.from("http://localhost/", "http://localhost/counter", "GET").build())
+                .get().getEntity());
+        reference.release();
+
+        assertTrue(awaitDestroyed(initial, 10000));
+    }
+
+    private static boolean awaitDestroyed(final ApplicationHandler handler, final long timeout) throws Exception {
+        final long deadline = System.currentTimeMillis() + timeout;
+        while (!isDestroyed(handler)) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static boolean isDestroyed(final ApplicationHandler handler) {
+        try {
+            handler.getServiceLocator().getService(ServiceLocator.class);
+            return false;
+        } catch (IllegalStateException destroyed) {
+            return true;
+        }
+    }
+
+    @Test
+    public void testBackgroundReloadKeepsApplicationOnFailure() throws Exception {
+        final ApplicationHandler initial = new ApplicationHandler(backgroundReloadConfig());
+        final TestTarget target = new TestTarget(initial) {
+            @Override
+            public ApplicationHandler create(ResourceConfig configuration) {
+                throw new IllegalStateException("Deployment failed.");
+            }
+        };
+        final ApplicationReloader<ApplicationHandler> reloader =
+                new ApplicationReloader<ApplicationHandler>(initial.getConfiguration(), target);
+
+        reloader.reload(backgroundReloadConfig());
+
+        assertFalse(target.switched.await(500, TimeUnit.MILLISECONDS));
+        assertSame(initial, target.current);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.internal;
+
+import java.net.URI;
+
+import org.junit.Test;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BaseUriCache} unit tests.
+ */
+public class BaseUriCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        final BaseUriCache cache = new BaseUriCache();
+        final URI baseUri = URI.create("http://localhost:8080/app/");
+
+        assertNull(cache.get("http://localhost:8080/app/"));
+        assertSame(baseUri, cache.put("http://localhost:8080/app/", baseUri));
+        assertSame(baseUri, cache.get("http://localhost:8080/app/"));
+        assertNull(cache.get("http://example.com/app/"));
+    }
+
+    @Test
+    public void testJunkKeysDoNotDisableCache() {
+        final BaseUriCache cache = new BaseUriCache(8);
+        final URI used = URI.create("http://localhost/");
+        cache.put("http://localhost/", used);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("http://junk" + i + "/", URI.create("http://junk" + i + "/"));
+            assertSame(used, cache.get("http://localhost/"));
+        }
+
+        // the cache keeps accepting new base URIs once it is full
+        final URI added = URI.create("http://example.com/");
+        cache.put("http://example.com/", added);
+        assertSame(added, cache.get("http://example.com/"));
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        final BaseUriCache cache = new BaseUriCache(8);
+        for (int i = 0; i < 100; i++) {
+            cache.put("http://host" + i + "/", URI.create("http://host" + i + "/"));
+        }
+
+        int cached = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("http://host" + i + "/") != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached <= 8);
+        assertNotNull(cache.get("http://host99/"));
+    }
+}
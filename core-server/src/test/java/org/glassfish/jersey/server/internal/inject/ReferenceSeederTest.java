@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.server.internal.inject;
+
+import java.util.concurrent.ExecutionException;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.glassfish.jersey.internal.inject.AbstractBinder;
+import org.glassfish.jersey.internal.inject.ReferencingFactory;
+import org.glassfish.jersey.internal.util.collection.Ref;
+import org.glassfish.jersey.process.internal.RequestScoped;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.RequestContextBuilder;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.spi.RequestScopedInitializer;
+
+import org.glassfish.hk2.api.PerLookup;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.TypeLiteral;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link ReferenceSeeder} unit tests.
+ *
+ */
+public class ReferenceSeederTest {
+
+    public static class Native {
+
+        private final String name;
+
+        public Native(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class NativeReferencingFactory extends ReferencingFactory<Native> {
+
+        @Inject
+        public NativeReferencingFactory(Provider<Ref<Native>> referenceFactory) {
+            super(referenceFactory);
+        }
+    }
+
+    private static class NativeBinder extends AbstractBinder {
+
+        @Override
+        protected void configure() {
+            bindFactory(NativeReferencingFactory.class).to(Native.class).in(PerLookup.class);
+            bindFactory(ReferencingFactory.<Native>referenceFactory()).to(new TypeLiteral<Ref<Native>>() {
+            }).in(RequestScoped.class);
+        }
+    }
+
+    @Path("/")
+    public static class NativeResource {
+
+        @Inject
+        private Native nativeRequest;
+
+        @GET
+        public String get() {
+            return nativeRequest.name;
+        }
+    }
+
+    private final ReferenceSeeder<Native> seeder = new ReferenceSeeder<Native>(new TypeLiteral<Ref<Native>>() {
+    }.getType());
+
+    private String apply(ApplicationHandler application, final String name) throws ExecutionException, InterruptedException {
+        final ContainerRequest request = RequestContextBuilder.from("/", "GET").build();
+        request.setRequestScopedInitializer(new RequestScopedInitializer() {
+            @Override
+            public void initialize(ServiceLocator locator) {
+                seeder.seed(locator, new Native(name));
+            }
+        });
+        return (String) application.apply(request).get().getEntity();
+    }
+
+    private ApplicationHandler createApplication() {
+        return new ApplicationHandler(new ResourceConfig(NativeResource.class).addBinders(new NativeBinder()));
+    }
+
+    @Test
+    public void testSeededValueInjected() throws Exception {
+        final ApplicationHandler application = createApplication();
+
+        assertEquals("a", apply(application, "a"));
+        assertEquals("b", apply(application, "b"));
+    }
+
+    @Test
+    public void testSeedAfterApplicationChange() throws Exception {
+        assertEquals("a", apply(createApplication(), "a"));
+        assertEquals("b", apply(createApplication(), "b"));
+    }
+}
@@ -51,6 +51,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.CookieParam;
@@ -74,6 +75,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
 
+import com.google.common.collect.MapMaker;
+
 /**
  * Factory for client-side representation of a resource.
  * See the <a href="package-summary.html">package overview</a>
@@ -86,10 +89,23 @@ public final class WebResourceFactory implements InvocationHandler {
     private final MultivaluedMap<String, Object> headers;
     private final List<Cookie> cookies;
     private final Form form;
+    private final Map<Method, MethodModel> methods;
 
     private static final MultivaluedMap<String, Object> EMPTY_HEADERS = new MultivaluedHashMap<String, Object>();
     private static final Form EMPTY_FORM = new Form();
 
+    /**
+     * Cache of the resource method invocation models, keyed by resource interface.
+     * <p>
+     * Both keys and values are weakly referenced: the models reference the resource
+     * interface through their methods, so the entry is retained only as long as some
+     * resource proxy using the models is reachable and does not prevent the class loader
+     * of the resource interface from being collected.
+     * </p>
+     */
+    private static final ConcurrentMap<Class<?>, Map<Method, MethodModel>> MODELS =
+            new MapMaker().weakKeys().weakValues().makeMap();
+
     /**
      * Creates a new client-side representation of a resource described by
      * the interface passed in the first argument.
@@ -127,131 +143,97 @@ public final class WebResourceFactory implements InvocationHandler {
         return (C) Proxy.newProxyInstance(resourceInterface.getClassLoader(),
                 new Class[] {resourceInterface},
                 new WebResourceFactory(ignoreResourcePath ? target : addPathFromAnnotation(resourceInterface, target),
-                        headers, cookies, form));
+                        headers, cookies, form, getMethodModels(resourceInterface)));
     }
 
     private WebResourceFactory(WebTarget target, MultivaluedMap<String, Object> headers, List<Cookie> cookies,
-                               Form form) {
+                               Form form, Map<Method, MethodModel> methods) {
         this.target = target;
         this.headers = headers;
         this.cookies = cookies;
         this.form = form;
+        this.methods = methods;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        // get the interface describing the resource
-        Class<?> proxyIfc = proxy.getClass().getInterfaces()[0];
-
-        // response type
-        Class<?> responseType = method.getReturnType();
-
-        // determine method name
-        String httpMethod = getHttpMethodName(method);
-        if (httpMethod == null) {
-            for (Annotation ann : method.getAnnotations()) {
-                httpMethod = getHttpMethodName(ann.annotationType());
-                if (httpMethod != null) {
-                    break;
-                }
-            }
+        final MethodModel model = methods.get(method);
+        if (model == null) {
+            throw new UnsupportedOperationException("Not a resource method.");
         }
+        model.checkInvocable();
 
-        // create a new UriBuilder appending the @Path attached to the method
-        WebTarget newTarget = addPathFromAnnotation(method, target);
-
-        if (httpMethod == null) {
-            if (newTarget == target) {
-                // no path annotation on the method -> fail
-                throw new UnsupportedOperationException("Not a resource method.");
-            } else if (!responseType.isInterface()) {
-                // the method is a subresource locator, but returns class,
-                // not interface - can't help here
-                throw new UnsupportedOperationException("Return type not an interface");
-            }
+        // create a new WebTarget appending the @Path attached to the method
+        WebTarget newTarget = model.path == null ? target : target.path(model.path);
+
+        // apply method params; the inherited parameter collections are copied only if they are going to be modified
+        final MultivaluedMap<String, Object> headers = model.hasHeaderParams
+                ? new MultivaluedHashMap<String, Object>(this.headers) : this.headers;
+        final List<Cookie> cookies = model.hasCookieParams ? new LinkedList<Cookie>(this.cookies) : this.cookies;
+        final Form form;
+        if (model.hasFormParams) {
+            form = new Form();
+            form.asMap().putAll(this.form.asMap());
+        } else {
+            form = this.form;
         }
 
-        // process method params (build maps of (Path|Form|Cookie|Matrix|Header..)Params
-        // and extract entity type
-        MultivaluedHashMap<String, Object> headers = new MultivaluedHashMap<String, Object>(this.headers);
-        LinkedList<Cookie> cookies = new LinkedList<Cookie>(this.cookies);
-        Form form = new Form();
-        form.asMap().putAll(this.form.asMap());
-        Annotation[][] paramAnns = method.getParameterAnnotations();
         Object entity = null;
-        Type entityType = null;
-        for (int i = 0; i < paramAnns.length; i++) {
-            Map<Class, Annotation> anns = new HashMap<Class, Annotation>();
-            for (Annotation ann : paramAnns[i]) {
-                anns.put(ann.annotationType(), ann);
-            }
-            Annotation ann;
+        for (int i = 0; i < model.params.length; i++) {
+            final ParamModel param = model.params[i];
             Object value = args[i];
-            if (anns.isEmpty()) {
-                entityType = method.getGenericParameterTypes()[i];
+            if (param.source == ParamSource.ENTITY) {
                 entity = value;
-            } else {
-                if (value == null && (ann = anns.get(DefaultValue.class)) != null) {
-                    value = ((DefaultValue) ann).value();
-                }
-                if (value != null) {
-                    if ((ann = anns.get(PathParam.class)) != null) {
-                        newTarget = newTarget.pathParam(((PathParam) ann).value(), value);
-                    } else if ((ann = anns.get((QueryParam.class))) != null) {
-                        newTarget = newTarget.queryParam(((QueryParam) ann).value(), value);
-                    } else if ((ann = anns.get((HeaderParam.class))) != null) {
-                        headers.addAll(((HeaderParam) ann).value(), value);
-                    } else if ((ann = anns.get((CookieParam.class))) != null) {
-                        String name = ((CookieParam) ann).value();
+                continue;
+            }
+            if (value == null) {
+                value = param.defaultValue;
+            }
+            if (value != null) {
+                switch (param.source) {
+                    case PATH:
+                        newTarget = newTarget.pathParam(param.name, value);
+                        break;
+                    case QUERY:
+                        newTarget = newTarget.queryParam(param.name, value);
+                        break;
+                    case HEADER:
+                        headers.addAll(param.name, value);
+                        break;
+                    case COOKIE:
                         Cookie c;
                         if (!(value instanceof Cookie)) {
-                            c = new Cookie(name, value.toString());
+                            c = new Cookie(param.name, value.toString());
                         } else {
                             c = (Cookie) value;
-                            if (!name.equals(((Cookie) value).getName())) {
+                            if (!param.name.equals(((Cookie) value).getName())) {
                                 // is this the right thing to do? or should I fail? or ignore the difference?
-                                c = new Cookie(name, c.getValue(), c.getPath(), c.getDomain(), c.getVersion());
+                                c = new Cookie(param.name, c.getValue(), c.getPath(), c.getDomain(), c.getVersion());
                             }
                         }
                         cookies.add(c);
-                    } else if ((ann = anns.get((MatrixParam.class))) != null) {
-                        newTarget = newTarget.matrixParam(((MatrixParam) ann).value(), value);
-                    } else if ((ann = anns.get((FormParam.class))) != null) {
-                        form.param(((FormParam) ann).value(), value.toString());
-                    }
+                        break;
+                    case MATRIX:
+                        newTarget = newTarget.matrixParam(param.name, value);
+                        break;
+                    case FORM:
+                        form.param(param.name, value.toString());
+                        break;
+                    default:
+                        // parameter not bound to the request
                 }
             }
         }
 
-        if (httpMethod == null) {
+        if (model.httpMethod == null) {
             // the method is a subresource locator
-            return WebResourceFactory.newResource(responseType, newTarget, true, headers, cookies, form);
-        }
-
-        // accepted media types
-        Produces produces = method.getAnnotation(Produces.class);
-        if (produces == null) {
-            produces = proxyIfc.getAnnotation(Produces.class);
-        }
-        String[] accepts = produces == null ? null : produces.value();
-
-        // determine content type
-        String contentType = null;
-        if (entity != null) {
-            Consumes consumes = method.getAnnotation(Consumes.class);
-            if (consumes == null) {
-                consumes = proxyIfc.getAnnotation(Consumes.class);
-            }
-            if (consumes != null && consumes.value().length > 0) {
-                // TODO: should consider q/qs instead of picking the first one
-                contentType = consumes.value()[0];
-            }
+            return WebResourceFactory.newResource(model.responseType, newTarget, true, headers, cookies, form);
         }
 
         Invocation.Builder b;
-        if (accepts != null) {
-            b = newTarget.request(accepts);
+        if (model.accepts != null) {
+            b = newTarget.request(model.accepts);
         } else {
             b = newTarget.request();
         }
@@ -269,6 +251,8 @@ public final class WebResourceFactory implements InvocationHandler {
 
         Object result;
 
+        // determine content type
+        String contentType = entity != null ? model.contentType : null;
         if (entity == null && !form.asMap().isEmpty()) {
             entity = form;
             contentType = MediaType.APPLICATION_FORM_URLENCODED;
@@ -285,19 +269,33 @@ public final class WebResourceFactory implements InvocationHandler {
             }
         }
 
-        GenericType responseGenericType = new GenericType(method.getGenericReturnType());
         if (entity != null) {
-            if (entityType instanceof ParameterizedType) {
-                entity = new GenericEntity(entity, entityType);
+            if (model.entityType instanceof ParameterizedType && entity != form) {
+                entity = new GenericEntity(entity, model.entityType);
             }
-            result = b.method(httpMethod, Entity.entity(entity, contentType), responseGenericType);
+            result = b.method(model.httpMethod, Entity.entity(entity, contentType), model.responseGenericType);
         } else {
-            result = b.method(httpMethod, responseGenericType);
+            result = b.method(model.httpMethod, model.responseGenericType);
         }
 
         return result;
     }
 
+    private static Map<Method, MethodModel> getMethodModels(Class<?> resourceInterface) {
+        Map<Method, MethodModel> models = MODELS.get(resourceInterface);
+        if (models == null) {
+            models = new HashMap<Method, MethodModel>();
+            for (Method method : resourceInterface.getMethods()) {
+                models.put(method, new MethodModel(resourceInterface, method));
+            }
+            final Map<Method, MethodModel> existing = MODELS.putIfAbsent(resourceInterface, models);
+            if (existing != null) {
+                models = existing;
+            }
+        }
+        return models;
+    }
+
     private static WebTarget addPathFromAnnotation(AnnotatedElement ae, WebTarget target) {
         Path p = ae.getAnnotation(Path.class);
         if (p != null) {
@@ -310,4 +308,165 @@ public final class WebResourceFactory implements InvocationHandler {
         HttpMethod a = ae.getAnnotation(HttpMethod.class);
         return a == null ? null : a.value();
     }
+
+    /**
+     * Source of a resource method parameter value.
+     */
+    private static enum ParamSource {
+        PATH, QUERY, HEADER, COOKIE, MATRIX, FORM, ENTITY, NONE
+    }
+
+    /**
+     * Resource method parameter binding information.
+     */
+    private static final class ParamModel {
+        private final ParamSource source;
+        private final String name;
+        private final String defaultValue;
+
+        private ParamModel(Annotation[] annotations) {
+            if (annotations.length == 0) {
+                source = ParamSource.ENTITY;
+                name = null;
+                defaultValue = null;
+                return;
+            }
+
+            Map<Class, Annotation> anns = new HashMap<Class, Annotation>();
+            for (Annotation ann : annotations) {
+                anns.put(ann.annotationType(), ann);
+            }
+            Annotation ann;
+            defaultValue = (ann = anns.get(DefaultValue.class)) != null ? ((DefaultValue) ann).value() : null;
+            if ((ann = anns.get(PathParam.class)) != null) {
+                source = ParamSource.PATH;
+                name = ((PathParam) ann).value();
+            } else if ((ann = anns.get((QueryParam.class))) != null) {
+                source = ParamSource.QUERY;
+                name = ((QueryParam) ann).value();
+            } else if ((ann = anns.get((HeaderParam.class))) != null) {
+                source = ParamSource.HEADER;
+                name = ((HeaderParam) ann).value();
+            } else if ((ann = anns.get((CookieParam.class))) != null) {
+                source = ParamSource.COOKIE;
+                name = ((CookieParam) ann).value();
+            } else if ((ann = anns.get((MatrixParam.class))) != null) {
+                source = ParamSource.MATRIX;
+                name = ((MatrixParam) ann).value();
+            } else if ((ann = anns.get((FormParam.class))) != null) {
+                source = ParamSource.FORM;
+                name = ((FormParam) ann).value();
+            } else {
+                source = ParamSource.NONE;
+                name = null;
+            }
+        }
+    }
+
+    /**
+     * Resource method invocation model computed once per resource interface method.
+     */
+    private static final class MethodModel {
+        private final String httpMethod;
+        private final String path;
+        private final Class<?> responseType;
+        private final GenericType responseGenericType;
+        private final String[] accepts;
+        private final String contentType;
+        private final ParamModel[] params;
+        private final Type entityType;
+        private final boolean hasHeaderParams;
+        private final boolean hasCookieParams;
+        private final boolean hasFormParams;
+        private final String error;
+
+        private MethodModel(Class<?> resourceInterface, Method method) {
+            // response type
+            responseType = method.getReturnType();
+
+            // determine method name
+            String httpMethod = getHttpMethodName(method);
+            if (httpMethod == null) {
+                for (Annotation ann : method.getAnnotations()) {
+                    httpMethod = getHttpMethodName(ann.annotationType());
+                    if (httpMethod != null) {
+                        break;
+                    }
+                }
+            }
+            this.httpMethod = httpMethod;
+
+            // the @Path attached to the method
+            final Path p = method.getAnnotation(Path.class);
+            path = p == null ? null : p.value();
+
+            if (httpMethod == null) {
+                if (path == null) {
+                    // no path annotation on the method -> fail
+                    error = "Not a resource method.";
+                } else if (!responseType.isInterface()) {
+                    // the method is a subresource locator, but returns class,
+                    // not interface - can't help here
+                    error = "Return type not an interface";
+                } else {
+                    error = null;
+                }
+            } else {
+                error = null;
+            }
+
+            // method params
+            final Annotation[][] paramAnns = method.getParameterAnnotations();
+            params = new ParamModel[paramAnns.length];
+            Type entityType = null;
+            boolean hasHeaderParams = false;
+            boolean hasCookieParams = false;
+            boolean hasFormParams = false;
+            for (int i = 0; i < paramAnns.length; i++) {
+                params[i] = new ParamModel(paramAnns[i]);
+                switch (params[i].source) {
+                    case ENTITY:
+                        entityType = method.getGenericParameterTypes()[i];
+                        break;
+                    case HEADER:
+                        hasHeaderParams = true;
+                        break;
+                    case COOKIE:
+                        hasCookieParams = true;
+                        break;
+                    case FORM:
+                        hasFormParams = true;
+                        break;
+                    default:
+                }
+            }
+            this.entityType = entityType;
+            this.hasHeaderParams = hasHeaderParams;
+            this.hasCookieParams = hasCookieParams;
+            this.hasFormParams = hasFormParams;
+
+            // accepted media types
+            Produces produces = method.getAnnotation(Produces.class);
+            if (produces == null) {
+                produces = resourceInterface.getAnnotation(Produces.class);
+            }
+            accepts = produces == null ? null : produces.value();
+
+            // content type
+            Consumes consumes = method.getAnnotation(Consumes.class);
+            if (consumes == null) {
+                consumes = resourceInterface.getAnnotation(Consumes.class);
+            }
+            // TODO: should consider q/qs instead of picking the first one
+            contentType = consumes != null && consumes.value().length > 0 ? consumes.value()[0] : null;
+
+            responseGenericType = httpMethod == null ? null : new GenericType(method.getGenericReturnType());
+        }
+
+        private void checkInvocable() {
+            if (error != null) {
+                throw new UnsupportedOperationException(error);
+            }
+        }
+    }
 }
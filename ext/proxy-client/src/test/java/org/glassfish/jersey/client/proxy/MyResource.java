@@ -63,6 +63,16 @@ public class MyResource implements MyResourceIfc {
         return name;
     }
 
+    @Override
+    public String getByHeader(String name) {
+        return name;
+    }
+
+    @Override
+    public String getByNameWithDefault(String name) {
+        return name;
+    }
+
     @Override
     public MySubResourceIfc getSubResource() {
         return new MySubResource();
@@ -42,7 +42,9 @@ package org.glassfish.jersey.client.proxy;
 import java.util.List;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -71,6 +73,16 @@ public interface MyResourceIfc {
     @Produces(MediaType.TEXT_PLAIN)
     String getByName(@QueryParam("name") String name);
 
+    @Path("header")
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    String getByHeader(@HeaderParam("X-Name") String name);
+
+    @Path("default")
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    String getByNameWithDefault(@QueryParam("name") @DefaultValue("anonymous") String name);
+
     @Path("subresource")
     MySubResourceIfc getSubResource();
 }
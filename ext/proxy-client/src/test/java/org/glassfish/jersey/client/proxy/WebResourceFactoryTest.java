@@ -89,6 +89,29 @@ public class WebResourceFactoryTest extends JerseyTest {
         assertEquals("jiri", resource.getByName("jiri"));
     }
 
+    @Test
+    public void testHeaderParam() {
+        assertEquals("jana", resource.getByHeader("jana"));
+    }
+
+    @Test
+    public void testDefaultValue() {
+        assertEquals("anonymous", resource.getByNameWithDefault(null));
+        assertEquals("jiri", resource.getByNameWithDefault("jiri"));
+    }
+
+    @Test
+    public void testRepeatedInvocation() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("id" + i, resource.getId("id" + i));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNonResourceMethod() {
+        resource.toString();
+    }
+
     @Test
     public void testSubResource() {
         assertEquals("Got it!", resource.getSubResource().getMyBean().name);
@@ -0,0 +1,239 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.jackson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.codehaus.jackson.map.annotate.JsonView;
+import org.codehaus.jackson.type.JavaType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * {@link JacksonJaxbJsonProvider} that resolves the {@link ObjectMapper} and the root type of an entity only once
+ * per entity type, media type and JSON view and then reuses fully configured {@link ObjectReader} and
+ * {@link ObjectWriter} instances.
+ * <p/>
+ * Of the annotations passed to the provider only {@link JsonView} affects serialization, so the annotation set is
+ * reduced to the view class in the cache key. At most {@value #CACHE_LIMIT} readers and {@value #CACHE_LIMIT}
+ * writers are cached; the least recently used ones are evicted once the limit is reached. Writing with a
+ * {@link #setJSONPFunctionName(String) JSONP function name} is not cached and delegated to the parent provider.
+ * <p/>
+ * Parsers and generators are always closed (without closing the entity stream) so that their buffers are
+ * returned to the per-thread buffer recycler of the mapper's {@code JsonFactory} and reused by the next call.
+ */
+@Produces("*/*")
+@Consumes("*/*")
+class CachingJacksonJaxbJsonProvider extends JacksonJaxbJsonProvider {
+
+    /**
+     * Maximum number of cached readers and of cached writers.
+     */
+    static final int CACHE_LIMIT = 1024;
+
+    private final Cache<Key, Reader> readers = CacheBuilder.newBuilder().maximumSize(CACHE_LIMIT).build();
+    private final Cache<Key, Writer> writers = CacheBuilder.newBuilder().maximumSize(CACHE_LIMIT).build();
+
+    @Override
+    public Object readFrom(final Class<Object> type, final Type genericType, final Annotation[] annotations,
+                           final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders,
+                           final InputStream entityStream) throws IOException {
+        final Key key = new Key(genericType != null ? genericType : type, mediaType, null);
+        Reader reader = readers.getIfPresent(key);
+        if (reader == null) {
+            final ObjectMapper mapper = locateMapper(type, mediaType);
+            reader = new Reader(mapper, mapper.reader(mapper.getTypeFactory().constructType(key.type)));
+            readers.put(key, reader);
+        }
+
+        final JsonParser parser = reader.mapper.getJsonFactory().createJsonParser(entityStream);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try {
+            return reader.reader.readValue(parser);
+        } finally {
+            // releases the parser buffers; the entity stream is left open
+            parser.close();
+        }
+    }
+
+    @Override
+    public void writeTo(final Object value, final Class<?> type, final Type genericType, final Annotation[] annotations,
+                        final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
+                        final OutputStream entityStream) throws IOException, WebApplicationException {
+        if (_jsonpFunctionName != null) {
+            super.writeTo(value, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+            return;
+        }
+
+        final Key key = new Key(genericType != null ? genericType : type, mediaType, getView(annotations));
+        Writer writer = writers.getIfPresent(key);
+        if (writer == null) {
+            writer = createWriter(type, key);
+            writers.put(key, writer);
+        }
+
+        final JsonGenerator generator = writer.mapper.getJsonFactory().createJsonGenerator(entityStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (writer.indent) {
+            generator.useDefaultPrettyPrinter();
+        }
+        writer.writer.writeValue(generator, value);
+        // flushes buffered content and releases the generator buffers; the entity stream is left open
+        generator.close();
+    }
+
+    private Writer createWriter(final Class<?> type, final Key key) {
+        final ObjectMapper mapper = locateMapper(type, key.mediaType);
+
+        ObjectWriter writer;
+        JavaType rootType = null;
+        if (key.type.getClass() != Class.class) {
+            // generic types are other implementations of java.lang.reflect.Type
+            rootType = mapper.getTypeFactory().constructType(key.type);
+            if (rootType.getRawClass() == Object.class) {
+                rootType = null;
+            }
+        }
+        writer = rootType != null ? mapper.writerWithType(rootType) : mapper.writer();
+        if (key.view != null) {
+            writer = writer.withView(key.view);
+        }
+
+        return new Writer(mapper, writer,
+                mapper.getSerializationConfig().isEnabled(SerializationConfig.Feature.INDENT_OUTPUT));
+    }
+
+    private static Class<?> getView(final Annotation[] annotations) {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation.annotationType() == JsonView.class) {
+                    final Class<?>[] views = ((JsonView) annotation).value();
+                    return views.length > 0 ? views[0] : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cache key: entity type, media type and JSON view.
+     */
+    private static final class Key {
+
+        private final Type type;
+        private final MediaType mediaType;
+        private final Class<?> view;
+        private final int hash;
+
+        Key(final Type type, final MediaType mediaType, final Class<?> view) {
+            this.type = type;
+            this.mediaType = mediaType;
+            this.view = view;
+
+            int h = type.hashCode();
+            h = 31 * h + (mediaType != null ? mediaType.hashCode() : 0);
+            h = 31 * h + (view != null ? view.hashCode() : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hash == other.hash
+                    && type.equals(other.type)
+                    && (mediaType == null ? other.mediaType == null : mediaType.equals(other.mediaType))
+                    && view == other.view;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Reader {
+
+        private final ObjectMapper mapper;
+        private final ObjectReader reader;
+
+        Reader(final ObjectMapper mapper, final ObjectReader reader) {
+            this.mapper = mapper;
+            this.reader = reader;
+        }
+    }
+
+    private static final class Writer {
+
+        private final ObjectMapper mapper;
+        private final ObjectWriter writer;
+        private final boolean indent;
+
+        Writer(final ObjectMapper mapper, final ObjectWriter writer, final boolean indent) {
+            this.mapper = mapper;
+            this.writer = writer;
+            this.indent = indent;
+        }
+    }
+}
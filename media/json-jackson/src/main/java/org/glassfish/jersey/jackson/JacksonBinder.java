@@ -50,8 +50,6 @@ import javax.inject.Singleton;
 
 import org.glassfish.jersey.internal.inject.AbstractBinder;
 
-import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
-
 /**
  * Module with JAX-RS Jackson JSON providers.
  *
@@ -61,12 +59,13 @@ public class JacksonBinder extends AbstractBinder {
 
     @SuppressWarnings("unchecked")
     private static final Collection<Class<?>> PROVIDERS = Collections.unmodifiableCollection(
-            Arrays.<Class<?>>asList(JacksonJaxbJsonProvider.class)
+            Arrays.<Class<?>>asList(CachingJacksonJaxbJsonProvider.class, JacksonStreamingArrayProvider.class,
+                    JacksonSmileProvider.class)
     );
 
     /**
      * Get providers used for serialization and de-serialization of entities
-     * to/from JSON media type.
+     * to/from JSON and Smile media types.
      *
      * @return {@link Collection} of providers.
      */
@@ -76,7 +75,9 @@ public class JacksonBinder extends AbstractBinder {
 
     @Override
     protected void configure() {
-        bindSingletonReaderWriterProvider(JacksonJaxbJsonProvider.class);
+        bindSingletonReaderWriterProvider(CachingJacksonJaxbJsonProvider.class);
+        bindSingletonReaderWriterProvider(JacksonStreamingArrayProvider.class);
+        bindSingletonReaderWriterProvider(JacksonSmileProvider.class);
     }
 
     private <T extends MessageBodyReader<?> & MessageBodyWriter<?>> void bindSingletonReaderWriterProvider(Class<T> provider) {
@@ -44,16 +44,41 @@ import javax.ws.rs.core.Feature;
 
 /**
  * Feature used to register Jackson JSON providers with Client.
+ * <p/>
+ * Besides the JSON providers, the feature registers the {@link JacksonSmileProvider binary Smile provider}, so that
+ * Smile responses can be read. Optionally, requests accepting JSON can be made to prefer Smile, which lets Jersey
+ * clients and servers that both support Smile negotiate it automatically.
  *
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 public class JacksonFeature implements Feature {
 
+    private final boolean preferSmile;
+
+    /**
+     * Create new Jackson feature that does not modify the acceptable media types of requests.
+     */
+    public JacksonFeature() {
+        this(false);
+    }
+
+    /**
+     * Create new Jackson feature.
+     *
+     * @param preferSmile if {@code true}, requests accepting JSON will also accept Smile with higher preference.
+     */
+    public JacksonFeature(final boolean preferSmile) {
+        this.preferSmile = preferSmile;
+    }
+
     @Override
     public boolean configure(Configurable c) {
         for (Class<?> provider : JacksonBinder.getProviders()) {
             c.register(provider);
         }
+        if (preferSmile) {
+            c.register(SmileAcceptFilter.class);
+        }
         return true;
     }
 
@@ -0,0 +1,182 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.jackson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
+
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.introspect.JacksonAnnotationIntrospector;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+
+/**
+ * Entity provider reading and writing entities in the binary
+ * <a href="http://wiki.fasterxml.com/SmileFormat">Smile</a> JSON format.
+ * <p/>
+ * Smile has the same data model as JSON, so entities are mapped exactly as by the JSON provider (using Jackson
+ * and JAXB annotations, with the readers and writers cached per entity type), but the encoded entities are smaller
+ * and faster to parse. The provider takes part in the
+ * standard content negotiation for the {@value #APPLICATION_JACKSON_SMILE} media type, so a resource method that
+ * declares e.g. {@code @Produces({"application/json", "application/x-jackson-smile"})} serves Smile to clients
+ * that accept it and JSON to all the others.
+ * <p/>
+ * A {@code ContextResolver<ObjectMapper>} is used only if the resolved mapper has been created with
+ * a {@link SmileFactory}; otherwise a default Smile mapper is used.
+ * @see JacksonFeature#JacksonFeature(boolean)
+ */
+@Produces(JacksonSmileProvider.APPLICATION_JACKSON_SMILE)
+@Consumes(JacksonSmileProvider.APPLICATION_JACKSON_SMILE)
+public class JacksonSmileProvider extends JacksonJaxbJsonProvider {
+
+    /**
+     * {@code "application/x-jackson-smile"}
+     */
+    public static final String APPLICATION_JACKSON_SMILE = "application/x-jackson-smile";
+    /**
+     * {@code "application/x-jackson-smile"}
+     */
+    public static final MediaType APPLICATION_JACKSON_SMILE_TYPE = new MediaType("application", "x-jackson-smile");
+
+    private static final Class<?>[] UNREADABLE = {InputStream.class, Reader.class, String.class, byte[].class,
+            char[].class};
+    private static final Class<?>[] UNWRITABLE = {OutputStream.class, Writer.class, StreamingOutput.class,
+            Response.class, String.class, byte[].class, char[].class};
+
+    private final ObjectMapper defaultMapper;
+    private final CachingJacksonJaxbJsonProvider cachingProvider = new CachingJacksonJaxbJsonProvider() {
+
+        @Override
+        public ObjectMapper locateMapper(final Class<?> type, final MediaType mediaType) {
+            return JacksonSmileProvider.this.locateMapper(type, mediaType);
+        }
+    };
+
+    @Context
+    private Providers providers;
+
+    /**
+     * Create new Smile provider.
+     */
+    public JacksonSmileProvider() {
+        defaultMapper = new ObjectMapper(new SmileFactory());
+        defaultMapper.setAnnotationIntrospector(AnnotationIntrospector.pair(
+                new JacksonAnnotationIntrospector(), new JaxbAnnotationIntrospector()));
+    }
+
+    /**
+     * Check whether the media type is the Smile media type, ignoring its parameters.
+     *
+     * @param mediaType media type, may be {@code null}.
+     * @return {@code true} if the media type is {@value #APPLICATION_JACKSON_SMILE}.
+     */
+    static boolean isSmile(final MediaType mediaType) {
+        return mediaType != null
+                && APPLICATION_JACKSON_SMILE_TYPE.getType().equalsIgnoreCase(mediaType.getType())
+                && APPLICATION_JACKSON_SMILE_TYPE.getSubtype().equalsIgnoreCase(mediaType.getSubtype());
+    }
+
+    private static boolean isAssignableToAny(final Class<?> type, final Class<?>[] classes) {
+        for (Class<?> c : classes) {
+            if (c.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isReadable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                              final MediaType mediaType) {
+        return isSmile(mediaType) && !isAssignableToAny(type, UNREADABLE);
+    }
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                               final MediaType mediaType) {
+        return isSmile(mediaType) && !isAssignableToAny(type, UNWRITABLE);
+    }
+
+    @Override
+    public Object readFrom(final Class<Object> type, final Type genericType, final Annotation[] annotations,
+                           final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders,
+                           final InputStream entityStream) throws IOException {
+        return cachingProvider.readFrom(type, genericType, annotations, mediaType, httpHeaders, entityStream);
+    }
+
+    @Override
+    public void writeTo(final Object value, final Class<?> type, final Type genericType, final Annotation[] annotations,
+                        final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
+                        final OutputStream entityStream) throws IOException, WebApplicationException {
+        cachingProvider.writeTo(value, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+    }
+
+    @Override
+    public ObjectMapper locateMapper(final Class<?> type, final MediaType mediaType) {
+        if (providers != null) {
+            final ContextResolver<ObjectMapper> resolver = providers.getContextResolver(ObjectMapper.class, mediaType);
+            if (resolver != null) {
+                final ObjectMapper mapper = resolver.getContext(type);
+                if (mapper != null && mapper.getJsonFactory() instanceof SmileFactory) {
+                    return mapper;
+                }
+            }
+        }
+        return defaultMapper;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.jackson;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.MessageProcessingException;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.JavaType;
+
+/**
+ * Streams a JSON array from/to an {@link Iterator} one element at a time.
+ * <p/>
+ * When written, elements are pulled from the iterator and serialized directly into a single
+ * {@link JsonGenerator}, so that a large result never has to be materialized as a collection. The entity
+ * stream is flushed after every {@value #FLUSH_INTERVAL} elements and once the array is complete. If the
+ * written iterator is {@link Closeable}, it is closed when the array has been written.
+ * <p/>
+ * When read, an iterator is returned that deserializes an element only when it is requested. The returned
+ * iterator is also {@link Closeable} which keeps the entity stream open after {@code readEntity(...)}
+ * returns; the stream is closed once the last element has been read or when the iterator is closed.
+ * <p/>
+ * The {@link ObjectMapper} is looked up the same way as in {@link JacksonJaxbJsonProvider}: via
+ * a {@code ContextResolver<ObjectMapper>} if one is registered, otherwise the default mapper with
+ * Jackson and JAXB annotation support is used.
+ */
+@Produces("*/*")
+@Consumes("*/*")
+class JacksonStreamingArrayProvider implements MessageBodyReader<Iterator<?>>, MessageBodyWriter<Iterator<?>> {
+
+    /**
+     * Number of elements written between two consecutive flushes of the entity stream.
+     */
+    static final int FLUSH_INTERVAL = 64;
+
+    private final JacksonJaxbJsonProvider defaultProvider = new JacksonJaxbJsonProvider();
+
+    @Context
+    private Providers providers;
+
+    private static boolean isJson(final MediaType mediaType) {
+        return MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType) || mediaType.getSubtype().endsWith("+json");
+    }
+
+    private static Type getElementType(final Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            final Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (arguments.length == 1) {
+                return arguments[0];
+            }
+        }
+        return Object.class;
+    }
+
+    private ObjectMapper getMapper(final Class<?> type, final MediaType mediaType) {
+        if (providers != null) {
+            ContextResolver<ObjectMapper> resolver = providers.getContextResolver(ObjectMapper.class, mediaType);
+            if (resolver == null) {
+                resolver = providers.getContextResolver(ObjectMapper.class, null);
+            }
+            if (resolver != null) {
+                final ObjectMapper mapper = resolver.getContext(type);
+                if (mapper != null) {
+                    return mapper;
+                }
+            }
+        }
+        return defaultProvider.locateMapper(type, mediaType);
+    }
+
+    @Override
+    public boolean isReadable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                              final MediaType mediaType) {
+        return type == Iterator.class && isJson(mediaType);
+    }
+
+    @Override
+    public Iterator<?> readFrom(final Class<Iterator<?>> type, final Type genericType, final Annotation[] annotations,
+                                final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders,
+                                final InputStream entityStream) throws IOException, WebApplicationException {
+        final ObjectMapper mapper = getMapper(type, mediaType);
+        final JavaType elementType = mapper.getTypeFactory().constructType(getElementType(genericType));
+
+        final JsonParser parser = mapper.getJsonFactory().createJsonParser(entityStream);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            entityStream.close();
+            throw new MessageProcessingException("JSON array expected.");
+        }
+
+        return new ElementIterator(mapper, parser, elementType, entityStream);
+    }
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                               final MediaType mediaType) {
+        return Iterator.class.isAssignableFrom(type) && isJson(mediaType);
+    }
+
+    @Override
+    public long getSize(final Iterator<?> iterator, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final Iterator<?> iterator, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType,
+                        final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        final ObjectMapper mapper = getMapper(type, mediaType);
+
+        // ObjectMapper flushes the generator after every value by default; only pass the periodic flushes through
+        final FilterOutputStream batchingStream = new FilterOutputStream(entityStream) {
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() {
+                // flushed by the array writer only
+            }
+        };
+
+        final JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(batchingStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        try {
+            generator.writeStartArray();
+            int count = 0;
+            while (iterator.hasNext()) {
+                mapper.writeValue(generator, iterator.next());
+
+                if (++count % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                    entityStream.flush();
+                }
+            }
+            generator.writeEndArray();
+            generator.flush();
+            entityStream.flush();
+        } finally {
+            if (iterator instanceof Closeable) {
+                ((Closeable) iterator).close();
+            }
+        }
+    }
+
+    /**
+     * Iterator deserializing array elements lazily from an entity stream.
+     */
+    private static class ElementIterator implements Iterator<Object>, Closeable {
+
+        private final ObjectMapper mapper;
+        private final JsonParser parser;
+        private final JavaType elementType;
+        private final InputStream entityStream;
+        private JsonToken next;
+        private boolean closed;
+
+        ElementIterator(final ObjectMapper mapper, final JsonParser parser, final JavaType elementType,
+                        final InputStream entityStream) {
+            this.mapper = mapper;
+            this.parser = parser;
+            this.elementType = elementType;
+            this.entityStream = entityStream;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !closed) {
+                try {
+                    next = parser.nextToken();
+                    if (next == null || next == JsonToken.END_ARRAY) {
+                        next = null;
+                        close();
+                    }
+                } catch (IOException e) {
+                    closeQuietly();
+                    throw new MessageProcessingException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            next = null;
+            try {
+                return mapper.readValue(parser, elementType);
+            } catch (IOException e) {
+                closeQuietly();
+                throw new MessageProcessingException(e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                next = null;
+                try {
+                    parser.close();
+                } finally {
+                    entityStream.close();
+                }
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.jackson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Client request filter that makes a request accepting JSON prefer the equivalent binary Smile format.
+ * <p/>
+ * If the request accepts {@code application/json} (or a {@code +json} media type) but not Smile, the Smile media
+ * type is added to the {@code Accept} header and the JSON media types without an explicit quality factor get
+ * {@code q=0.9}. A server that can produce Smile for the resource then responds with Smile, any other server still
+ * responds with JSON.
+ */
+final class SmileAcceptFilter implements ClientRequestFilter {
+
+    private static final String JSON_QUALITY = "0.9";
+
+    @Override
+    public void filter(final ClientRequestContext requestContext) throws IOException {
+        final List<MediaType> acceptable = requestContext.getAcceptableMediaTypes();
+
+        boolean json = false;
+        for (MediaType mediaType : acceptable) {
+            if (JacksonSmileProvider.isSmile(mediaType)) {
+                return;
+            }
+            json |= isJson(mediaType);
+        }
+        if (!json) {
+            return;
+        }
+
+        final List<Object> accept = new ArrayList<Object>(acceptable.size() + 1);
+        accept.add(JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE);
+        for (MediaType mediaType : acceptable) {
+            if (isJson(mediaType) && !mediaType.getParameters().containsKey("q")) {
+                final Map<String, String> parameters = new HashMap<String, String>(mediaType.getParameters());
+                parameters.put("q", JSON_QUALITY);
+                accept.add(new MediaType(mediaType.getType(), mediaType.getSubtype(), parameters));
+            } else {
+                accept.add(mediaType);
+            }
+        }
+        requestContext.getHeaders().put(HttpHeaders.ACCEPT, accept);
+    }
+
+    private static boolean isJson(final MediaType mediaType) {
+        final String subtype = mediaType.getSubtype();
+        return "application".equalsIgnoreCase(mediaType.getType())
+                && ("json".equalsIgnoreCase(subtype) || subtype.toLowerCase().endsWith("+json"));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.jackson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+
+/**
+ * {@link CachingJacksonJaxbJsonProvider} vs. {@link JacksonJaxbJsonProvider} throughput benchmark.
+ * <p>
+ * Run the {@link #main(String[])} method to measure the number of typical DTO entities (a single bean with a nested
+ * list and a generic list of beans) each provider is able to write and read per second. The benchmark is not
+ * executed as a part of the test suite.
+ * </p>
+ */
+public class CachingJacksonJaxbJsonProviderBenchmark {
+
+    private static final int OPERATIONS = 200000;
+    private static final int ITERATIONS = 5;
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    /**
+     * Typical nested DTO.
+     */
+    public static class Address {
+        public String street;
+        public String city;
+        public String zip;
+    }
+
+    /**
+     * Typical DTO.
+     */
+    public static class User {
+        public long id;
+        public String name;
+        public String email;
+        public boolean active;
+        public List<Address> addresses;
+    }
+
+    private static final Type USER_LIST = new GenericType<List<User>>() {
+    }.getType();
+
+    public static void main(String[] args) throws IOException {
+        final User user = user(42);
+        final List<User> users = new ArrayList<User>();
+        for (int i = 0; i < 10; i++) {
+            users.add(user(i));
+        }
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            run(i, "JacksonJaxbJsonProvider", new JacksonJaxbJsonProvider(), user, users);
+            run(i, "CachingJacksonJaxbJsonProvider", new CachingJacksonJaxbJsonProvider(), user, users);
+        }
+    }
+
+    private static void run(final int iteration, final String name, final JacksonJaxbJsonProvider provider,
+                            final User user, final List<User> users) throws IOException {
+        final byte[] userJson = write(provider, user, User.class, User.class);
+        final byte[] usersJson = write(provider, users, ArrayList.class, USER_LIST);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            write(provider, user, User.class, User.class);
+        }
+        report(iteration, name, "write bean", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            read(provider, userJson, User.class, User.class);
+        }
+        report(iteration, name, "read bean", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            write(provider, users, ArrayList.class, USER_LIST);
+        }
+        report(iteration, name, "write list", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            read(provider, usersJson, List.class, USER_LIST);
+        }
+        report(iteration, name, "read list", start);
+    }
+
+    private static byte[] write(final JacksonJaxbJsonProvider provider, final Object entity, final Class<?> type,
+                                final Type genericType) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+        provider.writeTo(entity, type, genericType, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE,
+                new MultivaluedHashMap<String, Object>(), out);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object read(final JacksonJaxbJsonProvider provider, final byte[] json, final Class<?> type,
+                               final Type genericType) throws IOException {
+        return provider.readFrom((Class<Object>) type, genericType, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE,
+                new MultivaluedHashMap<String, String>(), new ByteArrayInputStream(json));
+    }
+
+    private static User user(final int id) {
+        final User user = new User();
+        user.id = id;
+        user.name = "User " + id;
+        user.email = "user" + id + "@example.com";
+        user.active = id % 2 == 0;
+        user.addresses = new ArrayList<Address>();
+        for (int i = 0; i < 2; i++) {
+            final Address address = new Address();
+            address.street = i + " Main Street";
+            address.city = "Prague";
+            address.zip = "110 00";
+            user.addresses.add(address);
+        }
+        return user;
+    }
+
+    private static void report(final int iteration, final String provider, final String what, final long start) {
+        final long elapsed = System.nanoTime() - start;
+        System.out.printf("Iteration %d: %s %s %d ops in %.1f ms, %.0f ops/s%n", iteration, provider, what, OPERATIONS,
+                elapsed / 1000000.0, OPERATIONS * 1000000000.0 / elapsed);
+    }
+}
@@ -39,21 +39,40 @@
  */
 package org.glassfish.jersey.moxy.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Providers;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.PropertyException;
+import javax.xml.bind.UnmarshalException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+
+import org.glassfish.jersey.message.PreparableProvider;
 
 import org.eclipse.persistence.jaxb.MarshallerProperties;
 import org.eclipse.persistence.jaxb.UnmarshallerProperties;
@@ -68,16 +87,33 @@ import org.eclipse.persistence.jaxb.rs.MOXyJsonProvider;
  *     <li>Value wrapper - {@code $}</li>
  *     <li>Namespace separator - {@code :}</li>
  * </ul>
+ * <p/>
+ * The {@code MoxyJsonConfiguration} is resolved once, when the provider is used for the first time. Plain domain
+ * classes (i.e. not collections, arrays, {@link JAXBElement JAXB elements} or {@code java.*} types) are
+ * (un)marshalled using pools of marshallers and unmarshallers kept per root class and current provider settings.
+ * The {@link JAXBContext} is obtained from {@link MOXyJsonProvider#getJAXBContext(Set, Annotation[], MediaType,
+ * MultivaluedMap)} and the pooled instances get the same JSON properties {@code MOXyJsonProvider} applies, so the
+ * output does not differ from the one of {@code MOXyJsonProvider}. Other entity types are processed by
+ * {@link MOXyJsonProvider}. The contexts can be created at application start-up as the provider is
+ * {@link PreparableProvider preparable}.
  *
  * @author Michal Gajdos (michal.gajdos at oracle.com)
  */
 @Produces("*/*")
 @Consumes("*/*")
-class ConfigurableMoxyJsonProvider extends MOXyJsonProvider {
+class ConfigurableMoxyJsonProvider extends MOXyJsonProvider implements PreparableProvider {
+
+    /**
+     * Maximum number of idle marshallers (and unmarshallers) pooled per cached context.
+     */
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
 
     @Context
     private Providers providers;
 
+    private final ConcurrentMap<ContextKey, PooledContext> contexts = new ConcurrentHashMap<ContextKey, PooledContext>();
+    private volatile boolean configured;
+
     /**
      * Create new configurable moxy JSON provider instance.
      */
@@ -88,6 +124,17 @@ class ConfigurableMoxyJsonProvider extends MOXyJsonProvider {
     }
 
     private void initializeProperties() {
+        if (!configured) {
+            synchronized (this) {
+                if (!configured) {
+                    resolveConfiguration();
+                    configured = true;
+                }
+            }
+        }
+    }
+
+    private void resolveConfiguration() {
         final ContextResolver<MoxyJsonConfiguration> contextResolver =
                 providers.getContextResolver(MoxyJsonConfiguration.class, MediaType.APPLICATION_JSON_TYPE);
 
@@ -114,7 +161,9 @@ class ConfigurableMoxyJsonProvider extends MOXyJsonProvider {
         unmarshaller.setProperty(UnmarshallerProperties.JSON_ATTRIBUTE_PREFIX, getAttributePrefix());
         unmarshaller.setProperty(UnmarshallerProperties.JSON_INCLUDE_ROOT, isIncludeRoot());
         unmarshaller.setProperty(UnmarshallerProperties.JSON_NAMESPACE_SEPARATOR, getNamespaceSeparator());
-        unmarshaller.setProperty(UnmarshallerProperties.JSON_VALUE_WRAPPER, getValueWrapper());
+        if (getValueWrapper() != null) {
+            unmarshaller.setProperty(UnmarshallerProperties.JSON_VALUE_WRAPPER, getValueWrapper());
+        }
         unmarshaller.setProperty(UnmarshallerProperties.JSON_NAMESPACE_PREFIX_MAPPER, getNamespacePrefixMapper());
     }
 
@@ -124,7 +173,9 @@ class ConfigurableMoxyJsonProvider extends MOXyJsonProvider {
         marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, isIncludeRoot());
         marshaller.setProperty(MarshallerProperties.JSON_MARSHAL_EMPTY_COLLECTIONS, isMarshalEmptyCollections());
         marshaller.setProperty(MarshallerProperties.JSON_NAMESPACE_SEPARATOR, getNamespaceSeparator());
-        marshaller.setProperty(MarshallerProperties.JSON_VALUE_WRAPPER, getValueWrapper());
+        if (getValueWrapper() != null) {
+            marshaller.setProperty(MarshallerProperties.JSON_VALUE_WRAPPER, getValueWrapper());
+        }
         marshaller.setProperty(MarshallerProperties.NAMESPACE_PREFIX_MAPPER, getNamespacePrefixMapper());
     }
 
@@ -146,6 +197,91 @@ class ConfigurableMoxyJsonProvider extends MOXyJsonProvider {
                 && (MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType) || mediaType.getSubtype().endsWith("+json"));
     }
 
+    @Override
+    public Object readFrom(final Class<Object> type, final Type genericType, final Annotation[] annotations,
+                           final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders,
+                           final InputStream entityStream) throws IOException, WebApplicationException {
+        final PooledContext context = getPooledContext(type, genericType, annotations, mediaType, httpHeaders);
+        if (context == null) {
+            return super.readFrom(type, genericType, annotations, mediaType, httpHeaders, entityStream);
+        }
+
+        try {
+            final Unmarshaller unmarshaller = context.acquireUnmarshaller();
+            final JAXBElement<?> element = unmarshaller.unmarshal(new StreamSource(entityStream), type);
+            context.release(unmarshaller);
+            return element.getValue();
+        } catch (UnmarshalException e) {
+            throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+        } catch (JAXBException e) {
+            throw new WebApplicationException(e);
+        }
+    }
+
+    @Override
+    public void writeTo(final Object object, final Class<?> type, final Type genericType, final Annotation[] annotations,
+                        final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
+                        final OutputStream entityStream) throws IOException, WebApplicationException {
+        final PooledContext context = getPooledContext(type, genericType, annotations, mediaType, httpHeaders);
+        if (context == null) {
+            super.writeTo(object, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+            return;
+        }
+
+        try {
+            final Marshaller marshaller = context.acquireMarshaller();
+            marshaller.marshal(object, entityStream);
+            context.release(marshaller);
+        } catch (JAXBException e) {
+            throw new WebApplicationException(e);
+        }
+    }
+
+    @Override
+    public void prepare(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                        final MediaType mediaType) {
+        if (MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType) || mediaType.getSubtype().endsWith("+json")) {
+            getPooledContext(type, genericType, annotations, mediaType, null);
+        }
+    }
+
+    /**
+     * Get the cached context for the entity type if the type is a plain domain class.
+     *
+     * @return cached context or {@code null} if the entity should be processed by {@link MOXyJsonProvider}.
+     */
+    private PooledContext getPooledContext(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                                           final MediaType mediaType, final MultivaluedMap<String, ?> httpHeaders) {
+        if ((genericType != null && genericType != type) || type.isArray() || type.isPrimitive()
+                || Collection.class.isAssignableFrom(type) || JAXBElement.class.isAssignableFrom(type)
+                || type.getPackage() == null || type.getPackage().getName().startsWith("java.")) {
+            return null;
+        }
+        final String charset = mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
+        if (charset != null && !"UTF-8".equalsIgnoreCase(charset)) {
+            return null;
+        }
+
+        initializeProperties();
+
+        final ContextKey key = new ContextKey(Collections.<Class<?>>singleton(type), this);
+        PooledContext context = contexts.get(key);
+        if (context == null) {
+            try {
+                // the same context MOXyJsonProvider would use (JAXBContext resolver, class loader, context cache)
+                context = new PooledContext(getJAXBContext(key.classes, annotations, mediaType, httpHeaders));
+            } catch (JAXBException e) {
+                // let MOXyJsonProvider report the problem
+                return null;
+            }
+            final PooledContext existing = contexts.putIfAbsent(key, context);
+            if (existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
+
     @Override
     protected void preReadFrom(final Class<Object> type, final Type genericType, final Annotation[] annotations,
                                final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders,
@@ -166,4 +302,107 @@ class ConfigurableMoxyJsonProvider extends MOXyJsonProvider {
         initializeMarshaller(marshaller);
     }
 
+    /**
+     * Cache key: root classes of a context and the provider settings applied to its (un)marshallers.
+     */
+    private static final class ContextKey {
+
+        private final Set<Class<?>> classes;
+        private final String attributePrefix;
+        private final boolean formattedOutput;
+        private final boolean includeRoot;
+        private final boolean marshalEmptyCollections;
+        private final char namespaceSeparator;
+        private final String valueWrapper;
+        private final Map<String, String> namespacePrefixMapper;
+
+        ContextKey(final Set<Class<?>> classes, final MOXyJsonProvider provider) {
+            this.classes = classes;
+            this.attributePrefix = provider.getAttributePrefix();
+            this.formattedOutput = provider.isFormattedOutput();
+            this.includeRoot = provider.isIncludeRoot();
+            this.marshalEmptyCollections = provider.isMarshalEmptyCollections();
+            this.namespaceSeparator = provider.getNamespaceSeparator();
+            this.valueWrapper = provider.getValueWrapper();
+            this.namespacePrefixMapper = provider.getNamespacePrefixMapper();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ContextKey)) {
+                return false;
+            }
+            final ContextKey other = (ContextKey) o;
+            return classes.equals(other.classes)
+                    && formattedOutput == other.formattedOutput
+                    && includeRoot == other.includeRoot
+                    && marshalEmptyCollections == other.marshalEmptyCollections
+                    && namespaceSeparator == other.namespaceSeparator
+                    && equal(attributePrefix, other.attributePrefix)
+                    && equal(valueWrapper, other.valueWrapper)
+                    && equal(namespacePrefixMapper, other.namespacePrefixMapper);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = classes.hashCode();
+            result = 31 * result + (attributePrefix != null ? attributePrefix.hashCode() : 0);
+            result = 31 * result + (formattedOutput ? 1 : 0);
+            result = 31 * result + (includeRoot ? 1 : 0);
+            result = 31 * result + (marshalEmptyCollections ? 1 : 0);
+            result = 31 * result + (int) namespaceSeparator;
+            result = 31 * result + (valueWrapper != null ? valueWrapper.hashCode() : 0);
+            result = 31 * result + (namespacePrefixMapper != null ? namespacePrefixMapper.hashCode() : 0);
+            return result;
+        }
+
+        private static boolean equal(final Object o1, final Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+
+    /**
+     * Cached context with pools of pre-configured marshallers and unmarshallers.
+     */
+    private final class PooledContext {
+
+        private final JAXBContext context;
+        private final BlockingQueue<Marshaller> marshallers = new ArrayBlockingQueue<Marshaller>(POOL_SIZE);
+        private final BlockingQueue<Unmarshaller> unmarshallers = new ArrayBlockingQueue<Unmarshaller>(POOL_SIZE);
+
+        PooledContext(final JAXBContext context) {
+            this.context = context;
+        }
+
+        Marshaller acquireMarshaller() throws JAXBException {
+            Marshaller marshaller = marshallers.poll();
+            if (marshaller == null) {
+                marshaller = context.createMarshaller();
+                marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, MediaType.APPLICATION_JSON);
+                initializeMarshaller(marshaller);
+            }
+            return marshaller;
+        }
+
+        Unmarshaller acquireUnmarshaller() throws JAXBException {
+            Unmarshaller unmarshaller = unmarshallers.poll();
+            if (unmarshaller == null) {
+                unmarshaller = context.createUnmarshaller();
+                unmarshaller.setProperty(UnmarshallerProperties.MEDIA_TYPE, MediaType.APPLICATION_JSON);
+                initializeUnmarshaller(unmarshaller);
+            }
+            return unmarshaller;
+        }
+
+        void release(final Marshaller marshaller) {
+            marshallers.offer(marshaller);
+        }
+
+        void release(final Unmarshaller unmarshaller) {
+            unmarshallers.offer(unmarshaller);
+        }
+    }
 }
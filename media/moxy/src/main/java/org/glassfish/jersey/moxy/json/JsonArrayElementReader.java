@@ -0,0 +1,144 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.moxy.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a JSON array read from an input stream into its top-level elements without parsing them.
+ * <p/>
+ * MOXy cannot unmarshal a JSON array element by element, so the array is scanned here and the raw
+ * bytes of each element are handed to the element provider one at a time. Only the element that
+ * is currently being read is held in memory.
+ */
+final class JsonArrayElementReader {
+
+    private final InputStream in;
+    private final ByteArrayOutputStream element = new ByteArrayOutputStream(256);
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * Create new JSON array element reader.
+     *
+     * @param in buffered stream positioned before the opening bracket of the array.
+     */
+    JsonArrayElementReader(final InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Read raw bytes of the next array element.
+     *
+     * @return UTF-8 encoded element or {@code null} if the end of the array has been reached.
+     * @throws IOException in case of an I/O error or if the input is not a JSON array.
+     */
+    byte[] next() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        int c = skipWhitespace();
+        if (!started) {
+            if (c != '[') {
+                throw new IOException("JSON array expected.");
+            }
+            started = true;
+            c = skipWhitespace();
+            if (c == ']') {
+                finished = true;
+                return null;
+            }
+        }
+
+        element.reset();
+        int depth = 0;
+        boolean inString = false;
+        while (true) {
+            if (c < 0) {
+                throw new IOException("Unexpected end of JSON array.");
+            }
+            if (inString) {
+                if (c == '\\') {
+                    element.write(c);
+                    c = in.read();
+                    if (c < 0) {
+                        continue;
+                    }
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    // closing bracket of the array itself
+                    finished = true;
+                    break;
+                }
+                depth--;
+            } else if (depth == 0) {
+                if (c == ',') {
+                    break;
+                } else if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    // insignificant whitespace after the element
+                    c = in.read();
+                    continue;
+                }
+            }
+            element.write(c);
+            c = in.read();
+        }
+
+        return element.toByteArray();
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.moxy.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+
+/**
+ * Writes and reads Java scalars (strings, characters, booleans and numbers) as JSON literals.
+ * <p/>
+ * MOXy does not handle scalars and the JSON media type is also accepted by the plain text providers,
+ * which would write strings without quotes. Scalar array elements are therefore converted here.
+ */
+final class JsonLiterals {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonLiterals() {
+    }
+
+    /**
+     * Check whether instances of the given type are written and read as JSON literals.
+     *
+     * @param type Java type.
+     * @return {@code true} if the type is a scalar type, {@code false} otherwise.
+     */
+    static boolean isScalar(final Class<?> type) {
+        return type == String.class
+                || type == Character.class
+                || type == Boolean.class
+                || type == Byte.class
+                || type == Short.class
+                || type == Integer.class
+                || type == Long.class
+                || type == Float.class
+                || type == Double.class
+                || type == BigInteger.class
+                || type == BigDecimal.class;
+    }
+
+    /**
+     * Write a scalar as a JSON literal.
+     *
+     * @param value scalar value, must be of a {@link #isScalar(Class) scalar type}.
+     * @param out output stream the UTF-8 encoded literal is written to.
+     * @throws IOException in case of an I/O error.
+     */
+    static void write(final Object value, final OutputStream out) throws IOException {
+        if (value instanceof Boolean || value instanceof Number && isFinite((Number) value)) {
+            out.write(value.toString().getBytes(UTF8));
+        } else {
+            // strings, characters and numbers that have no JSON representation (NaN, infinity)
+            out.write(quote(value.toString()).getBytes(UTF8));
+        }
+    }
+
+    /**
+     * Read a scalar from a JSON literal.
+     *
+     * @param literal UTF-8 encoded JSON literal.
+     * @param type {@link #isScalar(Class) scalar type} to convert the literal to.
+     * @return scalar value.
+     * @throws IOException if the literal cannot be converted to the requested type.
+     */
+    static Object read(final byte[] literal, final Class<?> type) throws IOException {
+        String value = new String(literal, UTF8).trim();
+        if (value.startsWith("\"")) {
+            value = unquote(value);
+        }
+
+        try {
+            if (type == String.class) {
+                return value;
+            } else if (type == Character.class) {
+                if (value.length() != 1) {
+                    throw new IOException("Single character expected: " + value);
+                }
+                return value.charAt(0);
+            } else if (type == Boolean.class) {
+                if (!"true".equals(value) && !"false".equals(value)) {
+                    throw new IOException("Boolean expected: " + value);
+                }
+                return Boolean.valueOf(value);
+            } else if (type == Byte.class) {
+                return Byte.valueOf(value);
+            } else if (type == Short.class) {
+                return Short.valueOf(value);
+            } else if (type == Integer.class) {
+                return Integer.valueOf(value);
+            } else if (type == Long.class) {
+                return Long.valueOf(value);
+            } else if (type == Float.class) {
+                return Float.valueOf(value);
+            } else if (type == Double.class) {
+                return Double.valueOf(value);
+            } else if (type == BigInteger.class) {
+                return new BigInteger(value);
+            } else {
+                return new BigDecimal(value);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Number expected: " + value, e);
+        }
+    }
+
+    private static boolean isFinite(final Number number) {
+        if (number instanceof Double || number instanceof Float) {
+            final double value = number.doubleValue();
+            return !Double.isNaN(value) && !Double.isInfinite(value);
+        }
+        return true;
+    }
+
+    private static String quote(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String unquote(final String literal) throws IOException {
+        if (literal.length() < 2 || !literal.endsWith("\"")) {
+            throw new IOException("Unterminated JSON string: " + literal);
+        }
+
+        final StringBuilder sb = new StringBuilder(literal.length() - 2);
+        for (int i = 1; i < literal.length() - 1; i++) {
+            char c = literal.charAt(i);
+            if (c == '\\') {
+                if (++i == literal.length() - 1) {
+                    throw new IOException("Invalid escape sequence in JSON string: " + literal);
+                }
+                c = literal.charAt(i);
+                switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'u':
+                        if (i + 4 > literal.length() - 2) {
+                            throw new IOException("Invalid unicode escape in JSON string: " + literal);
+                        }
+                        try {
+                            c = (char) Integer.parseInt(literal.substring(i + 1, i + 5), 16);
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid unicode escape in JSON string: " + literal, e);
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        // '"', '\\' and '/' stand for themselves
+                        break;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -56,6 +56,7 @@ public class MoxyJsonBinder extends AbstractBinder {
     @Override
     protected void configure() {
         bindSingletonReaderWriterProvider(ConfigurableMoxyJsonProvider.class);
+        bindSingletonReaderWriterProvider(MoxyStreamingArrayProvider.class);
     }
 
     private <T extends MessageBodyReader<?> & MessageBodyWriter<?>> void bindSingletonReaderWriterProvider(Class<T> provider) {
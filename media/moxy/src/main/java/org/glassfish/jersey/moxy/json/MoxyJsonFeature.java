@@ -52,6 +52,7 @@ public class MoxyJsonFeature implements Feature {
     @Override
     public boolean configure(Configurable c) {
         c.register(ConfigurableMoxyJsonProvider.class);
+        c.register(MoxyStreamingArrayProvider.class);
         return true;
     }
 }
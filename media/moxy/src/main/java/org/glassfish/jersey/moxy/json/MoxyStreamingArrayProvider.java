@@ -0,0 +1,319 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.moxy.json;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.MessageProcessingException;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+/**
+ * Streams a JSON array from/to an {@link Iterator} one element at a time.
+ * <p/>
+ * When written, elements are pulled from the iterator and marshalled by the JSON provider registered for
+ * the element type, so that a large result never has to be materialized as a collection. Strings, characters,
+ * booleans and numbers are written as JSON literals directly. The entity
+ * stream is flushed after every {@value #FLUSH_INTERVAL} elements and once the array is complete. If the
+ * written iterator is {@link Closeable}, it is closed when the array has been written.
+ * <p/>
+ * When read, an iterator is returned that unmarshals an element only when it is requested. The returned
+ * iterator is also {@link Closeable} which keeps the entity stream open after {@code readEntity(...)}
+ * returns; the stream is closed once the last element has been read or when the iterator is closed.
+ */
+@Produces("*/*")
+@Consumes("*/*")
+class MoxyStreamingArrayProvider implements MessageBodyReader<Iterator<?>>, MessageBodyWriter<Iterator<?>> {
+
+    /**
+     * Number of elements written between two consecutive flushes of the entity stream.
+     */
+    static final int FLUSH_INTERVAL = 64;
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    @Context
+    private Providers providers;
+
+    private static boolean isJson(final MediaType mediaType) {
+        return MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType) || mediaType.getSubtype().endsWith("+json");
+    }
+
+    private static Type getElementType(final Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            final Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (arguments.length == 1) {
+                return arguments[0];
+            }
+        }
+        return Object.class;
+    }
+
+    private static Class<?> getRawClass(final Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return getRawClass(((ParameterizedType) type).getRawType());
+        }
+        return Object.class;
+    }
+
+    @Override
+    public boolean isReadable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                              final MediaType mediaType) {
+        return type == Iterator.class && getRawClass(getElementType(genericType)) != Object.class && isJson(mediaType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<?> readFrom(final Class<Iterator<?>> type, final Type genericType, final Annotation[] annotations,
+                                final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders,
+                                final InputStream entityStream) throws IOException, WebApplicationException {
+        final Type elementType = getElementType(genericType);
+        final Class<Object> elementClass = (Class<Object>) getRawClass(elementType);
+        if (JsonLiterals.isScalar(elementClass)) {
+            return new ElementIterator<Object>(entityStream) {
+
+                @Override
+                protected Object read(final byte[] element) throws IOException {
+                    return JsonLiterals.read(element, elementClass);
+                }
+            };
+        }
+
+        final MessageBodyReader<Object> reader =
+                providers.getMessageBodyReader(elementClass, elementType, annotations, mediaType);
+        if (reader == null) {
+            throw new MessageProcessingException("No JSON reader found for " + elementType + ".");
+        }
+
+        return new ElementIterator<Object>(entityStream) {
+
+            @Override
+            protected Object read(final byte[] element) throws IOException {
+                return reader.readFrom(elementClass, elementType, annotations, mediaType, httpHeaders,
+                        new ByteArrayInputStream(element));
+            }
+        };
+    }
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                               final MediaType mediaType) {
+        return Iterator.class.isAssignableFrom(type) && isJson(mediaType);
+    }
+
+    @Override
+    public long getSize(final Iterator<?> iterator, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(final Iterator<?> iterator, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType,
+                        final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        final Type declaredType = getElementType(genericType);
+        final OutputStream elementStream = new FilterOutputStream(entityStream) {
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() {
+                // flushed by the array writer only
+            }
+
+            @Override
+            public void close() {
+                // element providers must not close the entity stream
+            }
+        };
+
+        try {
+            entityStream.write('[');
+
+            Class<?> writerClass = null;
+            MessageBodyWriter<Object> writer = null;
+            int count = 0;
+            while (iterator.hasNext()) {
+                final Object element = iterator.next();
+                if (count > 0) {
+                    entityStream.write(',');
+                }
+
+                if (element == null) {
+                    entityStream.write(NULL);
+                } else if (JsonLiterals.isScalar(element.getClass())) {
+                    JsonLiterals.write(element, entityStream);
+                } else {
+                    final Class<?> elementClass = element.getClass();
+                    final Type elementType = declaredType == Object.class ? elementClass : declaredType;
+                    if (elementClass != writerClass) {
+                        writer = (MessageBodyWriter<Object>) providers.getMessageBodyWriter(
+                                elementClass, elementType, annotations, mediaType);
+                        if (writer == null) {
+                            throw new MessageProcessingException("No JSON writer found for " + elementType + ".");
+                        }
+                        writerClass = elementClass;
+                    }
+                    writer.writeTo(element, elementClass, elementType, annotations, mediaType, httpHeaders, elementStream);
+                }
+
+                if (++count % FLUSH_INTERVAL == 0) {
+                    entityStream.flush();
+                }
+            }
+
+            entityStream.write(']');
+            entityStream.flush();
+        } finally {
+            if (iterator instanceof Closeable) {
+                ((Closeable) iterator).close();
+            }
+        }
+    }
+
+    /**
+     * Iterator reading array elements lazily from an entity stream.
+     *
+     * @param <T> element type.
+     */
+    private abstract static class ElementIterator<T> implements Iterator<T>, Closeable {
+
+        private final InputStream entityStream;
+        private final JsonArrayElementReader elements;
+        private byte[] next;
+        private boolean closed;
+
+        ElementIterator(final InputStream entityStream) {
+            this.entityStream = entityStream;
+            this.elements = new JsonArrayElementReader(new BufferedInputStream(entityStream));
+        }
+
+        /**
+         * Unmarshal a single array element.
+         *
+         * @param element raw element bytes.
+         * @return unmarshalled element.
+         * @throws IOException in case of an unmarshalling error.
+         */
+        protected abstract T read(byte[] element) throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !closed) {
+                try {
+                    next = elements.next();
+                    if (next == null) {
+                        close();
+                    }
+                } catch (IOException e) {
+                    closeQuietly();
+                    throw new MessageProcessingException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final byte[] element = next;
+            next = null;
+            if (Arrays.equals(element, NULL)) {
+                return null;
+            }
+            try {
+                return read(element);
+            } catch (IOException e) {
+                closeQuietly();
+                throw new MessageProcessingException(e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                next = null;
+                entityStream.close();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
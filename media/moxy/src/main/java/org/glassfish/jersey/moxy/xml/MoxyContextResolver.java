@@ -43,6 +43,8 @@ import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +58,8 @@ import org.eclipse.persistence.jaxb.JAXBContextProperties;
 
 /**
  * {@link ContextResolver} implementation which creates MOXy {@link JAXBContext}.
+ * <p/>
+ * Created contexts are cached per type, so that each context is created only once.
  *
  * TODO: deal with classes NOT annotated with @XmlRootElement/@XmlType
  *
@@ -69,7 +73,7 @@ class MoxyContextResolver implements ContextResolver<JAXBContext> {
     private final Map<String, Object> properties;
     private final ClassLoader classLoader;
     private final Class[] classes;
-
+    private final ConcurrentMap<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<Class<?>, JAXBContext>();
 
     /**
      * Default constructor creates standard {@link JAXBContext} without any activated features
@@ -101,6 +105,20 @@ class MoxyContextResolver implements ContextResolver<JAXBContext> {
 
     @Override
     public JAXBContext getContext(Class<?> type) {
+        JAXBContext context = contexts.get(type);
+        if (context == null) {
+            context = createContext(type);
+            if (context != null) {
+                final JAXBContext existing = contexts.putIfAbsent(type, context);
+                if (existing != null) {
+                    context = existing;
+                }
+            }
+        }
+        return context;
+    }
+
+    private JAXBContext createContext(Class<?> type) {
         Map<String, Object> propertiesCopy = new HashMap<String, Object>(properties);
 
         if (oxmMappingLookup) {
@@ -118,7 +136,7 @@ class MoxyContextResolver implements ContextResolver<JAXBContext> {
         }
 
         try {
-            final JAXBContext context = JAXBContextFactory.createContext(new Class[]{type}, propertiesCopy, classLoader);
+            final JAXBContext context = JAXBContextFactory.createContext(typeArray, propertiesCopy, classLoader);
             Logger.getLogger(MoxyContextResolver.class.getName()).log(Level.FINE, "using context " + context);
             return context;
         } catch (JAXBException e) {
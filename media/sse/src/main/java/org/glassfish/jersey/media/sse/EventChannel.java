@@ -39,6 +39,12 @@
  */
 package org.glassfish.jersey.media.sse;
 
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.ws.rs.core.MediaType;
 
 import org.glassfish.jersey.server.ChunkedResponse;
@@ -49,6 +55,9 @@ import org.glassfish.jersey.server.ChunkedResponse;
  * When returned from resource method, underlying connection is kept open and application
  * is able to send events. One instance of this class corresponds with exactly one HTTP connection.
  *
+ * When the heartbeat is enabled, empty comments are sent while no events are being sent, so that the connection
+ * is kept alive by the proxies in between and a connection closed by the client is detected early.
+ *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 public class EventChannel extends ChunkedResponse<OutboundEvent> {
@@ -61,4 +70,96 @@ public class EventChannel extends ChunkedResponse<OutboundEvent> {
      * Server sent events media type.
      */
     public static final MediaType SERVER_SENT_EVENTS_TYPE = MediaType.valueOf(SERVER_SENT_EVENTS);
+
+    /**
+     * Name of the request header carrying the id of the last event received by a reconnecting client ("{@value}").
+     */
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    private static final OutboundEvent HEARTBEAT = new OutboundEvent.Builder().comment("").build();
+
+    // held while the missed events are replayed to the channel, so that newer events are written after them
+    private final ReentrantLock replayLock = new ReentrantLock();
+    // sequence numbers of the last retained events delivered by the replay rather than by the broadcast,
+    // per replaying broadcaster, guarded by the replay lock
+    private final Map<SseBroadcaster, Long> replayedSequences = new IdentityHashMap<SseBroadcaster, Long>();
+
+    /**
+     * Enable the heartbeat of this channel. An empty comment is sent whenever no event has been sent for the given
+     * interval.
+     *
+     * @param interval heartbeat interval; {@code 0} disables the heartbeat.
+     * @param unit time unit of the interval.
+     */
+    public void setHeartbeat(long interval, TimeUnit unit) {
+        setHeartbeat(interval, unit, HEARTBEAT);
+    }
+
+    @Override
+    protected OutboundEvent createHeartbeatChunk() {
+        return HEARTBEAT;
+    }
+
+    @Override
+    public void write(OutboundEvent chunk) throws IOException {
+        replayLock.lock();
+        try {
+            super.write(chunk);
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * Write an event broadcast by the broadcaster that retained it under the given sequence number.
+     *
+     * @param event       broadcast event.
+     * @param broadcaster broadcaster retaining the event.
+     * @param sequence    sequence number of the event in the broadcaster.
+     * @throws IOException if the channel is closed or the event cannot be written.
+     */
+    void write(OutboundEvent event, SseBroadcaster broadcaster, long sequence) throws IOException {
+        replayLock.lock();
+        try {
+            final Long replayedSequence = replayedSequences.get(broadcaster);
+            if (replayedSequence != null && sequence <= replayedSequence) {
+                // the event has already been written by the replay
+                return;
+            }
+            super.write(event);
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * Start replaying the events missed by the client. Until {@link #endReplay()} is called by the same thread,
+     * the events written by other threads wait for the replay to finish. The events the broadcaster retained
+     * with a sequence number up to the given one are not written by the broadcast since they are delivered by
+     * the replay.
+     *
+     * @param broadcaster replaying broadcaster.
+     * @param sequence    sequence number of the last event retained by the broadcaster.
+     */
+    void startReplay(SseBroadcaster broadcaster, long sequence) {
+        replayLock.lock();
+        replayedSequences.put(broadcaster, sequence);
+    }
+
+    /**
+     * Write a replayed event.
+     *
+     * @param event replayed event.
+     * @throws IOException if the channel is closed or the event cannot be written.
+     */
+    void writeReplayed(OutboundEvent event) throws IOException {
+        super.write(event);
+    }
+
+    /**
+     * Finish replaying the missed events.
+     */
+    void endReplay() {
+        replayLock.unlock();
+    }
 }
@@ -39,11 +39,12 @@
  */
 package org.glassfish.jersey.media.sse;
 
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,6 +60,15 @@ import org.glassfish.jersey.message.MessageBodyWorkers;
  */
 public final class EventProcessor implements Closeable {
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_DATA_SIZE = 256;
+
+    private static final byte[] DATA = {'d', 'a', 't', 'a'};
+    private static final byte[] EVENT = {'e', 'v', 'e', 'n', 't'};
+    private static final byte[] ID = {'i', 'd'};
+    private static final byte[] RETRY = {'r', 'e', 't', 'r', 'y'};
+
     private final InputStream inputStream;
     private final Annotation[] annotations;
     private final MediaType mediaType;
@@ -67,6 +77,27 @@ public final class EventProcessor implements Closeable {
 
     private volatile boolean closed;
 
+    // input buffer and the positions of the unprocessed data in it
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    // start of the line returned by readLine()
+    private int lineStart;
+    // the last line ended with '\r' at the end of the buffer
+    private boolean skipLineFeed;
+    private boolean firstLine = true;
+
+    // state of the event being parsed
+    private byte[] data = new byte[INITIAL_DATA_SIZE];
+    private int dataLength;
+    private boolean hasData;
+    private String eventName;
+    private String eventId;
+
+    // connection state reported by the server
+    private volatile String lastEventId;
+    private volatile long reconnectDelay = -1;
+
     EventProcessor(InputStream inputStream, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> headers, MessageBodyWorkers messageBodyWorkers) {
         this.inputStream = inputStream;
         this.annotations = annotations;
@@ -96,6 +127,24 @@ public final class EventProcessor implements Closeable {
         } while (true);
     }
 
+    /**
+     * Get the value of the last {@code id} field received from the server (the last event ID buffer).
+     *
+     * @return last event id or {@code null} if no {@code id} field has been received yet.
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Get the reconnection time set by the server using the {@code retry} field.
+     *
+     * @return reconnection time in milliseconds or {@code -1} if the server has not set the reconnection time.
+     */
+    public long getReconnectDelay() {
+        return reconnectDelay;
+    }
+
     @Override
     public void close() {
         // this can be called from different threads, so just setting a flag to keep it thread safe
@@ -103,125 +152,208 @@ public final class EventProcessor implements Closeable {
         closed = true;
     }
 
-    private enum State {
-        START,
-
-        COMMENT,
-        FIELD_NAME,
-        FIELD_VALUE_FIRST,
-        FIELD_VALUE,
-
-        EVENT_FIRED
-    }
-
     private void nextEvent(final EventListener listener) {
         /**
          * http://dev.w3.org/html5/eventsource/
          * last editors draft from 13 March 2012
          */
+        try {
+            int length;
+            while ((length = readLine()) >= 0) {
+                if (processLine(lineStart, length, listener)) {
+                    return;
+                }
+            }
+            // end of stream - incomplete event is discarded
+            close();
+        } catch (IOException e) {
+            Logger.getLogger(this.getClass().getName()).log(Level.FINE, e.getMessage(), e);
+            close();
+        }
+    }
 
-        InboundEvent inboundEvent = new InboundEvent(messageBodyWorkers, annotations, mediaType, headers);
+    /**
+     * Read next line into the buffer.
+     *
+     * Lines terminated by {@code "\r\n"}, {@code "\n"} or {@code "\r"} are recognized. The line
+     * starts at {@link #lineStart} in the {@link #buffer}; the line terminator is consumed.
+     *
+     * @return length of the line or {@code -1} if the end of the stream has been reached.
+     * @throws IOException in case of an I/O error.
+     */
+    private int readLine() throws IOException {
+        int scan = position;
+        for (;;) {
+            if (scan == limit) {
+                final int shift = fill();
+                if (shift < 0) {
+                    return -1;
+                }
+                scan -= shift;
+                continue;
+            }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        State currentState = State.START;
-        String fieldName = null;
+            if (skipLineFeed) {
+                // previous line ended with '\r' at the end of the buffer
+                skipLineFeed = false;
+                if (buffer[scan] == '\n') {
+                    position = ++scan;
+                    continue;
+                }
+            }
 
-        try {
-            int data = 0;
-            while(currentState != State.EVENT_FIRED && (data = inputStream.read()) != -1) {
-
-                switch (currentState) {
-
-                    case START:
-                        if(data == ':') {
-                            currentState = State.COMMENT;
-                        } else if(data != '\n') {
-                            baos.write(data);
-                            currentState = State.FIELD_NAME;
-                        } else if(data == '\n') {
-                            if(!inboundEvent.isEmpty()) {
-                                // fire!
-                                listener.onEvent(inboundEvent);
-                                currentState = State.EVENT_FIRED;
-                            }
-
-                            inboundEvent = new InboundEvent(messageBodyWorkers, annotations, mediaType, headers);
-                        }
-                        break;
-                    case COMMENT:
-                        if(data == '\n') {
-                            currentState = State.START;
-                        }
-                        break;
-                    case FIELD_NAME:
-                        if(data == ':') {
-                            fieldName = baos.toString();
-                            baos.reset();
-                            currentState = State.FIELD_VALUE_FIRST;
-                        } else if(data == '\n') {
-                            processField(inboundEvent, baos.toString(), "".getBytes());
-                            baos.reset();
-                            currentState = State.START;
-                        } else {
-                            baos.write(data);
-                        }
-                        break;
-                    case FIELD_VALUE_FIRST:
-                        // first space has to be skipped
-                        if(data != ' ') {
-                            baos.write(data);
+            final byte b = buffer[scan];
+            if (b == '\n' || b == '\r') {
+                lineStart = position;
+                position = scan + 1;
+                if (b == '\r') {
+                    if (position < limit) {
+                        if (buffer[position] == '\n') {
+                            position++;
                         }
+                    } else {
+                        skipLineFeed = true;
+                    }
+                }
+                return scan - lineStart;
+            }
+            scan++;
+        }
+    }
 
-                        if(data == '\n') {
-                            processField(inboundEvent, fieldName, baos.toByteArray());
-                            baos.reset();
-                            currentState = State.START;
-                            break;
-                        }
+    /**
+     * Read more data into the buffer. The unprocessed data are moved to the beginning of the buffer;
+     * the buffer is enlarged if it is full.
+     *
+     * @return number of bytes the unprocessed data have been moved by or {@code -1} if the end
+     *         of the stream has been reached.
+     * @throws IOException in case of an I/O error.
+     */
+    private int fill() throws IOException {
+        final int shift = position;
+        if (shift > 0) {
+            limit -= shift;
+            System.arraycopy(buffer, shift, buffer, 0, limit);
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
 
-                        currentState = State.FIELD_VALUE;
-                        break;
-                    case FIELD_VALUE:
-                        if(data == '\n') {
-                            processField(inboundEvent, fieldName, baos.toByteArray());
-                            baos.reset();
-                            currentState = State.START;
-                        } else {
-                            baos.write(data);
-                        }
-                        break;
-                }
+        final int read = inputStream.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return -1;
+        }
+        limit += read;
+        return shift;
+    }
 
+    /**
+     * Process a single line of the event stream.
+     *
+     * @param start    line start in the {@link #buffer}.
+     * @param length   line length.
+     * @param listener event listener.
+     * @return {@code true} if an event has been dispatched to the listener.
+     */
+    private boolean processLine(int start, int length, EventListener listener) {
+        if (firstLine) {
+            firstLine = false;
+            // skip UTF-8 byte order mark
+            if (length >= 3 && buffer[start] == (byte) 0xEF && buffer[start + 1] == (byte) 0xBB
+                    && buffer[start + 2] == (byte) 0xBF) {
+                start += 3;
+                length -= 3;
             }
+        }
 
-            if(data == -1) {
-                close();
+        if (length == 0) {
+            if (!hasData) {
+                eventName = null;
+                eventId = null;
+                return false;
             }
-        } catch (IOException e) {
-            Logger.getLogger(this.getClass().getName()).log(Level.FINE, e.getMessage(), e);
-            close();
+
+            final InboundEvent inboundEvent = new InboundEvent(messageBodyWorkers, annotations, mediaType, headers);
+            inboundEvent.setName(eventName);
+            inboundEvent.setId(eventId);
+            inboundEvent.setData(Arrays.copyOf(data, dataLength));
+            eventName = null;
+            eventId = null;
+            dataLength = 0;
+            hasData = false;
+
+            listener.onEvent(inboundEvent);
+            return true;
+        }
+
+        if (buffer[start] == ':') {
+            // comment
+            return false;
+        }
+
+        final int end = start + length;
+        int nameEnd = start;
+        while (nameEnd < end && buffer[nameEnd] != ':') {
+            nameEnd++;
         }
+        int valueStart = nameEnd + 1;
+        if (valueStart < end && buffer[valueStart] == ' ') {
+            // first space has to be skipped
+            valueStart++;
+        }
+        processField(start, nameEnd - start, Math.min(valueStart, end), end);
+        return false;
     }
 
-    private void processField(InboundEvent inboundEvent, String name, byte[] value) {
-        if(name.equals("event")) {
-            inboundEvent.setName(new String(value));
-        } else if(name.equals("data")) {
-            inboundEvent.addData(value);
-            inboundEvent.addData(new byte[]{'\n'});
-        } else if(name.equals("id")) {
-            String s = new String(value);
-            try {
-                // TODO: check the value [0-9]*
-                Integer.parseInt(new String(value));
-            } catch (NumberFormatException nfe) {
-                s = "";
+    private void processField(int nameStart, int nameLength, int valueStart, int valueEnd) {
+        if (fieldNameEquals(DATA, nameStart, nameLength)) {
+            final int valueLength = valueEnd - valueStart;
+            final int required = dataLength + valueLength + 1;
+            if (required > data.length) {
+                data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+            }
+            if (hasData) {
+                data[dataLength++] = '\n';
+            }
+            System.arraycopy(buffer, valueStart, data, dataLength, valueLength);
+            dataLength += valueLength;
+            hasData = true;
+        } else if (fieldNameEquals(EVENT, nameStart, nameLength)) {
+            eventName = new String(buffer, valueStart, valueEnd - valueStart, UTF8);
+        } else if (fieldNameEquals(ID, nameStart, nameLength)) {
+            final String s = new String(buffer, valueStart, valueEnd - valueStart, UTF8);
+            if (s.indexOf('\u0000') < 0) {
+                eventId = s;
+                lastEventId = s;
+            }
+        } else if (fieldNameEquals(RETRY, nameStart, nameLength)) {
+            // only ASCII digits are accepted
+            long delay = 0;
+            for (int i = valueStart; i < valueEnd; i++) {
+                final byte b = buffer[i];
+                if (b < '0' || b > '9' || delay > Integer.MAX_VALUE) {
+                    return;
+                }
+                delay = delay * 10 + (b - '0');
+            }
+            if (valueEnd > valueStart) {
+                reconnectDelay = delay;
             }
-            inboundEvent.setId(s);
-        } else if(name.equals("retry")) {
-            // TODO
         } else {
             // ignore
         }
     }
+
+    private boolean fieldNameEquals(byte[] fieldName, int start, int length) {
+        if (fieldName.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != fieldName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,254 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.media.sse;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded buffer of the recently broadcast {@link OutboundEvent events} used by {@link SseBroadcaster} to replay
+ * the events missed by a reconnecting client.
+ * <p>
+ * The buffer retains at most the configured number of events and at most the configured number of bytes
+ * of serialized events; the oldest events are discarded first. The events are retained in their serialized
+ * form, so that replaying an event does not serialize it again. {@link SseBroadcaster} serializes each event
+ * before it is retained.
+ * </p>
+ * <p>
+ * The off-heap buffer keeps the serialized events in a direct byte buffer ring of the configured byte capacity
+ * allocated once upfront. It is intended for large retention windows that would otherwise put pressure
+ * on the garbage collector.
+ * </p>
+ */
+public class EventReplayBuffer {
+
+    private static final class Entry {
+        private final String id;
+        private final int length;
+        private final int offset;
+        private final OutboundEvent event;
+
+        Entry(final String id, final int length, final int offset, final OutboundEvent event) {
+            this.id = id;
+            this.length = length;
+            this.offset = offset;
+            this.event = event;
+        }
+
+        boolean isInRing() {
+            return offset >= 0;
+        }
+    }
+
+    private final int maxEvents;
+    private final long maxBytes;
+    private final ByteBuffer ring;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+    private long bytes = 0;
+    private int ringTail = 0;
+
+    /**
+     * Create new heap based replay buffer.
+     *
+     * @param maxEvents maximal number of retained events.
+     * @param maxBytes maximal number of retained bytes of serialized events.
+     */
+    public EventReplayBuffer(final int maxEvents, final long maxBytes) {
+        this(maxEvents, maxBytes, false);
+    }
+
+    /**
+     * Create new replay buffer.
+     *
+     * @param maxEvents maximal number of retained events.
+     * @param maxBytes maximal number of retained bytes of serialized events. If the buffer is off-heap,
+     *                 it is the capacity of the allocated ring and must not exceed {@link Integer#MAX_VALUE}.
+     * @param offHeap if {@code true}, the serialized events are kept in a direct byte buffer.
+     */
+    public EventReplayBuffer(final int maxEvents, final long maxBytes, final boolean offHeap) {
+        if (maxEvents < 1 || maxBytes < 1 || (offHeap && maxBytes > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException();
+        }
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+        this.ring = offHeap ? ByteBuffer.allocateDirect((int) maxBytes) : null;
+    }
+
+    /**
+     * Append a serialized event to the buffer, discarding the oldest events if the buffer limits are exceeded.
+     * Events larger than the byte limit are not retained.
+     *
+     * @param event serialized event to be retained.
+     * @return {@code true} if the event has been retained, {@code false} if it exceeds the byte limit.
+     * @throws IllegalArgumentException if the event has not been serialized.
+     */
+    public synchronized boolean append(final OutboundEvent event) {
+        final byte[] serialized = event.getSerialized();
+        if (serialized == null) {
+            throw new IllegalArgumentException();
+        }
+        final int length = serialized.length;
+        if (length > maxBytes) {
+            return false;
+        }
+
+        final Entry entry;
+        if (ring != null) {
+            final int offset = allocate(length);
+            final ByteBuffer target = ring.duplicate();
+            target.position(offset);
+            target.put(serialized);
+            ringTail = offset + length;
+            entry = new Entry(event.getId(), length, offset, null);
+        } else {
+            entry = new Entry(event.getId(), length, -1, event);
+        }
+
+        entries.addLast(entry);
+        bytes += length;
+        while (entries.size() > maxEvents || bytes > maxBytes) {
+            bytes -= entries.removeFirst().length;
+        }
+        return true;
+    }
+
+    /**
+     * Get the retained events following the event with the given id, oldest first.
+     * <p>
+     * If the event with the given id is no longer retained, all retained events are returned. If the id
+     * is {@code null}, i.e. the client has not received any event yet, no events are returned.
+     * </p>
+     *
+     * @param lastEventId id of the last event received by the client.
+     * @return events to be replayed.
+     */
+    public synchronized List<OutboundEvent> eventsAfter(final String lastEventId) {
+        if (lastEventId == null) {
+            return Collections.emptyList();
+        }
+
+        int missed = 0;
+        for (final Iterator<Entry> iterator = entries.descendingIterator(); iterator.hasNext(); missed++) {
+            if (lastEventId.equals(iterator.next().id)) {
+                break;
+            }
+        }
+
+        final List<OutboundEvent> events = new ArrayList<OutboundEvent>(missed);
+        int skip = entries.size() - missed;
+        for (final Entry entry : entries) {
+            if (skip-- > 0) {
+                continue;
+            }
+            events.add(entry.isInRing() ? new OutboundEvent(entry.id, read(entry)) : entry.event);
+        }
+        return events;
+    }
+
+    /**
+     * Get the number of retained events.
+     *
+     * @return number of retained events.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of retained bytes of serialized events.
+     *
+     * @return number of retained bytes.
+     */
+    public synchronized long getByteSize() {
+        return bytes;
+    }
+
+    private byte[] read(final Entry entry) {
+        final byte[] serialized = new byte[entry.length];
+        final ByteBuffer source = ring.duplicate();
+        source.position(entry.offset);
+        source.get(serialized);
+        return serialized;
+    }
+
+    /**
+     * Find a free region of the given length in the ring, discarding the oldest events occupying it.
+     *
+     * @param length length of the region.
+     * @return offset of the region.
+     */
+    private int allocate(final int length) {
+        int offset = ringTail;
+        if (offset + length > ring.capacity()) {
+            // wrap around - the events at the end of the ring are the oldest ones, discard them
+            discardRingEntries(offset, ring.capacity());
+            offset = 0;
+        }
+        discardRingEntries(offset, offset + length);
+        return offset;
+    }
+
+    /**
+     * Discard the oldest events up to the last one stored in the ring within the given region.
+     */
+    private void discardRingEntries(final int from, final int to) {
+        while (true) {
+            Entry oldestInRing = null;
+            for (final Entry entry : entries) {
+                if (entry.isInRing()) {
+                    oldestInRing = entry;
+                    break;
+                }
+            }
+            if (oldestInRing == null || oldestInRing.offset >= to || oldestInRing.offset + oldestInRing.length <= from) {
+                return;
+            }
+            Entry discarded;
+            do {
+                discarded = entries.removeFirst();
+                bytes -= discarded.length;
+            } while (discarded != oldestInRing);
+        }
+    }
+}
@@ -40,16 +40,26 @@
 package org.glassfish.jersey.media.sse;
 
 import java.net.URI;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Client for reading and processing Server Sent {@link InboundEvent}s.
@@ -58,15 +68,62 @@ import javax.ws.rs.client.WebTarget;
  * Whenever any event is received, {@link EventSource#onEvent(InboundEvent)} is called and listeners (if any) are notified (see
  * {@link EventSource#addEventListener(String, EventListener)} and {@link EventSource#addEventListener(String, EventListener)}.</p>
  *
+ * <p>When the connection is lost, the event source reconnects after the reconnection delay, which can be changed
+ * by the server using the {@code retry} field. The id of the last received event is sent to the server in the
+ * {@value EventChannel#LAST_EVENT_ID_HEADER} header, so that the server can resume the event stream. Consecutive
+ * failed connection attempts are retried with exponentially increasing delay. Only the end of an event stream
+ * (a {@code 200 OK} response of the {@value EventChannel#SERVER_SENT_EVENTS} media type) and connection failures
+ * lead to reconnection; any other response, such as {@code 204 No Content}, an error status or a different
+ * content type, fails the event source permanently. The event source also stops reconnecting when it is
+ * {@link #close() closed}.</p>
+ *
+ * <p>Unless an executor is provided, the events are processed in a thread pool shared by all event sources and
+ * no thread is held by an event source while waiting to reconnect.</p>
+ *
  * <p>Instances of this class are thread safe.</p>
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 public class EventSource implements EventListener {
 
+    /**
+     * Default reconnection delay in milliseconds.
+     */
+    public static final long RECONNECT_DEFAULT = 500;
+
+    /**
+     * Upper bound of the exponentially increasing reconnection delay in milliseconds (unless the server requests
+     * a longer reconnection delay).
+     */
+    private static final long RECONNECT_MAX = 30000;
+
+    private static final Logger LOGGER = Logger.getLogger(EventSource.class.getName());
+
+    /**
+     * Executors shared by all event sources, created on first use.
+     */
+    private static final class SharedExecutors {
+        private static final ExecutorService PROCESSING = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("jersey-sse-event-source-%d").setDaemon(true).build());
+        private static final ScheduledExecutorService RECONNECT = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("jersey-sse-reconnect-%d").setDaemon(true).build());
+    }
+
     private final WebTarget target;
+    private final ExecutorService executorService;
+    private final Runnable connect = new Runnable() {
+        @Override
+        public void run() {
+            process();
+        }
+    };
     private volatile EventProcessor processor;
+    private volatile String lastEventId;
+    private volatile long reconnectDelay;
+    // number of consecutive failed connection attempts, accessed only by the thread currently connecting
+    private int failures = 0;
     private boolean close = false;
+    private ScheduledFuture<?> reconnect;
 
     private final EventListener processorListener = new EventListener() {
         /**
@@ -92,23 +149,18 @@ public class EventSource implements EventListener {
         }
     };
 
-    private final ConcurrentSkipListSet<EventListener> generalListeners = new ConcurrentSkipListSet<EventListener>(new Comparator<EventListener>() {
-        @Override
-        public int compare(EventListener eventListener, EventListener eventListener1) {
-            return eventListener.hashCode() - eventListener1.hashCode();
-        }
-    });
+    private final CopyOnWriteArraySet<EventListener> generalListeners = new CopyOnWriteArraySet<EventListener>();
 
     private final ConcurrentSkipListMap<String, List<EventListener>> namedListeners = new ConcurrentSkipListMap<String, List<EventListener>>();
 
     /**
-     * Create new instance and start processing incoming {@link InboundEvent}s in newly created
-     * {@link java.util.concurrent.Executors#newSingleThreadExecutor() single thread executor}.
+     * Create new instance and start processing incoming {@link InboundEvent}s in a thread pool
+     * shared by the event sources.
      *
      * @param target JAX-RS {@link WebTarget} instance which will be used to obtain {@link InboundEvent}s.
      */
     public EventSource(WebTarget target) {
-        this(target, Executors.newSingleThreadExecutor());
+        this(target, SharedExecutors.PROCESSING);
     }
 
     /**
@@ -118,14 +170,25 @@ public class EventSource implements EventListener {
      * @param executorService used for processing events.
      */
     public EventSource(WebTarget target, ExecutorService executorService) {
+        this(target, executorService, RECONNECT_DEFAULT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create new instance and start processing incoming {@link InboundEvent}s in provided {@link ExecutorService}.
+     *
+     * @param target JAX-RS {@link WebTarget} instance which will be used to obtain {@link InboundEvent}s.
+     * @param executorService used for processing events.
+     * @param reconnectDelay delay before reconnecting, used until the server sets the reconnection delay
+     *                       using the {@code retry} field.
+     * @param unit time unit of the reconnection delay.
+     */
+    public EventSource(WebTarget target, ExecutorService executorService, long reconnectDelay, TimeUnit unit) {
         this.target = target;
+        this.executorService = executorService;
+        this.reconnectDelay = unit.toMillis(reconnectDelay);
 
-        executorService.execute(new Runnable() {
-            @Override
-            public void run() {
-                process();
-            }
-        });
+        target.configuration().register(EventProcessorReader.class);
+        executorService.execute(connect);
     }
 
     /**
@@ -147,25 +210,96 @@ public class EventSource implements EventListener {
         if(eventName == null) {
             generalListeners.add(listener);
         } else {
-            final List<EventListener> eventListeners = namedListeners.get(eventName);
+            List<EventListener> eventListeners = namedListeners.get(eventName);
             if(eventListeners == null) {
-                namedListeners.put(eventName, Arrays.asList(listener));
-            } else {
-                eventListeners.add(listener);
+                final List<EventListener> newListeners = new CopyOnWriteArrayList<EventListener>();
+                eventListeners = namedListeners.putIfAbsent(eventName, newListeners);
+                if(eventListeners == null) {
+                    eventListeners = newListeners;
+                }
             }
+            eventListeners.add(listener);
         }
     }
 
     private void process() {
-        target.configuration().register(EventProcessorReader.class);
-        processor = target.request().get(EventProcessor.class);
-        synchronized (this) {
-            if (close) {
-                processor.close();
-                return;
+        EventProcessor eventProcessor = null;
+        boolean reconnect = true;
+        try {
+            final Invocation.Builder request = target.request(EventChannel.SERVER_SENT_EVENTS_TYPE);
+            final String id = lastEventId;
+            if (id != null && id.length() > 0) {
+                request.header(EventChannel.LAST_EVENT_ID_HEADER, id);
             }
+            final Response response = request.get();
+            if (response.getStatus() == 200 && isEventStream(response.getMediaType())) {
+                eventProcessor = response.readEntity(EventProcessor.class);
+            } else {
+                // the server does not (or no longer) provide an event stream, reconnecting would not help
+                reconnect = false;
+                LOGGER.log(Level.WARNING, "Event source " + target.getUri() + " failed: the server responded with status "
+                        + response.getStatus() + " and content type " + response.getMediaType() + ".");
+                response.close();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+
+        if (eventProcessor == null) {
+            failures++;
+        } else {
+            failures = 0;
+            synchronized (this) {
+                processor = eventProcessor;
+                if (close) {
+                    // process() will just close the connection
+                    eventProcessor.close();
+                }
+            }
+            try {
+                eventProcessor.process(processorListener);
+            } finally {
+                if (eventProcessor.getLastEventId() != null) {
+                    lastEventId = eventProcessor.getLastEventId();
+                }
+                if (eventProcessor.getReconnectDelay() >= 0) {
+                    reconnectDelay = eventProcessor.getReconnectDelay();
+                }
+            }
+        }
+
+        if (reconnect) {
+            scheduleReconnect();
         }
-        processor.process(processorListener);
+    }
+
+    private static boolean isEventStream(final MediaType mediaType) {
+        return mediaType != null
+                && EventChannel.SERVER_SENT_EVENTS_TYPE.getType().equalsIgnoreCase(mediaType.getType())
+                && EventChannel.SERVER_SENT_EVENTS_TYPE.getSubtype().equalsIgnoreCase(mediaType.getSubtype());
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (close) {
+            return;
+        }
+
+        long delay = reconnectDelay;
+        final long maxDelay = Math.max(RECONNECT_MAX, delay);
+        for (int i = 0; i < failures && delay < maxDelay; i++) {
+            delay = Math.min(2 * Math.max(delay, 1), maxDelay);
+        }
+
+        reconnect = SharedExecutors.RECONNECT.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executorService.execute(connect);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.log(Level.FINE, e.getMessage(), e);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
     }
 
     private void notifyListeners(InboundEvent inboundEvent, Collection<EventListener> listeners) {
@@ -190,13 +324,15 @@ public class EventSource implements EventListener {
     }
 
     /**
-     * Closes this event source.
+     * Closes this event source. The current connection is closed and no further reconnection attempts are made.
      */
     public synchronized void close() {
+        close = true;
+        if (reconnect != null) {
+            reconnect.cancel(false);
+        }
         if (processor != null) {
             processor.close();
-        } else {
-            close = true;
         }
     }
 }
@@ -40,7 +40,6 @@
 package org.glassfish.jersey.media.sse;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 
@@ -58,7 +57,7 @@ import org.glassfish.jersey.message.MessageBodyWorkers;
 public class InboundEvent {
     private String name = null;
     private String id = null;
-    private ByteArrayOutputStream data = null;
+    private byte[] data = null;
 
     private final MessageBodyWorkers messageBodyWorkers;
     private final Annotation[] annotations;
@@ -99,20 +98,12 @@ public class InboundEvent {
     }
 
     /**
-     * Add data. Used by {@link EventProcessor}.
+     * Set event data. Used by {@link EventProcessor}.
      *
-     * @param data byte array containing incoming data.
+     * @param data event data. The array is not copied.
      */
-    void addData(byte[] data) {
-        if(this.data == null) {
-            this.data = new ByteArrayOutputStream();
-        }
-
-        try {
-            this.data.write(data);
-        } catch (IOException e) {
-            this.data = null;
-        }
+    void setData(byte[] data) {
+        this.data = data;
     }
 
     /**
@@ -133,6 +124,27 @@ public class InboundEvent {
         return name;
     }
 
+    /**
+     * Get the event id.
+     *
+     * @return event id or {@code null} if it is not present.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the raw event data.
+     * <p>
+     * The returned array is not a copy; the caller must not modify it.
+     * </p>
+     *
+     * @return raw event data (lines of the event data joined with {@code '\n'}).
+     */
+    public byte[] getRawData() {
+        return data;
+    }
+
     /**
      * Get event data.
      *
@@ -155,7 +167,7 @@ public class InboundEvent {
     public <T> T getData(Class<T> messageType, MediaType mediaType) throws IOException {
         final MessageBodyReader<T> messageBodyReader = messageBodyWorkers.getMessageBodyReader(messageType, null, annotations, mediaType);
         return messageBodyReader.readFrom(messageType, null, annotations, (mediaType == null ? this.mediaType : mediaType),
-                headers, new ByteArrayInputStream(stripLastLineBreak(data.toByteArray())));
+                headers, new ByteArrayInputStream(data));
     }
 
     /**
@@ -184,20 +196,4 @@ public class InboundEvent {
                 ", data=" + s +
                 '}';
     }
-
-    /**
-     * String last line break from data. (Last line-break should not be considered as part of received data).
-     *
-     * @param data data
-     * @return updated byte array.
-     */
-    private byte[] stripLastLineBreak(byte[] data) {
-        if((data.length >= 1) && (data[data.length - 1] == '\n')) {
-            byte[] newArray = new byte[data.length - 1];
-            System.arraycopy(data, 0, newArray, 0, data.length - 1);
-            data = newArray;
-        }
-
-        return data;
-    }
 }
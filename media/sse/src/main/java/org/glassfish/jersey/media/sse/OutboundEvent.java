@@ -156,6 +156,7 @@ public final class OutboundEvent {
     private final Class type;
     private final MediaType mediaType;
     private final Object data;
+    private volatile byte[] serialized;
 
     /**
      * Create new OutboundEvent with given properties.
@@ -176,6 +177,17 @@ public final class OutboundEvent {
         this.data = data;
     }
 
+    /**
+     * Create new OutboundEvent from its serialized form.
+     *
+     * @param id event id.
+     * @param serialized event serialized as a server-sent events stream fragment, including the terminating empty line.
+     */
+    OutboundEvent(String id, byte[] serialized) {
+        this(null, id, null, null, null, null);
+        this.serialized = serialized;
+    }
+
     /**
      * Get event name.
      *
@@ -229,4 +241,23 @@ public final class OutboundEvent {
     public Object getData() {
         return data;
     }
+
+    /**
+     * Get the serialized form of this event.
+     *
+     * @return event serialized as a server-sent events stream fragment or {@code null} if the event has not been
+     *         serialized yet.
+     */
+    byte[] getSerialized() {
+        return serialized;
+    }
+
+    /**
+     * Set the serialized form of this event.
+     *
+     * @param serialized event serialized as a server-sent events stream fragment.
+     */
+    void setSerialized(byte[] serialized) {
+        this.serialized = serialized;
+    }
 }
@@ -39,10 +39,12 @@
  */
 package org.glassfish.jersey.media.sse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
@@ -56,11 +58,24 @@ import org.glassfish.jersey.message.MessageBodyWorkers;
 
 /**
  * Writer for {@link OutboundEvent}.
+ * <p>
+ * An event is serialized only once - the serialized form is kept with the event and reused when the same event
+ * is written to other {@link EventChannel event channels} (e.g. when broadcast) or replayed.
+ * </p>
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 public class OutboundEventWriter implements MessageBodyWriter<OutboundEvent> {
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte[] COMMENT_LEAD = ": ".getBytes(UTF8);
+    private static final byte[] NAME_LEAD = "event: ".getBytes(UTF8);
+    private static final byte[] ID_LEAD = "id: ".getBytes(UTF8);
+    private static final byte[] DATA_LEAD = "data: ".getBytes(UTF8);
+    private static final byte[] EOL = {'\n'};
+    private static final byte[] EVENT_END = {'\n', '\n'};
+
     @Inject
     private Provider<MessageBodyWorkers> workersProvider;
 
@@ -75,42 +90,120 @@ public class OutboundEventWriter implements MessageBodyWriter<OutboundEvent> {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void writeTo(OutboundEvent outboundEvent, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream) throws IOException, WebApplicationException {
+        byte[] serialized = outboundEvent.getSerialized();
+        if (serialized == null) {
+            serialized = serialize(outboundEvent, workersProvider.get(), annotations, httpHeaders);
+            outboundEvent.setSerialized(serialized);
+        }
+
+        entityStream.write(serialized);
+        entityStream.flush();
+    }
+
+    /**
+     * Serialize the event as a server-sent events stream fragment.
+     *
+     * @param outboundEvent event to be serialized.
+     * @param workers       message body workers used to serialize the event data.
+     * @param annotations   annotations passed to the event data writer.
+     * @param httpHeaders   headers passed to the event data writer.
+     * @return serialized event, including the terminating empty line.
+     * @throws IOException in case the event data cannot be serialized.
+     */
+    @SuppressWarnings("unchecked")
+    static byte[] serialize(OutboundEvent outboundEvent, MessageBodyWorkers workers, Annotation[] annotations,
+                            MultivaluedMap<String, Object> httpHeaders) throws IOException {
+        final ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
         if(outboundEvent.getComment() != null) {
-            entityStream.write(String.format(": %s\n", outboundEvent.getComment()).getBytes());
+            writeField(entityStream, COMMENT_LEAD, outboundEvent.getComment());
         }
 
         if(outboundEvent.getType() != null) {
             final MediaType eventMediaType = outboundEvent.getMediaType() == null ? MediaType.TEXT_PLAIN_TYPE : outboundEvent.getMediaType();
-            final MessageBodyWriter messageBodyWriter = workersProvider.get().getMessageBodyWriter(outboundEvent.getType(),
+            final MessageBodyWriter messageBodyWriter = workers.getMessageBodyWriter(outboundEvent.getType(),
                     outboundEvent.getType(), annotations, eventMediaType);
             if(outboundEvent.getName() != null) {
-                entityStream.write(String.format("event: %s\n", outboundEvent.getName()).getBytes());
+                writeField(entityStream, NAME_LEAD, outboundEvent.getName());
             }
             if(outboundEvent.getId() != null) {
-                entityStream.write(String.format("id: %s\n", outboundEvent.getId()).getBytes());
+                writeField(entityStream, ID_LEAD, outboundEvent.getId());
             }
 
-            messageBodyWriter.writeTo(outboundEvent.getData(), outboundEvent.getType(), outboundEvent.getType(), annotations, eventMediaType, httpHeaders, new OutputStream() {
+            messageBodyWriter.writeTo(outboundEvent.getData(), outboundEvent.getType(), outboundEvent.getType(), annotations,
+                    eventMediaType, httpHeaders, new DataFramingOutputStream(entityStream));
+        }
 
-                private boolean start = true;
+        entityStream.write(EVENT_END);
+        return entityStream.toByteArray();
+    }
 
-                @Override
-                public void write(int i) throws IOException {
-                    if(start) {
-                        entityStream.write("data: ".getBytes());
-                        start = false;
-                    }
-                    entityStream.write(i);
-                    if(i == '\n') {
-                        entityStream.write("data: ".getBytes());
-                    }
-                }
-            });
+    private static void writeField(final OutputStream out, final byte[] lead, final String value) throws IOException {
+        out.write(lead);
+        out.write(value.getBytes(UTF8));
+        out.write(EOL);
+    }
+
+    /**
+     * Output stream that frames the serialized event data as a sequence of {@code data:} fields.
+     * <p>
+     * Written byte arrays are scanned for line breaks and the ranges in between are passed to the underlying
+     * stream in bulk, so that the framing does not cost a call into the entity stream per data byte. Line feeds,
+     * carriage returns and carriage return + line feed pairs (even when split between two writes) are all
+     * treated as line breaks, as the event stream parsers do, and are written as a single line feed.
+     * Flushing and closing are ignored - the event is flushed as a whole once completely written.
+     * </p>
+     */
+    static final class DataFramingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private boolean start = true;
+        // the last written byte was a carriage return, a line feed following it belongs to the same line break
+        private boolean afterCr;
+
+        DataFramingOutputStream(final OutputStream out) {
+            this.out = out;
         }
 
-        entityStream.write("\n\n".getBytes());
-        entityStream.flush();
+        @Override
+        public void write(int i) throws IOException {
+            write(new byte[] {(byte) i}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return;
+            }
+            if (start) {
+                out.write(DATA_LEAD);
+                start = false;
+            }
+
+            final int end = off + len;
+            int from = off;
+            for (int i = off; i < end; i++) {
+                final byte c = b[i];
+                if (c == '\n' && afterCr) {
+                    // second half of a CRLF line break that has already been framed
+                    afterCr = false;
+                    from = i + 1;
+                    continue;
+                }
+                afterCr = c == '\r';
+                if (c == '\n' || c == '\r') {
+                    out.write(b, from, i - from);
+                    out.write(EOL);
+                    out.write(DATA_LEAD);
+                    from = i + 1;
+                }
+            }
+            if (from < end) {
+                out.write(b, from, end - from);
+            }
+        }
     }
 }
@@ -39,14 +39,62 @@
  */
 package org.glassfish.jersey.media.sse;
 
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.glassfish.jersey.message.MessageBodyWorkers;
 import org.glassfish.jersey.server.Broadcaster;
+import org.glassfish.jersey.server.ChunkedResponse;
 
 /**
  * Used for broadcasting sse to multiple {@link EventChannel} instances.
+ * <p>
+ * When created with an {@link EventReplayBuffer}, the broadcaster retains the recently broadcast events
+ * and replays the events missed by a reconnecting client to its new event channel
+ * (see {@link #add(EventChannel, String)}). Each event is serialized once, before it is retained; the serialized
+ * form is then written to all the event channels and replayed.
+ * </p>
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 public class SseBroadcaster extends Broadcaster<OutboundEvent> {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final EventReplayBuffer replayBuffer;
+    private final MessageBodyWorkers workers;
+    // sequence number of the last retained event, guarded by the replay buffer
+    private long sequence = 0;
+
+    /**
+     * Create new broadcaster not retaining the broadcast events.
+     */
+    public SseBroadcaster() {
+        this.replayBuffer = null;
+        this.workers = null;
+    }
+
+    /**
+     * Create new broadcaster retaining the broadcast events in the given replay buffer.
+     * <p>
+     * The message body workers, used to serialize the broadcast events before they are retained, can be injected
+     * into a resource using {@code @Context MessageBodyWorkers}.
+     * </p>
+     *
+     * @param replayBuffer buffer of the recently broadcast events.
+     * @param workers message body workers of the application.
+     */
+    public SseBroadcaster(final EventReplayBuffer replayBuffer, final MessageBodyWorkers workers) {
+        if (replayBuffer == null || workers == null) {
+            throw new IllegalArgumentException();
+        }
+        this.replayBuffer = replayBuffer;
+        this.workers = workers;
+    }
+
     /**
      * Register {@link EventChannel} to current {@link SseBroadcaster} instance.
      *
@@ -55,4 +103,86 @@ public class SseBroadcaster extends Broadcaster<OutboundEvent> {
     public void add(final EventChannel eventChannel) {
         super.add(eventChannel);
     }
+
+    /**
+     * Register {@link EventChannel} of a reconnecting client to current {@link SseBroadcaster} instance.
+     * <p>
+     * The retained events broadcast after the event with the given id are written to the event channel
+     * before any subsequently broadcast event. Without a replay buffer the call is equivalent to
+     * {@link #add(EventChannel)}.
+     * </p>
+     *
+     * @param eventChannel {@link EventChannel} to register.
+     * @param lastEventId value of the {@value EventChannel#LAST_EVENT_ID_HEADER} request header, may be {@code null}.
+     */
+    public void add(final EventChannel eventChannel, final String lastEventId) {
+        if (replayBuffer == null) {
+            super.add(eventChannel);
+            return;
+        }
+
+        final List<OutboundEvent> missed;
+        synchronized (replayBuffer) {
+            missed = replayBuffer.eventsAfter(lastEventId);
+            // the events retained so far are delivered by the replay, the events retained from now on
+            // by the broadcast, which waits for the replay to finish
+            eventChannel.startReplay(this, sequence);
+            super.add(eventChannel);
+        }
+
+        try {
+            for (final OutboundEvent event : missed) {
+                eventChannel.writeReplayed(event);
+            }
+        } catch (IOException e) {
+            remove(eventChannel);
+            onException(eventChannel, e);
+        } finally {
+            eventChannel.endReplay();
+        }
+    }
+
+    @Override
+    public void broadcast(final OutboundEvent chunk) {
+        final long retained = replayBuffer == null ? 0 : retain(chunk);
+        if (retained == 0) {
+            super.broadcast(chunk);
+            return;
+        }
+
+        broadcast(chunk, new ChunkWriter<OutboundEvent>() {
+            @Override
+            public void write(final ChunkedResponse<OutboundEvent> chunkedResponse, final OutboundEvent event)
+                    throws IOException {
+                if (chunkedResponse instanceof EventChannel) {
+                    // skipped by the channels the event has been replayed to
+                    ((EventChannel) chunkedResponse).write(event, SseBroadcaster.this, retained);
+                } else {
+                    chunkedResponse.write(event);
+                }
+            }
+        });
+    }
+
+    /**
+     * Retain the event in the replay buffer.
+     *
+     * @param event broadcast event.
+     * @return sequence number of the retained event or {@code 0} if the event has not been retained.
+     */
+    private long retain(final OutboundEvent event) {
+        if (event.getSerialized() == null) {
+            try {
+                event.setSerialized(OutboundEventWriter.serialize(event, workers, NO_ANNOTATIONS,
+                        new MultivaluedHashMap<String, Object>()));
+            } catch (IOException e) {
+                // not retained, writing the event to the event channels fails the same way
+                return 0;
+            }
+        }
+
+        synchronized (replayBuffer) {
+            return replayBuffer.append(event) ? ++sequence : 0;
+        }
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.media.sse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * {@link EventProcessor} parser throughput benchmark.
+ * <p>
+ * Run the {@link #main(String[])} method to measure the number of events per second the parser
+ * is able to process. The benchmark is not executed as a part of the test suite.
+ * </p>
+ */
+public class EventProcessorBenchmark {
+
+    private static final int EVENTS = 200000;
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < EVENTS; i++) {
+            stream.write(("event: price\nid: " + i + "\ndata: {\"symbol\":\"ORCL\",\"price\":" + i
+                    + "}\ndata: second line\n\n").getBytes("UTF-8"));
+        }
+        final byte[] data = stream.toByteArray();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int[] count = new int[1];
+            final long start = System.nanoTime();
+            new EventProcessor(new ByteArrayInputStream(data), null, null, null, null).process(new EventListener() {
+                @Override
+                public void onEvent(InboundEvent inboundEvent) {
+                    count[0]++;
+                }
+            });
+            final long elapsed = System.nanoTime() - start;
+
+            System.out.printf("Iteration %d: %d events, %.1f MB in %.1f ms, %.0f events/s%n", i, count[0],
+                    data.length / 1048576.0, elapsed / 1000000.0, count[0] * 1000000000.0 / elapsed);
+        }
+    }
+}
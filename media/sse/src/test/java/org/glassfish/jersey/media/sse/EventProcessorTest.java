@@ -0,0 +1,185 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.media.sse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link EventProcessor} parser tests.
+ */
+public class EventProcessorTest {
+
+    /**
+     * Input stream returning at most the given number of bytes per read.
+     */
+    private static class ChunkedInputStream extends ByteArrayInputStream {
+
+        private final int chunkSize;
+
+        ChunkedInputStream(byte[] data, int chunkSize) {
+            super(data);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunkSize));
+        }
+    }
+
+    private static List<InboundEvent> parse(InputStream input) {
+        final List<InboundEvent> events = new ArrayList<InboundEvent>();
+        new EventProcessor(input, null, null, null, null).process(new EventListener() {
+            @Override
+            public void onEvent(InboundEvent inboundEvent) {
+                events.add(inboundEvent);
+            }
+        });
+        return events;
+    }
+
+    private static List<InboundEvent> parse(String stream, int chunkSize) throws UnsupportedEncodingException {
+        return parse(new ChunkedInputStream(stream.getBytes("UTF-8"), chunkSize));
+    }
+
+    private static String data(InboundEvent event) throws UnsupportedEncodingException {
+        return new String(event.getRawData(), "UTF-8");
+    }
+
+    @Test
+    public void testFields() throws IOException {
+        final String stream = ": comment\n"
+                + "event: greeting\n"
+                + "id: 1\n"
+                + "data: first\n"
+                + "data:second\n"
+                + "unknown: field\n"
+                + "\n"
+                + "data\n"
+                + "\n"
+                + "event: ignored\n"
+                + "\n"
+                + "data: žluťoučký kůň\n"
+                + "\n"
+                + "data: incomplete\n";
+
+        for (int chunkSize : new int[] {1, 2, 3, 7, 8192}) {
+            final List<InboundEvent> events = parse(stream, chunkSize);
+            assertEquals(3, events.size());
+
+            assertEquals("greeting", events.get(0).getName());
+            assertEquals("1", events.get(0).getId());
+            assertEquals("first\nsecond", data(events.get(0)));
+
+            assertNull(events.get(1).getName());
+            assertEquals("", data(events.get(1)));
+
+            assertNull(events.get(2).getName());
+            assertEquals("žluťoučký kůň", data(events.get(2)));
+        }
+    }
+
+    @Test
+    public void testLineEndings() throws IOException {
+        final String stream = "﻿data: a\r\ndata: b\r\r"
+                + "data: c\rdata: d\n\r\n"
+                + "data: e\r\n\r\n";
+
+        for (int chunkSize : new int[] {1, 2, 3, 8192}) {
+            final List<InboundEvent> events = parse(stream, chunkSize);
+            assertEquals(3, events.size());
+            assertEquals("a\nb", data(events.get(0)));
+            assertEquals("c\nd", data(events.get(1)));
+            assertEquals("e", data(events.get(2)));
+        }
+    }
+
+    @Test
+    public void testLongLine() throws IOException {
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+
+        final List<InboundEvent> events = parse("data: " + value + "\n\n", 1000);
+        assertEquals(1, events.size());
+        assertEquals(value.toString(), data(events.get(0)));
+    }
+
+    @Test
+    public void testConnectionFields() throws IOException {
+        final String stream = "retry: 1500\n"
+                + "id: a-1\n"
+                + "data: first\n"
+                + "\n"
+                + "retry: 10s\n"
+                + "data: second\n"
+                + "\n"
+                + "id: b-2\n"
+                + "\n";
+
+        final EventProcessor processor = new EventProcessor(new ByteArrayInputStream(stream.getBytes("UTF-8")),
+                null, null, null, null);
+        final List<InboundEvent> events = new ArrayList<InboundEvent>();
+        processor.process(new EventListener() {
+            @Override
+            public void onEvent(InboundEvent inboundEvent) {
+                events.add(inboundEvent);
+            }
+        });
+
+        assertEquals(2, events.size());
+        assertEquals("a-1", events.get(0).getId());
+        assertNull(events.get(1).getId());
+        // id of an event without data is still remembered as the last event id
+        assertEquals("b-2", processor.getLastEventId());
+        // invalid retry value is ignored
+        assertEquals(1500, processor.getReconnectDelay());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.media.sse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EventReplayBuffer} tests.
+ */
+public class EventReplayBufferTest {
+
+    private static OutboundEvent event(int id) {
+        // 10 bytes per event
+        return new OutboundEvent(String.valueOf(id), String.format("id: %04d\n\n", id).getBytes());
+    }
+
+    private static List<String> ids(List<OutboundEvent> events) {
+        final List<String> ids = new ArrayList<String>();
+        for (OutboundEvent event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    private static void assertReplay(EventReplayBuffer buffer, String lastEventId, int first, int last) {
+        final List<OutboundEvent> events = buffer.eventsAfter(lastEventId);
+        final List<String> expected = new ArrayList<String>();
+        for (int i = first; i <= last; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, ids(events));
+        for (OutboundEvent event : events) {
+            assertEquals(String.format("id: %04d\n\n", Integer.parseInt(event.getId())), new String(event.getSerialized()));
+        }
+    }
+
+    @Test
+    public void testReplayAfterLastEventId() {
+        final EventReplayBuffer buffer = new EventReplayBuffer(100, 10000);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(event(i));
+        }
+
+        assertReplay(buffer, "6", 7, 9);
+        assertReplay(buffer, "9", 10, 9);
+        // client not having received any event yet does not get anything replayed
+        assertReplay(buffer, null, 0, -1);
+        // client falling behind the retained window gets all retained events
+        assertReplay(buffer, "unknown", 0, 9);
+    }
+
+    @Test
+    public void testLimits() {
+        final EventReplayBuffer countLimited = new EventReplayBuffer(5, 10000);
+        final EventReplayBuffer byteLimited = new EventReplayBuffer(100, 35);
+        for (int i = 0; i < 20; i++) {
+            countLimited.append(event(i));
+            byteLimited.append(event(i));
+        }
+
+        assertEquals(5, countLimited.size());
+        assertReplay(countLimited, "unknown", 15, 19);
+        assertEquals(3, byteLimited.size());
+        assertEquals(30, byteLimited.getByteSize());
+        assertReplay(byteLimited, "unknown", 17, 19);
+    }
+
+    @Test
+    public void testOffHeapRing() {
+        // the ring fits 3 events with 5 bytes wasted at the end
+        final EventReplayBuffer buffer = new EventReplayBuffer(100, 35, true);
+        for (int i = 0; i < 100; i++) {
+            buffer.append(event(i));
+            assertTrue(buffer.size() <= 3);
+            assertReplay(buffer, String.valueOf(i - 1), i, i);
+        }
+        assertReplay(buffer, "unknown", 97, 99);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotSerializedEventRejected() {
+        final EventReplayBuffer buffer = new EventReplayBuffer(2, 15);
+        buffer.append(new OutboundEvent.Builder().id("x").data(String.class, "x").build());
+    }
+
+    @Test
+    public void testTooLargeEventNotRetained() {
+        final EventReplayBuffer buffer = new EventReplayBuffer(2, 15);
+        assertTrue(buffer.append(event(0)));
+        assertFalse(buffer.append(new OutboundEvent("x", new byte[16])));
+        assertEquals(1, buffer.size());
+        assertEquals(10, buffer.getByteSize());
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.media.sse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.ClientFactory;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EventSource} reconnection tests.
+ */
+public class EventSourceTest {
+
+    /**
+     * Minimal server-sent events server, which can be stopped and started again. While stopped, the server
+     * resets all connections. Each connection gets the response of the current generation of the server and is
+     * then either closed or held open until the server is stopped.
+     */
+    private static class RestartableServer {
+        // values of the Last-Event-ID header of the received requests, "null" if the header was not sent
+        private final BlockingQueue<String> lastEventIds = new LinkedBlockingQueue<String>();
+        // released for each connection reset while the server is stopped
+        private final Semaphore resets = new Semaphore(0);
+        private final List<Socket> connections = new CopyOnWriteArrayList<Socket>();
+        private final ServerSocket serverSocket;
+        private volatile String response;
+        private volatile boolean hold;
+
+        RestartableServer() {
+            try {
+                serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            handle(serverSocket.accept());
+                        }
+                    } catch (IOException e) {
+                        // shut down
+                    }
+                }
+            }.start();
+        }
+
+        void start(final String response) {
+            start(response, false);
+        }
+
+        void start(final String response, final boolean hold) {
+            this.hold = hold;
+            this.response = response;
+        }
+
+        void stop() throws IOException {
+            response = null;
+            for (Socket connection : connections) {
+                reset(connection);
+            }
+            connections.clear();
+        }
+
+        void shutdown() throws IOException {
+            stop();
+            serverSocket.close();
+        }
+
+        private void handle(final Socket socket) throws IOException {
+            final String current = response;
+            if (current == null) {
+                reset(socket);
+                resets.release();
+                return;
+            }
+
+            boolean close = true;
+            try {
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+                String lastEventId = null;
+                String line;
+                while ((line = reader.readLine()) != null && line.length() > 0) {
+                    if (line.toLowerCase().startsWith("last-event-id:")) {
+                        lastEventId = line.substring("last-event-id:".length()).trim();
+                    }
+                }
+
+                if (hold) {
+                    // registered before responding, so that stop() resets the connection once the events arrive
+                    connections.add(socket);
+                    close = false;
+                }
+
+                final OutputStream output = socket.getOutputStream();
+                output.write(current.getBytes("UTF-8"));
+                output.flush();
+
+                lastEventIds.add(String.valueOf(lastEventId));
+            } finally {
+                if (close) {
+                    socket.close();
+                }
+            }
+        }
+
+        private static void reset(final Socket socket) throws IOException {
+            socket.setSoLinger(true, 0);
+            socket.close();
+        }
+
+        String getUri() {
+            return "http://localhost:" + serverSocket.getLocalPort() + "/events";
+        }
+    }
+
+    private static String events(final String events) {
+        return "HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\nConnection: close\r\n\r\n" + events;
+    }
+
+    private final RestartableServer server = new RestartableServer();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<EventSource> eventSources = new CopyOnWriteArrayList<EventSource>();
+
+    @After
+    public void tearDown() throws IOException {
+        for (EventSource eventSource : eventSources) {
+            eventSource.close();
+        }
+        server.shutdown();
+        executor.shutdownNow();
+    }
+
+    private EventSource open(final long reconnectDelay) {
+        final EventSource eventSource = new EventSource(ClientFactory.newClient().target(server.getUri()),
+                executor, reconnectDelay, TimeUnit.MILLISECONDS);
+        eventSources.add(eventSource);
+        return eventSource;
+    }
+
+    @Test
+    public void testReconnectAfterServerRestart() throws Exception {
+        server.start(events("retry: 50\nid: 1\ndata: a\n\nid: 2\ndata: b\n\n"), true);
+
+        final List<String> received = new CopyOnWriteArrayList<String>();
+        final CountDownLatch firstGeneration = new CountDownLatch(2);
+        final CountDownLatch secondGeneration = new CountDownLatch(3);
+        final EventSource eventSource = new EventSource(ClientFactory.newClient().target(server.getUri()),
+                executor, 1, TimeUnit.MINUTES) {
+            @Override
+            public void onEvent(InboundEvent inboundEvent) {
+                try {
+                    received.add(inboundEvent.getData(String.class));
+                } catch (IOException e) {
+                    received.add(e.toString());
+                }
+                firstGeneration.countDown();
+                secondGeneration.countDown();
+            }
+        };
+        eventSources.add(eventSource);
+
+        // the server holds the first connection open until it is stopped, then the event source keeps
+        // reconnecting (with the delay set by the server) until the server is back
+        assertTrue(firstGeneration.await(10, TimeUnit.SECONDS));
+        server.stop();
+        assertTrue(server.resets.tryAcquire(10, TimeUnit.SECONDS));
+        server.start(events("id: 3\ndata: c\n\n"), true);
+
+        assertTrue(secondGeneration.await(10, TimeUnit.SECONDS));
+        assertEquals(3, received.size());
+        assertEquals("a", received.get(0));
+        assertEquals("b", received.get(1));
+        assertEquals("c", received.get(2));
+        assertEquals("null", server.lastEventIds.poll(10, TimeUnit.SECONDS));
+        // the event stream is resumed after the last received event
+        assertEquals("2", server.lastEventIds.poll(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReconnectAfterEndOfStream() throws Exception {
+        server.start(events("id: 1\ndata: a\n\n"));
+        open(10);
+
+        assertEquals("null", server.lastEventIds.poll(10, TimeUnit.SECONDS));
+        assertEquals("1", server.lastEventIds.poll(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReconnectAfterConnectionFailure() throws Exception {
+        // the server is stopped, the first connection attempt is reset
+        open(10);
+        assertTrue(server.resets.tryAcquire(10, TimeUnit.SECONDS));
+
+        server.start(events("data: a\n\n"), true);
+        assertEquals("null", server.lastEventIds.poll(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testNoReconnectAfterNoContent() throws Exception {
+        assertNoReconnect("HTTP/1.1 204 No Content\r\nConnection: close\r\n\r\n");
+    }
+
+    @Test
+    public void testNoReconnectAfterClientError() throws Exception {
+        assertNoReconnect("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+    }
+
+    @Test
+    public void testNoReconnectAfterServerError() throws Exception {
+        assertNoReconnect("HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+    }
+
+    @Test
+    public void testNoReconnectAfterWrongContentType() throws Exception {
+        assertNoReconnect("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\ndata: a\n\n");
+    }
+
+    private void assertNoReconnect(final String response) throws Exception {
+        server.start(response);
+        open(10);
+
+        assertEquals("null", server.lastEventIds.poll(10, TimeUnit.SECONDS));
+        // with a reconnection delay of 10 ms, a reconnecting event source would have sent several requests
+        assertNull(server.lastEventIds.poll(500, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.media.sse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link OutboundEventWriter} event data framing tests.
+ */
+public class OutboundEventWriterTest {
+
+    /**
+     * Frame the data as written by a message body writer issuing bulk writes of at most the given size,
+     * or single byte writes if the size is {@code 0}.
+     */
+    private static String frame(String data, int chunkSize) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final OutputStream out = new OutboundEventWriter.DataFramingOutputStream(buffer);
+        final byte[] bytes = data.getBytes("UTF-8");
+        if (chunkSize == 0) {
+            for (byte b : bytes) {
+                out.write(b);
+            }
+        } else {
+            for (int off = 0; off < bytes.length; off += chunkSize) {
+                out.write(bytes, off, Math.min(chunkSize, bytes.length - off));
+            }
+        }
+        return buffer.toString("UTF-8");
+    }
+
+    /**
+     * Parse the framed data as an event stream and return the data of the single event.
+     */
+    private static String parse(String framed) throws IOException {
+        final List<InboundEvent> events = new ArrayList<InboundEvent>();
+        new EventProcessor(new ByteArrayInputStream((framed + "\n\n").getBytes("UTF-8")), null, null, null, null)
+                .process(new EventListener() {
+                    @Override
+                    public void onEvent(InboundEvent inboundEvent) {
+                        events.add(inboundEvent);
+                    }
+                });
+        assertEquals(1, events.size());
+        return new String(events.get(0).getRawData(), "UTF-8");
+    }
+
+    private static void assertFraming(String data, String expectedFraming, String expectedData) throws IOException {
+        for (int chunkSize : new int[] {0, 1, 2, 3, 8192}) {
+            final String framed = frame(data, chunkSize);
+            assertEquals("chunk size " + chunkSize, expectedFraming, framed);
+            assertEquals("chunk size " + chunkSize, expectedData, parse(framed));
+        }
+    }
+
+    @Test
+    public void testSingleLine() throws IOException {
+        assertFraming("hello", "data: hello", "hello");
+    }
+
+    @Test
+    public void testMultiLineData() throws IOException {
+        assertFraming("first\nsecond\nthird", "data: first\ndata: second\ndata: third", "first\nsecond\nthird");
+    }
+
+    @Test
+    public void testEmptyLines() throws IOException {
+        assertFraming("first\n\nthird", "data: first\ndata: \ndata: third", "first\n\nthird");
+    }
+
+    @Test
+    public void testCarriageReturn() throws IOException {
+        assertFraming("first\rsecond", "data: first\ndata: second", "first\nsecond");
+    }
+
+    @Test
+    public void testCrLf() throws IOException {
+        assertFraming("first\r\nsecond\r\nthird", "data: first\ndata: second\ndata: third", "first\nsecond\nthird");
+    }
+
+    @Test
+    public void testMixedLineBreaks() throws IOException {
+        assertFraming("a\r\rb\n\rc\r\n\nd", "data: a\ndata: \ndata: b\ndata: \ndata: c\ndata: \ndata: d", "a\n\nb\n\nc\n\nd");
+    }
+
+    @Test
+    public void testCrLfSplitBetweenWrites() throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final OutputStream out = new OutboundEventWriter.DataFramingOutputStream(buffer);
+        out.write("first\r".getBytes("UTF-8"));
+        out.write("\nsecond".getBytes("UTF-8"));
+        assertEquals("data: first\ndata: second", buffer.toString("UTF-8"));
+    }
+
+    @Test
+    public void testBulkWriteWithOffset() throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final OutputStream out = new OutboundEventWriter.DataFramingOutputStream(buffer);
+        final byte[] bytes = "xxfirst\nsecondxx".getBytes("UTF-8");
+        out.write(bytes, 2, bytes.length - 4);
+        assertEquals("data: first\ndata: second", buffer.toString("UTF-8"));
+    }
+
+    @Test
+    public void testTrailingNewline() throws IOException {
+        assertFraming("data\n", "data: data\ndata: ", "data\n");
+        assertFraming("data\r\n", "data: data\ndata: ", "data\n");
+        assertFraming("data\n\n", "data: data\ndata: \ndata: ", "data\n\n");
+    }
+
+    @Test
+    public void testMultiByteCharacters() throws IOException {
+        assertFraming("žluťoučký\nkůň", "data: žluťoučký\ndata: kůň", "žluťoučký\nkůň");
+    }
+
+    @Test
+    public void testEmptyWrite() throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final OutputStream out = new OutboundEventWriter.DataFramingOutputStream(buffer);
+        out.write(new byte[0], 0, 0);
+        assertEquals("", buffer.toString("UTF-8"));
+    }
+}
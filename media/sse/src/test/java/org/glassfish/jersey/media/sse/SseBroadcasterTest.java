@@ -0,0 +1,249 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.media.sse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.message.MessageBodyWorkers;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ChunkedResponseWriter;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SseBroadcaster} event replay tests.
+ */
+public class SseBroadcasterTest {
+
+    private static volatile SseBroadcaster broadcaster;
+    private static volatile EventChannel lastChannel;
+
+    @Path("events")
+    public static class EventsResource {
+
+        @GET
+        @Produces(EventChannel.SERVER_SENT_EVENTS)
+        public EventChannel getEvents(@HeaderParam(EventChannel.LAST_EVENT_ID_HEADER) String lastEventId) {
+            final EventChannel channel = new EventChannel();
+            broadcaster.add(channel, lastEventId);
+            lastChannel = channel;
+            return channel;
+        }
+    }
+
+    /**
+     * Event stream received by a client, counting the received events.
+     */
+    private static class EventStream extends OutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final CountDownLatch latch;
+
+        EventStream(int expectedEvents) {
+            this.latch = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            buffer.write(b, off, len);
+            // each event is written at once
+            final String written = new String(b, off, len, "UTF-8");
+            for (int i = written.indexOf("\n\n"); i >= 0; i = written.indexOf("\n\n", i + 2)) {
+                latch.countDown();
+            }
+        }
+
+        List<String> awaitIds() throws Exception {
+            assertTrue("Events not received.", latch.await(10, TimeUnit.SECONDS));
+            final List<String> ids = new ArrayList<String>();
+            synchronized (this) {
+                for (String line : buffer.toString("UTF-8").split("\n")) {
+                    if (line.startsWith("id: ")) {
+                        ids.add(line.substring(4));
+                    }
+                }
+            }
+            return ids;
+        }
+    }
+
+    private ApplicationHandler handler;
+    private EventReplayBuffer replayBuffer;
+
+    @Before
+    public void setUp() {
+        handler = new ApplicationHandler(new ResourceConfig(EventsResource.class, ChunkedResponseWriter.class,
+                OutboundEventWriter.class));
+        replayBuffer = new EventReplayBuffer(1000, 1000000);
+        broadcaster = new SseBroadcaster(replayBuffer, handler.getServiceLocator().getService(MessageBodyWorkers.class));
+    }
+
+    private static OutboundEvent event(int id) {
+        return new OutboundEvent.Builder().id(String.valueOf(id)).data(String.class, "event " + id).build();
+    }
+
+    private EventStream connect(String lastEventId, int expectedEvents) {
+        final ContainerRequest request = new ContainerRequest(URI.create("/"), URI.create("/events"), "GET", null,
+                new MapPropertiesDelegate());
+        if (lastEventId != null) {
+            request.header(EventChannel.LAST_EVENT_ID_HEADER, lastEventId);
+        }
+        final EventStream stream = new EventStream(expectedEvents);
+        handler.apply(request, stream);
+        return stream;
+    }
+
+    private static List<String> ids(int first, int last) {
+        final List<String> ids = new ArrayList<String>();
+        for (int i = first; i <= last; i++) {
+            ids.add(String.valueOf(i));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testEventsSerializedBeforeRetained() {
+        broadcaster.broadcast(event(1));
+
+        assertEquals(1, replayBuffer.size());
+        assertEquals("id: 1\ndata: event 1\n\n".length(), replayBuffer.getByteSize());
+    }
+
+    @Test
+    public void testReplayMissedEvents() throws Exception {
+        // broadcast while no client is connected
+        for (int i = 1; i <= 5; i++) {
+            broadcaster.broadcast(event(i));
+        }
+
+        final EventStream stream = connect("2", 4);
+        broadcaster.broadcast(event(6));
+
+        assertEquals(ids(3, 6), stream.awaitIds());
+    }
+
+    @Test
+    public void testReplayDoesNotSuppressEventsOfOtherBroadcasters() throws Exception {
+        final SseBroadcaster other = new SseBroadcaster(new EventReplayBuffer(1000, 1000000),
+                handler.getServiceLocator().getService(MessageBodyWorkers.class));
+        for (int i = 1; i <= 3; i++) {
+            broadcaster.broadcast(event(i));
+        }
+
+        // replayed up to the third event of the first broadcaster
+        final EventStream stream = connect("1", 4);
+        other.add(lastChannel);
+
+        // the first event retained by the other broadcaster, the same event instance broadcast by both
+        final OutboundEvent shared = event(4);
+        other.broadcast(shared);
+        broadcaster.broadcast(shared);
+
+        assertEquals(Arrays.asList("2", "3", "4", "4"), stream.awaitIds());
+    }
+
+    @Test
+    public void testNothingReplayedToNewClient() throws Exception {
+        broadcaster.broadcast(event(1));
+
+        final EventStream stream = connect(null, 1);
+        broadcaster.broadcast(event(2));
+
+        assertEquals(ids(2, 2), stream.awaitIds());
+    }
+
+    @Test
+    public void testReconnectDuringBroadcast() throws Exception {
+        final int count = 300;
+        final AtomicInteger lastBroadcast = new AtomicInteger();
+        broadcaster.broadcast(event(0));
+
+        final Thread broadcasting = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= count; i++) {
+                    broadcaster.broadcast(event(i));
+                    lastBroadcast.set(i);
+                }
+            }
+        };
+        broadcasting.start();
+
+        // every reconnecting client receives each event following its last event exactly once and in order
+        final List<EventStream> streams = new ArrayList<EventStream>();
+        final List<Integer> lastIds = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++) {
+            final int lastId = lastBroadcast.get();
+            lastIds.add(lastId);
+            streams.add(connect(String.valueOf(lastId), count - lastId));
+            Thread.yield();
+        }
+        broadcasting.join();
+
+        for (int i = 0; i < streams.size(); i++) {
+            assertEquals(ids(lastIds.get(i) + 1, count), streams.get(i).awaitIds());
+        }
+    }
+}
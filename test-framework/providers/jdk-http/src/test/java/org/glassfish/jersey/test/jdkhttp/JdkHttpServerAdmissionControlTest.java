@@ -0,0 +1,265 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.test.jdkhttp;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.client.ClientException;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.jdkhttp.AdmissionControlExecutor;
+import org.glassfish.jersey.jdkhttp.JdkHttpServerFactory;
+import org.glassfish.jersey.jdkhttp.JdkHttpServerProperties;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of the {@link AdmissionControlExecutor admission control} of the {@link JdkHttpServerTestContainerFactory
+ * JDK HTTP server container} under saturation.
+ */
+public class JdkHttpServerAdmissionControlTest extends JerseyTest {
+
+    private static CountDownLatch entered;
+    private static CountDownLatch release;
+
+    /**
+     * Creates new instance.
+     */
+    public JdkHttpServerAdmissionControlTest() {
+        super(new JdkHttpServerTestContainerFactory());
+    }
+
+    @Override
+    protected ResourceConfig configure() {
+        return new ResourceConfig(BlockingResource.class)
+                .setProperty(JdkHttpServerProperties.WORKER_POOL_SIZE, 1)
+                .setProperty(JdkHttpServerProperties.WORKER_QUEUE_SIZE, 1)
+                .setProperty(JdkHttpServerProperties.RETRY_AFTER, 7);
+    }
+
+    /**
+     * Test resource occupying the only worker thread until released.
+     */
+    @Path("block")
+    public static class BlockingResource {
+
+        /**
+         * Test resource method.
+         *
+         * @return Test simple string response.
+         * @throws InterruptedException if interrupted while waiting to be released.
+         */
+        @GET
+        public String get() throws InterruptedException {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return "done";
+        }
+    }
+
+    @Before
+    public void createLatches() {
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void releaseRequests() {
+        release.countDown();
+    }
+
+    /**
+     * Test that requests exceeding the worker pool and queue are rejected with {@code 503} and
+     * that the queued requests are processed once the worker is available again.
+     */
+    @Test
+    public void testSaturation() throws Exception {
+        final CountDownLatch rejected = new CountDownLatch(4);
+        final CountDownLatch completed = new CountDownLatch(2);
+        final AtomicInteger retryAfterMismatches = new AtomicInteger();
+        final InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                if (response.getStatus() == 503) {
+                    if (!"7".equals(response.getHeaderString("Retry-After"))) {
+                        retryAfterMismatches.incrementAndGet();
+                    }
+                    rejected.countDown();
+                } else if (response.getStatus() == 200) {
+                    completed.countDown();
+                }
+            }
+
+            @Override
+            public void failed(ClientException error) {
+            }
+        };
+
+        target().path("block").request().async().get(callback);
+        assertTrue("Worker thread not occupied.", entered.await(10, TimeUnit.SECONDS));
+
+        // one request fits into the queue, the others are rejected
+        for (int i = 0; i < 5; i++) {
+            target().path("block").request().async().get(callback);
+        }
+        assertTrue("Requests not rejected.", rejected.await(10, TimeUnit.SECONDS));
+        assertEquals(0, retryAfterMismatches.get());
+
+        release.countDown();
+        assertTrue("Accepted requests not processed.", completed.await(10, TimeUnit.SECONDS));
+
+        final Response response = target().path("block").request().get();
+        assertEquals(200, response.getStatus());
+        assertEquals("done", response.readEntity(String.class));
+    }
+
+    /**
+     * Test that rejected exchanges are not processed on the server dispatcher thread and that
+     * handlers other than the Jersey container process them as usual.
+     */
+    @Test
+    public void testRejectedExchangeNotRunOnDispatcherThread() throws Exception {
+        final AdmissionControlExecutor executor = new AdmissionControlExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        final HttpServer server = JdkHttpServerFactory.createHttpServer(URI.create("http://localhost:0/"),
+                new ApplicationHandler(new ResourceConfig(BlockingResource.class)), executor);
+        try {
+            final AtomicReference<String> handlerThread = new AtomicReference<String>();
+            server.createContext("/plain", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    handlerThread.set(Thread.currentThread().getName());
+                    exchange.sendResponseHeaders(204, -1);
+                    exchange.close();
+                }
+            });
+            final URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+
+            assertEquals(503, client().target(uri).path("block").request().get().getStatus());
+            assertEquals(204, client().target(uri).path("plain").request().get().getStatus());
+            assertTrue(handlerThread.get(), handlerThread.get().startsWith("jersey-jdk-http-rejection-"));
+            assertEquals(2, executor.getRejectedCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Test that the connections of rejected exchanges are closed right away once the rejection threads
+     * are busy and the rejection queue is full.
+     */
+    @Test
+    public void testRejectionQueueOverflowClosesConnection() throws Exception {
+        final AdmissionControlExecutor executor = new AdmissionControlExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 1);
+        final HttpServer server = JdkHttpServerFactory.createHttpServer(URI.create("http://localhost:0/"),
+                new ApplicationHandler(new ResourceConfig(BlockingResource.class)), executor);
+        try {
+            final CountDownLatch hanging = new CountDownLatch(2);
+            server.createContext("/hang", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    hanging.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                    exchange.close();
+                }
+            });
+            final URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+
+            // occupy both rejection threads and fill the rejection queue
+            for (int i = 0; i < 3; i++) {
+                client().target(uri).path("hang").request().async().get();
+            }
+            assertTrue("Rejection threads not occupied.", hanging.await(10, TimeUnit.SECONDS));
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (executor.getRejectedCount() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, executor.getRejectedCount());
+
+            try {
+                client().target(uri).path("block").request().get();
+                fail("Connection of the dropped exchange not closed.");
+            } catch (ClientException expected) {
+                // the connection has been closed without any response
+            }
+            assertTrue(executor.getDroppedCount() > 0);
+            assertEquals(3, executor.getRejectedCount());
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+}
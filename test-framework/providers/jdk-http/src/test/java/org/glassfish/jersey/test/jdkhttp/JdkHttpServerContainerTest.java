@@ -39,9 +39,17 @@
  */
 package org.glassfish.jersey.test.jdkhttp;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 
 import org.glassfish.jersey.jdkhttp.JdkHttpHandlerContainer;
 import org.glassfish.jersey.server.ResourceConfig;
@@ -66,7 +74,7 @@ public class JdkHttpServerContainerTest extends JerseyTest {
 
     @Override
     protected ResourceConfig configure() {
-        return new ResourceConfig(Resource.class);
+        return new ResourceConfig(Resource.class, BaseUriResource.class);
     }
 
     /**
@@ -86,6 +94,24 @@ public class JdkHttpServerContainerTest extends JerseyTest {
         }
     }
 
+    /**
+     * Test resource returning the request base URI.
+     */
+    @Path("base")
+    public static class BaseUriResource {
+
+        /**
+         * Test resource method.
+         *
+         * @param uriInfo request URI information.
+         * @return request base URI.
+         */
+        @GET
+        public String getBaseUri(@Context UriInfo uriInfo) {
+            return uriInfo.getBaseUri().toString();
+        }
+    }
+
     @Test
     /**
      * Test {@link HttpServer JDK HttpServer} container.
@@ -96,4 +122,43 @@ public class JdkHttpServerContainerTest extends JerseyTest {
         assertEquals("Response status unexpected.", 200, response.getStatus());
         assertEquals("Response entity unexpected.", "get", response.readEntity(String.class));
     }
+
+    /**
+     * Test that differently cased {@code Host} headers resolve to the same base URI.
+     */
+    @Test
+    public void testHostHeaderCase() throws IOException {
+        assertEquals("http://localhost:" + getPort() + "/", getBaseUri("localhost:" + getPort()));
+        assertEquals("http://localhost:" + getPort() + "/", getBaseUri("LocalHost:" + getPort()));
+    }
+
+    /**
+     * Test that requests with many distinct {@code Host} headers are still served with the correct base URI.
+     */
+    @Test
+    public void testManyHostHeaders() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            assertEquals("http://host" + i + ":" + getPort() + "/", getBaseUri("host" + i + ":" + getPort()));
+        }
+        assertEquals("http://localhost:" + getPort() + "/", getBaseUri("localhost:" + getPort()));
+    }
+
+    private String getBaseUri(final String host) throws IOException {
+        final Socket socket = new Socket("localhost", getPort());
+        try {
+            final OutputStream out = socket.getOutputStream();
+            out.write(("GET /base HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+            out.flush();
+
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            assertEquals("HTTP/1.1 200 OK", in.readLine());
+            String line;
+            do {
+                line = in.readLine();
+            } while (line != null && !line.isEmpty());
+            return in.readLine();
+        } finally {
+            socket.close();
+        }
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.test.niohttp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.niohttp.NioHttpContainer;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link NioHttpContainer}.
+ */
+public class NioHttpServerContainerTest extends JerseyTest {
+
+    /**
+     * Creates new instance.
+     */
+    public NioHttpServerContainerTest() {
+        super(new NioHttpServerTestContainerFactory());
+    }
+
+    @Override
+    protected ResourceConfig configure() {
+        return new ResourceConfig(Resource.class);
+    }
+
+    /**
+     * Test resource class.
+     */
+    @Path("one")
+    public static class Resource {
+
+        /**
+         * Test resource method.
+         *
+         * @return Test simple string response.
+         */
+        @GET
+        public String getSomething() {
+            return "get";
+        }
+
+        /**
+         * Test resource method.
+         *
+         * @param entity request entity.
+         * @return Test echo response.
+         */
+        @POST
+        public String postSomething(String entity) {
+            return "post-" + entity;
+        }
+    }
+
+    @Test
+    /**
+     * Test NIO HTTP server container.
+     */
+    public void testNioHttpServerContainerTarget() {
+        final Response response = target().path("one").request().get();
+
+        assertEquals("Response status unexpected.", 200, response.getStatus());
+        assertEquals("Response entity unexpected.", "get", response.readEntity(String.class));
+    }
+
+    @Test
+    /**
+     * Test request entity is received.
+     */
+    public void testPost() {
+        final Response response = target().path("one").request().post(Entity.text("entity"));
+
+        assertEquals("Response status unexpected.", 200, response.getStatus());
+        assertEquals("Response entity unexpected.", "post-entity", response.readEntity(String.class));
+    }
+
+    @Test
+    /**
+     * Test pipelined requests are answered in order on a single connection.
+     */
+    public void testPipelining() throws IOException {
+        final String path = getBaseUri().getPath() + "one";
+        final Socket socket = new Socket(getBaseUri().getHost(), getPort());
+        try {
+            socket.getOutputStream().write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "POST " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: 2\r\n\r\nab"
+                    + "GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            final InputStream in = socket.getInputStream();
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                received.write(buffer, 0, read);
+            }
+
+            final String responses = received.toString("US-ASCII");
+            final int first = responses.indexOf("\r\n\r\nget");
+            final int second = responses.indexOf("\r\n\r\npost-ab");
+            final int third = responses.lastIndexOf("\r\n\r\nget");
+            assertTrue(responses, first > 0 && second > first && third > second);
+        } finally {
+            socket.close();
+        }
+    }
+}
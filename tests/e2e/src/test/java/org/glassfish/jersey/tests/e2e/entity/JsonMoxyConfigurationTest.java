@@ -0,0 +1,243 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.tests.e2e.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.ext.ContextResolver;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlValue;
+
+import org.glassfish.jersey.moxy.json.MoxyJsonBinder;
+import org.glassfish.jersey.moxy.json.MoxyJsonConfiguration;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+
+import org.eclipse.persistence.jaxb.rs.MOXyJsonProvider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the Jersey MOXy JSON provider, which caches contexts and pools marshallers for plain domain classes,
+ * produces and accepts the same JSON as {@link MOXyJsonProvider} configured the same way.
+ */
+@RunWith(Parameterized.class)
+public class JsonMoxyConfigurationTest extends JerseyTest {
+
+    private static final String NAMESPACE = "http://example.com";
+
+    @XmlRootElement(name = "person", namespace = NAMESPACE)
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Person {
+
+        @XmlAttribute
+        public String id;
+
+        @XmlElement(namespace = NAMESPACE)
+        public String name;
+
+        public Note note;
+
+        public List<String> nicknames = new ArrayList<String>();
+
+        public List<String> emails = new ArrayList<String>();
+
+        public static Person createTestInstance() {
+            final Person person = new Person();
+            person.id = "42";
+            person.name = "Joe";
+            person.note = new Note();
+            person.note.lang = "en";
+            person.note.text = "hello";
+            person.nicknames.add("jo");
+            person.nicknames.add("joey");
+            return person;
+        }
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Note {
+
+        @XmlAttribute
+        public String lang;
+
+        @XmlValue
+        public String text;
+    }
+
+    @Path("person")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public static class PersonResource {
+
+        @GET
+        public Person get() {
+            return Person.createTestInstance();
+        }
+
+        @POST
+        public Person post(final Person person) {
+            return person;
+        }
+    }
+
+    private static class ConfigurationResolver implements ContextResolver<MoxyJsonConfiguration> {
+
+        private final MoxyJsonConfiguration configuration;
+
+        ConfigurationResolver(final MoxyJsonConfiguration configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public MoxyJsonConfiguration getContext(final Class<?> type) {
+            return configuration;
+        }
+    }
+
+    @Parameterized.Parameters()
+    public static Collection<MoxyJsonConfiguration[]> getConfigurations() {
+        final MoxyJsonConfiguration defaults = new MoxyJsonConfiguration();
+        defaults.setAttributePrefix("@");
+        defaults.setValueWrapper("$");
+        defaults.setNamespaceSeparator(':');
+
+        final MoxyJsonConfiguration includeRoot = new MoxyJsonConfiguration();
+        includeRoot.setIncludeRoot(true);
+        includeRoot.setFormattedOutput(true);
+
+        final Map<String, String> namespacePrefixMapper = new HashMap<String, String>();
+        namespacePrefixMapper.put(NAMESPACE, "ex");
+        final MoxyJsonConfiguration prefixes = new MoxyJsonConfiguration();
+        prefixes.setIncludeRoot(true);
+        prefixes.setAttributePrefix("_");
+        prefixes.setValueWrapper("value");
+        prefixes.setNamespacePrefixMapper(namespacePrefixMapper);
+        prefixes.setNamespaceSeparator('.');
+
+        final MoxyJsonConfiguration noEmptyCollections = new MoxyJsonConfiguration();
+        noEmptyCollections.setMarshalEmptyCollections(false);
+
+        return Arrays.asList(
+                new MoxyJsonConfiguration[] {defaults},
+                new MoxyJsonConfiguration[] {includeRoot},
+                new MoxyJsonConfiguration[] {prefixes},
+                new MoxyJsonConfiguration[] {noEmptyCollections});
+    }
+
+    private final MoxyJsonConfiguration configuration;
+
+    public JsonMoxyConfigurationTest(final MoxyJsonConfiguration configuration) {
+        super(configureJaxrsApplication(configuration));
+
+        this.configuration = configuration;
+    }
+
+    private static Application configureJaxrsApplication(final MoxyJsonConfiguration configuration) {
+        return new ResourceConfig()
+                .addClasses(PersonResource.class)
+                .addSingletons(new ConfigurationResolver(configuration))
+                .addBinders(new MoxyJsonBinder());
+    }
+
+    /**
+     * Marshal the test instance with a {@link MOXyJsonProvider} configured the same way as the provider under test.
+     */
+    private String getExpectedJson() throws Exception {
+        final MOXyJsonProvider provider = new MOXyJsonProvider();
+        // the Jersey provider keeps its own attribute prefix and value wrapper unless they are configured
+        provider.setAttributePrefix(configuration.getAttributePrefix() != null ? configuration.getAttributePrefix() : "@");
+        provider.setValueWrapper(configuration.getValueWrapper() != null ? configuration.getValueWrapper() : "$");
+        provider.setFormattedOutput(configuration.isFormattedOutput());
+        provider.setIncludeRoot(configuration.isIncludeRoot());
+        provider.setMarshalEmptyCollections(configuration.isMarshalEmptyCollections());
+        provider.setNamespaceSeparator(configuration.getNamespaceSeparator());
+        provider.setNamespacePrefixMapper(configuration.getNamespacePrefixMapper());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(Person.createTestInstance(), Person.class, Person.class, new Annotation[0],
+                MediaType.APPLICATION_JSON_TYPE, new MultivaluedHashMap<String, Object>(), out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        final String expected = getExpectedJson();
+
+        // the second request is served by a pooled marshaller
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected, target("person").request(MediaType.APPLICATION_JSON_TYPE).get(String.class));
+        }
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        final String expected = getExpectedJson();
+
+        // the posted JSON is read by the provider under test and written back
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected, target("person").request(MediaType.APPLICATION_JSON_TYPE)
+                    .post(Entity.entity(expected, MediaType.APPLICATION_JSON_TYPE), String.class));
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.tests.e2e.json;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+
+import javax.xml.bind.annotation.XmlElement;
+
+import org.glassfish.jersey.jackson.JacksonBinder;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.glassfish.jersey.test.spi.TestContainer;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.map.annotate.JsonView;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the Jackson JSON provider applies the annotation configuration, the generic entity type and
+ * the {@code ContextResolver<ObjectMapper>} of each entity, also when readers and writers are reused.
+ */
+public class JacksonProviderTest extends JerseyTest {
+
+    public static class Views {
+
+        public static class Public {
+        }
+
+        public static class Internal extends Public {
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public static class Account {
+
+        @JsonView(Views.Public.class)
+        public String name;
+
+        @JsonView(Views.Internal.class)
+        public String secret;
+
+        public Account() {
+        }
+
+        public Account(final String name, final String secret) {
+            this.name = name;
+            this.secret = secret;
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+    public static class Person {
+
+        @JsonProperty("full_name")
+        public String name;
+
+        @XmlElement(name = "years")
+        public Integer age;
+
+        public String nickname;
+
+        public Person() {
+        }
+
+        public Person(final String name, final Integer age) {
+            this.name = name;
+            this.age = age;
+        }
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public static class IndentedBean {
+
+        public String value = "indented";
+    }
+
+    /**
+     * Provides an indenting mapper for {@link IndentedBean} only, other types use the default mapper.
+     */
+    @Provider
+    public static class IndentingMapperResolver implements ContextResolver<ObjectMapper> {
+
+        private final ObjectMapper mapper = new ObjectMapper().configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
+
+        @Override
+        public ObjectMapper getContext(final Class<?> type) {
+            return type == IndentedBean.class ? mapper : null;
+        }
+    }
+
+    @Path("jackson")
+    @Produces(MediaType.APPLICATION_JSON)
+    public static class JacksonResource {
+
+        @GET
+        @Path("account")
+        public Account getAccount() {
+            return new Account("joe", "s3cr3t");
+        }
+
+        @GET
+        @Path("account/public")
+        @JsonView(Views.Public.class)
+        public Account getPublicAccount() {
+            return new Account("joe", "s3cr3t");
+        }
+
+        @GET
+        @Path("account/internal")
+        @JsonView(Views.Internal.class)
+        public Account getInternalAccount() {
+            return new Account("joe", "s3cr3t");
+        }
+
+        @GET
+        @Path("person")
+        public Person getPerson() {
+            return new Person("Joe", 42);
+        }
+
+        @GET
+        @Path("accounts")
+        public GenericEntity<List<Account>> getAccounts() {
+            return new GenericEntity<List<Account>>(Arrays.asList(new Account("joe", "a"), new Account("jane", "b"))) {};
+        }
+
+        @GET
+        @Path("people")
+        public GenericEntity<Map<String, Person>> getPeople() {
+            final Map<String, Person> people = new LinkedHashMap<String, Person>();
+            people.put("joe", new Person("Joe", 42));
+            people.put("jane", new Person("Jane", 24));
+            return new GenericEntity<Map<String, Person>>(people) {};
+        }
+
+        @POST
+        @Path("people")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.TEXT_PLAIN)
+        public String postPeople(final List<Person> people) {
+            final StringBuilder sb = new StringBuilder();
+            for (Person person : people) {
+                sb.append(person.name).append(':').append(person.age).append(';');
+            }
+            return sb.toString();
+        }
+
+        @GET
+        @Path("indented")
+        public IndentedBean getIndented() {
+            return new IndentedBean();
+        }
+    }
+
+    public JacksonProviderTest() throws Exception {
+        super(new ResourceConfig()
+                .addClasses(JacksonResource.class)
+                .addSingletons(new IndentingMapperResolver())
+                .addBinders(new JacksonBinder()));
+    }
+
+    @Override
+    protected Client getClient(final TestContainer tc, final ApplicationHandler applicationHandler) {
+        final Client client = super.getClient(tc, applicationHandler);
+        client.configuration().register(new JacksonFeature());
+        return client;
+    }
+
+    private String get(final String path) {
+        return target("jackson").path(path).request(MediaType.APPLICATION_JSON_TYPE).get(String.class);
+    }
+
+    @Test
+    public void testJsonView() throws Exception {
+        // alternate the views of the same entity type to make sure the writers of different views are not mixed up
+        for (int i = 0; i < 2; i++) {
+            final String publicAccount = get("account/public");
+            assertTrue(publicAccount, publicAccount.contains("\"name\":\"joe\""));
+            assertFalse(publicAccount, publicAccount.contains("secret"));
+
+            final String internalAccount = get("account/internal");
+            assertTrue(internalAccount, internalAccount.contains("\"name\":\"joe\""));
+            assertTrue(internalAccount, internalAccount.contains("\"secret\":\"s3cr3t\""));
+
+            final String account = get("account");
+            assertTrue(account, account.contains("\"secret\":\"s3cr3t\""));
+        }
+    }
+
+    @Test
+    public void testAnnotationConfiguration() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            final String person = get("person");
+            assertTrue(person, person.contains("\"full_name\":\"Joe\""));
+            assertTrue(person, person.contains("\"years\":42"));
+            assertFalse(person, person.contains("nickname"));
+        }
+    }
+
+    @Test
+    public void testGenericTypes() throws Exception {
+        final List<Account> accounts = target("jackson/accounts").request(MediaType.APPLICATION_JSON_TYPE)
+                .get(new GenericType<List<Account>>() {});
+        assertEquals(2, accounts.size());
+        assertEquals("joe", accounts.get(0).name);
+        assertEquals("b", accounts.get(1).secret);
+
+        final Map<String, Person> people = target("jackson/people").request(MediaType.APPLICATION_JSON_TYPE)
+                .get(new GenericType<Map<String, Person>>() {});
+        assertEquals(2, people.size());
+        assertEquals(Integer.valueOf(42), people.get("joe").age);
+        assertEquals("Jane", people.get("jane").name);
+
+        // a list of a different element type must not be read with the reader of the list of accounts
+        final List<Person> list = Arrays.asList(new Person("Joe", 42), new Person("Jane", 24));
+        final String result = target("jackson/people").request(MediaType.TEXT_PLAIN_TYPE)
+                .post(Entity.entity(new GenericEntity<List<Person>>(list) {}, MediaType.APPLICATION_JSON_TYPE),
+                        String.class);
+        assertEquals("Joe:42;Jane:24;", result);
+    }
+
+    @Test
+    public void testObjectMapperContextResolver() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            final String indented = get("indented");
+            assertTrue(indented, indented.contains("\n"));
+            assertTrue(indented, indented.contains("\"value\" : \"indented\""));
+
+            // the resolver does not provide a mapper for other types, the default mapper is used
+            final String person = get("person");
+            assertFalse(person, person.contains("\n"));
+            assertTrue(person, person.contains("\"years\":42"));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.tests.e2e.json;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientFactory;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonBinder;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.jackson.JacksonSmileProvider;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.inmemory.internal.InMemoryConnector;
+
+/**
+ * Smile vs. JSON payload size and throughput benchmark.
+ * <p>
+ * Run the {@link #main(String[])} method to compare the entity sizes and the number of {@code GET} and {@code POST}
+ * round trips per second with JSON and with Smile. The client is connected to the application using the in-memory
+ * connector, so that only the entity processing on both sides and no network transfer is measured. The benchmark
+ * is not executed as a part of the test suite.
+ * </p>
+ */
+public class JacksonSmileBenchmark {
+
+    private static final int REQUESTS = 5000;
+    private static final int ITERATIONS = 5;
+    private static final URI BASE_URI = URI.create("http://localhost/");
+
+    /**
+     * Typical DTO.
+     */
+    public static class Order {
+        public long id;
+        public String customer;
+        public String status;
+        public List<Item> items = new ArrayList<Item>();
+    }
+
+    /**
+     * Typical nested DTO.
+     */
+    public static class Item {
+        public String sku;
+        public String description;
+        public int quantity;
+        public double price;
+    }
+
+    @Path("orders")
+    @Produces({MediaType.APPLICATION_JSON, JacksonSmileProvider.APPLICATION_JACKSON_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, JacksonSmileProvider.APPLICATION_JACKSON_SMILE})
+    public static class OrdersResource {
+
+        @GET
+        public List<Order> get() {
+            return orders();
+        }
+
+        @POST
+        public Order post(final Order order) {
+            return order;
+        }
+    }
+
+    public static void main(String[] args) {
+        final ApplicationHandler application = new ApplicationHandler(new ResourceConfig(OrdersResource.class)
+                .addBinders(new JacksonBinder()));
+        final Client client = ClientFactory.newClient(
+                new ClientConfig().connector(new InMemoryConnector(BASE_URI, application)));
+        client.configuration().register(new JacksonFeature());
+        final WebTarget target = client.target(BASE_URI).path("orders");
+
+        final MediaType[] mediaTypes = {MediaType.APPLICATION_JSON_TYPE, JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE};
+        for (MediaType mediaType : mediaTypes) {
+            final byte[] list = target.request(mediaType).get(byte[].class);
+            System.out.printf("%s: list of %d orders %d bytes%n", mediaType, orders().size(), list.length);
+        }
+
+        final Order order = orders().get(0);
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (MediaType mediaType : mediaTypes) {
+                long start = System.nanoTime();
+                for (int r = 0; r < REQUESTS; r++) {
+                    target.request(mediaType).get(Order[].class);
+                }
+                report(i, mediaType, "GET", start);
+
+                start = System.nanoTime();
+                for (int r = 0; r < REQUESTS; r++) {
+                    target.request(mediaType).post(Entity.entity(order, mediaType), Order.class);
+                }
+                report(i, mediaType, "POST", start);
+            }
+        }
+        client.close();
+    }
+
+    private static List<Order> orders() {
+        final List<Order> orders = new ArrayList<Order>();
+        for (int o = 0; o < 10; o++) {
+            final Order order = new Order();
+            order.id = 1000 + o;
+            order.customer = "customer-" + o;
+            order.status = o % 3 == 0 ? "SHIPPED" : "PENDING";
+            for (int i = 0; i < 5; i++) {
+                final Item item = new Item();
+                item.sku = "SKU-" + (o * 10 + i);
+                item.description = "Item number " + i + " of order " + o;
+                item.quantity = i + 1;
+                item.price = 9.99 * (i + 1);
+                order.items.add(item);
+            }
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static void report(final int iteration, final MediaType mediaType, final String method, final long start) {
+        final long elapsed = System.nanoTime() - start;
+        System.out.printf("Iteration %d: %s %s %d requests in %.1f ms, %.0f requests/s%n", iteration, mediaType, method,
+                REQUESTS, elapsed / 1000000.0, REQUESTS * 1000000000.0 / elapsed);
+    }
+}
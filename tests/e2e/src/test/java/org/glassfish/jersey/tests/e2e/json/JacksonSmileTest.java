@@ -0,0 +1,205 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.tests.e2e.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.jackson.JacksonBinder;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.jackson.JacksonSmileProvider;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.glassfish.jersey.test.spi.TestContainer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests content negotiation between JSON and the binary Smile format.
+ */
+public class JacksonSmileTest extends JerseyTest {
+
+    @SuppressWarnings("UnusedDeclaration")
+    public static class Bean {
+
+        public String name;
+        public List<Integer> values = new ArrayList<Integer>();
+
+        public static Bean createTestInstance() {
+            final Bean bean = new Bean();
+            bean.name = "smile";
+            for (int i = 0; i < 100; i++) {
+                bean.values.add(i);
+            }
+            return bean;
+        }
+    }
+
+    @Path("both")
+    @Produces({MediaType.APPLICATION_JSON, JacksonSmileProvider.APPLICATION_JACKSON_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, JacksonSmileProvider.APPLICATION_JACKSON_SMILE})
+    public static class JsonAndSmileResource {
+
+        @GET
+        public Bean get() {
+            return Bean.createTestInstance();
+        }
+
+        @POST
+        public Bean post(final Bean bean) {
+            return bean;
+        }
+    }
+
+    /**
+     * Resource that offers JSON only, as a server without Smile support does.
+     */
+    @Path("json")
+    @Produces(MediaType.APPLICATION_JSON)
+    public static class JsonResource {
+
+        @GET
+        public Bean get() {
+            return Bean.createTestInstance();
+        }
+    }
+
+    public JacksonSmileTest() throws Exception {
+        super(new ResourceConfig()
+                .addClasses(JsonAndSmileResource.class, JsonResource.class)
+                .addBinders(new JacksonBinder()));
+    }
+
+    @Override
+    protected Client getClient(final TestContainer tc, final ApplicationHandler applicationHandler) {
+        final Client client = super.getClient(tc, applicationHandler);
+        client.configuration().register(new JacksonFeature());
+        return client;
+    }
+
+    private WebTarget preferSmile(final String path) {
+        final WebTarget target = target(path);
+        target.configuration().register(new JacksonFeature(true));
+        return target;
+    }
+
+    private static void assertBean(final Response response, final MediaType expectedMediaType) {
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getMediaType().toString(), expectedMediaType.isCompatible(response.getMediaType()));
+
+        final Bean bean = response.readEntity(Bean.class);
+        assertEquals("smile", bean.name);
+        assertEquals(Bean.createTestInstance().values, bean.values);
+    }
+
+    @Test
+    public void testJsonOnlyClient() throws Exception {
+        assertBean(target("both").request(MediaType.APPLICATION_JSON_TYPE).get(), MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Test
+    public void testClientAcceptingSmileAndJson() throws Exception {
+        final Response response = target("both").request(JacksonSmileProvider.APPLICATION_JACKSON_SMILE,
+                MediaType.APPLICATION_JSON + ";q=0.5").get();
+
+        assertBean(response, JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE);
+    }
+
+    @Test
+    public void testClientPreferringSmile() throws Exception {
+        final Response response = preferSmile("both").request(MediaType.APPLICATION_JSON_TYPE).get();
+
+        assertBean(response, JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE);
+    }
+
+    @Test
+    public void testClientPreferringSmileAcceptingOtherSmileSubtype() throws Exception {
+        // only application/x-jackson-smile is Smile, a different type with the same subtype must not stop the filter
+        final Response response = preferSmile("both").request(MediaType.APPLICATION_JSON, "text/x-jackson-smile").get();
+
+        assertBean(response, JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE);
+    }
+
+    @Test
+    public void testClientPreferringJsonExplicitly() throws Exception {
+        // the client states its own preference, the filter leaves the Accept header unchanged
+        final Response response = preferSmile("both").request(JacksonSmileProvider.APPLICATION_JACKSON_SMILE + ";q=0.5",
+                MediaType.APPLICATION_JSON).get();
+
+        assertBean(response, MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Test
+    public void testClientPreferringSmileServerWithoutSmile() throws Exception {
+        final Response response = preferSmile("json").request(MediaType.APPLICATION_JSON_TYPE).get();
+
+        assertBean(response, MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Test
+    public void testPostSmile() throws Exception {
+        final Response response = target("both").request(JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE)
+                .post(Entity.entity(Bean.createTestInstance(), JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE));
+
+        assertBean(response, JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE);
+    }
+
+    @Test
+    public void testSmileSmallerThanJson() throws Exception {
+        final byte[] json = target("both").request(MediaType.APPLICATION_JSON_TYPE).get(byte[].class);
+        final byte[] smile = target("both").request(JacksonSmileProvider.APPLICATION_JACKSON_SMILE_TYPE).get(byte[].class);
+
+        assertTrue("JSON: " + json.length + " bytes, Smile: " + smile.length + " bytes", smile.length < json.length);
+    }
+}
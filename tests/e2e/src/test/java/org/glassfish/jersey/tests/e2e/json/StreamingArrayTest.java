@@ -0,0 +1,324 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.tests.e2e.json;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.glassfish.jersey.test.spi.TestContainer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests streaming of JSON arrays from/to {@link Iterator} entities.
+ */
+@RunWith(Parameterized.class)
+public class StreamingArrayTest extends JerseyTest {
+
+    @SuppressWarnings("UnusedDeclaration")
+    @XmlRootElement
+    public static class Item {
+
+        private String name;
+        private List<String> tags;
+
+        public Item() {
+        }
+
+        public Item(final String name, final String... tags) {
+            this.name = name;
+            this.tags = new ArrayList<String>(Arrays.asList(tags));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(final List<String> tags) {
+            this.tags = tags;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Item)) {
+                return false;
+            }
+            final Item other = (Item) o;
+            return name.equals(other.name) && tags.equals(other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + tags.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name + tags;
+        }
+    }
+
+    private static final List<Item> ITEMS = Arrays.asList(
+            new Item("first", "a", "b"),
+            new Item("second, with [brackets] and \"quotes\"", "c", "d", "e"),
+            new Item("third", "f", "g"));
+
+    private static final List<String> STRINGS = Arrays.asList("a", "b, [c]", "\"quoted\"", "back\\slash");
+
+    @Path("array")
+    @Produces(MediaType.APPLICATION_JSON)
+    public static class ArrayResource {
+
+        @GET
+        @Path("items")
+        public GenericEntity<Iterator<Item>> getItems() {
+            return new GenericEntity<Iterator<Item>>(ITEMS.iterator()) {};
+        }
+
+        @GET
+        @Path("strings")
+        public GenericEntity<Iterator<String>> getStrings() {
+            return new GenericEntity<Iterator<String>>(STRINGS.iterator()) {};
+        }
+
+        @GET
+        @Path("integers")
+        public GenericEntity<Iterator<Integer>> getIntegers() {
+            return new GenericEntity<Iterator<Integer>>(Arrays.asList(1, -2, 3).iterator()) {};
+        }
+
+        @GET
+        @Path("empty")
+        public GenericEntity<Iterator<Item>> getEmpty() {
+            return new GenericEntity<Iterator<Item>>(Collections.<Item>emptyList().iterator()) {};
+        }
+
+        @POST
+        @Path("items")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.TEXT_PLAIN)
+        public String postItems(final Iterator<Item> items) {
+            final StringBuilder sb = new StringBuilder();
+            while (items.hasNext()) {
+                final Item item = items.next();
+                sb.append(item.getName()).append(':').append(item.getTags().size()).append(';');
+            }
+            return sb.toString();
+        }
+
+        @POST
+        @Path("strings")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.TEXT_PLAIN)
+        public String postStrings(final Iterator<String> strings) {
+            final StringBuilder sb = new StringBuilder();
+            while (strings.hasNext()) {
+                sb.append(strings.next()).append('|');
+            }
+            return sb.toString();
+        }
+    }
+
+    @Parameterized.Parameters()
+    public static Collection<JsonTestProvider[]> getJsonProviders() throws Exception {
+        final List<JsonTestProvider[]> testProviders = new LinkedList<JsonTestProvider[]>();
+
+        testProviders.add(new JsonTestProvider[] {new JsonTestProvider.JacksonJsonTestProvider()});
+        testProviders.add(new JsonTestProvider[] {new JsonTestProvider.MoxyJsonTestProvider()});
+
+        return testProviders;
+    }
+
+    private final JsonTestProvider jsonTestProvider;
+
+    public StreamingArrayTest(final JsonTestProvider jsonTestProvider) throws Exception {
+        super(configureJaxrsApplication(jsonTestProvider));
+
+        this.jsonTestProvider = jsonTestProvider;
+    }
+
+    private static Application configureJaxrsApplication(final JsonTestProvider jsonTestProvider) {
+        final ResourceConfig resourceConfig = new ResourceConfig().
+                addClasses(ArrayResource.class).
+                addBinders(jsonTestProvider.getBinder());
+
+        if (jsonTestProvider.getProviders() != null) {
+            resourceConfig.addSingletons(jsonTestProvider.getProviders());
+        }
+
+        return resourceConfig;
+    }
+
+    @Override
+    protected Client getClient(final TestContainer tc, final ApplicationHandler applicationHandler) {
+        final Client client = super.getClient(tc, applicationHandler);
+        client.configuration().register(jsonTestProvider.getFeature());
+
+        for (Object provider : jsonTestProvider.getProviders()) {
+            client.configuration().register(provider);
+        }
+
+        return client;
+    }
+
+    private String getProviderName() {
+        return jsonTestProvider.getClass().getSimpleName();
+    }
+
+    private static <T> List<T> toList(final Iterator<T> iterator) throws Exception {
+        final List<T> list = new ArrayList<T>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        assertTrue(iterator instanceof Closeable);
+        ((Closeable) iterator).close();
+        return list;
+    }
+
+    @Test
+    public void testReadItems() throws Exception {
+        final Iterator<Item> items = target("array/items").request(MediaType.APPLICATION_JSON_TYPE)
+                .get(new GenericType<Iterator<Item>>() {});
+
+        assertEquals(getProviderName(), ITEMS, toList(items));
+    }
+
+    @Test
+    public void testReadStrings() throws Exception {
+        final Iterator<String> strings = target("array/strings").request(MediaType.APPLICATION_JSON_TYPE)
+                .get(new GenericType<Iterator<String>>() {});
+
+        assertEquals(getProviderName(), STRINGS, toList(strings));
+    }
+
+    @Test
+    public void testStringsAreJsonStrings() throws Exception {
+        final String json = target("array/strings").request(MediaType.APPLICATION_JSON_TYPE).get(String.class);
+
+        assertEquals(getProviderName(), "[\"a\",\"b, [c]\",\"\\\"quoted\\\"\",\"back\\\\slash\"]", json);
+    }
+
+    @Test
+    public void testNumbersAreJsonNumbers() throws Exception {
+        final String json = target("array/integers").request(MediaType.APPLICATION_JSON_TYPE).get(String.class);
+
+        assertEquals(getProviderName(), "[1,-2,3]", json);
+
+        final Iterator<Integer> integers = target("array/integers").request(MediaType.APPLICATION_JSON_TYPE)
+                .get(new GenericType<Iterator<Integer>>() {});
+        assertEquals(getProviderName(), Arrays.asList(1, -2, 3), toList(integers));
+    }
+
+    @Test
+    public void testEmptyArray() throws Exception {
+        final String json = target("array/empty").request(MediaType.APPLICATION_JSON_TYPE).get(String.class);
+        assertEquals(getProviderName(), "[]", json);
+
+        final Iterator<Item> items = target("array/empty").request(MediaType.APPLICATION_JSON_TYPE)
+                .get(new GenericType<Iterator<Item>>() {});
+        assertFalse(getProviderName(), items.hasNext());
+    }
+
+    @Test
+    public void testWriteItems() throws Exception {
+        final String result = target("array/items").request(MediaType.TEXT_PLAIN_TYPE)
+                .post(Entity.entity(new GenericEntity<Iterator<Item>>(ITEMS.iterator()) {}, MediaType.APPLICATION_JSON_TYPE),
+                        String.class);
+
+        assertEquals(getProviderName(), "first:2;second, with [brackets] and \"quotes\":3;third:2;", result);
+    }
+
+    @Test
+    public void testWriteStrings() throws Exception {
+        final String result = target("array/strings").request(MediaType.TEXT_PLAIN_TYPE)
+                .post(Entity.entity(new GenericEntity<Iterator<String>>(STRINGS.iterator()) {}, MediaType.APPLICATION_JSON_TYPE),
+                        String.class);
+
+        assertEquals(getProviderName(), "a|b, [c]|\"quoted\"|back\\slash|", result);
+    }
+
+    @Test
+    public void testWriteEmptyArray() throws Exception {
+        final String result = target("array/items").request(MediaType.TEXT_PLAIN_TYPE)
+                .post(Entity.entity(new GenericEntity<Iterator<Item>>(Collections.<Item>emptyList().iterator()) {},
+                        MediaType.APPLICATION_JSON_TYPE), String.class);
+
+        assertEquals(getProviderName(), "", result);
+    }
+}
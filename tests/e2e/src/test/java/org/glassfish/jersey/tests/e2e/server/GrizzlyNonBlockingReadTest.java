@@ -0,0 +1,130 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.tests.e2e.server;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainerProperties;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests of the Grizzly container non-blocking request entity reads
+ * ({@link GrizzlyHttpContainerProperties#NON_BLOCKING_READ_BUFFER_SIZE}).
+ */
+public class GrizzlyNonBlockingReadTest extends JerseyTest {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final AtomicInteger invocations = new AtomicInteger(0);
+
+    @Override
+    protected Application configure() {
+        return new ResourceConfig(EchoResource.class)
+                .setProperty(GrizzlyHttpContainerProperties.NON_BLOCKING_READ_BUFFER_SIZE, BUFFER_SIZE);
+    }
+
+    @Path("echo")
+    public static class EchoResource {
+
+        @POST
+        public String echo(String entity) {
+            invocations.incrementAndGet();
+            // the application must never be invoked on a selector thread
+            assertFalse(Thread.currentThread().getName().contains("SelectorRunner"));
+            return entity;
+        }
+    }
+
+    private static String entity(int length) {
+        final char[] chars = new char[length];
+        Arrays.fill(chars, 'a');
+        return new String(chars);
+    }
+
+    @Test
+    public void testSmallEntity() {
+        final String entity = entity(100);
+        assertEquals(entity, target("echo").request().post(Entity.text(entity), String.class));
+    }
+
+    @Test
+    public void testEntityExceedingBuffer() {
+        final String entity = entity(4 * BUFFER_SIZE + 17);
+        assertEquals(entity, target("echo").request().post(Entity.text(entity), String.class));
+    }
+
+    @Test
+    public void testClientAbortsWhileSendingEntity() throws Exception {
+        final int before = invocations.get();
+
+        final Socket socket = new Socket(getBaseUri().getHost(), getPort());
+        try {
+            final OutputStream out = socket.getOutputStream();
+            out.write(("POST /echo HTTP/1.1\r\n"
+                    + "Host: " + getBaseUri().getHost() + ":" + getPort() + "\r\n"
+                    + "Content-Type: text/plain\r\n"
+                    + "Content-Length: 1000\r\n"
+                    + "\r\n").getBytes("US-ASCII"));
+            out.write(entity(100).getBytes("US-ASCII"));
+            out.flush();
+            Thread.sleep(100);
+        } finally {
+            socket.close();
+        }
+
+        // the container keeps serving requests and the incomplete request never reaches the application
+        final String entity = entity(10);
+        assertEquals(entity, target("echo").request().post(Entity.text(entity), String.class));
+        assertEquals(before + 1, invocations.get());
+    }
+}
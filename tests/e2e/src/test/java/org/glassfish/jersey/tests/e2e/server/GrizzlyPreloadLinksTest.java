@@ -0,0 +1,116 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.jersey.tests.e2e.server;
+
+import java.net.URI;
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+
+import org.glassfish.jersey.grizzly2.httpserver.PreloadLinks;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the Grizzly container {@link PreloadLinks} announcing the resources using
+ * the {@code Link: <path>; rel=preload} response header.
+ */
+public class GrizzlyPreloadLinksTest extends JerseyTest {
+
+    @Override
+    protected Application configure() {
+        return new ResourceConfig(PageResource.class);
+    }
+
+    @Override
+    protected URI getBaseUri() {
+        return UriBuilder.fromUri("http://localhost/app/").port(getPort()).build();
+    }
+
+    @Path("page")
+    public static class PageResource {
+
+        @GET
+        public String getPage(@Context PreloadLinks preloadLinks) {
+            preloadLinks.add("/static/style.css");
+            preloadLinks.add("script.js");
+            preloadLinks.add("scripts/../lib.js");
+            return "page";
+        }
+
+        @GET
+        @Path("plain")
+        public String getPlain() {
+            return "plain";
+        }
+    }
+
+    @Test
+    public void testPreloadLinks() {
+        final Response response = target("page").request().get();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("page", response.readEntity(String.class));
+        final List<Object> links = response.getHeaders().get("Link");
+        assertEquals(3, links.size());
+        assertTrue(links.contains("</static/style.css>; rel=preload"));
+        // relative paths are resolved against the base URI of the application
+        assertTrue(links.contains("</app/script.js>; rel=preload"));
+        assertTrue(links.contains("</app/lib.js>; rel=preload"));
+    }
+
+    @Test
+    public void testNoLinksWithoutAnnouncedResources() {
+        final Response response = target("page/plain").request().get();
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeaders().get("Link"));
+    }
+}